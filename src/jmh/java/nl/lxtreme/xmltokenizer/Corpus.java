@@ -0,0 +1,189 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer;
+
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+
+
+/**
+ * Provides the generated documents the benchmarks run on.
+ * <p>
+ * Documents are written to a file in the temporary directory once, and reused
+ * by later runs, as the larger ones take a while to generate.
+ * </p>
+ */
+public enum Corpus
+{
+  /** Many small elements with lots of attributes. */
+  ATTRIBUTES
+  {
+    @Override
+    void writeChunk( final Writer aWriter, final int aIndex ) throws IOException
+    {
+      aWriter.write( "  <item id=\"" + aIndex + "\" name=\"item " + aIndex
+          + "\" type='product' price=\"12.50\" currency=\"EUR\" stock = '" + ( aIndex % 100 )
+          + "' available/>\n" );
+    }
+  },
+
+  /** Few elements with long runs of text. */
+  TEXT
+  {
+    @Override
+    void writeChunk( final Writer aWriter, final int aIndex ) throws IOException
+    {
+      aWriter.write( "  <p>Paragraph " + aIndex + ". The idea for this library was a comment I once read "
+          + "somewhere on the 'net that XML was invented to be parsed with trivial parsers. I wanted to test "
+          + "myself whether it is really trivial to parse XML, which it is. Lorem ipsum dolor sit amet, "
+          + "consectetur adipiscing elit, sed do eiusmod tempor incididunt ut labore et dolore magna aliqua.</p>\n" );
+    }
+  },
+
+  /** Deeply nested elements. */
+  NESTED
+  {
+    @Override
+    void writeChunk( final Writer aWriter, final int aIndex ) throws IOException
+    {
+      final int depth = 64;
+      for ( int i = 0; i < depth; i++ )
+      {
+        aWriter.write( "<level depth=\"" + i + "\">" );
+      }
+      aWriter.write( "leaf " + aIndex );
+      for ( int i = 0; i < depth; i++ )
+      {
+        aWriter.write( "</level>" );
+      }
+      aWriter.write( '\n' );
+    }
+  },
+
+  /** Elements interleaved with (large) comments. */
+  COMMENTS
+  {
+    @Override
+    void writeChunk( final Writer aWriter, final int aIndex ) throws IOException
+    {
+      aWriter.write( "  <!-- Comment " + aIndex + ": this element is generated for benchmarking purposes, "
+          + "and is followed by another one. B+, B, or B -->\n" );
+      aWriter.write( "  <entry key=\"" + aIndex + "\">value</entry>\n" );
+    }
+  };
+
+  // METHODS
+
+  /**
+   * Parses a size such as "1KB", "64MB" or "1GB".
+   *
+   * @param aSize
+   *          the size to parse.
+   * @return the size in bytes.
+   */
+  static long parseSize( final String aSize )
+  {
+    final String size = aSize.trim().toUpperCase();
+    if ( size.endsWith( "GB" ) )
+    {
+      return Long.parseLong( size.substring( 0, size.length() - 2 ) ) << 30;
+    }
+    if ( size.endsWith( "MB" ) )
+    {
+      return Long.parseLong( size.substring( 0, size.length() - 2 ) ) << 20;
+    }
+    if ( size.endsWith( "KB" ) )
+    {
+      return Long.parseLong( size.substring( 0, size.length() - 2 ) ) << 10;
+    }
+    return Long.parseLong( size );
+  }
+
+  /**
+   * Returns the file containing a document of this kind of (at least) the given
+   * size, generating it if needed.
+   *
+   * @param aSize
+   *          the size of the document, for example "1MB".
+   * @return the path to the (UTF-8 encoded) document.
+   * @throws IOException
+   *           in case of I/O problems generating the document.
+   */
+  public Path getDocument( final String aSize ) throws IOException
+  {
+    final long size = parseSize( aSize );
+
+    final Path dir = Paths.get( System.getProperty( "java.io.tmpdir" ), "libxmltokenizer-jmh" );
+    Files.createDirectories( dir );
+
+    final Path file = dir.resolve( name().toLowerCase() + "-" + aSize + ".xml" );
+    if ( Files.exists( file ) && ( Files.size( file ) >= size ) )
+    {
+      return file;
+    }
+
+    final Path tmp = Files.createTempFile( dir, name().toLowerCase(), ".tmp" );
+    final CountingWriter writer = new CountingWriter( Files.newBufferedWriter( tmp, StandardCharsets.UTF_8 ) );
+    try
+    {
+      writer.write( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<corpus>\n" );
+      for ( int i = 0; writer.count < size; i++ )
+      {
+        writeChunk( writer, i );
+      }
+      writer.write( "</corpus>\n" );
+    }
+    finally
+    {
+      writer.close();
+    }
+
+    return Files.move( tmp, file, StandardCopyOption.REPLACE_EXISTING );
+  }
+
+  /**
+   * Writes the given chunk of the document.
+   */
+  abstract void writeChunk( Writer aWriter, int aIndex ) throws IOException;
+
+  // INNER TYPES
+
+  /**
+   * Counts the number of characters written (which are all ASCII).
+   */
+  static final class CountingWriter extends FilterWriter
+  {
+    long count;
+
+    CountingWriter( final Writer aWriter )
+    {
+      super( aWriter );
+    }
+
+    @Override
+    public void write( final int aChar ) throws IOException
+    {
+      super.write( aChar );
+      this.count++;
+    }
+
+    @Override
+    public void write( final char[] aBuffer, final int aOffset, final int aLength ) throws IOException
+    {
+      super.write( aBuffer, aOffset, aLength );
+      this.count += aLength;
+    }
+
+    @Override
+    public void write( final String aString, final int aOffset, final int aLength ) throws IOException
+    {
+      super.write( aString, aOffset, aLength );
+      this.count += aLength;
+    }
+  }
+}
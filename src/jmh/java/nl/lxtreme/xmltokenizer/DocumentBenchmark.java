@@ -0,0 +1,79 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer;
+
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+
+/**
+ * Base class for benchmarks that process a complete document of the
+ * {@link Corpus}, reading it in one of the supported ways.
+ * <p>
+ * Documents of 1GB are supported as well, but not run by default; use
+ * <code>-p size=1GB</code> to do so.
+ * </p>
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public abstract class DocumentBenchmark
+{
+  // VARIABLES
+
+  @Param( { "ATTRIBUTES", "TEXT", "NESTED", "COMMENTS" } )
+  public Corpus corpus;
+
+  @Param( { "1KB", "1MB", "64MB" } )
+  public String size;
+
+  /** how to read the document: mapped (file), stream or reader. */
+  @Param( { "mapped", "stream", "reader" } )
+  public String input;
+
+  protected Path   document;
+  protected long   documentSize;
+
+  // METHODS
+
+  /**
+   * Generates (or looks up) the document to process.
+   */
+  @Setup( Level.Trial )
+  public void setUp() throws IOException
+  {
+    this.document = this.corpus.getDocument( this.size );
+    this.documentSize = Files.size( this.document );
+  }
+
+  /**
+   * Opens a new scanner for the document, as denoted by our input parameter.
+   *
+   * @return a new scanner, never <code>null</code>.
+   * @throws IOException
+   *           in case of I/O problems.
+   */
+  protected XmlScanner openScanner() throws IOException
+  {
+    if ( "mapped".equals( this.input ) )
+    {
+      return XmlScanner.open( this.document );
+    }
+    if ( "stream".equals( this.input ) )
+    {
+      return new XmlScanner( Files.newInputStream( this.document ) );
+    }
+    return new XmlScanner( Files.newBufferedReader( this.document, StandardCharsets.UTF_8 ) );
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer;
+
+
+import org.openjdk.jmh.annotations.*;
+
+
+/**
+ * Counts the number of megabytes processed by a benchmark, which JMH reports
+ * as a rate (MB/s, for benchmarks using seconds as time unit) next to the
+ * usual operation rate.
+ */
+@State( Scope.Thread )
+@AuxCounters( AuxCounters.Type.OPERATIONS )
+public class Throughput
+{
+  // VARIABLES
+
+  /** the number of megabytes processed. */
+  public double megabytes;
+
+  // METHODS
+
+  /**
+   * Adds the given number of bytes to the number of megabytes processed.
+   *
+   * @param aBytes
+   *          the number of bytes processed.
+   */
+  public void add( final long aBytes )
+  {
+    this.megabytes += aBytes / ( 1024.0 * 1024.0 );
+  }
+
+  /**
+   * Resets the counters before each iteration.
+   */
+  @Setup( Level.Iteration )
+  public void reset()
+  {
+    this.megabytes = 0;
+  }
+}
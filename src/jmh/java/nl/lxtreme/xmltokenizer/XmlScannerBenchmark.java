@@ -0,0 +1,90 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer;
+
+
+import java.io.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.*;
+
+
+/**
+ * Benchmarks {@link XmlScanner}.
+ */
+public class XmlScannerBenchmark extends DocumentBenchmark
+{
+  // METHODS
+
+  /**
+   * Scans the complete document, copying each token.
+   */
+  @Benchmark
+  public void nextToken( final Throughput aThroughput, final Blackhole aBlackhole ) throws IOException
+  {
+    final XmlScanner scanner = openScanner();
+    try
+    {
+      String token;
+      while ( ( token = scanner.nextToken() ) != null )
+      {
+        aBlackhole.consume( token );
+      }
+    }
+    finally
+    {
+      scanner.close();
+    }
+    aThroughput.add( this.documentSize );
+  }
+
+  /**
+   * Scans the complete document, without copying any token.
+   */
+  @Benchmark
+  public void nextTokenView( final Throughput aThroughput, final Blackhole aBlackhole ) throws IOException
+  {
+    final XmlScanner scanner = openScanner();
+    try
+    {
+      CharSequence token;
+      while ( ( token = scanner.nextTokenView() ) != null )
+      {
+        aBlackhole.consume( token.length() );
+      }
+    }
+    finally
+    {
+      scanner.close();
+    }
+    aThroughput.add( this.documentSize );
+  }
+
+  /**
+   * Skips all elements of the document, without looking at their tokens.
+   */
+  @Benchmark
+  public void skipElement( final Throughput aThroughput, final Blackhole aBlackhole ) throws IOException
+  {
+    final XmlScanner scanner = openScanner();
+    try
+    {
+      CharSequence token;
+      while ( ( token = scanner.nextTokenView() ) != null )
+      {
+        if ( ( token.length() > 1 ) && ( token.charAt( 0 ) == '<' ) && Character.isLetter( token.charAt( 1 ) ) )
+        {
+          aBlackhole.consume( scanner.skipElement() );
+        }
+      }
+    }
+    finally
+    {
+      scanner.close();
+    }
+    aThroughput.add( this.documentSize );
+  }
+}
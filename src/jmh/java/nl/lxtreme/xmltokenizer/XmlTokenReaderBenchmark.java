@@ -0,0 +1,76 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer;
+
+
+import java.io.*;
+import java.nio.file.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.*;
+
+
+/**
+ * Benchmarks {@link XmlTokenReader}, replaying the tokens of the document from
+ * a {@link XmlTokenCache}. The throughput is reported relative to the size of
+ * the original document, so it can be compared to
+ * {@link XmlTokenizerBenchmark}.
+ */
+public class XmlTokenReaderBenchmark extends DocumentBenchmark
+{
+  // VARIABLES
+
+  private Path          cacheDir;
+  private XmlTokenCache cache;
+
+  // METHODS
+
+  /**
+   * Fills the cache for the document.
+   */
+  @Setup( Level.Trial )
+  public void setUpCache() throws IOException
+  {
+    this.cacheDir = Files.createTempDirectory( "xmltokencache" );
+    this.cache = new XmlTokenCache( this.cacheDir );
+    this.cache.open( this.document ).close();
+  }
+
+  /**
+   * Removes the cache.
+   */
+  @TearDown( Level.Trial )
+  public void tearDownCache() throws IOException
+  {
+    for ( Path file : Files.newDirectoryStream( this.cacheDir ) )
+    {
+      Files.delete( file );
+    }
+    Files.delete( this.cacheDir );
+  }
+
+  /**
+   * Replays all tokens of the document, only looking at the token names.
+   */
+  @Benchmark
+  public void nextToken( final Throughput aThroughput, final Blackhole aBlackhole ) throws IOException
+  {
+    final XmlTokenReader reader = this.cache.open( this.document );
+    try
+    {
+      IToken token;
+      while ( ( token = reader.nextToken() ) != null )
+      {
+        aBlackhole.consume( token.getName() );
+      }
+    }
+    finally
+    {
+      reader.close();
+    }
+    aThroughput.add( this.documentSize );
+  }
+}
@@ -0,0 +1,179 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer;
+
+
+import java.io.*;
+
+import nl.lxtreme.xmltokenizer.impl.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.*;
+
+
+/**
+ * Benchmarks {@link XmlTokenizer}.
+ * <p>
+ * {@link #nextTokenWithAttributesRegex(Throughput, Blackhole)} classifies and
+ * strips the tokens with the regex- and string-based code that
+ * {@link XmlTokenizer} used before it worked by index, as a baseline for
+ * {@link #nextTokenWithAttributes(Throughput, Blackhole)}.
+ * </p>
+ */
+public class XmlTokenizerBenchmark extends DocumentBenchmark
+{
+  // CONSTANTS
+
+  private static final int BATCH_SIZE = 1024;
+
+  // METHODS
+
+  /**
+   * Tokenizes the complete document, only looking at the token names.
+   */
+  @Benchmark
+  public void nextToken( final Throughput aThroughput, final Blackhole aBlackhole ) throws IOException
+  {
+    final XmlScanner scanner = openScanner();
+    try
+    {
+      final XmlTokenizer tokenizer = new XmlTokenizer( scanner );
+
+      IToken token;
+      while ( ( token = tokenizer.nextToken() ) != null )
+      {
+        aBlackhole.consume( token.getName() );
+      }
+    }
+    finally
+    {
+      scanner.close();
+    }
+    aThroughput.add( this.documentSize );
+  }
+
+  /**
+   * Tokenizes the complete document in batches of tokens, only looking at the
+   * token names.
+   */
+  @Benchmark
+  public void nextTokens( final Throughput aThroughput, final Blackhole aBlackhole ) throws IOException
+  {
+    final XmlScanner scanner = openScanner();
+    try
+    {
+      final XmlTokenizer tokenizer = new XmlTokenizer( scanner );
+      final IToken[] tokens = new IToken[BATCH_SIZE];
+
+      int count;
+      while ( ( count = tokenizer.nextTokens( tokens, 0, BATCH_SIZE ) ) > 0 )
+      {
+        for ( int i = 0; i < count; i++ )
+        {
+          aBlackhole.consume( tokens[i].getName() );
+        }
+      }
+    }
+    finally
+    {
+      scanner.close();
+    }
+    aThroughput.add( this.documentSize );
+  }
+
+  /**
+   * Tokenizes the complete document, including the attributes of all tokens.
+   */
+  @Benchmark
+  public void nextTokenWithAttributes( final Throughput aThroughput, final Blackhole aBlackhole )
+      throws IOException
+  {
+    final XmlScanner scanner = openScanner();
+    try
+    {
+      final XmlTokenizer tokenizer = new XmlTokenizer( scanner );
+
+      IToken token;
+      while ( ( token = tokenizer.nextToken() ) != null )
+      {
+        aBlackhole.consume( token.getAttributes() );
+      }
+    }
+    finally
+    {
+      scanner.close();
+    }
+    aThroughput.add( this.documentSize );
+  }
+
+  /**
+   * Tokenizes the complete document, including the attributes of all tokens,
+   * with the former, regex-based, token classification.
+   */
+  @Benchmark
+  public void nextTokenWithAttributesRegex( final Throughput aThroughput, final Blackhole aBlackhole )
+      throws IOException
+  {
+    final XmlScanner scanner = openScanner();
+    try
+    {
+      final AttributeParser parser = new XmlAttributeParser();
+
+      CharSequence text;
+      while ( ( text = scanner.nextTokenView() ) != null )
+      {
+        aBlackhole.consume( createTokenRegex( parser, text.toString() ).getAttributes() );
+      }
+    }
+    finally
+    {
+      scanner.close();
+    }
+    aThroughput.add( this.documentSize );
+  }
+
+  /**
+   * Creates a token for the given text with the former, regex-based, token
+   * classification.
+   */
+  private static IToken createTokenRegex( final AttributeParser aParser, final String aToken )
+  {
+    if ( aToken.startsWith( "<?" ) )
+    {
+      return new ProcessingInstructionToken( aParser, strip( aToken, "<?", "?>" ).split( "\\s+", 2 ) );
+    }
+    else if ( aToken.startsWith( "<!--" ) )
+    {
+      return new CommentToken( strip( aToken, "<!--", "-->" ) );
+    }
+    else if ( aToken.startsWith( "<!" ) )
+    {
+      return new DocTypeToken( strip( aToken, "<!DOCTYPE", ">" ).split( "\\s+", 2 ) );
+    }
+    else if ( aToken.startsWith( "<" ) )
+    {
+      return new ElementToken( strip( aToken, "<", ">" ) );
+    }
+    return new TextToken( aToken );
+  }
+
+  /**
+   * The former string-based stripping of start and end markers.
+   */
+  private static String strip( final String aText, final String aStart, final String aEnd )
+  {
+    String result = aText.trim();
+    if ( result.startsWith( aStart ) )
+    {
+      result = result.substring( aStart.length() );
+    }
+    if ( result.endsWith( aEnd ) )
+    {
+      result = result.substring( 0, result.length() - aEnd.length() );
+    }
+    return result.trim();
+  }
+}
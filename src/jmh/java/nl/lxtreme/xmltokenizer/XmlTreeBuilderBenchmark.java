@@ -0,0 +1,90 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer;
+
+
+import java.io.*;
+import java.util.*;
+
+import nl.lxtreme.xmltokenizer.impl.*;
+
+import org.openjdk.jmh.annotations.*;
+
+
+/**
+ * Benchmarks {@link XmlTreeBuilder}, compared to adding each token to its
+ * parent as it is found.
+ */
+public class XmlTreeBuilderBenchmark extends DocumentBenchmark
+{
+  // METHODS
+
+  /**
+   * Builds the tree of the complete document.
+   */
+  @Benchmark
+  public List<IToken> build( final Throughput aThroughput ) throws IOException
+  {
+    final XmlScanner scanner = openScanner();
+    try
+    {
+      final List<IToken> result = new XmlTreeBuilder( new XmlTokenizer( scanner ) ).build();
+      aThroughput.add( this.documentSize );
+      return result;
+    }
+    finally
+    {
+      scanner.close();
+    }
+  }
+
+  /**
+   * Builds the tree of the complete document, adding each token to its parent
+   * as it is found.
+   */
+  @Benchmark
+  public List<IToken> buildIncrementally( final Throughput aThroughput ) throws IOException
+  {
+    final XmlScanner scanner = openScanner();
+    try
+    {
+      final XmlTokenizer tokenizer = new XmlTokenizer( scanner );
+      final List<IToken> result = new ArrayList<IToken>();
+      final Deque<IToken> stack = new ArrayDeque<IToken>();
+
+      IToken token;
+      while ( ( token = tokenizer.nextToken() ) != null )
+      {
+        final boolean tag = token instanceof ElementToken;
+        if ( tag && ( ( ElementToken )token ).isEndTag() )
+        {
+          stack.poll();
+          continue;
+        }
+
+        if ( stack.isEmpty() )
+        {
+          result.add( token );
+        }
+        else
+        {
+          stack.peek().addChild( token );
+        }
+        if ( tag && !( ( ElementToken )token ).isEmptyElement() )
+        {
+          stack.push( token );
+        }
+      }
+
+      aThroughput.add( this.documentSize );
+      return result;
+    }
+    finally
+    {
+      scanner.close();
+    }
+  }
+}
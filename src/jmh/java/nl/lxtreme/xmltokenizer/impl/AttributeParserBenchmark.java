@@ -0,0 +1,128 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer.impl;
+
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import nl.lxtreme.xmltokenizer.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.*;
+
+
+/**
+ * Benchmarks the various ways of parsing the attributes of a tag.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class AttributeParserBenchmark
+{
+  // VARIABLES
+
+  /** the attribute strings of a tag: few short ones, or many long ones. */
+  @Param( { "short", "long" } )
+  public String attributes;
+
+  private String[] samples;
+  private long     sampleSize;
+
+  // METHODS
+
+  /**
+   * Creates the attribute strings to parse.
+   */
+  @Setup( Level.Trial )
+  public void setUp()
+  {
+    this.samples = new String[1024];
+    this.sampleSize = 0;
+    for ( int i = 0; i < this.samples.length; i++ )
+    {
+      final StringBuilder sb = new StringBuilder();
+      sb.append( "id=\"" ).append( i ).append( "\" class='item'" );
+      if ( "long".equals( this.attributes ) )
+      {
+        sb.append( " name=\"item number " ).append( i ).append( "\" type = 'product' price=\"12.50\"" );
+        sb.append( " href=\"http://www.example.com/items/" ).append( i ).append( "?view=full&amp;lang=en\"" );
+        sb.append( " title='A rather long title, describing item " ).append( i ).append( " in detail'" );
+        sb.append( " available" );
+      }
+      this.samples[i] = sb.toString();
+      this.sampleSize += this.samples[i].length();
+    }
+  }
+
+  /**
+   * Parses all samples with {@link Attribute#parse(String)}.
+   */
+  @Benchmark
+  public void attributeParse( final Throughput aThroughput, final Blackhole aBlackhole )
+  {
+    for ( String sample : this.samples )
+    {
+      aBlackhole.consume( Attribute.parse( sample ) );
+    }
+    aThroughput.add( this.sampleSize );
+  }
+
+  /**
+   * Parses all samples with {@link KeyValuePairParser#nextKeyValuePair()}.
+   */
+  @Benchmark
+  public void keyValuePairParser( final Throughput aThroughput, final Blackhole aBlackhole ) throws IOException
+  {
+    for ( String sample : this.samples )
+    {
+      final KeyValuePairParser parser = new KeyValuePairParser( sample );
+
+      String[] pair;
+      while ( ( pair = parser.nextKeyValuePair() ) != null )
+      {
+        aBlackhole.consume( pair );
+      }
+    }
+    aThroughput.add( this.sampleSize );
+  }
+
+  /**
+   * Parses all samples with {@link LenientAttributeParser}.
+   */
+  @Benchmark
+  public void lenientAttributeParser( final Throughput aThroughput, final Blackhole aBlackhole )
+  {
+    final AttributeParser parser = new LenientAttributeParser();
+    final List<IAttribute> result = new ArrayList<IAttribute>();
+    for ( String sample : this.samples )
+    {
+      parser.parse( sample, 0, sample.length(), result );
+      aBlackhole.consume( result );
+      result.clear();
+    }
+    aThroughput.add( this.sampleSize );
+  }
+
+  /**
+   * Scans all samples with {@link XmlAttributeParser}, without creating any
+   * attribute.
+   */
+  @Benchmark
+  public void xmlAttributeParserScan( final Throughput aThroughput, final Blackhole aBlackhole )
+  {
+    final XmlAttributeParser parser = new XmlAttributeParser();
+    for ( String sample : this.samples )
+    {
+      aBlackhole.consume( parser.scan( sample, 0, sample.length() ) );
+    }
+    aThroughput.add( this.sampleSize );
+  }
+}
@@ -13,6 +13,23 @@ public interface IAttribute
 {
   // METHOD
 
+  /**
+   * Returns the local part of the name of this attribute, that is, the name
+   * without its namespace prefix.
+   * <p>
+   * The default implementation returns <code>null</code>, as the namespaces of
+   * attributes are not resolved by default.
+   * </p>
+   * 
+   * @return the local name, or <code>null</code> in case the namespace of this
+   *         attribute is not resolved.
+   * @see XmlNamespaceTokenizer
+   */
+  public default String getLocalName()
+  {
+    return null;
+  }
+
   /**
    * Returns the name-part of this attribute.
    * 
@@ -21,9 +38,45 @@ public interface IAttribute
   public abstract String getName();
 
   /**
-   * Returns the value-part of this attribute.
+   * Returns the URI of the namespace of this attribute. Attributes without a
+   * namespace prefix are not in any namespace.
+   * 
+   * <p>
+   * The default implementation returns <code>null</code>, as the namespaces of
+   * attributes are not resolved by default.
+   * </p>
+   * 
+   * @return the namespace URI, or <code>null</code> in case this attribute is
+   *         not in a namespace, or its namespace is not resolved.
+   * @see XmlNamespaceTokenizer
+   */
+  public default String getNamespaceURI()
+  {
+    return null;
+  }
+
+  /**
+   * Returns the value-part of this attribute as it appears in the document,
+   * without decoding any entity or character references.
+   * <p>
+   * The default implementation returns {@link #getValue()}, for attributes
+   * whose value is never decoded.
+   * </p>
+   * 
+   * @return the raw value, never <code>null</code>.
+   * @see #getValue()
+   */
+  public default String getRawValue()
+  {
+    return getValue();
+  }
+
+  /**
+   * Returns the value-part of this attribute, in which entity and character
+   * references, like <code>&amp;amp;</code>, are decoded.
    * 
    * @return the value, never <code>null</code>.
+   * @see #getRawValue()
    */
   public abstract String getValue();
 }
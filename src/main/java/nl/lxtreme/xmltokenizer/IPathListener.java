@@ -0,0 +1,30 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer;
+
+
+/**
+ * Receives the matches found by a {@link XmlPathMatcher}, in document order.
+ */
+public interface IPathListener
+{
+  // METHODS
+
+  /**
+   * Called for each element or attribute matching a path.
+   *
+   * @param aPath
+   *          the path that matched, as given to the matcher, never
+   *          <code>null</code>;
+   * @param aElement
+   *          the matching element, or the element of the matching attribute,
+   *          never <code>null</code>;
+   * @param aAttribute
+   *          the matching attribute, or <code>null</code> in case the path
+   *          matched the element itself.
+   */
+  void pathMatched( final String aPath, final IToken aElement, final IAttribute aAttribute );
+}
@@ -18,10 +18,15 @@ public interface IToken
 
   public enum TokenType
   {
-    COMMENT, DOCTYPE, PI, TEXT, TAG;
+    COMMENT, DOCTYPE, PI, TEXT, TAG, CDATA;
 
     // METHODS
 
+    public boolean isCData()
+    {
+      return this == CDATA;
+    }
+
     public boolean isComment()
     {
       return this == COMMENT;
@@ -0,0 +1,23 @@
+/*
+ * LibXmlTokenizer
+ * 
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer;
+
+
+/**
+ * Receives the XML-tokens of a document, in document order.
+ */
+public interface ITokenListener
+{
+  // METHODS
+
+  /**
+   * Called for each XML-token found.
+   * 
+   * @param aToken
+   *          the token found, never <code>null</code>.
+   */
+  void tokenFound( final IToken aToken );
+}
@@ -0,0 +1,574 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer;
+
+
+import java.io.*;
+
+import nl.lxtreme.xmltokenizer.IToken.TokenType;
+import nl.lxtreme.xmltokenizer.impl.*;
+
+
+/**
+ * Provides a pull-style cursor over the chunks of a {@link XmlScanner}.
+ * <p>
+ * Unlike {@link XmlTokenizer}, this cursor does not create a token object for
+ * each XML-token it encounters. Instead, {@link #next()} only classifies the
+ * current token, and the various accessors read its name, text and attributes
+ * directly from the scanned characters. All state is reused between calls, so
+ * iterating over a document does not allocate anything, except for the strings
+ * that are explicitly requested.
+ * </p>
+ * <p>
+ * The information returned by the accessors is only valid until the next call
+ * to {@link #next()}. This holds in particular for the views returned by
+ * {@link #getNameView()} and {@link #getTextView()}, which are reused for each
+ * call.
+ * </p>
+ */
+public class XmlCursor
+{
+  // VARIABLES
+
+  private final XmlScanner         scanner;
+  private final XmlAttributeParser attributes;
+  private SymbolTable              symbols;
+  /** the decoder for references in text, can be null. */
+  private EntityDecoder            entityDecoder;
+  /** the (reused) views on the name and text of the current token. */
+  private final CharSequenceSpan   nameView;
+  private final CharSequenceSpan   textView;
+
+  private CharSequence             token;
+  private TokenType                type;
+  private boolean                  endTag;
+  private boolean                  emptyElement;
+  /** the name of the current token. */
+  private int                      nameStart;
+  private int                      nameEnd;
+  /** the body (text, attributes) of the current token. */
+  private int                      bodyStart;
+  private int                      bodyEnd;
+  private int                      attributeCount;
+  /** whether the next token continues a CDATA section. */
+  private boolean                  cdataPartial;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new XmlCursor.
+   *
+   * @param aXmlScanner
+   *          the XML scanner to use, cannot be <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case the given scanner was <code>null</code>.
+   */
+  public XmlCursor( final XmlScanner aXmlScanner ) throws IllegalArgumentException
+  {
+    if ( aXmlScanner == null )
+    {
+      throw new IllegalArgumentException( "Scanner cannot be null!" );
+    }
+    this.scanner = aXmlScanner;
+    this.attributes = new XmlAttributeParser();
+    this.symbols = new SymbolTable();
+    this.entityDecoder = EntityDecoder.DEFAULT;
+    this.nameView = new CharSequenceSpan();
+    this.textView = new CharSequenceSpan();
+  }
+
+  // METHODS
+
+  /**
+   * Returns the number of attributes of the current token.
+   * <p>
+   * Attributes are only available for tags and processing instructions, and
+   * are parsed upon the first call to this method, or any of the other
+   * attribute accessors.
+   * </p>
+   *
+   * @return the number of attributes, >= 0.
+   */
+  public int getAttributeCount()
+  {
+    if ( this.attributeCount < 0 )
+    {
+      parseAttributes();
+    }
+    return this.attributeCount;
+  }
+
+  /**
+   * Returns the name of the attribute with the given index.
+   *
+   * @param aIndex
+   *          the index of the attribute, >= 0 && < {@link #getAttributeCount()}
+   *          .
+   * @return the attribute name, never <code>null</code>. Equal names are
+   *         returned as the same instance, see {@link #setSymbolTable(SymbolTable)}.
+   * @throws IndexOutOfBoundsException
+   *           in case the given index was invalid.
+   */
+  public String getAttributeName( final int aIndex ) throws IndexOutOfBoundsException
+  {
+    checkAttributeIndex( aIndex );
+    return this.symbols.intern( this.token, this.attributes.getNameStart( aIndex ),
+        this.attributes.getNameEnd( aIndex ) );
+  }
+
+  /**
+   * Returns the value of the attribute with the given index, in which entity
+   * and character references are decoded.
+   *
+   * @param aIndex
+   *          the index of the attribute, >= 0 && < {@link #getAttributeCount()}
+   *          .
+   * @return the attribute value, never <code>null</code>.
+   * @throws IndexOutOfBoundsException
+   *           in case the given index was invalid.
+   * @see #setEntityDecoder(EntityDecoder)
+   */
+  public String getAttributeValue( final int aIndex ) throws IndexOutOfBoundsException
+  {
+    checkAttributeIndex( aIndex );
+    return decode( this.attributes.getValueStart( aIndex ), this.attributes.getValueEnd( aIndex ) );
+  }
+
+  /**
+   * Returns the name of the current token, which is the element name for tags,
+   * the target for processing instructions and the root element name for
+   * document type declarations.
+   *
+   * @return the name, or <code>null</code> in case the current token has no
+   *         name. Equal names are returned as the same instance, see
+   *         {@link #setSymbolTable(SymbolTable)}.
+   */
+  public String getName()
+  {
+    if ( this.nameStart < 0 )
+    {
+      return null;
+    }
+    return this.symbols.intern( this.token, this.nameStart, this.nameEnd );
+  }
+
+  /**
+   * Returns the name of the current token without copying it. The same view
+   * is returned for each call, and it is only valid until the next call to
+   * {@link #next()}.
+   *
+   * @return the name, or <code>null</code> in case the current token has no
+   *         name.
+   * @see #getName()
+   */
+  public CharSequence getNameView()
+  {
+    if ( this.nameStart < 0 )
+    {
+      return null;
+    }
+    this.nameView.set( this.token, this.nameStart, this.nameEnd - this.nameStart );
+    return this.nameView;
+  }
+
+  /**
+   * Returns the value of the attribute with the given index as it appears in
+   * the document, without decoding any references.
+   *
+   * @param aIndex
+   *          the index of the attribute, >= 0 && < {@link #getAttributeCount()}
+   *          .
+   * @return the raw attribute value, never <code>null</code>.
+   * @throws IndexOutOfBoundsException
+   *           in case the given index was invalid.
+   * @see #getAttributeValue(int)
+   */
+  public String getRawAttributeValue( final int aIndex ) throws IndexOutOfBoundsException
+  {
+    checkAttributeIndex( aIndex );
+    return substring( this.attributes.getValueStart( aIndex ), this.attributes.getValueEnd( aIndex ) );
+  }
+
+  /**
+   * Returns the text of the current token as it appears in the document,
+   * without decoding any references.
+   *
+   * @return the raw text, never <code>null</code>.
+   * @see #getText()
+   */
+  public String getRawText()
+  {
+    return substring( this.bodyStart, this.bodyEnd );
+  }
+
+  /**
+   * Returns the text of the current token, which is the character data for
+   * text, the literal content for CDATA sections, the comment for comments,
+   * the external ID for document type declarations, and the (unparsed)
+   * attributes for tags and processing instructions. Entity and character
+   * references are only decoded in character data.
+   *
+   * @return the text, never <code>null</code>.
+   * @see #setEntityDecoder(EntityDecoder)
+   */
+  public String getText()
+  {
+    if ( this.type == TokenType.TEXT )
+    {
+      return decode( this.bodyStart, this.bodyEnd );
+    }
+    return substring( this.bodyStart, this.bodyEnd );
+  }
+
+  /**
+   * Returns the raw text of the current token without copying it. The same
+   * view is returned for each call, and it is only valid until the next call
+   * to {@link #next()}.
+   *
+   * @return the text, never <code>null</code>.
+   * @see #getRawText()
+   */
+  public CharSequence getTextView()
+  {
+    this.textView.set( ( this.token == null ) ? "" : this.token, this.bodyStart, this.bodyEnd - this.bodyStart );
+    return this.textView;
+  }
+
+  /**
+   * Returns the type of the current token.
+   *
+   * @return the token type, or <code>null</code> in case no more tokens are
+   *         available.
+   */
+  public TokenType getType()
+  {
+    return this.type;
+  }
+
+  /**
+   * Returns whether the current token is an empty-element tag, like
+   * <code>&lt;br/&gt;</code>.
+   *
+   * @return <code>true</code> if the current token is an empty-element tag,
+   *         <code>false</code> otherwise.
+   */
+  public boolean isEmptyElement()
+  {
+    return this.emptyElement;
+  }
+
+  /**
+   * Returns whether the current token is an end-tag.
+   *
+   * @return <code>true</code> if the current token is an end-tag,
+   *         <code>false</code> otherwise.
+   */
+  public boolean isEndTag()
+  {
+    return this.endTag;
+  }
+
+  /**
+   * Returns whether the current token is a chunk of a larger text or CDATA
+   * section, which is continued by the next token.
+   *
+   * @return <code>true</code> if the next token continues the current token,
+   *         <code>false</code> otherwise.
+   * @see XmlScanner#setChunkSize(int)
+   */
+  public boolean isPartial()
+  {
+    return this.scanner.isPartial();
+  }
+
+  /**
+   * Advances this cursor to the next XML-token.
+   *
+   * @return the type of the next XML-token, or <code>null</code> in case no
+   *         remaining tokens are found.
+   * @throws IOException
+   *           in case of I/O problems.
+   */
+  public TokenType next() throws IOException
+  {
+    this.token = this.scanner.nextTokenView();
+    this.endTag = false;
+    this.emptyElement = false;
+    this.nameStart = this.nameEnd = -1;
+    this.attributeCount = -1;
+
+    if ( this.token == null )
+    {
+      this.type = null;
+      this.bodyStart = this.bodyEnd = 0;
+      return null;
+    }
+
+    final CharSequence t = this.token;
+    final int length = t.length();
+    final boolean cdataContinued = this.cdataPartial;
+    this.cdataPartial = false;
+
+    final char ch1 = ( length > 0 ) ? t.charAt( 0 ) : 0;
+    final char ch2 = ( length > 1 ) ? t.charAt( 1 ) : 0;
+
+    if ( cdataContinued )
+    {
+      // Next chunk of a CDATA section, which can contain anything...
+      this.type = TokenType.CDATA;
+      this.bodyStart = 0;
+      this.cdataPartial = this.scanner.isPartial();
+      this.bodyEnd = ( !this.cdataPartial && ( length >= 3 ) && regionMatches( length - 3, "]]>" ) ) ? length - 3
+          : length;
+      return this.type;
+    }
+
+    if ( ch1 != '<' )
+    {
+      this.type = TokenType.TEXT;
+      this.bodyStart = 0;
+      this.bodyEnd = length;
+      return this.type;
+    }
+
+    switch ( ch2 )
+    {
+      case '?':
+        this.type = TokenType.PI;
+        strip( 2, "?>" );
+        splitName();
+        break;
+
+      case '!':
+        if ( regionMatches( 0, "<![CDATA[" ) )
+        {
+          // The content is taken literally, so it is not stripped...
+          this.type = TokenType.CDATA;
+          this.bodyStart = 9;
+          this.bodyEnd = ( ( length >= 12 ) && regionMatches( length - 3, "]]>" ) ) ? length - 3 : length;
+          this.cdataPartial = this.scanner.isPartial();
+        }
+        else if ( ( length > 3 ) && ( t.charAt( 2 ) == '-' ) && ( t.charAt( 3 ) == '-' ) )
+        {
+          this.type = TokenType.COMMENT;
+          strip( 4, "-->" );
+        }
+        else
+        {
+          this.type = TokenType.DOCTYPE;
+          strip( regionMatches( 0, "<!DOCTYPE" ) ? 9 : 0, ">" );
+          splitName();
+        }
+        break;
+
+      default:
+        this.type = TokenType.TAG;
+        strip( 1, ">" );
+        splitElementName();
+        break;
+    }
+
+    return this.type;
+  }
+
+  /**
+   * Sets the decoder for the entity and character references in text and
+   * attribute values. By default, only the predefined entities and character
+   * references are decoded.
+   *
+   * @param aDecoder
+   *          the entity decoder to use, can be <code>null</code> to leave all
+   *          text and attribute values as is.
+   */
+  public void setEntityDecoder( final EntityDecoder aDecoder )
+  {
+    this.entityDecoder = aDecoder;
+  }
+
+  /**
+   * Sets the symbol table to obtain the names of elements and attributes from.
+   * By default, each cursor uses its own symbol table.
+   *
+   * @param aSymbols
+   *          the symbol table to use, cannot be <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case the given symbol table was <code>null</code>.
+   */
+  public void setSymbolTable( final SymbolTable aSymbols ) throws IllegalArgumentException
+  {
+    if ( aSymbols == null )
+    {
+      throw new IllegalArgumentException( "Symbol table cannot be null!" );
+    }
+    this.symbols = aSymbols;
+  }
+
+  /**
+   * @param aIndex
+   * @throws IndexOutOfBoundsException
+   *           in case the given index is not a valid attribute index.
+   */
+  private void checkAttributeIndex( final int aIndex )
+  {
+    if ( ( aIndex < 0 ) || ( aIndex >= getAttributeCount() ) )
+    {
+      throw new IndexOutOfBoundsException( "Invalid attribute index: " + aIndex );
+    }
+  }
+
+  /**
+   * @return <code>true</code> if the given character is whitespace (in the
+   *         sense of {@link String#trim()}), <code>false</code> otherwise.
+   */
+  private static boolean isWhitespace( final char aChar )
+  {
+    return aChar <= ' ';
+  }
+
+  /**
+   * Parses the body of the current token into attributes.
+   *
+   * @see XmlAttributeParser
+   */
+  private void parseAttributes()
+  {
+    this.attributeCount = 0;
+    if ( ( this.type == TokenType.TAG ) || ( this.type == TokenType.PI ) )
+    {
+      this.attributeCount = this.attributes.scan( this.token, this.bodyStart, this.bodyEnd );
+    }
+  }
+
+
+  /**
+   * @return <code>true</code> if the current token contains the given string
+   *         at the given offset, <code>false</code> otherwise.
+   */
+  private boolean regionMatches( final int aOffset, final String aString )
+  {
+    final int length = aString.length();
+    if ( ( aOffset + length ) > this.token.length() )
+    {
+      return false;
+    }
+    for ( int i = 0; i < length; i++ )
+    {
+      if ( this.token.charAt( aOffset + i ) != aString.charAt( i ) )
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Splits the body of the current tag into its name and attributes, and
+   * determines whether it is an end-tag or an empty-element tag.
+   */
+  private void splitElementName()
+  {
+    splitName();
+
+    if ( ( this.nameStart < this.nameEnd ) && ( this.token.charAt( this.nameStart ) == '/' ) )
+    {
+      this.endTag = true;
+      this.nameStart++;
+    }
+    else if ( ( this.nameStart < this.nameEnd ) && ( this.token.charAt( this.nameEnd - 1 ) == '/' ) )
+    {
+      this.emptyElement = true;
+      this.nameEnd--;
+    }
+    else if ( ( this.bodyStart < this.bodyEnd ) && ( this.token.charAt( this.bodyEnd - 1 ) == '/' ) )
+    {
+      this.emptyElement = true;
+      this.bodyEnd--;
+      while ( ( this.bodyEnd > this.bodyStart ) && isWhitespace( this.token.charAt( this.bodyEnd - 1 ) ) )
+      {
+        this.bodyEnd--;
+      }
+    }
+  }
+
+  /**
+   * Splits the body of the current token at its first whitespace into a name
+   * and a (trimmed) remainder.
+   */
+  private void splitName()
+  {
+    final CharSequence t = this.token;
+    int i = this.bodyStart;
+    while ( ( i < this.bodyEnd ) && !isWhitespace( t.charAt( i ) ) )
+    {
+      i++;
+    }
+    this.nameStart = this.bodyStart;
+    this.nameEnd = i;
+    while ( ( i < this.bodyEnd ) && isWhitespace( t.charAt( i ) ) )
+    {
+      i++;
+    }
+    this.bodyStart = i;
+  }
+
+  /**
+   * Determines the body of the current token by skipping the given number of
+   * leading characters and the given trailing marker (if present), and
+   * trimming any surrounding whitespace.
+   */
+  private void strip( final int aStartLength, final String aEnd )
+  {
+    final CharSequence t = this.token;
+    int from = 0;
+    int to = t.length();
+
+    while ( ( from < to ) && isWhitespace( t.charAt( from ) ) )
+    {
+      from++;
+    }
+    while ( ( to > from ) && isWhitespace( t.charAt( to - 1 ) ) )
+    {
+      to--;
+    }
+    from += aStartLength;
+    if ( ( ( to - from ) >= aEnd.length() ) && regionMatches( to - aEnd.length(), aEnd ) )
+    {
+      to -= aEnd.length();
+    }
+    while ( ( from < to ) && isWhitespace( t.charAt( from ) ) )
+    {
+      from++;
+    }
+    while ( ( to > from ) && isWhitespace( t.charAt( to - 1 ) ) )
+    {
+      to--;
+    }
+
+    this.bodyStart = from;
+    this.bodyEnd = to;
+  }
+
+  /**
+   * @return a copy of the given range of the current token, in which all
+   *         references are decoded.
+   */
+  private String decode( final int aStart, final int aEnd )
+  {
+    if ( this.entityDecoder == null )
+    {
+      return substring( aStart, aEnd );
+    }
+    return this.entityDecoder.decode( this.token, aStart, aEnd );
+  }
+
+  /**
+   * @return a copy of the given range of the current token.
+   */
+  private String substring( final int aStart, final int aEnd )
+  {
+    return this.token.subSequence( aStart, aEnd ).toString();
+  }
+}
@@ -0,0 +1,358 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer;
+
+
+import java.io.*;
+import java.util.*;
+
+import nl.lxtreme.xmltokenizer.impl.*;
+
+
+/**
+ * Resolves the namespaces of the elements and attributes returned by a
+ * {@link XmlTokenizer}.
+ * <p>
+ * For each element token, the namespace URI and local name are set on the
+ * token itself and on its attributes (see {@link ElementToken#getNamespaceURI()}
+ * and {@link IAttribute#getNamespaceURI()}); all other tokens are returned as
+ * is. Both are obtained from the symbol table of the tokenizer, so equal URIs
+ * and local names can be compared by reference.
+ * </p>
+ * <p>
+ * The namespace declarations in scope are kept on a flat stack of prefix-URI
+ * pairs, to which the declarations of each start tag are pushed, and from
+ * which they are popped again at its end tag. Prefixes are resolved by
+ * searching this stack from the top, so no maps are created or copied for any
+ * element. End tags are matched by name against the open elements, as done by
+ * {@link XmlTreeBuilder}: the scopes of any elements that are left open are
+ * closed along with the matching element, and stray end tags leave the scopes
+ * untouched. Prefixes that are not declared are left unresolved, that is,
+ * their namespace URI is <code>null</code>.
+ * </p>
+ */
+public class XmlNamespaceTokenizer
+{
+  // CONSTANTS
+
+  /** The namespace bound to the <code>xml</code> prefix. */
+  public static final String  XML_NAMESPACE    = "http://www.w3.org/XML/1998/namespace";
+  /** The namespace of all namespace declarations. */
+  public static final String  XMLNS_NAMESPACE  = "http://www.w3.org/2000/xmlns/";
+
+  private static final String DEFAULT_PREFIX   = "";
+  private static final String XML_PREFIX       = "xml";
+  private static final String XMLNS_PREFIX     = "xmlns";
+
+  private static final int    INITIAL_CAPACITY = 16;
+
+  // VARIABLES
+
+  private final XmlTokenizer tokenizer;
+  /** the prefixes and URIs of all declarations in scope, innermost last. */
+  private String[]           prefixes;
+  private String[]           uris;
+  private int                size;
+  /** the number of declarations in scope outside each open element. */
+  private int[]              scopes;
+  /** the names of the open elements, outermost first. */
+  private String[]           names;
+  private int                depth;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new XmlNamespaceTokenizer.
+   *
+   * @param aTokenizer
+   *          the tokenizer to obtain the tokens from, cannot be
+   *          <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case the given tokenizer was <code>null</code>.
+   */
+  public XmlNamespaceTokenizer( final XmlTokenizer aTokenizer ) throws IllegalArgumentException
+  {
+    if ( aTokenizer == null )
+    {
+      throw new IllegalArgumentException( "Tokenizer cannot be null!" );
+    }
+
+    this.tokenizer = aTokenizer;
+    this.prefixes = new String[INITIAL_CAPACITY];
+    this.uris = new String[INITIAL_CAPACITY];
+    this.scopes = new int[INITIAL_CAPACITY];
+    this.names = new String[INITIAL_CAPACITY];
+  }
+
+  // METHODS
+
+  /**
+   * @return <code>true</code> if the given attribute name denotes a namespace
+   *         declaration, <code>false</code> otherwise.
+   */
+  private static boolean isDeclaration( final String aName )
+  {
+    return aName.startsWith( XMLNS_PREFIX )
+        && ( ( aName.length() == XMLNS_PREFIX.length() ) || ( aName.charAt( XMLNS_PREFIX.length() ) == ':' ) );
+  }
+
+  /**
+   * Returns the number of elements currently open.
+   *
+   * @return the element depth, >= 0.
+   */
+  public int getDepth()
+  {
+    return this.depth;
+  }
+
+  /**
+   * Returns the URI of the namespace bound to the given prefix, in the scope
+   * of the start tag returned last. This can be used to resolve qualified
+   * names in text or attribute values, like <code>xsi:type</code>.
+   *
+   * @param aPrefix
+   *          the prefix to resolve, or an empty string for the default
+   *          namespace, cannot be <code>null</code>.
+   * @return the namespace URI, or <code>null</code> in case the given prefix
+   *         is not bound to any namespace.
+   * @throws IllegalArgumentException
+   *           in case the given prefix was <code>null</code>.
+   */
+  public String getNamespaceURI( final String aPrefix ) throws IllegalArgumentException
+  {
+    if ( aPrefix == null )
+    {
+      throw new IllegalArgumentException( "Prefix cannot be null!" );
+    }
+    return lookup( aPrefix );
+  }
+
+  /**
+   * Returns the next XML-token, resolving its namespace in case of an element
+   * token.
+   *
+   * @return a XML-token, can be <code>null</code> in case no remaining tokens
+   *         are found.
+   * @throws IOException
+   *           in case of I/O problems.
+   * @see XmlTokenizer#nextToken()
+   */
+  public IToken nextToken() throws IOException
+  {
+    final IToken token = this.tokenizer.nextToken();
+    if ( token instanceof ElementToken )
+    {
+      resolve( ( ElementToken )token );
+    }
+    return token;
+  }
+
+  /**
+   * Skips all tokens up to and including the end tag matching the start tag
+   * that was returned last, and leaves the scope of its element.
+   *
+   * @return <code>true</code> if the end tag was found, <code>false</code> if
+   *         the end of the input was reached before.
+   * @throws IOException
+   *           in case of I/O problems.
+   * @see XmlTokenizer#skipElement()
+   */
+  public boolean skipElement() throws IOException
+  {
+    final boolean result = this.tokenizer.skipElement();
+    popScope();
+    return result;
+  }
+
+  /**
+   * Binds the given prefix to the given URI in the scope of the current
+   * element.
+   */
+  private void declare( final String aPrefix, final String aURI )
+  {
+    if ( this.size == this.prefixes.length )
+    {
+      this.prefixes = Arrays.copyOf( this.prefixes, this.size * 2 );
+      this.uris = Arrays.copyOf( this.uris, this.size * 2 );
+    }
+    this.prefixes[this.size] = aPrefix;
+    // An empty URI undeclares the (default) namespace...
+    this.uris[this.size] = aURI.isEmpty() ? null : aURI;
+    this.size++;
+  }
+
+  /**
+   * @return the URI bound to the given prefix, or <code>null</code> if it is
+   *         not bound.
+   */
+  private String lookup( final String aPrefix )
+  {
+    final String[] p = this.prefixes;
+    for ( int i = this.size - 1; i >= 0; i-- )
+    {
+      // Prefixes are usually interned, so try comparing by reference first...
+      if ( ( p[i] == aPrefix ) || p[i].equals( aPrefix ) )
+      {
+        return this.uris[i];
+      }
+    }
+
+    if ( XML_PREFIX.equals( aPrefix ) )
+    {
+      return this.tokenizer.getSymbolTable().intern( XML_NAMESPACE );
+    }
+    if ( XMLNS_PREFIX.equals( aPrefix ) )
+    {
+      return this.tokenizer.getSymbolTable().intern( XMLNS_NAMESPACE );
+    }
+    return null;
+  }
+
+  /**
+   * Leaves the scope of the current element, dropping its declarations.
+   */
+  private void popScope()
+  {
+    if ( this.depth > 0 )
+    {
+      this.size = this.scopes[--this.depth];
+      this.names[this.depth] = null;
+    }
+  }
+
+  /**
+   * Enters the scope of a new element with the given name.
+   */
+  private void pushScope( final String aName )
+  {
+    if ( this.depth == this.scopes.length )
+    {
+      this.scopes = Arrays.copyOf( this.scopes, this.depth * 2 );
+      this.names = Arrays.copyOf( this.names, this.depth * 2 );
+    }
+    this.names[this.depth] = aName;
+    this.scopes[this.depth++] = this.size;
+  }
+
+  /**
+   * Leaves the scopes of all elements inside the innermost open element with
+   * the given name, without leaving its own scope.
+   *
+   * @return <code>true</code> if an open element with the given name was
+   *         found, <code>false</code> otherwise.
+   */
+  private boolean closeScopes( final String aName )
+  {
+    int i = this.depth - 1;
+    // Names are usually interned, so try comparing by reference first...
+    while ( ( i >= 0 ) && ( this.names[i] != aName ) && !aName.equals( this.names[i] ) )
+    {
+      i--;
+    }
+    if ( i < 0 )
+    {
+      // Stray end tag; ignore it...
+      return false;
+    }
+    while ( this.depth > ( i + 1 ) )
+    {
+      popScope();
+    }
+    return true;
+  }
+
+  /**
+   * Resolves the namespaces of the given element and its attributes, updating
+   * the declarations in scope.
+   */
+  private void resolve( final ElementToken aElement )
+  {
+    final SymbolTable symbols = this.tokenizer.getSymbolTable();
+    if ( aElement.isEndTag() )
+    {
+      final boolean matched = closeScopes( aElement.getName() );
+      // Resolve the end tag in the same scope as its start tag...
+      resolveElement( aElement, symbols );
+      if ( matched )
+      {
+        popScope();
+      }
+      return;
+    }
+
+    pushScope( aElement.getName() );
+
+    // The declarations of a tag apply to the tag itself, so handle them first...
+    final List<IAttribute> attributes = aElement.getAttributes();
+    final int count = attributes.size();
+    for ( int i = 0; i < count; i++ )
+    {
+      final IAttribute attribute = attributes.get( i );
+      final String name = attribute.getName();
+      if ( isDeclaration( name ) )
+      {
+        final int length = XMLNS_PREFIX.length();
+        final String prefix = ( name.length() == length ) ? DEFAULT_PREFIX : symbols.intern( name, length + 1,
+            name.length() );
+        declare( prefix, symbols.intern( attribute.getValue() ) );
+      }
+    }
+
+    resolveElement( aElement, symbols );
+    for ( int i = 0; i < count; i++ )
+    {
+      final IAttribute attribute = attributes.get( i );
+      if ( attribute instanceof Attribute )
+      {
+        resolveAttribute( ( Attribute )attribute, symbols );
+      }
+    }
+
+    if ( aElement.isEmptyElement() )
+    {
+      popScope();
+    }
+  }
+
+  /**
+   * Resolves the namespace of the given attribute. Unprefixed attributes are
+   * not in any namespace, except for the default namespace declaration itself.
+   */
+  private void resolveAttribute( final Attribute aAttribute, final SymbolTable aSymbols )
+  {
+    final String name = aAttribute.getName();
+    final int colon = name.indexOf( ':' );
+    if ( colon < 0 )
+    {
+      aAttribute.setNamespace( XMLNS_PREFIX.equals( name ) ? lookup( XMLNS_PREFIX ) : null, name );
+    }
+    else
+    {
+      aAttribute.setNamespace( lookup( aSymbols.intern( name, 0, colon ) ),
+          aSymbols.intern( name, colon + 1, name.length() ) );
+    }
+  }
+
+  /**
+   * Resolves the namespace of the given element. Unprefixed elements are in
+   * the default namespace.
+   */
+  private void resolveElement( final ElementToken aElement, final SymbolTable aSymbols )
+  {
+    final String name = aElement.getName();
+    final int colon = name.indexOf( ':' );
+    if ( colon < 0 )
+    {
+      aElement.setNamespace( lookup( DEFAULT_PREFIX ), name );
+    }
+    else
+    {
+      aElement.setNamespace( lookup( aSymbols.intern( name, 0, colon ) ),
+          aSymbols.intern( name, colon + 1, name.length() ) );
+    }
+  }
+}
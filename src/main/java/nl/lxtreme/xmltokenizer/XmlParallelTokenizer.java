@@ -0,0 +1,453 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer;
+
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import nl.lxtreme.xmltokenizer.impl.*;
+
+
+/**
+ * Tokenizes a (large) document using multiple threads.
+ * <p>
+ * The document is split up into chunks of a fixed size. Each chunk is
+ * tokenized by a separate task on a fork-join pool, starting at the first
+ * resynchronization point in the chunk (a '&lt;' that appears to start a
+ * token), and ending at the first token that starts in the next chunk. As the
+ * resynchronization point is only a guess, the token streams of all chunks are
+ * confirmed while they are stitched back together in document order: if the
+ * preceding chunk did not end exactly at a token of the next chunk, the tokens
+ * in between are tokenized again sequentially.
+ * </p>
+ * <p>
+ * To keep the memory usage bounded, chunks are processed in waves of a few
+ * chunks per thread at a time.
+ * </p>
+ * <p>
+ * Each chunk interns its element names in a symbol table of its own, so the
+ * tasks do not contend for a shared table. Equal names are therefore only the
+ * same instance within a chunk. As attributes are parsed lazily, their names
+ * are interned in a single table shared by all chunks, which is safe to use
+ * from any thread.
+ * </p>
+ */
+public class XmlParallelTokenizer implements Closeable
+{
+  // INNER TYPES
+
+  /**
+   * Provides the tokens found in a single chunk.
+   */
+  static final class Chunk
+  {
+    // VARIABLES
+
+    final long         start;
+    final long         stop;
+    final long[]       offsets;
+    final List<IToken> tokens;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new Chunk.
+     *
+     * @param aStart
+     *          the offset of the first token;
+     * @param aStop
+     *          the offset of the first token <em>not</em> part of this chunk;
+     * @param aOffsets
+     *          the offsets of all tokens;
+     * @param aTokens
+     *          the tokens.
+     */
+    Chunk( final long aStart, final long aStop, final long[] aOffsets, final List<IToken> aTokens )
+    {
+      this.start = aStart;
+      this.stop = aStop;
+      this.offsets = aOffsets;
+      this.tokens = aTokens;
+    }
+  }
+
+  /**
+   * Tokenizes a single chunk.
+   */
+  final class ChunkTask implements Callable<Chunk>
+  {
+    // VARIABLES
+
+    private final long    from;
+    private final long    to;
+    private final boolean first;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new ChunkTask.
+     *
+     * @param aFrom
+     *          the start of the chunk;
+     * @param aTo
+     *          the end of the chunk (exclusive);
+     * @param aFirst
+     *          <code>true</code> if this is the first chunk of the document,
+     *          which does not need to be resynchronized.
+     */
+    ChunkTask( final long aFrom, final long aTo, final boolean aFirst )
+    {
+      this.from = aFrom;
+      this.to = aTo;
+      this.first = aFirst;
+    }
+
+    // METHODS
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Chunk call() throws IOException
+    {
+      final SplittableInput in = XmlParallelTokenizer.this.input;
+
+      final long start = this.first ? this.from : in.findResyncPoint( this.from, this.to );
+      if ( start < 0 )
+      {
+        // Nothing to do for this chunk...
+        return new Chunk( -1L, -1L, new long[0], Collections.<IToken> emptyList() );
+      }
+
+      final XmlScanner scanner = new XmlScanner( in.createBackend( start ) );
+      final XmlTokenizer tokenizer = createTokenizer( scanner );
+
+      final List<IToken> tokens = new ArrayList<IToken>();
+      long[] offsets = new long[256];
+      long stop = in.getEnd();
+
+      IToken token;
+      while ( ( token = tokenizer.nextToken() ) != null )
+      {
+        final long offset = scanner.getTokenOffset();
+        if ( offset >= this.to )
+        {
+          stop = offset;
+          break;
+        }
+        if ( tokens.size() == offsets.length )
+        {
+          offsets = Arrays.copyOf( offsets, offsets.length * 2 );
+        }
+        offsets[tokens.size()] = offset;
+        tokens.add( token );
+      }
+
+      return new Chunk( start, stop, Arrays.copyOf( offsets, tokens.size() ), tokens );
+    }
+  }
+
+  // CONSTANTS
+
+  /** The default chunk size, 4M characters or bytes. */
+  public static final int       DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+  // VARIABLES
+
+  private final SplittableInput input;
+  private final Path            path;
+  private ForkJoinPool          pool;
+  private int                   chunkSize;
+  /** shared by the attribute parsers of all chunks. */
+  private final SymbolTable     symbols;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new XmlParallelTokenizer for the given text.
+   *
+   * @param aText
+   *          the text to tokenize, cannot be <code>null</code>.
+   */
+  public XmlParallelTokenizer( final CharSequence aText )
+  {
+    this( new CharSequenceInput( aText ), null );
+  }
+
+  /**
+   * Creates a new XmlParallelTokenizer for the file denoted by the given path.
+   * <p>
+   * The file is memory mapped, see {@link XmlScanner#open(Path)}. Files in an
+   * encoding that cannot be scanned byte-wise (such as UTF-16) are tokenized
+   * sequentially.
+   * </p>
+   *
+   * @param aPath
+   *          the path of the file to tokenize, cannot be <code>null</code>.
+   * @throws IOException
+   *           in case of I/O problems opening the file.
+   */
+  public XmlParallelTokenizer( final Path aPath ) throws IOException
+  {
+    this( MappedFileInput.open( aPath ), aPath );
+  }
+
+  /**
+   * Creates a new XmlParallelTokenizer.
+   *
+   * @param aInput
+   *          the input to tokenize, can only be <code>null</code> if a path is
+   *          given;
+   * @param aPath
+   *          the path of the file to tokenize sequentially in case no input is
+   *          given.
+   */
+  private XmlParallelTokenizer( final SplittableInput aInput, final Path aPath )
+  {
+    this.input = aInput;
+    this.path = aPath;
+    this.chunkSize = DEFAULT_CHUNK_SIZE;
+    this.symbols = SymbolTable.createShared( SymbolTable.DEFAULT_MAX_SIZE );
+  }
+
+  // METHODS
+
+  /**
+   * Closes this tokenizer, and the file it tokenizes, if any.
+   *
+   * @throws IOException
+   *           in case of I/O problems.
+   */
+  public void close() throws IOException
+  {
+    if ( this.input != null )
+    {
+      this.input.close();
+    }
+  }
+
+  /**
+   * Sets the size of the chunks the input is split into.
+   *
+   * @param aChunkSize
+   *          the chunk size in characters (or bytes for files), > 0.
+   * @throws IllegalArgumentException
+   *           in case the given chunk size was invalid.
+   */
+  public void setChunkSize( final int aChunkSize ) throws IllegalArgumentException
+  {
+    if ( aChunkSize <= 0 )
+    {
+      throw new IllegalArgumentException( "Chunk size should be positive!" );
+    }
+    this.chunkSize = aChunkSize;
+  }
+
+  /**
+   * Sets the fork-join pool to tokenize the chunks on. If no pool is set, a
+   * new pool is created (and shut down) for each call to
+   * {@link #tokenize(ITokenListener)}.
+   *
+   * @param aPool
+   *          the pool to use, can be <code>null</code>.
+   */
+  public void setPool( final ForkJoinPool aPool )
+  {
+    this.pool = aPool;
+  }
+
+  /**
+   * Tokenizes the complete input, passing all tokens in document order to the
+   * given listener. The listener is called from the calling thread only.
+   *
+   * @param aListener
+   *          the listener to pass the tokens to, cannot be <code>null</code>.
+   * @throws IOException
+   *           in case of I/O problems.
+   */
+  public void tokenize( final ITokenListener aListener ) throws IOException
+  {
+    if ( aListener == null )
+    {
+      throw new IllegalArgumentException( "Listener cannot be null!" );
+    }
+
+    if ( this.input == null )
+    {
+      tokenizeSequentially( aListener );
+      return;
+    }
+
+    final ForkJoinPool executor = ( this.pool != null ) ? this.pool : new ForkJoinPool();
+    try
+    {
+      final long start = this.input.getStart();
+      final long end = this.input.getEnd();
+      final int waveSize = 2 * executor.getParallelism();
+
+      long chunkStart = start;
+      long pos = start;
+      while ( chunkStart < end )
+      {
+        final List<ChunkTask> tasks = new ArrayList<ChunkTask>( waveSize );
+        while ( ( tasks.size() < waveSize ) && ( chunkStart < end ) )
+        {
+          final long chunkEnd = Math.min( end, chunkStart + this.chunkSize );
+          tasks.add( new ChunkTask( chunkStart, chunkEnd, chunkStart == start ) );
+          chunkStart = chunkEnd;
+        }
+
+        for ( Future<Chunk> future : executor.invokeAll( tasks ) )
+        {
+          pos = stitch( pos, getChunk( future ), aListener );
+        }
+      }
+
+      if ( pos < end )
+      {
+        // Trailing tokens that no chunk started with...
+        stitch( pos, new Chunk( end, end, new long[0], Collections.<IToken> emptyList() ), aListener );
+      }
+    }
+    catch ( InterruptedException exception )
+    {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException( "Tokenizing interrupted!" );
+    }
+    finally
+    {
+      if ( executor != this.pool )
+      {
+        executor.shutdown();
+      }
+    }
+  }
+
+  /**
+   * Creates a tokenizer for a chunk, which interns element names in a symbol
+   * table of its own, and attribute names in our shared symbol table.
+   */
+  private XmlTokenizer createTokenizer( final XmlScanner aScanner )
+  {
+    final XmlTokenizer tokenizer = new XmlTokenizer( aScanner );
+    tokenizer.setAttributeParser( new XmlAttributeParser( this.symbols ) );
+    return tokenizer;
+  }
+
+  /**
+   * Returns the result of the given future, unwrapping any exceptions.
+   */
+  private Chunk getChunk( final Future<Chunk> aFuture ) throws IOException, InterruptedException
+  {
+    try
+    {
+      return aFuture.get();
+    }
+    catch ( ExecutionException exception )
+    {
+      final Throwable cause = exception.getCause();
+      if ( cause instanceof IOException )
+      {
+        throw ( IOException )cause;
+      }
+      if ( cause instanceof RuntimeException )
+      {
+        throw ( RuntimeException )cause;
+      }
+      if ( cause instanceof Error )
+      {
+        throw ( Error )cause;
+      }
+      throw new IOException( "Tokenizing failed!", cause );
+    }
+  }
+
+  /**
+   * Emits the tokens of the given chunk that follow the given position, after
+   * confirming they line up with the tokens emitted so far.
+   *
+   * @param aPosition
+   *          the offset of the first token not emitted yet;
+   * @param aChunk
+   *          the chunk to emit;
+   * @param aListener
+   *          the listener to emit the tokens to.
+   * @return the offset of the first token not emitted yet.
+   */
+  private long stitch( final long aPosition, final Chunk aChunk, final ITokenListener aListener )
+      throws IOException
+  {
+    if ( ( aChunk.start < 0 ) || ( aPosition >= aChunk.stop ) )
+    {
+      // Nothing (more) in this chunk...
+      return aPosition;
+    }
+
+    int idx = ( aPosition == aChunk.start ) ? 0 : Arrays.binarySearch( aChunk.offsets, aPosition );
+    if ( idx < 0 )
+    {
+      // Our guess was wrong; the preceding chunk ended somewhere else. Tokenize
+      // sequentially until we're in sync again...
+      final XmlScanner scanner = new XmlScanner( this.input.createBackend( aPosition ) );
+      final XmlTokenizer tokenizer = createTokenizer( scanner );
+
+      IToken token;
+      while ( true )
+      {
+        token = tokenizer.nextToken();
+        if ( token == null )
+        {
+          return this.input.getEnd();
+        }
+
+        final long offset = scanner.getTokenOffset();
+        if ( offset >= aChunk.stop )
+        {
+          return offset;
+        }
+
+        idx = Arrays.binarySearch( aChunk.offsets, offset );
+        if ( idx >= 0 )
+        {
+          break;
+        }
+        aListener.tokenFound( token );
+      }
+    }
+
+    final List<IToken> tokens = aChunk.tokens;
+    for ( int i = idx, size = tokens.size(); i < size; i++ )
+    {
+      aListener.tokenFound( tokens.get( i ) );
+    }
+    return aChunk.stop;
+  }
+
+  /**
+   * Tokenizes the file sequentially.
+   */
+  private void tokenizeSequentially( final ITokenListener aListener ) throws IOException
+  {
+    final XmlScanner scanner = XmlScanner.open( this.path );
+    try
+    {
+      final XmlTokenizer tokenizer = new XmlTokenizer( scanner );
+
+      IToken token;
+      while ( ( token = tokenizer.nextToken() ) != null )
+      {
+        aListener.tokenFound( token );
+      }
+    }
+    finally
+    {
+      scanner.close();
+    }
+  }
+}
@@ -0,0 +1,496 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer;
+
+
+import java.io.*;
+import java.util.*;
+
+import nl.lxtreme.xmltokenizer.impl.*;
+
+
+/**
+ * Matches a set of paths against the elements of a {@link XmlTokenizer} in a
+ * single pass.
+ * <p>
+ * The paths use a small subset of XPath:
+ * </p>
+ * <ul>
+ * <li><code>/name</code> matches a child element, <code>//name</code> a
+ * descendant element; <code>*</code> matches any element name;</li>
+ * <li><code>[@attr]</code> and <code>[@attr='value']</code> (or with double
+ * quotes) require an element to have the given attribute (value); multiple
+ * predicates can be given per step;</li>
+ * <li>a final <code>/@attr</code> or <code>/@*</code> step matches the
+ * attributes of an element.</li>
+ * </ul>
+ * <p>
+ * All paths are compiled into a single state machine, in which common prefixes
+ * are shared. While tokenizing, the matcher keeps the set of active states for
+ * each open element on a flat stack, so each element is only compared against
+ * the steps that can follow the states of its parent. Elements in which no
+ * path can match are skipped with {@link XmlTokenizer#skipElement()}. End tags
+ * are not matched by name, so the document is assumed to be well-formed.
+ * </p>
+ */
+public class XmlPathMatcher
+{
+  // INNER TYPES
+
+  /**
+   * Denotes a single (element) step of a path.
+   */
+  static final class Step
+  {
+    // VARIABLES
+
+    final boolean  descendant;
+    final String   name;
+    /** the attribute names and values (or null) of all predicates. */
+    final String[] predicates;
+    /** identifies equal steps, in order to share them. */
+    final String   key;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new Step.
+     */
+    Step( final boolean aDescendant, final String aName, final List<String> aPredicates )
+    {
+      this.descendant = aDescendant;
+      this.name = aName;
+      this.predicates = aPredicates.toArray( new String[aPredicates.size()] );
+      this.key = ( aDescendant ? "//" : "/" ) + aName + aPredicates;
+    }
+
+    // METHODS
+
+    /**
+     * @return <code>true</code> if the given element matches this step,
+     *         <code>false</code> otherwise.
+     */
+    boolean matches( final IToken aElement )
+    {
+      if ( ( this.name != WILDCARD ) && !this.name.equals( aElement.getName() ) )
+      {
+        return false;
+      }
+      for ( int i = 0; i < this.predicates.length; i += 2 )
+      {
+        final IAttribute attribute = getAttribute( aElement, this.predicates[i] );
+        if ( ( attribute == null )
+            || ( ( this.predicates[i + 1] != null ) && !this.predicates[i + 1].equals( attribute.getValue() ) ) )
+        {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Denotes a state of the compiled paths, reached after matching a number of
+   * steps.
+   */
+  static final class State
+  {
+    // VARIABLES
+
+    final List<Step>   steps        = new ArrayList<Step>();
+    final List<State>  targets      = new ArrayList<State>();
+    /** the paths that match upon entering this state. */
+    final List<String> paths        = new ArrayList<String>();
+    /** the attribute names and paths matching the attributes. */
+    final List<String> attributes   = new ArrayList<String>();
+    /** whether this state has steps matching descendants. */
+    boolean            descendant;
+    /** the last element for which this state was activated and matched. */
+    int                activeStamp  = -1;
+    int                activeIndex;
+    int                matchedStamp = -1;
+
+    // METHODS
+
+    /**
+     * @return the state following the given step, never <code>null</code>.
+     */
+    State getTarget( final Step aStep )
+    {
+      for ( int i = 0; i < this.steps.size(); i++ )
+      {
+        if ( this.steps.get( i ).key.equals( aStep.key ) )
+        {
+          return this.targets.get( i );
+        }
+      }
+
+      final State target = new State();
+      this.steps.add( aStep );
+      this.targets.add( target );
+      this.descendant |= aStep.descendant;
+      return target;
+    }
+  }
+
+  // CONSTANTS
+
+  static final String      WILDCARD         = "*";
+
+  private static final int INITIAL_CAPACITY = 64;
+
+  // VARIABLES
+
+  private final State root;
+  /** identifies the element currently being matched. */
+  private int         stamp;
+  /** the active states of all open elements, used while matching. */
+  private State[]     active;
+  private boolean[]   carried;
+  private int         size;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new XmlPathMatcher for the given paths.
+   *
+   * @param aPaths
+   *          the paths to match, such as <code>/a/b[@type='x']/c</code> or
+   *          <code>//item/@id</code>, cannot be <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case one of the given paths was invalid.
+   */
+  public XmlPathMatcher( final String... aPaths ) throws IllegalArgumentException
+  {
+    if ( aPaths == null )
+    {
+      throw new IllegalArgumentException( "Paths cannot be null!" );
+    }
+
+    this.root = new State();
+    for ( String path : aPaths )
+    {
+      compile( path );
+    }
+  }
+
+  // METHODS
+
+  /**
+   * @return the attribute of the given element with the given name, or
+   *         <code>null</code> if no such attribute exists.
+   */
+  static IAttribute getAttribute( final IToken aElement, final String aName )
+  {
+    final List<IAttribute> attributes = aElement.getAttributes();
+    for ( int i = 0, size = attributes.size(); i < size; i++ )
+    {
+      final IAttribute attribute = attributes.get( i );
+      if ( aName.equals( attribute.getName() ) )
+      {
+        return attribute;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return an {@link IllegalArgumentException} for the given path.
+   */
+  private static IllegalArgumentException invalidPath( final String aPath, final int aIndex )
+  {
+    return new IllegalArgumentException( "Invalid path at index " + aIndex + ": " + aPath );
+  }
+
+  /**
+   * @return the index after the name starting at the given index.
+   */
+  private static int nameEnd( final String aPath, final int aFrom )
+  {
+    int i = aFrom;
+    char c;
+    while ( ( i < aPath.length() ) && ( ( c = aPath.charAt( i ) ) != '/' ) && ( c != '[' ) && ( c != ']' )
+        && ( c != '=' ) && ( c != '@' ) && ( c > ' ' ) )
+    {
+      i++;
+    }
+    return i;
+  }
+
+  /**
+   * Matches all paths against the remaining tokens of the given tokenizer. A
+   * matcher can be used for multiple documents, but not concurrently.
+   *
+   * @param aTokenizer
+   *          the tokenizer to obtain the tokens from, cannot be
+   *          <code>null</code>;
+   * @param aListener
+   *          the listener to report all matches to, cannot be
+   *          <code>null</code>.
+   * @throws IOException
+   *           in case of I/O problems.
+   */
+  public void match( final XmlTokenizer aTokenizer, final IPathListener aListener ) throws IOException
+  {
+    if ( aTokenizer == null )
+    {
+      throw new IllegalArgumentException( "Tokenizer cannot be null!" );
+    }
+    if ( aListener == null )
+    {
+      throw new IllegalArgumentException( "Listener cannot be null!" );
+    }
+
+    // The active states of each open element, stored consecutively...
+    this.active = new State[INITIAL_CAPACITY];
+    this.carried = new boolean[INITIAL_CAPACITY];
+    this.size = 0;
+    int[] levels = new int[INITIAL_CAPACITY];
+    int depth = 0;
+
+    try
+    {
+      activate( this.root, false, ++this.stamp );
+
+      IToken token;
+      while ( ( token = aTokenizer.nextToken() ) != null )
+      {
+        if ( !( token instanceof ElementToken ) )
+        {
+          continue;
+        }
+
+        final ElementToken element = ( ElementToken )token;
+        if ( element.isEndTag() )
+        {
+          if ( depth > 0 )
+          {
+            this.size = levels[depth--];
+          }
+          continue;
+        }
+
+        final int stamp = ++this.stamp;
+        final int from = levels[depth];
+        final int to = this.size;
+        for ( int i = from; i < to; i++ )
+        {
+          final State state = this.active[i];
+          // States carried over from an ancestor only match descendants...
+          final boolean carried = this.carried[i];
+          if ( state.descendant )
+          {
+            activate( state, true, stamp );
+          }
+
+          for ( int j = 0, count = state.steps.size(); j < count; j++ )
+          {
+            final Step step = state.steps.get( j );
+            if ( ( carried && !step.descendant ) || !step.matches( element ) )
+            {
+              continue;
+            }
+
+            final State target = state.targets.get( j );
+            activate( target, false, stamp );
+            if ( target.matchedStamp != stamp )
+            {
+              target.matchedStamp = stamp;
+              fireMatches( target, element, aListener );
+            }
+          }
+        }
+
+        if ( element.isEmptyElement() )
+        {
+          this.size = to;
+        }
+        else if ( this.size == to )
+        {
+          // Nothing can match inside this element...
+          aTokenizer.skipElement();
+        }
+        else
+        {
+          if ( ++depth == levels.length )
+          {
+            levels = Arrays.copyOf( levels, depth * 2 );
+          }
+          levels[depth] = to;
+        }
+      }
+    }
+    finally
+    {
+      this.active = null;
+      this.carried = null;
+    }
+  }
+
+  /**
+   * Adds the given state to the active states of the current element, unless
+   * it is already active.
+   *
+   * @param aCarried
+   *          <code>true</code> if the state is carried over from an ancestor,
+   *          <code>false</code> if it was reached by matching a step.
+   */
+  private void activate( final State aState, final boolean aCarried, final int aStamp )
+  {
+    if ( aState.activeStamp == aStamp )
+    {
+      // Reaching a state by matching a step takes precedence...
+      this.carried[aState.activeIndex] &= aCarried;
+      return;
+    }
+
+    if ( this.size == this.active.length )
+    {
+      this.active = Arrays.copyOf( this.active, this.size * 2 );
+      this.carried = Arrays.copyOf( this.carried, this.size * 2 );
+    }
+    aState.activeStamp = aStamp;
+    aState.activeIndex = this.size;
+    this.active[this.size] = aState;
+    this.carried[this.size] = aCarried;
+    this.size++;
+  }
+
+  /**
+   * Compiles the given path into the states of this matcher.
+   */
+  private void compile( final String aPath )
+  {
+    if ( ( aPath == null ) || !aPath.startsWith( "/" ) )
+    {
+      throw new IllegalArgumentException( "Path should be absolute: " + aPath );
+    }
+
+    final int length = aPath.length();
+    State state = this.root;
+    int i = 0;
+    while ( i < length )
+    {
+      if ( aPath.charAt( i ) != '/' )
+      {
+        throw invalidPath( aPath, i );
+      }
+      final boolean descendant = aPath.startsWith( "//", i );
+      i += descendant ? 2 : 1;
+
+      if ( ( i < length ) && ( aPath.charAt( i ) == '@' ) )
+      {
+        final int end = nameEnd( aPath, ++i );
+        if ( ( end == i ) || ( end != length ) )
+        {
+          throw invalidPath( aPath, i );
+        }
+        if ( descendant )
+        {
+          // '//@a' selects the attributes of all elements...
+          state = state.getTarget( new Step( true, WILDCARD, Collections.<String> emptyList() ) );
+        }
+        final String name = aPath.substring( i, end );
+        state.attributes.add( WILDCARD.equals( name ) ? WILDCARD : name );
+        state.attributes.add( aPath );
+        return;
+      }
+
+      final int end = nameEnd( aPath, i );
+      if ( end == i )
+      {
+        throw invalidPath( aPath, i );
+      }
+      final String name = aPath.substring( i, end );
+      i = end;
+
+      final List<String> predicates = new ArrayList<String>();
+      while ( ( i < length ) && ( aPath.charAt( i ) == '[' ) )
+      {
+        i = parsePredicate( aPath, i, predicates );
+      }
+
+      state = state.getTarget( new Step( descendant, WILDCARD.equals( name ) ? WILDCARD : name, predicates ) );
+    }
+
+    state.paths.add( aPath );
+  }
+
+  /**
+   * Reports the matches of the given state for the given element.
+   */
+  private void fireMatches( final State aState, final IToken aElement, final IPathListener aListener )
+  {
+    for ( int i = 0, size = aState.paths.size(); i < size; i++ )
+    {
+      aListener.pathMatched( aState.paths.get( i ), aElement, null );
+    }
+
+    for ( int i = 0, size = aState.attributes.size(); i < size; i += 2 )
+    {
+      final String name = aState.attributes.get( i );
+      final String path = aState.attributes.get( i + 1 );
+      if ( name == WILDCARD )
+      {
+        for ( IAttribute attribute : aElement.getAttributes() )
+        {
+          aListener.pathMatched( path, aElement, attribute );
+        }
+      }
+      else
+      {
+        final IAttribute attribute = getAttribute( aElement, name );
+        if ( attribute != null )
+        {
+          aListener.pathMatched( path, aElement, attribute );
+        }
+      }
+    }
+  }
+
+  /**
+   * Parses the predicate starting at the given index.
+   *
+   * @return the index after the predicate.
+   */
+  private int parsePredicate( final String aPath, final int aFrom, final List<String> aPredicates )
+  {
+    final int length = aPath.length();
+    int i = aFrom + 1;
+    if ( ( i >= length ) || ( aPath.charAt( i ) != '@' ) )
+    {
+      throw invalidPath( aPath, i );
+    }
+
+    final int end = nameEnd( aPath, ++i );
+    if ( end == i )
+    {
+      throw invalidPath( aPath, i );
+    }
+    aPredicates.add( aPath.substring( i, end ) );
+    i = end;
+
+    String value = null;
+    if ( ( i < length ) && ( aPath.charAt( i ) == '=' ) )
+    {
+      final char quote = ( ++i < length ) ? aPath.charAt( i ) : 0;
+      final int close = ( ( quote == '\'' ) || ( quote == '"' ) ) ? aPath.indexOf( quote, i + 1 ) : -1;
+      if ( close < 0 )
+      {
+        throw invalidPath( aPath, i );
+      }
+      value = aPath.substring( i + 1, close );
+      i = close + 1;
+    }
+    aPredicates.add( value );
+
+    if ( ( i >= length ) || ( aPath.charAt( i ) != ']' ) )
+    {
+      throw invalidPath( aPath, i );
+    }
+    return i + 1;
+  }
+}
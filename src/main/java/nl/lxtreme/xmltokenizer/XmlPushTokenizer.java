@@ -0,0 +1,174 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer;
+
+
+import java.io.*;
+import java.nio.*;
+import java.nio.charset.*;
+
+import nl.lxtreme.xmltokenizer.impl.*;
+
+
+/**
+ * Tokenizes XML-data that is pushed into it in arbitrary chunks, such as the
+ * buffers read from a non-blocking channel, without ever blocking.
+ * <p>
+ * Each complete token is handed to a listener as soon as it can be determined.
+ * Incomplete tokens are retained until more data is fed, or until the end of
+ * the input is signalled. The tokens are found and classified in exactly the
+ * same way as {@link XmlTokenizer} does for a {@link XmlScanner} on the same
+ * data.
+ * </p>
+ * <p>
+ * Unlike {@link XmlScanner}, the encoding of the data is not detected, but
+ * should be given up front; only ASCII-compatible encodings (UTF-8, US-ASCII
+ * and ISO-8859-1) are supported.
+ * </p>
+ */
+public class XmlPushTokenizer
+{
+  // CONSTANTS
+
+  private static final Charset     UTF_8 = Charset.forName( "UTF-8" );
+
+  // VARIABLES
+
+  private final PushScannerBackend backend;
+  private final XmlTokenizer       tokenizer;
+  private final ITokenListener     listener;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new XmlPushTokenizer for UTF-8 encoded data.
+   *
+   * @param aListener
+   *          the listener to hand all tokens to, cannot be <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case the given listener was <code>null</code>.
+   */
+  public XmlPushTokenizer( final ITokenListener aListener ) throws IllegalArgumentException
+  {
+    this( aListener, UTF_8 );
+  }
+
+  /**
+   * Creates a new XmlPushTokenizer.
+   *
+   * @param aListener
+   *          the listener to hand all tokens to, cannot be <code>null</code>;
+   * @param aCharset
+   *          the (ASCII-compatible) character set of the data, cannot be
+   *          <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case one of the given arguments was <code>null</code> or in
+   *           case the given character set is not supported.
+   */
+  public XmlPushTokenizer( final ITokenListener aListener, final Charset aCharset ) throws IllegalArgumentException
+  {
+    if ( aListener == null )
+    {
+      throw new IllegalArgumentException( "Listener cannot be null!" );
+    }
+
+    this.backend = new PushScannerBackend( aCharset );
+    this.tokenizer = new XmlTokenizer( new XmlScanner( this.backend ) );
+    this.listener = aListener;
+  }
+
+  // METHODS
+
+  /**
+   * Signals the end of the input, handing any remaining token to the listener.
+   *
+   * @throws IOException
+   *           in case of I/O problems.
+   */
+  public void endOfInput() throws IOException
+  {
+    this.backend.endOfInput();
+    drain();
+  }
+
+  /**
+   * Feeds the remaining bytes of the given buffer to this tokenizer, handing
+   * all tokens that are complete to the listener. The bytes are copied, so the
+   * given buffer can be reused afterwards.
+   *
+   * @param aData
+   *          the data to feed, cannot be <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case the given data was <code>null</code>.
+   * @throws IllegalStateException
+   *           in case the end of the input was already signalled.
+   * @throws IOException
+   *           in case of I/O problems.
+   */
+  public void feed( final ByteBuffer aData ) throws IllegalArgumentException, IllegalStateException, IOException
+  {
+    this.backend.feed( aData );
+    drain();
+  }
+
+  /**
+   * Returns whether the token that is handed to the listener is a chunk of a
+   * larger text or CDATA section, which is continued by the next token. This
+   * is only valid while the listener is called.
+   *
+   * @return <code>true</code> if the next token continues the current token,
+   *         <code>false</code> otherwise.
+   * @see #setChunkSize(int)
+   */
+  public boolean isPartial()
+  {
+    return this.tokenizer.isPartial();
+  }
+
+  /**
+   * Sets the parser to use for the attributes of tags and processing
+   * instructions.
+   *
+   * @param aParser
+   *          the attribute parser to use, cannot be <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case the given parser was <code>null</code>.
+   * @see XmlTokenizer#setAttributeParser(AttributeParser)
+   */
+  public void setAttributeParser( final AttributeParser aParser ) throws IllegalArgumentException
+  {
+    this.tokenizer.setAttributeParser( aParser );
+  }
+
+  /**
+   * Hands all complete tokens to the listener.
+   */
+  private void drain() throws IOException
+  {
+    IToken token;
+    while ( ( token = this.tokenizer.nextToken() ) != null )
+    {
+      this.listener.tokenFound( token );
+    }
+  }
+
+  /**
+   * Sets the maximum length, in bytes, of text and CDATA tokens. Longer
+   * sections are handed to the listener in chunks, such that they are never
+   * buffered as a whole.
+   *
+   * @param aSize
+   *          the maximum length of text and CDATA tokens, or 0 to not split up
+   *          tokens (the default).
+   * @throws IllegalArgumentException
+   *           in case the given size was invalid.
+   * @see XmlScanner#setChunkSize(int)
+   */
+  public void setChunkSize( final int aSize ) throws IllegalArgumentException
+  {
+    this.backend.setChunkSize( aSize );
+  }
+}
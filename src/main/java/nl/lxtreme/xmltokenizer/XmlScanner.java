@@ -7,17 +7,21 @@ package nl.lxtreme.xmltokenizer;
 
 
 import java.io.*;
+import java.nio.*;
+import java.nio.file.*;
+
+import nl.lxtreme.xmltokenizer.impl.*;
 
 
 /**
  * Breaks up a string of characters into chunks of either whitespace or apparent
  * XML-tags.
  */
-public final class XmlScanner
+public final class XmlScanner implements Closeable
 {
   // VARIABLES
 
-  private final Reader reader;
+  private final ScannerBackend backend;
 
   // CONSTRUCTORS
 
@@ -25,17 +29,139 @@ public final class XmlScanner
    * Creates a new XmlScanner.
    * 
    * @param aReader
-   *          the reader to use while tokenizing;
-   * @param aCleanerConfig
-   *          the cleaner configuration to use.
+   *          the reader to use while tokenizing.
    */
   public XmlScanner( final Reader aReader )
   {
-    this.reader = new BufferedReader( aReader );
+    this( new ReaderScannerBackend( aReader ) );
+  }
+
+  /**
+   * Creates a new XmlScanner.
+   * 
+   * @param aReader
+   *          the reader to use while tokenizing;
+   * @param aBufferSize
+   *          the initial size of the character buffer to use, > 0.
+   */
+  public XmlScanner( final Reader aReader, final int aBufferSize )
+  {
+    this( new ReaderScannerBackend( aReader, aBufferSize ) );
+  }
+
+  /**
+   * Creates a new XmlScanner that scans the remaining bytes of the given
+   * buffer.
+   * <p>
+   * The encoding of the data is determined by its byte order mark or the
+   * encoding declared in its XML declaration, defaulting to UTF-8. UTF-8,
+   * US-ASCII and ISO-8859-1 encoded data is scanned on the raw bytes, and only
+   * decoded when needed. Data in any other encoding is decoded up front.
+   * </p>
+   * 
+   * @param aBuffer
+   *          the buffer to use while tokenizing.
+   */
+  public XmlScanner( final ByteBuffer aBuffer )
+  {
+    this( ByteScannerBackend.create( aBuffer ) );
+  }
+
+  /**
+   * Creates a new XmlScanner that scans the given input stream.
+   * <p>
+   * The encoding of the data is determined by its byte order mark or the
+   * encoding declared in its XML declaration, defaulting to UTF-8. UTF-8,
+   * US-ASCII and ISO-8859-1 encoded data is scanned on the raw bytes, and only
+   * decoded when needed. Data in any other encoding is decoded through a
+   * {@link Reader}.
+   * </p>
+   * 
+   * @param aStream
+   *          the input stream to use while tokenizing.
+   * @throws IOException
+   *           in case of I/O problems determining the encoding of the stream.
+   */
+  public XmlScanner( final InputStream aStream ) throws IOException
+  {
+    this( InputStreamScannerBackend.create( aStream ) );
+  }
+
+  /**
+   * Creates a new XmlScanner.
+   * 
+   * @param aBackend
+   *          the scanner backend to use, cannot be <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case the given backend was <code>null</code>.
+   */
+  public XmlScanner( final ScannerBackend aBackend ) throws IllegalArgumentException
+  {
+    if ( aBackend == null )
+    {
+      throw new IllegalArgumentException( "Backend cannot be null!" );
+    }
+    this.backend = aBackend;
   }
 
   // METHODS
 
+  /**
+   * Creates a new XmlScanner for the file denoted by the given path.
+   * <p>
+   * The file is memory mapped in windows instead of read, which allows files
+   * larger than 2 GB to be scanned without reading them fully. The encoding of
+   * the file is determined like {@link #XmlScanner(InputStream)} does. The
+   * returned scanner should be closed when no longer needed.
+   * </p>
+   * 
+   * @param aPath
+   *          the path of the file to scan, cannot be <code>null</code>.
+   * @return a new XmlScanner, never <code>null</code>.
+   * @throws IOException
+   *           in case of I/O problems opening the file.
+   */
+  public static XmlScanner open( final Path aPath ) throws IOException
+  {
+    return new XmlScanner( MappedFileScannerBackend.create( aPath ) );
+  }
+
+  /**
+   * Closes this scanner and the input it scans.
+   * 
+   * @throws IOException
+   *           in case of I/O problems.
+   */
+  public void close() throws IOException
+  {
+    this.backend.close();
+  }
+
+  /**
+   * Returns the offset of the last token returned by this scanner in its input.
+   * The offset is counted in characters for {@link Reader}s, and in bytes for
+   * all other kinds of input.
+   * 
+   * @return the offset of the last token returned, >= 0.
+   */
+  public long getTokenOffset()
+  {
+    return this.backend.getTokenOffset();
+  }
+
+  /**
+   * Returns whether the last token returned by this scanner is a chunk of a
+   * larger text or CDATA section, which is continued by the next token.
+   * 
+   * @return <code>true</code> if the next token continues the last token,
+   *         <code>false</code> otherwise.
+   * @see #setChunkSize(int)
+   */
+  public boolean isPartial()
+  {
+    return this.backend.isPartial();
+  }
+
   /**
    * Splits up the contained stream into chunks of character data.
    * 
@@ -43,52 +169,85 @@ public final class XmlScanner
    */
   public String nextToken() throws IOException
   {
-    final StringBuilder sb = new StringBuilder();
+    return this.backend.next() ? this.backend.getToken() : null;
+  }
 
-    int ch;
-    boolean openTag = false;
-    boolean closeTag = false;
+  /**
+   * Sets the maximum length of text and CDATA tokens. Longer text and CDATA
+   * sections are returned as consecutive chunks of (about) this length, all
+   * but the last of which are {@link #isPartial() partial}. This bounds the
+   * amount of data buffered by this scanner, regardless of the size of the
+   * sections in its input.
+   * <p>
+   * The first chunk of a CDATA section starts with its
+   * <code>&lt;![CDATA[</code> marker, its last chunk ends with its
+   * <code>]]&gt;</code> marker. Tags, comments and other markup are never split
+   * up. Chunks of text do not end inside an entity or character reference,
+   * unless the reference is longer than a chunk, so references can be decoded
+   * per chunk. By default, tokens are not split up at all.
+   * </p>
+   * 
+   * @param aSize
+   *          the maximum length of text and CDATA tokens, in characters for
+   *          {@link Reader}s, and in bytes for all other kinds of input, >=
+   *          {@link ScannerBackend#MIN_CHUNK_SIZE}, or 0 to not split up
+   *          tokens.
+   * @throws IllegalArgumentException
+   *           in case the given size was invalid.
+   */
+  public void setChunkSize( final int aSize ) throws IllegalArgumentException
+  {
+    this.backend.setChunkSize( aSize );
+  }
 
-    do
+  /**
+   * Skips all tokens up to and including the end tag of the element whose
+   * start tag was returned last.
+   * <p>
+   * Only the nesting depth of the skipped tokens is tracked, by looking at
+   * their first and last characters; the skipped tokens are neither copied nor
+   * decoded. End tags are not matched by name, so this assumes the skipped
+   * content is well-formed.
+   * </p>
+   * 
+   * @return <code>true</code> if the end tag was found, <code>false</code> if
+   *         the end of the input was reached before.
+   * @throws IOException
+   *           in case of I/O problems.
+   */
+  public boolean skipElement() throws IOException
+  {
+    final ScannerBackend b = this.backend;
+    int depth = 1;
+    // Chunks of a CDATA section can look like tags, so only look at the first
+    // chunk of each section...
+    boolean continued = b.isPartial();
+    while ( b.next() )
     {
-      this.reader.mark( 2 );
-
-      ch = this.reader.read();
-      if ( '<' == ch )
+      if ( !continued && ( ( depth += b.getDepthDelta() ) == 0 ) )
       {
-        if ( sb.length() > 0 )
-        {
-          int peek = this.reader.read();
-          if ( !Character.isWhitespace( peek ) )
-          {
-            // Already collected some stuff; emit that token first, before
-            // going to process this (presumed) tag...
-            this.reader.reset();
-            break;
-          }
-          else
-          {
-            // Spurious '<' found; append the whitespace
-            // 
-            sb.append( ( char )ch );
-            ch = peek;
-          }
-        }
-
-        openTag = true;
-      }
-      else if ( openTag && ( '>' == ch ) )
-      {
-        closeTag = true;
-      }
-
-      if ( ch >= 0 )
-      {
-        sb.append( ( char )ch );
+        return true;
       }
+      continued = b.isPartial();
     }
-    while ( ( ch != -1 ) && !closeTag );
+    return false;
+  }
 
-    return ( ch == -1 ) && ( sb.length() == 0 ) ? null : sb.toString();
+  /**
+   * Splits up the contained stream into chunks of character data, without
+   * copying the characters of each chunk.
+   * <p>
+   * The returned view refers directly to the buffer of this scanner, and is
+   * only valid until the next call to either {@link #nextToken()} or
+   * {@link #nextTokenView()}. Use {@link CharSequence#toString()} to obtain a
+   * copy of the token that can be retained.
+   * </p>
+   * 
+   * @return a view on the token, can be <code>null</code> in case of no more
+   *         data.
+   */
+  public CharSequence nextTokenView() throws IOException
+  {
+    return this.backend.next() ? this.backend.getTokenView() : null;
   }
 }
@@ -0,0 +1,248 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer;
+
+
+import java.io.*;
+
+import nl.lxtreme.xmltokenizer.impl.*;
+
+
+/**
+ * Extracts the subtrees of all elements matching a path from a
+ * {@link XmlTokenizer}.
+ * <p>
+ * The path is an absolute path of element names, like
+ * <code>/export/records/record</code>, in which <code>*</code> matches any
+ * element name. For each matching element, its subtree is built (see
+ * {@link XmlTreeBuilder}) and handed to a listener; no tokens are created for
+ * anything outside the matching elements. Elements that cannot contain a match
+ * are skipped using {@link XmlTokenizer#skipElement()}, so the memory use is
+ * bounded by the largest matching subtree.
+ * </p>
+ */
+public class XmlSubtreeExtractor
+{
+  // CONSTANTS
+
+  private static final String WILDCARD = "*";
+
+  // VARIABLES
+
+  private final XmlTokenizer   tokenizer;
+  private final String[]       steps;
+  private final XmlTreeBuilder builder;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new XmlSubtreeExtractor.
+   *
+   * @param aTokenizer
+   *          the tokenizer to obtain the tokens from, cannot be
+   *          <code>null</code>;
+   * @param aPath
+   *          the absolute path of the elements to extract, such as
+   *          <code>/export/records/record</code>, cannot be <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case the given tokenizer was <code>null</code> or the given
+   *           path was invalid.
+   */
+  public XmlSubtreeExtractor( final XmlTokenizer aTokenizer, final String aPath ) throws IllegalArgumentException
+  {
+    if ( aTokenizer == null )
+    {
+      throw new IllegalArgumentException( "Tokenizer cannot be null!" );
+    }
+    if ( ( aPath == null ) || !aPath.startsWith( "/" ) || ( aPath.length() < 2 ) )
+    {
+      throw new IllegalArgumentException( "Path should be absolute!" );
+    }
+
+    this.tokenizer = aTokenizer;
+    this.steps = aPath.substring( 1 ).split( "/", -1 );
+    for ( int i = 0; i < this.steps.length; i++ )
+    {
+      if ( this.steps[i].isEmpty() )
+      {
+        throw new IllegalArgumentException( "Path cannot contain empty steps: " + aPath );
+      }
+      if ( WILDCARD.equals( this.steps[i] ) )
+      {
+        // Allows wildcards to be matched by identity...
+        this.steps[i] = WILDCARD;
+      }
+    }
+    this.builder = new XmlTreeBuilder( aTokenizer );
+  }
+
+  // METHODS
+
+  /**
+   * @return <code>true</code> if the given tag is an empty element tag,
+   *         <code>false</code> otherwise.
+   */
+  private static boolean isEmptyElement( final CharSequence aTag )
+  {
+    int i = aTag.length() - 1;
+    if ( ( i > 0 ) && ( aTag.charAt( i ) == '>' ) )
+    {
+      i--;
+    }
+    while ( ( i > 0 ) && ( aTag.charAt( i ) <= ' ' ) )
+    {
+      i--;
+    }
+    return ( i > 0 ) && ( aTag.charAt( i ) == '/' );
+  }
+
+  /**
+   * @return the index after the name of the given tag, which starts at the
+   *         given index.
+   */
+  private static int nameEnd( final CharSequence aTag, final int aFrom )
+  {
+    final int length = aTag.length();
+    int i = aFrom;
+    char c;
+    while ( ( i < length ) && ( ( c = aTag.charAt( i ) ) > ' ' ) && ( c != '/' ) && ( c != '>' ) )
+    {
+      i++;
+    }
+    return i;
+  }
+
+  /**
+   * Extracts all matching elements from the remaining tokens of the
+   * tokenizer.
+   *
+   * @param aListener
+   *          the listener to hand the matching elements to, cannot be
+   *          <code>null</code>. The elements are not retained after they are
+   *          handed to the listener.
+   * @throws IOException
+   *           in case of I/O problems.
+   */
+  public void extract( final ITokenListener aListener ) throws IOException
+  {
+    if ( aListener == null )
+    {
+      throw new IllegalArgumentException( "Listener cannot be null!" );
+    }
+
+    final int last = this.steps.length - 1;
+    // the number of open elements that match the path...
+    int matched = 0;
+
+    CharSequence tag;
+    while ( ( tag = nextTag() ) != null )
+    {
+      if ( tag.charAt( 1 ) == '/' )
+      {
+        if ( matched > 0 )
+        {
+          matched--;
+        }
+        continue;
+      }
+
+      final boolean empty = isEmptyElement( tag );
+      if ( !matches( this.steps[matched], tag ) )
+      {
+        if ( !empty )
+        {
+          this.tokenizer.skipElement();
+        }
+      }
+      else if ( matched == last )
+      {
+        final ElementToken start = ( ElementToken )this.tokenizer.createToken( tag );
+        aListener.tokenFound( this.builder.buildElement( start ) );
+      }
+      else if ( !empty )
+      {
+        matched++;
+      }
+    }
+  }
+
+  /**
+   * Sets whether text tokens that consist of whitespace only should be left
+   * out of the extracted subtrees.
+   *
+   * @param aIgnoreWhitespace
+   *          <code>true</code> to leave out whitespace-only text tokens,
+   *          <code>false</code> to retain them.
+   * @see XmlTreeBuilder#setIgnoreWhitespace(boolean)
+   */
+  public void setIgnoreWhitespace( final boolean aIgnoreWhitespace )
+  {
+    this.builder.setIgnoreWhitespace( aIgnoreWhitespace );
+  }
+
+  /**
+   * @return <code>true</code> if the given character can start an element
+   *         name, <code>false</code> otherwise. All non-ASCII characters are
+   *         accepted.
+   */
+  private static boolean isNameStart( final char aChar )
+  {
+    return ( ( aChar >= 'a' ) && ( aChar <= 'z' ) ) || ( ( aChar >= 'A' ) && ( aChar <= 'Z' ) ) || ( aChar == '_' )
+        || ( aChar == ':' ) || ( aChar >= 0x80 );
+  }
+
+  /**
+   * @return <code>true</code> if the name of the given tag matches the given
+   *         step, <code>false</code> otherwise.
+   */
+  private boolean matches( final String aStep, final CharSequence aTag )
+  {
+    if ( aStep == WILDCARD )
+    {
+      return true;
+    }
+    final int end = nameEnd( aTag, 1 );
+    if ( ( end - 1 ) != aStep.length() )
+    {
+      return false;
+    }
+    for ( int i = 1; i < end; i++ )
+    {
+      if ( aTag.charAt( i ) != aStep.charAt( i - 1 ) )
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the next start or end tag, skipping all other tokens.
+   *
+   * @return the text of the next tag, or <code>null</code> if no more tags are
+   *         found.
+   */
+  private CharSequence nextTag() throws IOException
+  {
+    // Chunks of a CDATA section can look like tags, so only look at the first
+    // chunk of each section...
+    boolean continued = this.tokenizer.isPartial();
+    CharSequence token;
+    while ( ( token = this.tokenizer.nextTokenView() ) != null )
+    {
+      if ( !continued && ( token.length() > 1 ) && ( token.charAt( 0 ) == '<' ) )
+      {
+        final char c = token.charAt( 1 );
+        if ( ( c == '/' ) || isNameStart( c ) )
+        {
+          return token;
+        }
+      }
+      continued = this.tokenizer.isPartial();
+    }
+    return null;
+  }
+}
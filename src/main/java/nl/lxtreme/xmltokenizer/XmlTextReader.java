@@ -0,0 +1,116 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer;
+
+
+import java.io.*;
+
+import nl.lxtreme.xmltokenizer.impl.*;
+
+
+/**
+ * Provides a reader for the text of a text or CDATA section, that pulls the
+ * chunks of the section from a {@link XmlTokenizer} as they are read.
+ * <p>
+ * Only a single chunk is held at any time, so arbitrarily large sections can be
+ * read with bounded memory, provided the
+ * {@link XmlScanner#setChunkSize(int) chunk size} of the scanner is set.
+ * </p>
+ *
+ * @see XmlTokenizer#openTextReader(IToken)
+ */
+public class XmlTextReader extends Reader
+{
+  // VARIABLES
+
+  private final XmlTokenizer tokenizer;
+  /** the text of the current chunk. */
+  private String             chunk;
+  private int                position;
+  /** whether the current chunk is followed by more chunks. */
+  private boolean            partial;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new XmlTextReader.
+   *
+   * @param aTokenizer
+   *          the tokenizer to pull the remaining chunks from;
+   * @param aChunk
+   *          the text of the first chunk;
+   * @param aPartial
+   *          whether the first chunk is followed by more chunks.
+   */
+  XmlTextReader( final XmlTokenizer aTokenizer, final String aChunk, final boolean aPartial )
+  {
+    this.tokenizer = aTokenizer;
+    this.chunk = ( aChunk == null ) ? "" : aChunk;
+    this.partial = aPartial;
+  }
+
+  // METHODS
+
+  /**
+   * Closes this reader, skipping all unread chunks of the section, such that
+   * the tokenizer is positioned after the section.
+   *
+   * @throws IOException
+   *           in case of I/O problems.
+   */
+  @Override
+  public void close() throws IOException
+  {
+    while ( this.partial )
+    {
+      // Skip the chunk without creating a token for it...
+      this.partial = ( this.tokenizer.nextTokenView() != null ) && this.tokenizer.isPartial();
+    }
+    this.chunk = "";
+    this.position = 0;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int read( final char[] aBuffer, final int aOffset, final int aLength ) throws IOException
+  {
+    if ( ( aOffset < 0 ) || ( aLength < 0 ) || ( aLength > ( aBuffer.length - aOffset ) ) )
+    {
+      throw new IndexOutOfBoundsException();
+    }
+    if ( aLength == 0 )
+    {
+      return 0;
+    }
+
+    while ( this.position >= this.chunk.length() )
+    {
+      if ( !this.partial )
+      {
+        return -1;
+      }
+      nextChunk();
+    }
+
+    final int count = Math.min( aLength, this.chunk.length() - this.position );
+    this.chunk.getChars( this.position, this.position + count, aBuffer, aOffset );
+    this.position += count;
+    return count;
+  }
+
+  /**
+   * Pulls the next chunk of the section from our tokenizer.
+   */
+  private void nextChunk() throws IOException
+  {
+    final IToken token = this.tokenizer.nextToken();
+    this.chunk = ( token instanceof TextToken ) ? ( ( TextToken )token ).getText() : "";
+    this.partial = ( token != null ) && this.tokenizer.isPartial();
+    this.position = 0;
+  }
+}
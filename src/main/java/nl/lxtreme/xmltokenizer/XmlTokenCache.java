@@ -0,0 +1,198 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer;
+
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.zip.*;
+
+
+/**
+ * Caches the tokens of XML files on disk in the format of
+ * {@link XmlTokenWriter}, such that files that did not change since they were
+ * last tokenized can be replayed by a {@link XmlTokenReader} without scanning
+ * their text again.
+ * <p>
+ * Each cached file is keyed by its absolute path, size and modification time,
+ * which are recorded in the header of its cache file. If any of them differ
+ * from the current file, the file is tokenized again and its cache file is
+ * replaced. Cache files are written to a temporary file first, and moved into
+ * place once complete, so concurrent users of the same cache directory never
+ * see partial cache files. A corrupt cache file is reported by
+ * {@link XmlTokenReader} once its last token is read.
+ * </p>
+ */
+public class XmlTokenCache
+{
+  // CONSTANTS
+
+  /** The magic number identifying a cache file, "XTKC". */
+  private static final int    MAGIC     = 0x58544b43;
+  private static final String EXTENSION = ".xtok";
+
+  // VARIABLES
+
+  private final Path directory;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new XmlTokenCache.
+   *
+   * @param aDirectory
+   *          the directory to store the cache files in, cannot be
+   *          <code>null</code>. It is created if it does not exist.
+   * @throws IllegalArgumentException
+   *           in case the given directory was <code>null</code>.
+   */
+  public XmlTokenCache( final Path aDirectory ) throws IllegalArgumentException
+  {
+    if ( aDirectory == null )
+    {
+      throw new IllegalArgumentException( "Directory cannot be null!" );
+    }
+    this.directory = aDirectory;
+  }
+
+  // METHODS
+
+  /**
+   * Returns the path of the cache file for the file denoted by the given
+   * (absolute) path.
+   *
+   * @param aPath
+   *          the absolute path of the file to cache.
+   * @return the path of its cache file, never <code>null</code>.
+   */
+  Path getCacheFile( final Path aPath )
+  {
+    final CRC32 hash = new CRC32();
+    hash.update( aPath.toString().getBytes( XmlTokenWriter.UTF_8 ) );
+    return this.directory.resolve( aPath.getFileName() + "-" + Long.toHexString( hash.getValue() ) + EXTENSION );
+  }
+
+  /**
+   * Opens the tokens of the file denoted by the given path, tokenizing the file
+   * and updating its cache file only if it changed since it was last cached.
+   *
+   * @param aPath
+   *          the path of the XML file to open, cannot be <code>null</code>.
+   * @return a reader for the tokens of the file, never <code>null</code>. The
+   *         caller is responsible for closing it.
+   * @throws IllegalArgumentException
+   *           in case the given path was <code>null</code>.
+   * @throws IOException
+   *           in case of I/O problems reading the file or accessing the
+   *           cache.
+   */
+  public XmlTokenReader open( final Path aPath ) throws IllegalArgumentException, IOException
+  {
+    if ( aPath == null )
+    {
+      throw new IllegalArgumentException( "Path cannot be null!" );
+    }
+
+    final Path path = aPath.toAbsolutePath();
+    final String key = path.toString();
+    final long size = Files.size( path );
+    final long modified = Files.getLastModifiedTime( path ).toMillis();
+    final Path cacheFile = getCacheFile( path );
+
+    XmlTokenReader reader = openCacheFile( cacheFile, key, size, modified );
+    if ( reader == null )
+    {
+      writeCacheFile( path, cacheFile, key, size, modified );
+      reader = openCacheFile( cacheFile, key, size, modified );
+      if ( reader == null )
+      {
+        throw new IOException( "Cache file changed concurrently: " + cacheFile );
+      }
+    }
+    return reader;
+  }
+
+  /**
+   * Opens the given cache file, if it exists and matches the given key.
+   *
+   * @return a reader positioned after the header of the cache file, or
+   *         <code>null</code> if the cache file cannot be used.
+   */
+  private XmlTokenReader openCacheFile( final Path aCacheFile, final String aKey, final long aSize,
+      final long aModified ) throws IOException
+  {
+    final InputStream in;
+    try
+    {
+      in = Files.newInputStream( aCacheFile );
+    }
+    catch ( NoSuchFileException exception )
+    {
+      return null;
+    }
+
+    try
+    {
+      // The header is read unbuffered, so the reader can take over the stream...
+      final DataInputStream header = new DataInputStream( in );
+      if ( ( header.readInt() == MAGIC ) && aKey.equals( header.readUTF() ) && ( header.readLong() == aSize )
+          && ( header.readLong() == aModified ) )
+      {
+        return new XmlTokenReader( in );
+      }
+    }
+    catch ( IOException exception )
+    {
+      // Truncated or in an older format; treat as stale...
+    }
+    in.close();
+    return null;
+  }
+
+  /**
+   * Tokenizes the given file into the given cache file.
+   */
+  private void writeCacheFile( final Path aPath, final Path aCacheFile, final String aKey, final long aSize,
+      final long aModified ) throws IOException
+  {
+    Files.createDirectories( this.directory );
+
+    final Path temp = Files.createTempFile( this.directory, aPath.getFileName().toString(), ".tmp" );
+    try
+    {
+      final OutputStream out = Files.newOutputStream( temp );
+      try
+      {
+        final DataOutputStream header = new DataOutputStream( out );
+        header.writeInt( MAGIC );
+        header.writeUTF( aKey );
+        header.writeLong( aSize );
+        header.writeLong( aModified );
+        header.flush();
+
+        final XmlScanner scanner = XmlScanner.open( aPath );
+        try
+        {
+          new XmlTokenWriter( out ).writeAll( new XmlTokenizer( scanner ) );
+        }
+        finally
+        {
+          scanner.close();
+        }
+      }
+      finally
+      {
+        out.close();
+      }
+
+      Files.move( temp, aCacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+    }
+    finally
+    {
+      Files.deleteIfExists( temp );
+    }
+  }
+}
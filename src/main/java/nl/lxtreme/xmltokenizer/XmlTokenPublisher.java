@@ -0,0 +1,315 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer;
+
+
+import java.io.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+
+/**
+ * Publishes the tokens of a {@link XmlTokenizer} to a single
+ * {@link Flow.Subscriber}, honoring its demand.
+ * <p>
+ * The (blocking) reads of the tokenizer are done on a given executor, which can
+ * for example be a thread pool or an executor using virtual threads. Each time
+ * the executor runs this publisher, it emits as many tokens as are requested
+ * at that time, up to the batch size, after which it yields the executor and
+ * continues in a new task. Tokens are handed to the subscriber directly, so
+ * they are not copied or queued.
+ * </p>
+ * <p>
+ * As a tokenizer can be consumed only once, only a single subscriber is
+ * allowed. Any further subscriber is immediately signalled an
+ * {@link IllegalStateException}.
+ * </p>
+ */
+public class XmlTokenPublisher implements Flow.Publisher<IToken>
+{
+  // INNER TYPES
+
+  /**
+   * Emits the tokens to a subscriber. At most one task of a subscription is
+   * running at any time, as guaranteed by its counter of pending signals.
+   */
+  final class TokenSubscription implements Flow.Subscription, Runnable
+  {
+    // VARIABLES
+
+    private final Flow.Subscriber<? super IToken> subscriber;
+    private final AtomicLong                      demand;
+    /** the number of signals not yet handled by a running task. */
+    private final AtomicInteger                   pending;
+
+    private volatile Throwable                    failure;
+    private volatile boolean                      done;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new TokenSubscription.
+     *
+     * @param aSubscriber
+     *          the subscriber to emit the tokens to.
+     */
+    TokenSubscription( final Flow.Subscriber<? super IToken> aSubscriber )
+    {
+      this.subscriber = aSubscriber;
+      this.demand = new AtomicLong();
+      this.pending = new AtomicInteger();
+    }
+
+    // METHODS
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void cancel()
+    {
+      this.done = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void request( final long aCount )
+    {
+      if ( this.done )
+      {
+        return;
+      }
+      if ( aCount <= 0 )
+      {
+        this.failure = new IllegalArgumentException( "Count should be positive!" );
+      }
+      else
+      {
+        long current;
+        do
+        {
+          current = this.demand.get();
+        }
+        while ( !this.demand.compareAndSet( current, ( ( current + aCount ) < 0 ) ? Long.MAX_VALUE : current + aCount ) );
+      }
+      schedule();
+    }
+
+    /**
+     * Emits the requested tokens.
+     */
+    @Override
+    public void run()
+    {
+      final XmlTokenizer tokenizer = XmlTokenPublisher.this.tokenizer;
+      final int batchSize = XmlTokenPublisher.this.batchSize;
+
+      int missed = this.pending.get();
+      int emitted = 0;
+      for ( ;; )
+      {
+        if ( this.done )
+        {
+          return;
+        }
+        if ( this.failure != null )
+        {
+          terminate( this.failure );
+          return;
+        }
+
+        // Only touch the demand once per batch...
+        final long requested = Math.min( this.demand.get(), batchSize - emitted );
+        long count = 0;
+        while ( ( count < requested ) && !this.done )
+        {
+          final IToken token;
+          try
+          {
+            token = tokenizer.nextToken();
+          }
+          catch ( IOException exception )
+          {
+            terminate( exception );
+            return;
+          }
+          catch ( RuntimeException exception )
+          {
+            terminate( exception );
+            return;
+          }
+
+          if ( token == null )
+          {
+            terminate( null );
+            return;
+          }
+
+          this.subscriber.onNext( token );
+          count++;
+        }
+        emitted += count;
+
+        final long remaining = ( this.demand.get() == Long.MAX_VALUE ) ? Long.MAX_VALUE : this.demand
+            .addAndGet( -count );
+        if ( ( emitted >= batchSize ) && ( remaining > 0 ) )
+        {
+          // Yield the executor; the pending signals are handled by the next
+          // task...
+          execute();
+          return;
+        }
+
+        missed = this.pending.addAndGet( -missed );
+        if ( missed == 0 )
+        {
+          return;
+        }
+      }
+    }
+
+    /**
+     * Hands this subscription to the executor.
+     */
+    void execute()
+    {
+      try
+      {
+        XmlTokenPublisher.this.executor.execute( this );
+      }
+      catch ( RejectedExecutionException exception )
+      {
+        terminate( exception );
+      }
+    }
+
+    /**
+     * Schedules a task to handle a signal, unless one is already running.
+     */
+    void schedule()
+    {
+      if ( this.pending.getAndIncrement() == 0 )
+      {
+        execute();
+      }
+    }
+
+    /**
+     * Signals the completion of the tokens, or the given failure, to the
+     * subscriber.
+     *
+     * @param aFailure
+     *          the failure to signal, or <code>null</code> to signal the
+     *          completion.
+     */
+    void terminate( final Throwable aFailure )
+    {
+      if ( this.done )
+      {
+        return;
+      }
+      this.done = true;
+      if ( aFailure != null )
+      {
+        this.subscriber.onError( aFailure );
+      }
+      else
+      {
+        this.subscriber.onComplete();
+      }
+    }
+  }
+
+  // CONSTANTS
+
+  /** The default maximum number of tokens emitted per task. */
+  public static final int   DEFAULT_BATCH_SIZE = 256;
+
+  // VARIABLES
+
+  private final XmlTokenizer  tokenizer;
+  private final Executor      executor;
+  private final AtomicBoolean subscribed;
+
+  private volatile int        batchSize;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new XmlTokenPublisher.
+   *
+   * @param aTokenizer
+   *          the tokenizer to obtain the tokens from, cannot be
+   *          <code>null</code>;
+   * @param aExecutor
+   *          the executor to read the tokens on, cannot be <code>null</code>.
+   *          As reading the tokens blocks on I/O, this executor should not be
+   *          {@link ForkJoinPool#commonPool()}.
+   * @throws IllegalArgumentException
+   *           in case one of the given arguments was <code>null</code>.
+   */
+  public XmlTokenPublisher( final XmlTokenizer aTokenizer, final Executor aExecutor ) throws IllegalArgumentException
+  {
+    if ( aTokenizer == null )
+    {
+      throw new IllegalArgumentException( "Tokenizer cannot be null!" );
+    }
+    if ( aExecutor == null )
+    {
+      throw new IllegalArgumentException( "Executor cannot be null!" );
+    }
+
+    this.tokenizer = aTokenizer;
+    this.executor = aExecutor;
+    this.subscribed = new AtomicBoolean();
+    this.batchSize = DEFAULT_BATCH_SIZE;
+  }
+
+  // METHODS
+
+  /**
+   * Sets the maximum number of tokens that are emitted by a single task on the
+   * executor. Larger batches cause less overhead, smaller batches let other
+   * tasks on the same executor make progress sooner.
+   *
+   * @param aBatchSize
+   *          the batch size, &gt; 0.
+   * @throws IllegalArgumentException
+   *           in case the given batch size was not positive.
+   */
+  public void setBatchSize( final int aBatchSize ) throws IllegalArgumentException
+  {
+    if ( aBatchSize <= 0 )
+    {
+      throw new IllegalArgumentException( "Batch size should be positive!" );
+    }
+    this.batchSize = aBatchSize;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void subscribe( final Flow.Subscriber<? super IToken> aSubscriber )
+  {
+    if ( aSubscriber == null )
+    {
+      throw new NullPointerException( "Subscriber cannot be null!" );
+    }
+
+    final TokenSubscription subscription = new TokenSubscription( aSubscriber );
+    if ( !this.subscribed.compareAndSet( false, true ) )
+    {
+      subscription.done = true;
+      aSubscriber.onSubscribe( subscription );
+      aSubscriber.onError( new IllegalStateException( "Publisher already has a subscriber!" ) );
+      return;
+    }
+    aSubscriber.onSubscribe( subscription );
+  }
+}
@@ -0,0 +1,294 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer;
+
+
+import static nl.lxtreme.xmltokenizer.XmlTokenWriter.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+import nl.lxtreme.xmltokenizer.impl.*;
+
+
+/**
+ * Reads tokens written by {@link XmlTokenWriter}, replaying them as
+ * {@link IToken}s in the same way as {@link XmlTokenizer} returns them.
+ * <p>
+ * As no text needs to be scanned or classified, and each distinct name is only
+ * decoded once, reading tokens this way is much faster than tokenizing the
+ * original text. The checksum of the data is verified once the last token is
+ * read.
+ * </p>
+ */
+public class XmlTokenReader implements Closeable
+{
+  // CONSTANTS
+
+  private static final int BUFFER_SIZE = 8192;
+
+  // VARIABLES
+
+  private final InputStream in;
+  private final CRC32       checksum;
+  /** the names read so far, in order of appearance. */
+  private String[]          names;
+  private int               nameCount;
+
+  private byte[]            buffer;
+  private int               position;
+  private int               limit;
+  /** the position up to which the buffer is added to the checksum. */
+  private int               checked;
+  private boolean           finished;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new XmlTokenReader, reading the header of the format
+   * immediately.
+   *
+   * @param aStream
+   *          the stream to read the tokens from, cannot be <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case the given stream was <code>null</code>.
+   * @throws IOException
+   *           in case of I/O problems, or if the given stream does not contain
+   *           data in the supported format.
+   */
+  public XmlTokenReader( final InputStream aStream ) throws IllegalArgumentException, IOException
+  {
+    if ( aStream == null )
+    {
+      throw new IllegalArgumentException( "Stream cannot be null!" );
+    }
+
+    this.in = aStream;
+    this.checksum = new CRC32();
+    this.names = new String[64];
+    this.buffer = new byte[BUFFER_SIZE];
+
+    if ( ( readInt() != MAGIC ) || ( readByte() != VERSION ) )
+    {
+      throw new IOException( "Unsupported token format!" );
+    }
+  }
+
+  // METHODS
+
+  /**
+   * Closes the underlying stream.
+   *
+   * @throws IOException
+   *           in case of I/O problems.
+   */
+  public void close() throws IOException
+  {
+    this.in.close();
+  }
+
+  /**
+   * Returns the next token.
+   *
+   * @return the next token, or <code>null</code> in case no remaining tokens
+   *         are found.
+   * @throws IOException
+   *           in case of I/O problems, or if the data is corrupt.
+   */
+  public IToken nextToken() throws IOException
+  {
+    if ( this.finished )
+    {
+      return null;
+    }
+
+    final int type = readByte();
+    switch ( type )
+    {
+      case END:
+        verifyChecksum();
+        this.finished = true;
+        return null;
+
+      case TEXT:
+        return new TextToken( readString() );
+
+      case CDATA:
+        return new CDataToken( readString() );
+
+      case COMMENT:
+        return new CommentToken( readString() );
+
+      case DOCTYPE:
+        final String rootElementName = readString();
+        return new DocTypeToken( rootElementName, readString() );
+
+      case PI:
+        final ProcessingInstructionToken pi = new ProcessingInstructionToken( readName() );
+        readAttributes( pi );
+        return pi;
+
+      case START_TAG:
+      case END_TAG:
+      case EMPTY_TAG:
+        final ElementToken element = new ElementToken( readName(), type == END_TAG, type == EMPTY_TAG );
+        readAttributes( element );
+        return element;
+
+      default:
+        throw new IOException( "Corrupt token data: unknown record type " + type + "!" );
+    }
+  }
+
+  /**
+   * Ensures the given number of bytes is available in our buffer, reading more
+   * data if needed.
+   */
+  private void ensureAvailable( final int aCount ) throws IOException
+  {
+    if ( ( this.limit - this.position ) >= aCount )
+    {
+      return;
+    }
+
+    // Only the consumed bytes are discarded, so account for them now...
+    this.checksum.update( this.buffer, this.checked, this.position - this.checked );
+
+    final int remaining = this.limit - this.position;
+    if ( aCount > this.buffer.length )
+    {
+      this.buffer = Arrays.copyOfRange( this.buffer, this.position, Math.max( aCount, this.buffer.length * 2 ) );
+    }
+    else
+    {
+      System.arraycopy( this.buffer, this.position, this.buffer, 0, remaining );
+    }
+    this.position = this.checked = 0;
+    this.limit = remaining;
+
+    while ( this.limit < aCount )
+    {
+      final int read = this.in.read( this.buffer, this.limit, this.buffer.length - this.limit );
+      if ( read < 0 )
+      {
+        throw new EOFException( "Corrupt token data: unexpected end of data!" );
+      }
+      this.limit += read;
+    }
+  }
+
+  /**
+   * Reads a table of attributes, adding them to the given token.
+   */
+  private void readAttributes( final BaseToken aToken ) throws IOException
+  {
+    final int count = readVarInt();
+    if ( count == 0 )
+    {
+      return;
+    }
+    if ( count < 0 )
+    {
+      throw new IOException( "Corrupt token data: invalid attribute count!" );
+    }
+
+    final IAttribute[] attributes = new IAttribute[count];
+    for ( int i = 0; i < count; i++ )
+    {
+      final String name = readName();
+      attributes[i] = new Attribute( name, readString() );
+    }
+    aToken.addAttribute( attributes );
+  }
+
+  private int readByte() throws IOException
+  {
+    ensureAvailable( 1 );
+    return this.buffer[this.position++] & 0xFF;
+  }
+
+  private int readInt() throws IOException
+  {
+    ensureAvailable( 4 );
+    final byte[] buf = this.buffer;
+    final int pos = this.position;
+    this.position += 4;
+    return ( ( buf[pos] & 0xFF ) << 24 ) | ( ( buf[pos + 1] & 0xFF ) << 16 ) | ( ( buf[pos + 2] & 0xFF ) << 8 )
+        | ( buf[pos + 3] & 0xFF );
+  }
+
+  /**
+   * Reads a name, which is either a reference to the dictionary or a new name.
+   */
+  private String readName() throws IOException
+  {
+    final int index = readVarInt();
+    if ( index > 0 )
+    {
+      if ( index > this.nameCount )
+      {
+        throw new IOException( "Corrupt token data: unknown name " + index + "!" );
+      }
+      return this.names[index - 1];
+    }
+
+    final String name = readString();
+    if ( name != null )
+    {
+      if ( this.nameCount == this.names.length )
+      {
+        this.names = Arrays.copyOf( this.names, this.nameCount * 2 );
+      }
+      this.names[this.nameCount++] = name;
+    }
+    return name;
+  }
+
+  private String readString() throws IOException
+  {
+    final int length = readVarInt() - 1;
+    if ( length < 0 )
+    {
+      return null;
+    }
+    ensureAvailable( length );
+    final String result = new String( this.buffer, this.position, length, UTF_8 );
+    this.position += length;
+    return result;
+  }
+
+  private int readVarInt() throws IOException
+  {
+    int result = 0;
+    for ( int shift = 0; shift < 32; shift += 7 )
+    {
+      final int b = readByte();
+      result |= ( b & 0x7F ) << shift;
+      if ( ( b & 0x80 ) == 0 )
+      {
+        return result;
+      }
+    }
+    throw new IOException( "Corrupt token data: invalid number!" );
+  }
+
+  /**
+   * Verifies the checksum following the end marker.
+   */
+  private void verifyChecksum() throws IOException
+  {
+    this.checksum.update( this.buffer, this.checked, this.position - this.checked );
+    this.checked = this.position;
+
+    final int expected = ( int )this.checksum.getValue();
+    final int actual = readInt();
+    if ( actual != expected )
+    {
+      throw new IOException( "Corrupt token data: checksum mismatch!" );
+    }
+  }
+}
@@ -0,0 +1,288 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer;
+
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+import nl.lxtreme.xmltokenizer.impl.*;
+
+
+/**
+ * Provides a {@link Spliterator} over the tokens of a document, allowing them
+ * to be processed with a (parallel) {@link Stream}.
+ * <p>
+ * For text and (memory mapped) files, the document can be split into chunks
+ * that are tokenized independently. A chunk is only split at the start of a
+ * token, which is found by scanning the chunk from its first token onwards,
+ * skipping CDATA sections as a whole, up to the first '&lt;' after its middle
+ * that is not followed by whitespace (see
+ * {@link SplittableInput#findTokenStart(long, long, long)}). As the scanner
+ * always starts a new token at such a character, the tokens of the chunks are
+ * exactly those of the whole document. The order of the tokens is retained,
+ * also in parallel streams.
+ * </p>
+ * <p>
+ * Each chunk interns its element names in a symbol table of its own, so
+ * chunks tokenized in parallel do not contend for a shared table; equal names
+ * are only the same instance within a chunk. Attribute names are interned in a
+ * table shared by all chunks, as attributes are parsed lazily, possibly on
+ * other threads.
+ * </p>
+ * <p>
+ * Finding a split point costs a scan over the first half of the chunk, so
+ * splitting a document into <i>n</i> chunks scans it about log<sub>2</sub>
+ * <i>n</i> / 2 times, which is cheap compared to tokenizing it.
+ * </p>
+ */
+public class XmlTokenSpliterator implements Spliterator<IToken>
+{
+  // CONSTANTS
+
+  /** The minimum size of a chunk that is split, 64K characters or bytes. */
+  public static final int       MIN_SPLIT_SIZE = 64 * 1024;
+
+  // VARIABLES
+
+  /** the input to split, can be null if not splittable. */
+  private final SplittableInput input;
+  /** shared by the attribute parsers of all chunks. */
+  private final SymbolTable     symbols;
+  /** the offset of the first token of this chunk. */
+  private long                  from;
+  /** the offset of the first token <em>not</em> part of this chunk. */
+  private final long            to;
+
+  private XmlScanner            scanner;
+  private XmlTokenizer          tokenizer;
+  private boolean               done;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new XmlTokenSpliterator for the given text.
+   *
+   * @param aText
+   *          the text to tokenize, cannot be <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case the given text was <code>null</code>.
+   */
+  public XmlTokenSpliterator( final CharSequence aText ) throws IllegalArgumentException
+  {
+    this( new CharSequenceInput( aText ) );
+  }
+
+  /**
+   * Creates a new XmlTokenSpliterator for the given input.
+   *
+   * @param aInput
+   *          the input to tokenize, cannot be <code>null</code>.
+   */
+  XmlTokenSpliterator( final SplittableInput aInput )
+  {
+    this( aInput, SymbolTable.createShared( SymbolTable.DEFAULT_MAX_SIZE ), aInput.getStart(), aInput.getEnd() );
+  }
+
+  /**
+   * Creates a new, non-splittable, XmlTokenSpliterator for the remaining
+   * tokens of the given tokenizer.
+   *
+   * @param aTokenizer
+   *          the tokenizer to obtain the tokens from, cannot be
+   *          <code>null</code>.
+   */
+  XmlTokenSpliterator( final XmlTokenizer aTokenizer )
+  {
+    this( null, null, 0L, Long.MAX_VALUE );
+
+    this.tokenizer = aTokenizer;
+  }
+
+  /**
+   * Creates a new XmlTokenSpliterator for a chunk of the given input.
+   */
+  private XmlTokenSpliterator( final SplittableInput aInput, final SymbolTable aSymbols, final long aFrom,
+      final long aTo )
+  {
+    this.input = aInput;
+    this.symbols = aSymbols;
+    this.from = aFrom;
+    this.to = aTo;
+  }
+
+  // METHODS
+
+  /**
+   * Creates a stream of the tokens of the given text.
+   *
+   * @param aText
+   *          the text to tokenize, cannot be <code>null</code>;
+   * @param aParallel
+   *          <code>true</code> to create a parallel stream, <code>false</code>
+   *          to create a sequential stream.
+   * @return a new stream, never <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case the given text was <code>null</code>.
+   */
+  public static Stream<IToken> stream( final CharSequence aText, final boolean aParallel )
+      throws IllegalArgumentException
+  {
+    return StreamSupport.stream( new XmlTokenSpliterator( aText ), aParallel );
+  }
+
+  /**
+   * Creates a stream of the tokens of the file denoted by the given path. The
+   * file is closed when the stream is closed, so the stream should be used in
+   * a try-with-resources statement.
+   * <p>
+   * The file is memory mapped, see {@link XmlScanner#open(Path)}. Files in an
+   * encoding that cannot be scanned byte-wise (such as UTF-16) are tokenized
+   * sequentially.
+   * </p>
+   *
+   * @param aPath
+   *          the path of the file to tokenize, cannot be <code>null</code>;
+   * @param aParallel
+   *          <code>true</code> to create a parallel stream, <code>false</code>
+   *          to create a sequential stream.
+   * @return a new stream, never <code>null</code>.
+   * @throws IOException
+   *           in case of I/O problems opening the file.
+   */
+  public static Stream<IToken> stream( final Path aPath, final boolean aParallel ) throws IOException
+  {
+    final MappedFileInput input = MappedFileInput.open( aPath );
+    final Closeable resource;
+    final XmlTokenSpliterator spliterator;
+    if ( input != null )
+    {
+      resource = input;
+      spliterator = new XmlTokenSpliterator( input );
+    }
+    else
+    {
+      final XmlScanner scanner = XmlScanner.open( aPath );
+      resource = scanner;
+      spliterator = new XmlTokenSpliterator( new XmlTokenizer( scanner ) );
+    }
+
+    return StreamSupport.stream( spliterator, aParallel ).onClose( new Runnable()
+    {
+      public void run()
+      {
+        try
+        {
+          resource.close();
+        }
+        catch ( IOException exception )
+        {
+          throw new UncheckedIOException( exception );
+        }
+      }
+    } );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int characteristics()
+  {
+    return ORDERED | NONNULL;
+  }
+
+  /**
+   * Returns the number of characters (or bytes) that remain in this chunk, as
+   * an estimate of the number of remaining tokens.
+   */
+  @Override
+  public long estimateSize()
+  {
+    if ( ( this.input == null ) || ( this.tokenizer != null ) )
+    {
+      return this.done ? 0L : Long.MAX_VALUE;
+    }
+    return this.to - this.from;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean tryAdvance( final Consumer<? super IToken> aAction )
+  {
+    if ( aAction == null )
+    {
+      throw new NullPointerException( "Action cannot be null!" );
+    }
+    if ( this.done )
+    {
+      return false;
+    }
+
+    try
+    {
+      if ( this.tokenizer == null )
+      {
+        this.scanner = new XmlScanner( this.input.createBackend( this.from ) );
+        this.tokenizer = new XmlTokenizer( this.scanner );
+        this.tokenizer.setAttributeParser( new XmlAttributeParser( this.symbols ) );
+      }
+
+      final CharSequence token = this.tokenizer.nextTokenView();
+      if ( ( token == null ) || ( ( this.scanner != null ) && ( this.scanner.getTokenOffset() >= this.to ) ) )
+      {
+        // The next token (if any) is part of the next chunk...
+        this.done = true;
+        return false;
+      }
+
+      aAction.accept( this.tokenizer.createToken( token ) );
+      return true;
+    }
+    catch ( IOException exception )
+    {
+      throw new UncheckedIOException( exception );
+    }
+  }
+
+  /**
+   * Splits off the first half of this chunk, at the first token start after
+   * its middle. Chunks are only split before they are traversed, and are not
+   * split in case no token starts in their second half, for example because
+   * it is part of a single CDATA section.
+   */
+  @Override
+  public Spliterator<IToken> trySplit()
+  {
+    if ( ( this.input == null ) || ( this.tokenizer != null ) || ( ( this.to - this.from ) < ( 2L * MIN_SPLIT_SIZE ) ) )
+    {
+      return null;
+    }
+
+    final long point;
+    try
+    {
+      point = this.input.findTokenStart( this.from, this.from + ( ( this.to - this.from ) / 2 ), this.to );
+    }
+    catch ( IOException exception )
+    {
+      throw new UncheckedIOException( exception );
+    }
+    if ( point <= this.from )
+    {
+      return null;
+    }
+
+    final XmlTokenSpliterator prefix = new XmlTokenSpliterator( this.input, this.symbols, this.from, point );
+    this.from = point;
+    return prefix;
+  }
+}
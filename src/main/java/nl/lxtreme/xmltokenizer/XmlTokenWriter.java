@@ -0,0 +1,354 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer;
+
+
+import java.io.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.zip.*;
+
+import nl.lxtreme.xmltokenizer.impl.*;
+
+
+/**
+ * Writes tokens in a compact binary format, which can be read back by
+ * {@link XmlTokenReader} much faster than the original text can be tokenized.
+ * <p>
+ * The format consists of a header (a magic number and a version), followed by
+ * a record per token, and an end marker followed by a CRC-32 checksum of all
+ * preceding bytes. Each record starts with a byte denoting its type, followed
+ * by its contents. All numbers are written as variable-length integers (7 bits
+ * per byte, least significant first), strings as their length plus one (zero
+ * denoting <code>null</code>) followed by their UTF-8 encoding.
+ * </p>
+ * <p>
+ * Names of elements, attributes and processing instructions are written to a
+ * dictionary the first time they are used, and referred to by their index in
+ * the dictionary afterwards. Attributes are written as a table of name-value
+ * pairs, preceded by their count. Text and attribute values are written
+ * without decoding their references, which are decoded again (by the default
+ * {@link EntityDecoder}) upon reading them back.
+ * </p>
+ */
+public class XmlTokenWriter implements Closeable, Flushable
+{
+  // CONSTANTS
+
+  /** The magic number identifying the format, "XTOK". */
+  static final int         MAGIC       = 0x58544f4b;
+  /** The version of the format. */
+  static final int         VERSION     = 2;
+
+  /** The record types. */
+  static final int         END         = 0;
+  static final int         TEXT        = 1;
+  static final int         COMMENT     = 2;
+  static final int         DOCTYPE     = 3;
+  static final int         PI          = 4;
+  static final int         START_TAG   = 5;
+  static final int         END_TAG     = 6;
+  static final int         EMPTY_TAG   = 7;
+  static final int         CDATA       = 8;
+
+  static final Charset     UTF_8       = Charset.forName( "UTF-8" );
+
+  private static final int BUFFER_SIZE = 8192;
+
+  // VARIABLES
+
+  private final OutputStream         out;
+  private final CRC32                checksum;
+  /** the indices of all names written so far, plus one. */
+  private final Map<String, Integer> names;
+
+  private byte[]                     buffer;
+  private int                        position;
+  private boolean                    finished;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new XmlTokenWriter, writing the header of the format
+   * immediately.
+   *
+   * @param aStream
+   *          the stream to write the tokens to, cannot be <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case the given stream was <code>null</code>.
+   * @throws IOException
+   *           in case of I/O problems.
+   */
+  public XmlTokenWriter( final OutputStream aStream ) throws IllegalArgumentException, IOException
+  {
+    if ( aStream == null )
+    {
+      throw new IllegalArgumentException( "Stream cannot be null!" );
+    }
+
+    this.out = aStream;
+    this.checksum = new CRC32();
+    this.names = new HashMap<String, Integer>();
+    this.buffer = new byte[BUFFER_SIZE];
+
+    writeInt( MAGIC );
+    writeByte( VERSION );
+  }
+
+  // METHODS
+
+  /**
+   * Finishes the format, if not already done, and closes the underlying
+   * stream.
+   *
+   * @throws IOException
+   *           in case of I/O problems.
+   */
+  public void close() throws IOException
+  {
+    try
+    {
+      finish();
+    }
+    finally
+    {
+      this.out.close();
+    }
+  }
+
+  /**
+   * Finishes the format by writing the end marker and checksum. No tokens can
+   * be written afterwards.
+   *
+   * @throws IOException
+   *           in case of I/O problems.
+   */
+  public void finish() throws IOException
+  {
+    if ( this.finished )
+    {
+      return;
+    }
+    writeByte( END );
+    drain();
+    // The checksum itself is not part of the checksum...
+    writeInt( ( int )this.checksum.getValue() );
+    flush();
+    this.finished = true;
+  }
+
+  /**
+   * Writes all buffered data to the underlying stream.
+   *
+   * @throws IOException
+   *           in case of I/O problems.
+   */
+  public void flush() throws IOException
+  {
+    drain();
+    this.out.flush();
+  }
+
+  /**
+   * Writes the given token.
+   *
+   * @param aToken
+   *          the token to write, cannot be <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case the given token was <code>null</code>.
+   * @throws IllegalStateException
+   *           in case this writer was already finished.
+   * @throws IOException
+   *           in case of I/O problems.
+   */
+  public void write( final IToken aToken ) throws IllegalArgumentException, IllegalStateException, IOException
+  {
+    if ( aToken == null )
+    {
+      throw new IllegalArgumentException( "Token cannot be null!" );
+    }
+    if ( this.finished )
+    {
+      throw new IllegalStateException( "Writer already finished!" );
+    }
+
+    switch ( aToken.getType() )
+    {
+      case TEXT:
+        writeByte( TEXT );
+        writeString( ( aToken instanceof TextToken ) ? ( ( TextToken )aToken ).getRawText() : null );
+        break;
+
+      case CDATA:
+        writeByte( CDATA );
+        writeString( ( ( TextToken )aToken ).getText() );
+        break;
+
+      case COMMENT:
+        writeByte( COMMENT );
+        writeString( ( aToken instanceof CommentToken ) ? ( ( CommentToken )aToken ).getComment() : null );
+        break;
+
+      case DOCTYPE:
+        final DocTypeToken docType = ( DocTypeToken )aToken;
+        writeByte( DOCTYPE );
+        writeString( docType.getRootElementName() );
+        writeString( docType.getExternalID() );
+        break;
+
+      case PI:
+        writeByte( PI );
+        writeName( aToken.getName() );
+        writeAttributes( aToken.getAttributes() );
+        break;
+
+      default:
+        final ElementToken element = ( ElementToken )aToken;
+        writeByte( element.isEndTag() ? END_TAG : element.isEmptyElement() ? EMPTY_TAG : START_TAG );
+        writeName( element.getName() );
+        writeAttributes( element.getAttributes() );
+        break;
+    }
+  }
+
+  /**
+   * Writes all remaining tokens of the given tokenizer, and finishes the
+   * format.
+   *
+   * @param aTokenizer
+   *          the tokenizer to obtain the tokens from, cannot be
+   *          <code>null</code>.
+   * @return the number of tokens written.
+   * @throws IllegalArgumentException
+   *           in case the given tokenizer was <code>null</code>.
+   * @throws IOException
+   *           in case of I/O problems.
+   */
+  public int writeAll( final XmlTokenizer aTokenizer ) throws IllegalArgumentException, IOException
+  {
+    if ( aTokenizer == null )
+    {
+      throw new IllegalArgumentException( "Tokenizer cannot be null!" );
+    }
+
+    int count = 0;
+    IToken token;
+    while ( ( token = aTokenizer.nextToken() ) != null )
+    {
+      write( token );
+      count++;
+    }
+    finish();
+    return count;
+  }
+
+  /**
+   * Hands all buffered bytes to the underlying stream and the checksum.
+   */
+  private void drain() throws IOException
+  {
+    if ( this.position > 0 )
+    {
+      this.checksum.update( this.buffer, 0, this.position );
+      this.out.write( this.buffer, 0, this.position );
+      this.position = 0;
+    }
+  }
+
+  /**
+   * Ensures the given number of bytes can be written to our buffer.
+   */
+  private void ensureCapacity( final int aCount ) throws IOException
+  {
+    if ( ( this.position + aCount ) > this.buffer.length )
+    {
+      drain();
+      if ( aCount > this.buffer.length )
+      {
+        this.buffer = new byte[Math.max( aCount, this.buffer.length * 2 )];
+      }
+    }
+  }
+
+  /**
+   * Writes the given attributes as a table.
+   */
+  private void writeAttributes( final List<IAttribute> aAttributes ) throws IOException
+  {
+    final int count = aAttributes.size();
+    writeVarInt( count );
+    for ( int i = 0; i < count; i++ )
+    {
+      final IAttribute attribute = aAttributes.get( i );
+      writeName( attribute.getName() );
+      writeString( attribute.getRawValue() );
+    }
+  }
+
+  private void writeByte( final int aValue ) throws IOException
+  {
+    ensureCapacity( 1 );
+    this.buffer[this.position++] = ( byte )aValue;
+  }
+
+  private void writeInt( final int aValue ) throws IOException
+  {
+    ensureCapacity( 4 );
+    this.buffer[this.position++] = ( byte )( aValue >>> 24 );
+    this.buffer[this.position++] = ( byte )( aValue >>> 16 );
+    this.buffer[this.position++] = ( byte )( aValue >>> 8 );
+    this.buffer[this.position++] = ( byte )aValue;
+  }
+
+  /**
+   * Writes the given name as a reference to the dictionary, adding it to the
+   * dictionary first if needed.
+   */
+  private void writeName( final String aName ) throws IOException
+  {
+    final Integer index = ( aName != null ) ? this.names.get( aName ) : null;
+    if ( index != null )
+    {
+      writeVarInt( index.intValue() );
+    }
+    else
+    {
+      // A new name; zero denotes it follows directly...
+      writeVarInt( 0 );
+      writeString( aName );
+      if ( aName != null )
+      {
+        this.names.put( aName, Integer.valueOf( this.names.size() + 1 ) );
+      }
+    }
+  }
+
+  private void writeString( final String aValue ) throws IOException
+  {
+    if ( aValue == null )
+    {
+      writeVarInt( 0 );
+      return;
+    }
+    final byte[] bytes = aValue.getBytes( UTF_8 );
+    writeVarInt( bytes.length + 1 );
+    ensureCapacity( bytes.length );
+    System.arraycopy( bytes, 0, this.buffer, this.position, bytes.length );
+    this.position += bytes.length;
+  }
+
+  private void writeVarInt( final int aValue ) throws IOException
+  {
+    ensureCapacity( 5 );
+    int value = aValue;
+    while ( ( value & ~0x7F ) != 0 )
+    {
+      this.buffer[this.position++] = ( byte )( ( value & 0x7F ) | 0x80 );
+      value >>>= 7;
+    }
+    this.buffer[this.position++] = ( byte )value;
+  }
+}
@@ -7,6 +7,8 @@ package nl.lxtreme.xmltokenizer;
 
 
 import java.io.*;
+import java.util.*;
+import java.util.stream.*;
 
 import nl.lxtreme.xmltokenizer.impl.*;
 
@@ -19,6 +21,19 @@ public class XmlTokenizer
   // VARIABLES
 
   private final XmlScanner scanner;
+  private SymbolTable      symbols;
+  private AttributeParser  attributeParser;
+  /** the decoder for references in text, can be null. */
+  private EntityDecoder    entityDecoder;
+  /** the pool to obtain tokens from, can be null. */
+  private TokenPool        tokenPool;
+  /** the body (name, attributes, text) of the current token. */
+  private int              bodyStart;
+  private int              bodyEnd;
+  /** whether the current token continues a CDATA section. */
+  private boolean          cdataContinued;
+  /** whether the next token continues a CDATA section. */
+  private boolean          cdataPartial;
 
   // CONSTRUCTORS
 
@@ -29,6 +44,9 @@ public class XmlTokenizer
   public XmlTokenizer( final XmlScanner aXmlScanner )
   {
     this.scanner = aXmlScanner;
+    this.symbols = new SymbolTable();
+    this.entityDecoder = EntityDecoder.DEFAULT;
+    this.attributeParser = new XmlAttributeParser( this.symbols, this.entityDecoder );
   }
 
   // METHODS
@@ -43,76 +61,473 @@ public class XmlTokenizer
    */
   public IToken nextToken() throws IOException
   {
-    final String token = this.scanner.nextToken();
+    final CharSequence token = nextTokenView();
     final IToken result = createToken( token );
     return result;
   }
 
   /**
+   * Returns a batch of next XML-tokens at once, storing them in the given
+   * array. This saves the overhead of calling {@link #nextToken()} for each
+   * token separately.
+   * 
+   * @param aTokens
+   *          the array to store the tokens in, cannot be <code>null</code>;
+   * @param aOffset
+   *          the index in the given array to store the first token at;
+   * @param aCount
+   *          the maximum number of tokens to return.
+   * @return the number of tokens stored, which is less than the given count
+   *         only if no more tokens remain.
+   * @throws IllegalArgumentException
+   *           in case the given array was <code>null</code>, or the given
+   *           offset and count do not denote a range in the given array.
+   * @throws IOException
+   *           in case of I/O problems.
+   */
+  public int nextTokens( final IToken[] aTokens, final int aOffset, final int aCount )
+      throws IllegalArgumentException, IOException
+  {
+    if ( aTokens == null )
+    {
+      throw new IllegalArgumentException( "Tokens cannot be null!" );
+    }
+    if ( ( aOffset < 0 ) || ( aCount < 0 ) || ( aCount > ( aTokens.length - aOffset ) ) )
+    {
+      throw new IllegalArgumentException( "Invalid offset or count!" );
+    }
+
+    final int end = aOffset + aCount;
+
+    int i = aOffset;
+    CharSequence token;
+    while ( ( i < end ) && ( ( token = nextTokenView() ) != null ) )
+    {
+      aTokens[i++] = createToken( token );
+    }
+    return i - aOffset;
+  }
+
+  /**
+   * Returns a batch of next XML-tokens at once, adding them to the given list.
+   * This saves the overhead of calling {@link #nextToken()} for each token
+   * separately.
+   * 
+   * @param aTokens
+   *          the list to add the tokens to, cannot be <code>null</code>;
+   * @param aCount
+   *          the maximum number of tokens to return.
+   * @return the number of tokens added, which is less than the given count
+   *         only if no more tokens remain.
+   * @throws IllegalArgumentException
+   *           in case the given list was <code>null</code>, or the given count
+   *           was negative.
+   * @throws IOException
+   *           in case of I/O problems.
+   */
+  public int nextTokens( final List<? super IToken> aTokens, final int aCount )
+      throws IllegalArgumentException, IOException
+  {
+    if ( aTokens == null )
+    {
+      throw new IllegalArgumentException( "Tokens cannot be null!" );
+    }
+    if ( aCount < 0 )
+    {
+      throw new IllegalArgumentException( "Count cannot be negative!" );
+    }
+
+    int count = 0;
+    CharSequence token;
+    while ( ( count < aCount ) && ( ( token = nextTokenView() ) != null ) )
+    {
+      aTokens.add( createToken( token ) );
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * @return the symbol table to obtain names from, never <code>null</code>.
+   */
+  SymbolTable getSymbolTable()
+  {
+    return this.symbols;
+  }
+
+  /**
+   * Returns whether the token returned last is a chunk of a larger text or
+   * CDATA section, which is continued by the next token. This only happens if
+   * the {@link XmlScanner#setChunkSize(int) chunk size} of the scanner is set.
+   * 
+   * @return <code>true</code> if the next token continues the last token,
+   *         <code>false</code> otherwise.
+   * @see #openTextReader(IToken)
+   */
+  public boolean isPartial()
+  {
+    return this.scanner.isPartial();
+  }
+
+  /**
+   * Returns a reader for the entire text of the given text or CDATA token,
+   * which should be the token returned last by this tokenizer.
+   * <p>
+   * If the given token is only the first chunk of a larger section (see
+   * {@link #isPartial()}), the reader pulls the remaining chunks from this
+   * tokenizer while it is read, so the section is never buffered as a whole.
+   * Closing the reader skips any unread chunks. This tokenizer should not be
+   * used otherwise until the reader is either read entirely or closed.
+   * </p>
+   * <p>
+   * References in text are decoded chunk by chunk; as chunks of text do not
+   * end inside a reference (see {@link XmlScanner#setChunkSize(int)}), the
+   * text is decoded as if it were not split up.
+   * </p>
+   * 
    * @param aToken
-   * @return
+   *          the text or CDATA token to read, cannot be <code>null</code>.
+   * @return a reader for the text of the given token and its remaining chunks,
+   *         never <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case the given token was <code>null</code> or not a text or
+   *           CDATA token.
+   */
+  public Reader openTextReader( final IToken aToken ) throws IllegalArgumentException
+  {
+    if ( !( aToken instanceof TextToken ) )
+    {
+      throw new IllegalArgumentException( "Token should be a text or CDATA token!" );
+    }
+    return new XmlTextReader( this, ( ( TextToken )aToken ).getText(), isPartial() );
+  }
+
+  /**
+   * Skips all tokens up to and including the end tag matching the start tag
+   * that was returned last, without creating tokens for them.
+   * 
+   * @return <code>true</code> if the end tag was found, <code>false</code> if
+   *         the end of the input was reached before.
+   * @throws IOException
+   *           in case of I/O problems.
+   * @see XmlScanner#skipElement()
+   */
+  public boolean skipElement() throws IOException
+  {
+    this.cdataPartial = false;
+    return this.scanner.skipElement();
+  }
+
+  /**
+   * Returns a spliterator over the remaining tokens of this tokenizer. As this
+   * tokenizer reads its input sequentially, the spliterator cannot be split;
+   * use {@link XmlTokenSpliterator} to tokenize text or files in parallel.
+   * 
+   * @return a new spliterator, never <code>null</code>. I/O problems are
+   *         reported as {@link UncheckedIOException}.
+   */
+  public Spliterator<IToken> spliterator()
+  {
+    return new XmlTokenSpliterator( this );
+  }
+
+  /**
+   * Returns a sequential stream of the remaining tokens of this tokenizer.
+   * 
+   * @return a new stream, never <code>null</code>. I/O problems are reported
+   *         as {@link UncheckedIOException}.
+   * @see #spliterator()
    */
-  private IToken createToken( final String aToken )
+  public Stream<IToken> stream()
+  {
+    return StreamSupport.stream( spliterator(), false );
+  }
+
+  /**
+   * Returns the text of the next token, without creating a token for it.
+   * 
+   * @return the text of the next token, valid until the next call to this
+   *         tokenizer, or <code>null</code> in case no remaining tokens are
+   *         found.
+   * @throws IOException
+   *           in case of I/O problems.
+   * @see XmlScanner#nextTokenView()
+   */
+  CharSequence nextTokenView() throws IOException
+  {
+    final XmlScanner scanner = this.scanner;
+    final CharSequence token = scanner.nextTokenView();
+    if ( token != null )
+    {
+      // Chunks of a CDATA section can look like anything, so keep track of
+      // them...
+      this.cdataContinued = this.cdataPartial;
+      this.cdataPartial = scanner.isPartial() && ( this.cdataContinued || regionMatches( token, 0, "<![CDATA[" ) );
+    }
+    return token;
+  }
+
+  /**
+   * Sets the parser to use for the attributes of tags and processing
+   * instructions. By default, a {@link XmlAttributeParser} is used; use a
+   * {@link LenientAttributeParser} for documents that do not adhere to the
+   * common XML rules.
+   * 
+   * @param aParser
+   *          the attribute parser to use, cannot be <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case the given parser was <code>null</code>.
+   */
+  public void setAttributeParser( final AttributeParser aParser ) throws IllegalArgumentException
+  {
+    if ( aParser == null )
+    {
+      throw new IllegalArgumentException( "Parser cannot be null!" );
+    }
+    this.attributeParser = aParser;
+  }
+
+  /**
+   * Sets the decoder for the entity and character references in text and
+   * attribute values. By default, only the predefined entities and character
+   * references are decoded; references are decoded lazily, upon the first call
+   * to {@link TextToken#getText()} or {@link IAttribute#getValue()}. If the
+   * attribute parser is a {@link XmlAttributeParser}, it is replaced by one
+   * using the given decoder.
+   * 
+   * @param aDecoder
+   *          the entity decoder to use, can be <code>null</code> to leave all
+   *          text and attribute values as is.
+   */
+  public void setEntityDecoder( final EntityDecoder aDecoder )
+  {
+    this.entityDecoder = aDecoder;
+    if ( this.attributeParser instanceof XmlAttributeParser )
+    {
+      this.attributeParser = new XmlAttributeParser( this.symbols, aDecoder );
+    }
+  }
+
+  /**
+   * Sets the symbol table to obtain the names of elements, attributes and
+   * processing instructions from. By default, each tokenizer uses its own
+   * symbol table, so each distinct name is only allocated once per tokenizer,
+   * and names can be compared by reference.
+   * <p>
+   * A symbol table can be shared by multiple tokenizers. Note that attributes
+   * are parsed lazily, so if tokens are handed over to other threads, or
+   * tokenizers run concurrently, use a {@link SymbolTable#createShared(int)
+   * shared} symbol table. If the attribute parser is a
+   * {@link XmlAttributeParser}, it is replaced by one using the given table.
+   * </p>
+   * 
+   * @param aSymbols
+   *          the symbol table to use, cannot be <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case the given symbol table was <code>null</code>.
+   */
+  public void setSymbolTable( final SymbolTable aSymbols ) throws IllegalArgumentException
+  {
+    if ( aSymbols == null )
+    {
+      throw new IllegalArgumentException( "Symbol table cannot be null!" );
+    }
+    this.symbols = aSymbols;
+    if ( this.attributeParser instanceof XmlAttributeParser )
+    {
+      this.attributeParser = new XmlAttributeParser( aSymbols, this.entityDecoder );
+    }
+  }
+
+  /**
+   * Sets the pool to obtain element, text and comment tokens from. Tokens can
+   * be handed back to the pool with {@link TokenPool#release(IToken)} once they
+   * are no longer used, in which case they are reused for subsequent tokens.
+   * By default, no pool is used and each token is a new object.
+   * 
+   * @param aPool
+   *          the token pool to use, can be <code>null</code> to disable token
+   *          recycling.
+   */
+  public void setTokenPool( final TokenPool aPool )
+  {
+    this.tokenPool = aPool;
+  }
+
+  /**
+   * Creates a token for the given scanned text.
+   * <p>
+   * The token is classified by its first characters, and its name and body are
+   * determined by index arithmetic on the scanned text; only the parts that
+   * are retained by the token are copied.
+   * </p>
+   * 
+   * @param aToken
+   *          the scanned text, can be <code>null</code>.
+   * @return the token, or <code>null</code> if the given text was
+   *         <code>null</code>.
+   */
+  IToken createToken( final CharSequence aToken )
   {
     if ( aToken == null )
     {
       return null;
     }
 
-    if ( aToken.startsWith( "<?" ) )
+    final TokenPool pool = this.tokenPool;
+    final int length = aToken.length();
+    if ( this.cdataContinued )
     {
-      // XML processing instruction...
-      return new ProcessingInstructionToken( stripNameAttributes( aToken, "<?", "?>" ) );
+      // Next chunk of a CDATA section; only its last chunk ends with the
+      // terminator...
+      final int end = !this.cdataPartial && regionMatches( aToken, length - 3, "]]>" ) ? length - 3 : length;
+      return new CDataToken( aToken.subSequence( 0, end ).toString() );
     }
-    else if ( aToken.startsWith( "<!--" ) )
+    if ( ( length == 0 ) || ( aToken.charAt( 0 ) != '<' ) )
     {
-      // Comment...
-      return new CommentToken( strip( aToken, "<!--", "-->" ) );
+      final String text = aToken.toString();
+      return ( pool != null ) ? pool.createText( text, this.entityDecoder ) : new TextToken( text, this.entityDecoder );
     }
-    else if ( aToken.startsWith( "<!" ) )
+
+    switch ( ( length > 1 ) ? aToken.charAt( 1 ) : 0 )
     {
-      // XML doctype...
-      return new DocTypeToken( stripNameAttributes( aToken, "<!DOCTYPE", ">" ) );
+      case '?':
+        // XML processing instruction...
+        strip( aToken, 2, "?>" );
+        return new ProcessingInstructionToken( this.attributeParser, splitName( aToken ) );
+
+      case '!':
+        if ( regionMatches( aToken, 2, "[CDATA[" ) )
+        {
+          // CDATA section; its content is taken literally...
+          final int end = regionMatches( aToken, length - 3, "]]>" ) && ( length >= 12 ) ? length - 3 : length;
+          return new CDataToken( aToken.subSequence( 9, end ).toString() );
+        }
+        if ( regionMatches( aToken, 2, "--" ) )
+        {
+          // Comment...
+          strip( aToken, 4, "-->" );
+          final String comment = aToken.subSequence( this.bodyStart, this.bodyEnd ).toString();
+          return ( pool != null ) ? pool.createComment( comment ) : new CommentToken( comment );
+        }
+        // XML doctype...
+        strip( aToken, regionMatches( aToken, 2, "DOCTYPE" ) ? 9 : 0, ">" );
+        return new DocTypeToken( splitName( aToken ) );
+
+      default:
+        // Element; it parses its attributes directly in the scanned text...
+        strip( aToken, 1, ">" );
+        if ( pool != null )
+        {
+          return pool.createElement( aToken, this.bodyStart, this.bodyEnd, this.attributeParser, this.symbols );
+        }
+        return new ElementToken( aToken, this.bodyStart, this.bodyEnd, this.attributeParser, this.symbols );
     }
-    else if ( aToken.startsWith( "<" ) )
+  }
+
+  /**
+   * Returns whether the given text contains the given string at the given
+   * offset.
+   * 
+   * @param aText
+   * @param aOffset
+   * @param aString
+   * @return
+   */
+  private static boolean regionMatches( final CharSequence aText, final int aOffset, final String aString )
+  {
+    final int length = aString.length();
+    if ( ( aOffset < 0 ) || ( ( aOffset + length ) > aText.length() ) )
     {
-      return new ElementToken( strip( aToken, "<", ">" ) );
+      return false;
     }
-    else
+    for ( int i = 0; i < length; i++ )
     {
-      return new TextToken( aToken );
+      if ( aText.charAt( aOffset + i ) != aString.charAt( i ) )
+      {
+        return false;
+      }
     }
+    return true;
   }
 
   /**
+   * Skips all whitespace (in the sense of {@link String#trim()}) at the end of
+   * the given text region.
+   * 
+   * @return the index after the last non-whitespace character.
+   */
+  private static int skipTrailingWhitespace( final CharSequence aText, final int aFrom, final int aTo )
+  {
+    int to = aTo;
+    while ( ( to > aFrom ) && ( aText.charAt( to - 1 ) <= ' ' ) )
+    {
+      to--;
+    }
+    return to;
+  }
+
+  /**
+   * Skips all whitespace (in the sense of {@link String#trim()}) at the start
+   * of the given text region.
+   * 
+   * @return the index of the first non-whitespace character.
+   */
+  private static int skipWhitespace( final CharSequence aText, final int aFrom, final int aTo )
+  {
+    int from = aFrom;
+    while ( ( from < aTo ) && ( aText.charAt( from ) <= ' ' ) )
+    {
+      from++;
+    }
+    return from;
+  }
+
+  /**
+   * Splits the body of the given token at its first whitespace into a name and
+   * a (trimmed) remainder.
+   * 
    * @param aText
-   * @param aStart
-   * @param aEnd
-   * @return
+   * @return the name, optionally followed by the remainder.
    */
-  private String strip( final String aText, final String aStart, final String aEnd )
+  private String[] splitName( final CharSequence aText )
   {
-    String text = aText.trim();
-    if ( text.startsWith( aStart ) )
+    int i = this.bodyStart;
+    while ( ( i < this.bodyEnd ) && ( aText.charAt( i ) > ' ' ) )
     {
-      text = text.substring( aStart.length() );
+      i++;
     }
-    if ( text.endsWith( aEnd ) )
+    final String name = this.symbols.intern( aText, this.bodyStart, i );
+
+    i = skipWhitespace( aText, i, this.bodyEnd );
+    if ( i == this.bodyEnd )
     {
-      final int length = text.length();
-      text = text.substring( 0, length - aEnd.length() );
+      return new String[] { name };
     }
-    return text.trim();
+    return new String[] { name, aText.subSequence( i, this.bodyEnd ).toString() };
   }
 
   /**
+   * Determines the body of the given token by stripping the given number of
+   * start characters and the given end marker, and trimming any surrounding
+   * whitespace.
+   * 
    * @param aText
-   * @param aStart
+   * @param aStartLength
    * @param aEnd
-   * @return
    */
-  private String[] stripNameAttributes( final String aText, final String aStart, final String aEnd )
+  private void strip( final CharSequence aText, final int aStartLength, final String aEnd )
   {
-    return strip( aText, aStart, aEnd ).split( "\\s+", 2 );
+    int from = aStartLength;
+    int to = skipTrailingWhitespace( aText, from, aText.length() );
+    if ( ( ( to - from ) >= aEnd.length() ) && regionMatches( aText, to - aEnd.length(), aEnd ) )
+    {
+      to -= aEnd.length();
+    }
+    from = skipWhitespace( aText, from, to );
+    to = skipTrailingWhitespace( aText, from, to );
+
+    this.bodyStart = from;
+    this.bodyEnd = to;
   }
 }
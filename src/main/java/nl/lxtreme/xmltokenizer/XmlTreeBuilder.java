@@ -0,0 +1,285 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer;
+
+
+import java.io.*;
+import java.util.*;
+
+import nl.lxtreme.xmltokenizer.impl.*;
+
+
+/**
+ * Builds a hierarchy of tokens from the tokens of a {@link XmlTokenizer}.
+ * <p>
+ * Each start tag becomes the parent of all tokens up to its matching end tag;
+ * end tags themselves are not part of the resulting tree. End tags without a
+ * matching start tag are ignored, and elements that are not closed are closed
+ * implicitly by the end tag of one of their ancestors, or at the end of the
+ * document.
+ * </p>
+ * <p>
+ * The tree is built in a single pass using an explicit stack, so the depth of
+ * a document is only limited by the available memory. The children of an
+ * element are collected in a shared buffer and handed to their parent at once
+ * when the element is closed, so each element holds an exactly-sized list of
+ * children.
+ * </p>
+ */
+public class XmlTreeBuilder
+{
+  // CONSTANTS
+
+  private static final int INITIAL_CAPACITY = 64;
+
+  // VARIABLES
+
+  private final XmlTokenizer tokenizer;
+  private boolean            ignoreWhitespace;
+
+  /** the currently open elements. */
+  private IToken[]           open;
+  /** for each open element, the index of its first child in the buffer. */
+  private int[]              firstChild;
+  private int                depth;
+  /** the children of all open elements, and the top-level tokens. */
+  private IToken[]           buffer;
+  private int                count;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new XmlTreeBuilder.
+   *
+   * @param aTokenizer
+   *          the tokenizer to obtain the tokens from, cannot be
+   *          <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case the given tokenizer was <code>null</code>.
+   */
+  public XmlTreeBuilder( final XmlTokenizer aTokenizer ) throws IllegalArgumentException
+  {
+    if ( aTokenizer == null )
+    {
+      throw new IllegalArgumentException( "Tokenizer cannot be null!" );
+    }
+    this.tokenizer = aTokenizer;
+  }
+
+  // METHODS
+
+  /**
+   * @return <code>true</code> if the given token is a text token consisting of
+   *         whitespace only, <code>false</code> otherwise.
+   */
+  private static boolean isWhitespace( final IToken aToken )
+  {
+    if ( !aToken.getType().isText() )
+    {
+      return false;
+    }
+    final String text = ( ( TextToken )aToken ).getRawText();
+    for ( int i = 0, length = text.length(); i < length; i++ )
+    {
+      if ( text.charAt( i ) > ' ' )
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Builds the tree for all remaining tokens of the tokenizer.
+   *
+   * @return the top-level tokens, such as the XML declaration, doctype and root
+   *         element, never <code>null</code>.
+   * @throws IOException
+   *           in case of I/O problems.
+   */
+  public List<IToken> build() throws IOException
+  {
+    init();
+    try
+    {
+      IToken token;
+      while ( ( token = this.tokenizer.nextToken() ) != null )
+      {
+        process( token );
+      }
+
+      while ( this.depth > 0 )
+      {
+        pop();
+      }
+
+      return new ArrayList<IToken>( Arrays.asList( this.buffer ).subList( 0, this.count ) );
+    }
+    finally
+    {
+      this.open = null;
+      this.firstChild = null;
+      this.buffer = null;
+    }
+  }
+
+  /**
+   * Sets whether text tokens that consist of whitespace only should be left
+   * out of the tree. By default, all text tokens are retained.
+   *
+   * @param aIgnoreWhitespace
+   *          <code>true</code> to leave out whitespace-only text tokens,
+   *          <code>false</code> to retain them.
+   */
+  public void setIgnoreWhitespace( final boolean aIgnoreWhitespace )
+  {
+    this.ignoreWhitespace = aIgnoreWhitespace;
+  }
+
+  /**
+   * Builds the subtree of the given start tag, which should be the last token
+   * returned by the tokenizer, reading tokens up to its end tag. Unlike
+   * {@link #build()}, this retains its buffers for subsequent calls.
+   *
+   * @param aStart
+   *          the start tag of the subtree, cannot be <code>null</code>.
+   * @return the given start tag, with all its descendants added.
+   * @throws IOException
+   *           in case of I/O problems.
+   */
+  IToken buildElement( final ElementToken aStart ) throws IOException
+  {
+    if ( this.open == null )
+    {
+      init();
+    }
+
+    this.depth = 0;
+    this.count = 0;
+    if ( !aStart.isEndTag() && !aStart.isEmptyElement() )
+    {
+      push( aStart );
+
+      IToken token;
+      while ( ( this.depth > 0 ) && ( ( token = this.tokenizer.nextToken() ) != null ) )
+      {
+        process( token );
+      }
+
+      while ( this.depth > 0 )
+      {
+        pop();
+      }
+    }
+    return aStart;
+  }
+
+  /**
+   * Adds the given token as child of the innermost open element.
+   */
+  private void add( final IToken aToken )
+  {
+    if ( this.count == this.buffer.length )
+    {
+      this.buffer = Arrays.copyOf( this.buffer, this.count * 2 );
+    }
+    this.buffer[this.count++] = aToken;
+  }
+
+  /**
+   * Closes the innermost open element with the given name, and all elements
+   * nested in it. Does nothing if no such element is open.
+   */
+  private void close( final String aName )
+  {
+    int i = this.depth - 1;
+    while ( ( i >= 0 ) && !aName.equals( this.open[i].getName() ) )
+    {
+      i--;
+    }
+    if ( i < 0 )
+    {
+      // Stray end tag; ignore it...
+      return;
+    }
+    while ( this.depth > i )
+    {
+      pop();
+    }
+  }
+
+  /**
+   * Allocates the buffers for building a tree.
+   */
+  private void init()
+  {
+    this.open = new IToken[INITIAL_CAPACITY];
+    this.firstChild = new int[INITIAL_CAPACITY];
+    this.buffer = new IToken[INITIAL_CAPACITY];
+    this.depth = 0;
+    this.count = 0;
+  }
+
+  /**
+   * Closes the innermost open element, handing it all its children.
+   */
+  private void pop()
+  {
+    final int idx = --this.depth;
+    final IToken element = this.open[idx];
+    this.open[idx] = null;
+
+    final int from = this.firstChild[idx];
+    if ( from < this.count )
+    {
+      element.addChild( Arrays.copyOfRange( this.buffer, from, this.count ) );
+      Arrays.fill( this.buffer, from, this.count, null );
+      this.count = from;
+    }
+  }
+
+  /**
+   * Adds the given token to the tree.
+   */
+  private void process( final IToken aToken )
+  {
+    if ( aToken instanceof ElementToken )
+    {
+      final ElementToken element = ( ElementToken )aToken;
+      if ( element.isEndTag() )
+      {
+        close( element.getName() );
+      }
+      else
+      {
+        add( element );
+        if ( !element.isEmptyElement() )
+        {
+          push( element );
+        }
+      }
+    }
+    else if ( !this.ignoreWhitespace || !isWhitespace( aToken ) )
+    {
+      add( aToken );
+    }
+  }
+
+  /**
+   * Opens the given element, making it the parent of subsequent tokens.
+   */
+  private void push( final IToken aElement )
+  {
+    if ( this.depth == this.open.length )
+    {
+      this.open = Arrays.copyOf( this.open, this.depth * 2 );
+      this.firstChild = Arrays.copyOf( this.firstChild, this.depth * 2 );
+    }
+    this.open[this.depth] = aElement;
+    this.firstChild[this.depth] = this.count;
+    this.depth++;
+  }
+}
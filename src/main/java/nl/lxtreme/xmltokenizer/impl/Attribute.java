@@ -6,7 +6,6 @@
 package nl.lxtreme.xmltokenizer.impl;
 
 
-import java.io.*;
 import java.util.*;
 
 import nl.lxtreme.xmltokenizer.*;
@@ -19,8 +18,17 @@ public class Attribute implements IAttribute
 {
   // VARIABLES
 
-  private final String name;
-  private final String value;
+  // Not final, as attributes can be recycled by a TokenPool...
+  private String        name;
+  private String        value;
+  private EntityDecoder decoder;
+  /** the decoded value, determined lazily. */
+  private String        decodedValue;
+  /** the namespace URI and local name, if resolved. */
+  private String        namespaceURI;
+  private String        localName;
+  /** whether this attribute is released to a TokenPool. */
+  private boolean       released;
 
   // CONSTRUCTORS
 
@@ -48,6 +56,25 @@ public class Attribute implements IAttribute
    *           in case either name or value argument are <code>null</code>.
    */
   public Attribute( final String aName, final String aValue ) throws IllegalArgumentException
+  {
+    this( aName, aValue, EntityDecoder.DEFAULT );
+  }
+
+  /**
+   * Creates a new Attribute.
+   * 
+   * @param aName
+   *          the name, cannot be <code>null</code>;
+   * @param aValue
+   *          the raw value, cannot be <code>null</code>;
+   * @param aDecoder
+   *          the decoder for the references in the value, can be
+   *          <code>null</code> to leave the value as is.
+   * @throws IllegalArgumentException
+   *           in case either name or value argument are <code>null</code>.
+   */
+  public Attribute( final String aName, final String aValue, final EntityDecoder aDecoder )
+      throws IllegalArgumentException
   {
     this.name = aName;
 
@@ -56,6 +83,7 @@ public class Attribute implements IAttribute
       throw new IllegalArgumentException( "Value cannot be null!" );
     }
     this.value = aValue;
+    this.decoder = aDecoder;
   }
 
   // METHODS
@@ -66,6 +94,7 @@ public class Attribute implements IAttribute
    * 
    * @param aAttributeString
    * @return
+   * @see XmlAttributeParser
    */
   public static Collection<Attribute> parse( final String aAttributeString ) throws IllegalArgumentException
   {
@@ -74,35 +103,15 @@ public class Attribute implements IAttribute
       throw new IllegalArgumentException( "Attribute string cannot be null!" );
     }
 
-    final Stack<Attribute> result = new Stack<Attribute>();
-    final KeyValuePairParser tokenizer = new KeyValuePairParser( aAttributeString );
-
-    String[] attr = null;
-    do
+    final List<Attribute> result = new ArrayList<Attribute>();
+    final XmlAttributeParser parser = new XmlAttributeParser();
+    final int count = parser.scan( aAttributeString, 0, aAttributeString.length() );
+    for ( int i = 0; i < count; i++ )
     {
-      try
-      {
-        attr = tokenizer.nextKeyValuePair();
-        if ( attr != null )
-        {
-          // Did we find a "continuation"?
-          if ( ( attr[0] == null ) && ( !result.isEmpty() ) )
-          {
-            final IAttribute lastAttr = result.pop();
-            result.push( new Attribute( lastAttr.getName(), lastAttr.getValue() + " " + attr[1] ) );
-          }
-          else
-          {
-            result.push( new Attribute( attr[0], attr[1] ) );
-          }
-        }
-      }
-      catch ( IOException exception )
-      {
-        exception.printStackTrace();
-      }
+      final String name = aAttributeString.substring( parser.getNameStart( i ), parser.getNameEnd( i ) );
+      final String value = aAttributeString.substring( parser.getValueStart( i ), parser.getValueEnd( i ) );
+      result.add( new Attribute( name, value ) );
     }
-    while ( attr != null );
 
     return result;
   }
@@ -148,6 +157,14 @@ public class Attribute implements IAttribute
     return true;
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public String getLocalName()
+  {
+    return this.localName;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -159,11 +176,33 @@ public class Attribute implements IAttribute
   /**
    * {@inheritDoc}
    */
-  public String getValue()
+  public String getNamespaceURI()
+  {
+    return this.namespaceURI;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public String getRawValue()
   {
     return this.value;
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public String getValue()
+  {
+    String result = this.decodedValue;
+    if ( result == null )
+    {
+      result = ( this.decoder == null ) ? this.value : this.decoder.decode( this.value );
+      this.decodedValue = result;
+    }
+    return result;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -177,6 +216,58 @@ public class Attribute implements IAttribute
     return result;
   }
 
+  /**
+   * @return <code>true</code> if this attribute is released to a token pool,
+   *         <code>false</code> otherwise.
+   * @see TokenPool
+   */
+  boolean isReleased()
+  {
+    return this.released;
+  }
+
+  /**
+   * Sets the name and value of this attribute, such that it can be reused.
+   * 
+   * @see TokenPool
+   */
+  void set( final String aName, final String aValue, final EntityDecoder aDecoder )
+  {
+    this.released = false;
+    this.name = aName;
+    this.value = aValue;
+    this.decoder = aDecoder;
+    this.decodedValue = null;
+    this.namespaceURI = null;
+    this.localName = null;
+  }
+
+  /**
+   * Marks this attribute as released to a token pool.
+   * 
+   * @see TokenPool
+   */
+  void setReleased()
+  {
+    this.released = true;
+  }
+
+  /**
+   * Sets the namespace of this attribute.
+   * 
+   * @param aNamespaceURI
+   *          the namespace URI, can be <code>null</code> if this attribute is
+   *          not in a namespace;
+   * @param aLocalName
+   *          the local name, cannot be <code>null</code>.
+   * @see nl.lxtreme.xmltokenizer.XmlNamespaceTokenizer
+   */
+  public void setNamespace( final String aNamespaceURI, final String aLocalName )
+  {
+    this.namespaceURI = aNamespaceURI;
+    this.localName = aLocalName;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -0,0 +1,44 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer.impl;
+
+
+import java.util.*;
+
+import nl.lxtreme.xmltokenizer.*;
+
+
+/**
+ * Parses the attributes of a tag or processing instruction.
+ * <p>
+ * As tokens parse their attributes lazily, possibly on another thread than the
+ * one that created them, {@link #parse(CharSequence, int, int, Collection)}
+ * should be safe for concurrent use.
+ * </p>
+ *
+ * @see XmlAttributeParser
+ * @see LenientAttributeParser
+ */
+public interface AttributeParser
+{
+  // METHODS
+
+  /**
+   * Parses the attributes in the given range of characters and adds them to
+   * the given collection.
+   *
+   * @param aText
+   *          the text to parse, cannot be <code>null</code>;
+   * @param aFrom
+   *          the index of the first character of the attributes;
+   * @param aTo
+   *          the index after the last character of the attributes;
+   * @param aResult
+   *          the collection to add the parsed attributes to, cannot be
+   *          <code>null</code>.
+   */
+  void parse( CharSequence aText, int aFrom, int aTo, Collection<? super IAttribute> aResult );
+}
@@ -16,13 +16,25 @@ import nl.lxtreme.xmltokenizer.*;
  */
 public abstract class BaseToken implements IToken
 {
+  // CONSTANTS
+
+  /** the attribute parser used by default, see {@link XmlAttributeParser}. */
+  protected static final AttributeParser DEFAULT_ATTRIBUTE_PARSER = new XmlAttributeParser();
+
   // VARIABLES
 
-  private final List<IAttribute> attributes;
-  private final List<IToken>     children;
+  /** created upon first use, as most tokens have no attributes. */
+  private List<IAttribute>       attributes;
+  /** created upon first use, as most tokens have no children. */
+  private List<IToken>           children;
   private String                 name;
   private IToken                 parent;
   private final TokenType        type;
+  /** the unparsed attributes, if any. */
+  private String                 rawAttributes;
+  private AttributeParser        attributeParser;
+  /** whether this token is released to a TokenPool. */
+  private boolean                released;
 
   // CONSTRUCTOR
 
@@ -36,9 +48,6 @@ public abstract class BaseToken implements IToken
   {
     this.name = aName;
     this.type = aType;
-
-    this.attributes = new ArrayList<IAttribute>();
-    this.children = new ArrayList<IToken>();
   }
 
   /**
@@ -57,9 +66,10 @@ public abstract class BaseToken implements IToken
   @Override
   public void addAttribute( final IAttribute... aAttributeList )
   {
+    ensureAttributesParsed();
     for ( IAttribute attribute : aAttributeList )
     {
-      this.attributes.add( attribute );
+      attributeList().add( attribute );
     }
   }
 
@@ -69,6 +79,10 @@ public abstract class BaseToken implements IToken
   @Override
   public void addChild( final IToken... aChildList )
   {
+    if ( this.children == null )
+    {
+      this.children = new ArrayList<IToken>( aChildList.length );
+    }
     for ( IToken child : aChildList )
     {
       child.setParent( this );
@@ -81,6 +95,11 @@ public abstract class BaseToken implements IToken
    */
   public List<IAttribute> getAttributes()
   {
+    ensureAttributesParsed();
+    if ( this.attributes == null )
+    {
+      return Collections.emptyList();
+    }
     return Collections.unmodifiableList( this.attributes );
   }
 
@@ -89,6 +108,10 @@ public abstract class BaseToken implements IToken
    */
   public List<IToken> getChildren()
   {
+    if ( this.children == null )
+    {
+      return Collections.emptyList();
+    }
     return Collections.unmodifiableList( this.children );
   }
 
@@ -122,7 +145,8 @@ public abstract class BaseToken implements IToken
    */
   public boolean hasAttribute( final IAttribute aAttribute )
   {
-    return this.attributes.contains( aAttribute );
+    ensureAttributesParsed();
+    return ( this.attributes != null ) && this.attributes.contains( aAttribute );
   }
 
   /**
@@ -152,8 +176,8 @@ public abstract class BaseToken implements IToken
   }
 
   /**
-   * Parses a given string of attributes and adds them as actual attributes of
-   * this token.
+   * Sets a given string of attributes as the attributes of this token. The
+   * attributes are parsed upon first access.
    * 
    * @param aString
    */
@@ -164,6 +188,102 @@ public abstract class BaseToken implements IToken
       return;
     }
 
-    this.attributes.addAll( Attribute.parse( aString ) );
+    parseAttributes( aString, 0, aString.length(), DEFAULT_ATTRIBUTE_PARSER );
+  }
+
+  /**
+   * Sets the given range of characters as the attributes of this token. The
+   * attributes are only copied, and parsed upon first access.
+   * 
+   * @param aText
+   *          the text to parse;
+   * @param aFrom
+   *          the index of the first character of the attributes;
+   * @param aTo
+   *          the index after the last character of the attributes;
+   * @param aParser
+   *          the attribute parser to use.
+   */
+  protected void parseAttributes( final CharSequence aText, final int aFrom, final int aTo,
+      final AttributeParser aParser )
+  {
+    if ( aFrom < aTo )
+    {
+      ensureAttributesParsed();
+
+      this.rawAttributes = XmlAttributeParser.substring( aText, aFrom, aTo );
+      this.attributeParser = aParser;
+    }
+  }
+
+  /**
+   * Returns the (modifiable) list of attributes of this token, creating it if
+   * needed. Does not parse any unparsed attributes.
+   * 
+   * @return the attribute list, never <code>null</code>.
+   */
+  final List<IAttribute> attributeList()
+  {
+    if ( this.attributes == null )
+    {
+      this.attributes = new ArrayList<IAttribute>();
+    }
+    return this.attributes;
+  }
+
+  /**
+   * @return <code>true</code> if this token is released to a token pool,
+   *         <code>false</code> otherwise.
+   * @see TokenPool
+   */
+  boolean isReleased()
+  {
+    return this.released;
+  }
+
+  /**
+   * Resets this token to its initial state, such that it can be reused. The
+   * attribute and children lists are cleared, but retained.
+   * 
+   * @see TokenPool
+   */
+  void reset()
+  {
+    this.name = null;
+    this.parent = null;
+    this.rawAttributes = null;
+    this.attributeParser = null;
+    if ( this.attributes != null )
+    {
+      this.attributes.clear();
+    }
+    if ( this.children != null )
+    {
+      this.children.clear();
+    }
+  }
+
+  /**
+   * Sets whether this token is released to a token pool.
+   * 
+   * @see TokenPool
+   */
+  void setReleased( final boolean aReleased )
+  {
+    this.released = aReleased;
+  }
+
+  /**
+   * Parses the unparsed attributes of this token, if any.
+   */
+  private void ensureAttributesParsed()
+  {
+    final String raw = this.rawAttributes;
+    if ( raw != null )
+    {
+      this.rawAttributes = null;
+      this.attributeParser.parse( raw, 0, raw.length(), attributeList() );
+      this.attributeParser = null;
+    }
   }
 }
@@ -0,0 +1,125 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer.impl;
+
+
+import java.nio.*;
+
+
+/**
+ * Provides a lightweight, zero-copy view on a range of bytes in a byte buffer,
+ * interpreting each byte as a single (ISO-8859-1) character.
+ * <p>
+ * This allows ASCII-only data to be used as characters without decoding it
+ * first. Like {@link CharArraySpan}, a span does not own the bytes it refers
+ * to, use {@link #toString()} to obtain a copy that can be retained.
+ * </p>
+ */
+public final class ByteBufferSpan implements CharSequence
+{
+  // VARIABLES
+
+  private ByteBuffer buffer;
+  private int        offset;
+  private int        length;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new, empty, ByteBufferSpan.
+   */
+  public ByteBufferSpan()
+  {
+    this( ByteBuffer.allocate( 0 ), 0, 0 );
+  }
+
+  /**
+   * Creates a new ByteBufferSpan.
+   *
+   * @param aBuffer
+   *          the byte buffer to refer to;
+   * @param aOffset
+   *          the (absolute) offset of the first byte;
+   * @param aLength
+   *          the number of bytes.
+   */
+  public ByteBufferSpan( final ByteBuffer aBuffer, final int aOffset, final int aLength )
+  {
+    set( aBuffer, aOffset, aLength );
+  }
+
+  // METHODS
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public char charAt( final int aIndex )
+  {
+    if ( ( aIndex < 0 ) || ( aIndex >= this.length ) )
+    {
+      throw new IndexOutOfBoundsException( "Invalid index: " + aIndex );
+    }
+    return ( char )( this.buffer.get( this.offset + aIndex ) & 0xFF );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int length()
+  {
+    return this.length;
+  }
+
+  /**
+   * Lets this span refer to another range of bytes.
+   *
+   * @param aBuffer
+   *          the byte buffer to refer to;
+   * @param aOffset
+   *          the (absolute) offset of the first byte;
+   * @param aLength
+   *          the number of bytes.
+   */
+  public void set( final ByteBuffer aBuffer, final int aOffset, final int aLength )
+  {
+    this.buffer = aBuffer;
+    this.offset = aOffset;
+    this.length = aLength;
+  }
+
+  /**
+   * Returns a view on a part of this span; the bytes are not copied.
+   *
+   * @see java.lang.CharSequence#subSequence(int, int)
+   */
+  @Override
+  public CharSequence subSequence( final int aStart, final int aEnd )
+  {
+    if ( ( aStart < 0 ) || ( aEnd > this.length ) || ( aStart > aEnd ) )
+    {
+      throw new IndexOutOfBoundsException( "Invalid range: " + aStart + ".." + aEnd );
+    }
+    return new ByteBufferSpan( this.buffer, this.offset + aStart, aEnd - aStart );
+  }
+
+  /**
+   * Returns a copy of the characters this span refers to.
+   *
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString()
+  {
+    final char[] chars = new char[this.length];
+    for ( int i = 0; i < this.length; i++ )
+    {
+      chars[i] = ( char )( this.buffer.get( this.offset + i ) & 0xFF );
+    }
+    return new String( chars );
+  }
+}
@@ -0,0 +1,810 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer.impl;
+
+
+import java.io.*;
+import java.nio.*;
+import java.nio.charset.*;
+
+import nl.lxtreme.xmltokenizer.*;
+
+
+/**
+ * Provides a scanner backend that works directly on (encoded) bytes instead of
+ * characters.
+ * <p>
+ * The delimiters of XML-tokens ('&lt;', '&gt;' and whitespace) are all plain
+ * ASCII characters, which never occur as part of a multi-byte character in
+ * ASCII-compatible encodings like UTF-8. This allows this backend to find the
+ * boundaries of each token on the raw bytes, and to only decode the tokens that
+ * are actually read by the caller. Tokens that consist of ASCII characters only
+ * are not decoded at all, but are presented as-is.
+ * </p>
+ * <p>
+ * This class scans the contents of a single {@link ByteBuffer}; subclasses can
+ * provide more data by overriding {@link #fill()}.
+ * </p>
+ */
+public class ByteScannerBackend extends ScannerBackend
+{
+  // CONSTANTS
+
+  static final Charset         UTF_8      = Charset.forName( "UTF-8" );
+  static final Charset         US_ASCII   = Charset.forName( "US-ASCII" );
+  static final Charset         ISO_8859_1 = Charset.forName( "ISO-8859-1" );
+
+  /** the maximum number of bytes to look at for the encoding declaration. */
+  static final int             MAX_DECLARATION_LENGTH = 1024;
+
+  // VARIABLES
+
+  private final Charset        charset;
+  private final boolean        latin1;
+  private final ByteBufferSpan byteView;
+  private final CharArraySpan  charView;
+  private CharsetDecoder       decoder;
+  private char[]               chars;
+
+  /** the buffer with the data to scan. */
+  protected ByteBuffer         buffer;
+  /** the offset in the input of the first byte in our buffer. */
+  protected long               base;
+  /** the start of the current token. */
+  protected int                start;
+  /** the end (exclusive) of the valid data in our buffer. */
+  protected int                limit;
+  /** the end (exclusive) of the current token. */
+  private int                  end;
+  /** how the next token continues the current token, if at all. */
+  private int                  resume;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new ByteScannerBackend that scans the remaining bytes of the given
+   * buffer.
+   *
+   * @param aBuffer
+   *          the buffer to scan, cannot be <code>null</code>;
+   * @param aCharset
+   *          the (ASCII-compatible) character set of the data, cannot be
+   *          <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case one of the given arguments was <code>null</code> or in
+   *           case the given character set cannot be scanned byte-wise.
+   */
+  public ByteScannerBackend( final ByteBuffer aBuffer, final Charset aCharset ) throws IllegalArgumentException
+  {
+    this( aBuffer, ( aBuffer == null ) ? 0 : aBuffer.position(), ( aBuffer == null ) ? 0 : aBuffer.limit(), aCharset );
+  }
+
+  /**
+   * Creates a new ByteScannerBackend that scans the given range of the given
+   * buffer.
+   *
+   * @param aBuffer
+   *          the buffer to scan, cannot be <code>null</code>;
+   * @param aStart
+   *          the (absolute) index of the first byte to scan;
+   * @param aLimit
+   *          the (absolute) index after the last byte that is available;
+   * @param aCharset
+   *          the (ASCII-compatible) character set of the data, cannot be
+   *          <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case one of the given arguments was <code>null</code> or in
+   *           case the given character set cannot be scanned byte-wise.
+   */
+  protected ByteScannerBackend( final ByteBuffer aBuffer, final int aStart, final int aLimit, final Charset aCharset )
+      throws IllegalArgumentException
+  {
+    if ( aBuffer == null )
+    {
+      throw new IllegalArgumentException( "Buffer cannot be null!" );
+    }
+    if ( !isByteScannable( aCharset ) )
+    {
+      throw new IllegalArgumentException( "Unsupported character set: " + aCharset );
+    }
+
+    this.charset = aCharset;
+    this.latin1 = ISO_8859_1.equals( aCharset );
+    this.byteView = new ByteBufferSpan();
+    this.charView = new CharArraySpan();
+    this.chars = new char[0];
+
+    this.buffer = aBuffer;
+    this.start = this.end = aStart;
+    this.limit = aLimit;
+  }
+
+  // METHODS
+
+  /**
+   * Creates a scanner backend for the remaining bytes of the given buffer.
+   * <p>
+   * The encoding of the data is determined by its byte order mark or its XML
+   * declaration, defaulting to UTF-8. If the data is encoded in a way that
+   * cannot be scanned byte-wise (such as UTF-16), the data is decoded up front
+   * and scanned by a {@link ReaderScannerBackend} instead.
+   * </p>
+   *
+   * @param aBuffer
+   *          the buffer to scan, cannot be <code>null</code>.
+   * @return a scanner backend, never <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case the given buffer was <code>null</code>.
+   */
+  public static ScannerBackend create( final ByteBuffer aBuffer ) throws IllegalArgumentException
+  {
+    if ( aBuffer == null )
+    {
+      throw new IllegalArgumentException( "Buffer cannot be null!" );
+    }
+
+    final ByteBuffer buffer = aBuffer.duplicate();
+    final Charset charset = detectEncoding( buffer );
+    if ( isByteScannable( charset ) )
+    {
+      return new ByteScannerBackend( buffer, charset );
+    }
+
+    final CharBuffer chars = charset.decode( buffer );
+    return new ReaderScannerBackend( new CharArrayReader( chars.array(), chars.arrayOffset() + chars.position(),
+        chars.remaining() ) );
+  }
+
+  /**
+   * Determines the encoding of the XML-data in the given buffer by looking at
+   * its byte order mark and its XML declaration, if any.
+   * <p>
+   * In case the buffer starts with an UTF-8 byte order mark, the position of
+   * the given buffer is advanced past it.
+   * </p>
+   *
+   * @param aBuffer
+   *          the buffer to examine, cannot be <code>null</code>.
+   * @return the character set of the data, never <code>null</code>.
+   */
+  static Charset detectEncoding( final ByteBuffer aBuffer )
+  {
+    final int pos = aBuffer.position();
+    final int length = aBuffer.limit() - pos;
+
+    final int b0 = ( length > 0 ) ? ( aBuffer.get( pos ) & 0xFF ) : -1;
+    final int b1 = ( length > 1 ) ? ( aBuffer.get( pos + 1 ) & 0xFF ) : -1;
+    final int b2 = ( length > 2 ) ? ( aBuffer.get( pos + 2 ) & 0xFF ) : -1;
+    final int b3 = ( length > 3 ) ? ( aBuffer.get( pos + 3 ) & 0xFF ) : -1;
+
+    if ( ( b0 == 0xEF ) && ( b1 == 0xBB ) && ( b2 == 0xBF ) )
+    {
+      aBuffer.position( pos + 3 );
+      return UTF_8;
+    }
+    if ( ( ( b0 == 0x00 ) && ( b1 == 0x00 ) && ( b2 == 0xFE ) && ( b3 == 0xFF ) )
+        || ( ( b0 == 0xFF ) && ( b1 == 0xFE ) && ( b2 == 0x00 ) && ( b3 == 0x00 ) ) )
+    {
+      return forName( "UTF-32", UTF_8 );
+    }
+    if ( ( ( b0 == 0xFE ) && ( b1 == 0xFF ) ) || ( ( b0 == 0xFF ) && ( b1 == 0xFE ) ) )
+    {
+      return forName( "UTF-16", UTF_8 );
+    }
+    if ( ( b0 == 0x00 ) && ( b1 == '<' ) && ( b2 == 0x00 ) && ( b3 == '?' ) )
+    {
+      return forName( "UTF-16BE", UTF_8 );
+    }
+    if ( ( b0 == '<' ) && ( b1 == 0x00 ) && ( b2 == '?' ) && ( b3 == 0x00 ) )
+    {
+      return forName( "UTF-16LE", UTF_8 );
+    }
+
+    final String declaredEncoding = getDeclaredEncoding( aBuffer );
+    if ( declaredEncoding != null )
+    {
+      return forName( declaredEncoding, UTF_8 );
+    }
+    return UTF_8;
+  }
+
+  /**
+   * Returns whether the given character set can be scanned byte-wise by this
+   * backend.
+   *
+   * @param aCharset
+   *          the character set to test, can be <code>null</code>.
+   * @return <code>true</code> if the given character set is supported by this
+   *         backend, <code>false</code> otherwise.
+   */
+  public static boolean isByteScannable( final Charset aCharset )
+  {
+    return UTF_8.equals( aCharset ) || US_ASCII.equals( aCharset ) || ISO_8859_1.equals( aCharset );
+  }
+
+  /**
+   * Returns the character set name for the given name, if supported.
+   */
+  private static Charset forName( final String aName, final Charset aDefault )
+  {
+    try
+    {
+      return Charset.forName( aName );
+    }
+    catch ( IllegalArgumentException exception )
+    {
+      // Illegal or unsupported charset name...
+      return aDefault;
+    }
+  }
+
+  /**
+   * Returns the value of the encoding pseudo-attribute of the XML declaration
+   * at the start of the given buffer.
+   *
+   * @return the declared encoding, or <code>null</code> if not found.
+   */
+  private static String getDeclaredEncoding( final ByteBuffer aBuffer )
+  {
+    final int pos = aBuffer.position();
+    final int length = Math.min( aBuffer.limit() - pos, MAX_DECLARATION_LENGTH );
+
+    final String prefix = "<?xml";
+    if ( ( length <= prefix.length() ) || !Character.isWhitespace( aBuffer.get( pos + prefix.length() ) ) )
+    {
+      return null;
+    }
+
+    final StringBuilder sb = new StringBuilder();
+    for ( int i = 0; i < length; i++ )
+    {
+      final char ch = ( char )( aBuffer.get( pos + i ) & 0xFF );
+      if ( ( i < prefix.length() ) && ( ch != prefix.charAt( i ) ) )
+      {
+        return null;
+      }
+      if ( ( ch == '>' ) && ( sb.charAt( sb.length() - 1 ) == '?' ) )
+      {
+        sb.setLength( sb.length() - 1 );
+        break;
+      }
+      sb.append( ch );
+    }
+
+    final ProcessingInstructionToken declaration = new ProcessingInstructionToken( "xml", sb.substring( prefix
+        .length() ) );
+    for ( IAttribute attribute : declaration.getAttributes() )
+    {
+      if ( "encoding".equals( attribute.getName() ) )
+      {
+        return attribute.getValue();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns how the current token changes the element depth, by looking at its
+   * raw bytes; as tags are delimited by ASCII characters, the token is never
+   * decoded.
+   *
+   * @see ScannerBackend#getDepthDelta()
+   */
+  @Override
+  public int getDepthDelta()
+  {
+    this.byteView.set( this.buffer, this.start, this.end - this.start );
+    return getDepthDelta( this.byteView );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String getToken()
+  {
+    return getTokenView().toString();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getTokenOffset()
+  {
+    return this.base + this.start;
+  }
+
+  /**
+   * Returns a view on the current token. ASCII-only tokens are presented
+   * without decoding them, all other tokens are decoded on the fly.
+   *
+   * @see ScannerBackend#getTokenView()
+   */
+  @Override
+  public CharSequence getTokenView()
+  {
+    final int length = this.end - this.start;
+    if ( this.latin1 || isAscii( this.start, this.end ) )
+    {
+      this.byteView.set( this.buffer, this.start, length );
+      return this.byteView;
+    }
+
+    if ( this.chars.length < length )
+    {
+      this.chars = new char[Math.max( length, 2 * this.chars.length )];
+    }
+    if ( this.decoder == null )
+    {
+      this.decoder = this.charset.newDecoder() //
+          .onMalformedInput( CodingErrorAction.REPLACE ) //
+          .onUnmappableCharacter( CodingErrorAction.REPLACE );
+    }
+
+    final ByteBuffer in = this.buffer.duplicate();
+    in.limit( this.end ).position( this.start );
+    final CharBuffer out = CharBuffer.wrap( this.chars );
+
+    this.decoder.reset();
+    this.decoder.decode( in, out, true );
+    this.decoder.flush( out );
+
+    this.charView.set( this.chars, 0, out.position() );
+    return this.charView;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isPartial()
+  {
+    return this.resume != RESUME_NONE;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean next() throws IOException
+  {
+    final int resume = this.resume;
+    this.resume = RESUME_NONE;
+    if ( scan( resume ) )
+    {
+      return true;
+    }
+    // Continue the current token in the same way once more data is available...
+    this.resume = resume;
+    return false;
+  }
+
+  /**
+   * Scans the next token.
+   *
+   * @param aResume
+   *          how the next token continues the current token, if at all.
+   * @return <code>true</code> if a next token is available, <code>false</code>
+   *         in case of no more data, or if more data is needed to complete the
+   *         next token.
+   * @see #next()
+   */
+  private boolean scan( final int aResume ) throws IOException
+  {
+    this.start = this.end;
+    if ( ( this.start >= this.limit ) && !fill() )
+    {
+      return false;
+    }
+
+    if ( aResume == RESUME_CDATA )
+    {
+      return nextCData( this.start + 2 );
+    }
+
+    boolean openTag = ( aResume == RESUME_MARKUP )
+        || ( ( aResume == RESUME_NONE ) && ( this.buffer.get( this.start ) == '<' ) );
+    if ( ( aResume == RESUME_NONE ) && openTag )
+    {
+      final int cdata = matchCDataStart();
+      if ( cdata < 0 )
+      {
+        // Cannot tell yet; wait for more data...
+        this.end = this.start;
+        return false;
+      }
+      if ( cdata > 0 )
+      {
+        return nextCData( this.start + CDATA_START.length() + 2 );
+      }
+    }
+    // Only text is split up into chunks, tags are always scanned as a whole...
+    final boolean text = ( aResume != RESUME_NONE ) || !openTag;
+    int i = this.start + 1;
+
+    for ( ;; )
+    {
+      final ByteBuffer buf = this.buffer;
+      final int chunkEnd = text ? getChunkEnd( this.start ) : Integer.MAX_VALUE;
+      final int lim = Math.min( this.limit, chunkEnd );
+
+      if ( openTag )
+      {
+        byte b;
+        while ( ( i < lim ) && ( ( b = buf.get( i ) ) != '<' ) && ( b != '>' ) )
+        {
+          i++;
+        }
+      }
+      else
+      {
+        while ( ( i < lim ) && ( buf.get( i ) != '<' ) )
+        {
+          i++;
+        }
+      }
+
+      if ( i >= chunkEnd )
+      {
+        // Text is too large to buffer as a whole; emit the first chunk...
+        return endTextChunk( chunkEnd, openTag );
+      }
+
+      if ( i >= lim )
+      {
+        // Token straddles the end of our buffer; read the next block...
+        final int offset = i - this.start;
+        if ( !fill() )
+        {
+          if ( !isEndOfInput() )
+          {
+            // Incomplete token; wait for more data...
+            this.end = this.start;
+            return false;
+          }
+          // No more data; emit whatever we've collected so far...
+          this.end = this.limit;
+          return true;
+        }
+        i = this.start + offset;
+        continue;
+      }
+
+      if ( buf.get( i ) == '>' )
+      {
+        this.end = i + 1;
+        return true;
+      }
+
+      // Found a '<'; we need to peek at the next character to see whether we
+      // have a tag or just a spurious '<'...
+      final int offset = i - this.start;
+      if ( needsInput( offset + 1 ) )
+      {
+        // Cannot tell yet; wait for more data...
+        this.end = this.start;
+        return false;
+      }
+      final boolean whitespace = isWhitespaceAt( this.start + offset + 1 );
+      i = this.start + offset;
+
+      if ( whitespace )
+      {
+        // Spurious '<' found; treat it (and the whitespace) as normal data...
+        openTag = true;
+        i += 2;
+        while ( ( i < this.limit ) && ( ( this.buffer.get( i ) & 0xC0 ) == 0x80 ) )
+        {
+          // Skip the continuation bytes of a multi-byte whitespace...
+          i++;
+        }
+      }
+      else
+      {
+        // Already collected some stuff; emit that token first, before going to
+        // process this (presumed) tag...
+        this.end = i;
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Makes more data available after the current limit. The default
+   * implementation does nothing, as all data is available up front.
+   * <p>
+   * Implementations are allowed to move the bytes of the current token (from
+   * {@link #start} up to {@link #limit}) to another location, as long as they
+   * update these fields, and {@link #base}, accordingly.
+   * </p>
+   *
+   * @return <code>true</code> if more data is available, <code>false</code> if
+   *         the end of the input is reached.
+   * @throws IOException
+   *           in case of I/O problems.
+   */
+  protected boolean fill() throws IOException
+  {
+    return false;
+  }
+
+  /**
+   * Returns whether the end of the input is reached once {@link #fill()}
+   * returns <code>false</code>. The default implementation returns
+   * <code>true</code>.
+   * <p>
+   * Implementations that receive their data asynchronously can return
+   * <code>false</code> to indicate that more data might become available later
+   * on. In that case, {@link #next()} returns <code>false</code> for a token
+   * that is not complete yet, and scans it again upon the next call.
+   * </p>
+   *
+   * @return <code>true</code> if no more data will become available,
+   *         <code>false</code> otherwise.
+   */
+  protected boolean isEndOfInput()
+  {
+    return true;
+  }
+
+  /**
+   * Returns whether the given range of bytes in our buffer only contains ASCII
+   * characters.
+   */
+  private boolean isAscii( final int aStart, final int aEnd )
+  {
+    final ByteBuffer buf = this.buffer;
+    for ( int i = aStart; i < aEnd; i++ )
+    {
+      if ( buf.get( i ) < 0 )
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns whether the character starting at the given index in our buffer is
+   * a whitespace character. Note that this might read more data into our buffer
+   * and thereby invalidate any indices, except for those relative to
+   * {@link #start}.
+   */
+  private boolean isWhitespaceAt( final int aIndex ) throws IOException
+  {
+    final int offset = aIndex - this.start;
+    if ( !ensureAvailable( offset, 1 ) )
+    {
+      return false;
+    }
+
+    final int b0 = this.buffer.get( this.start + offset );
+    if ( b0 >= 0 )
+    {
+      return Character.isWhitespace( ( char )b0 );
+    }
+    if ( this.latin1 )
+    {
+      return Character.isWhitespace( ( char )( b0 & 0xFF ) );
+    }
+    // All non-ASCII whitespace characters are encoded with three bytes in
+    // UTF-8; anything else is not considered to be whitespace...
+    if ( !UTF_8.equals( this.charset ) || ( ( b0 & 0xF0 ) != 0xE0 ) || !ensureAvailable( offset, 3 ) )
+    {
+      return false;
+    }
+
+    final int b1 = this.buffer.get( this.start + offset + 1 );
+    final int b2 = this.buffer.get( this.start + offset + 2 );
+    return Character.isWhitespace( ( char )( ( ( b0 & 0x0F ) << 12 ) | ( ( b1 & 0x3F ) << 6 ) | ( b2 & 0x3F ) ) );
+  }
+
+  /**
+   * Determines whether the current token starts a CDATA section, reading more
+   * data if needed to tell.
+   *
+   * @return 1 if it does, 0 if it does not, or -1 if the end of the buffered
+   *         data is reached before this can be told, while the end of the
+   *         input is not reached yet.
+   */
+  private int matchCDataStart() throws IOException
+  {
+    final int length = CDATA_START.length();
+    for ( int i = 1; i < length; i++ )
+    {
+      if ( !ensureAvailable( i, 1 ) )
+      {
+        return isEndOfInput() ? 0 : -1;
+      }
+      if ( this.buffer.get( this.start + i ) != CDATA_START.charAt( i ) )
+      {
+        return 0;
+      }
+    }
+    return 1;
+  }
+
+  /**
+   * Returns the start of the character that contains the byte before the given
+   * index, if that character does not end before the given index. This
+   * prevents chunks from splitting up multi-byte characters.
+   */
+  private int alignChunkEnd( final int aEnd )
+  {
+    if ( !UTF_8.equals( this.charset ) )
+    {
+      return aEnd;
+    }
+
+    int i = aEnd - 1;
+    while ( ( i > this.start ) && ( ( this.buffer.get( i ) & 0xC0 ) == 0x80 ) )
+    {
+      i--;
+    }
+    final int b = this.buffer.get( i ) & 0xFF;
+    final int length = ( b < 0xC0 ) ? 1 : ( b < 0xE0 ) ? 2 : ( b < 0xF0 ) ? 3 : 4;
+    return ( ( i + length ) > aEnd ) ? i : aEnd;
+  }
+
+  /**
+   * Moves the given end of a text chunk back to the start of the (presumed)
+   * entity or character reference it cuts in two, if any, so the reference can
+   * still be decoded as a whole.
+   *
+   * @return the end of the chunk, > the start of the current token.
+   */
+  private int endBeforeReference( final int aEnd )
+  {
+    final ByteBuffer buf = this.buffer;
+    int i = aEnd - 1;
+    byte b;
+    while ( ( i > this.start ) && ( ( b = buf.get( i ) ) != '&' ) && ( b != ';' ) && ( ( b < 0 ) || ( b > ' ' ) )
+        && ( b != '<' ) && ( b != '>' ) )
+    {
+      i--;
+    }
+    return ( ( i > this.start ) && ( buf.get( i ) == '&' ) ) ? i : aEnd;
+  }
+
+  /**
+   * Ends the current text token at (or just before) the given index, marking
+   * it as partial.
+   *
+   * @param aChunkEnd
+   *          the end of the chunk, all bytes of the token before it are
+   *          scanned already;
+   * @param aOpenTag
+   *          whether the text contains a spurious '&lt;', and ends at the next
+   *          '&gt;'.
+   * @return always <code>true</code>.
+   */
+  private boolean endTextChunk( final int aChunkEnd, final boolean aOpenTag )
+  {
+    int end = aChunkEnd;
+    if ( end < this.limit )
+    {
+      final byte b = this.buffer.get( end );
+      if ( ( b == '<' ) || ( aOpenTag && ( b == '>' ) ) )
+      {
+        // Do not start the next chunk with a delimiter, it would be taken as
+        // the end of the text...
+        end--;
+      }
+    }
+    else
+    {
+      end--;
+    }
+
+    this.end = alignChunkEnd( endBeforeReference( end ) );
+    this.resume = aOpenTag ? RESUME_MARKUP : RESUME_TEXT;
+    return true;
+  }
+
+  /**
+   * Scans the CDATA section starting at the current token, up to and including
+   * its terminator, or up to the end of its current chunk.
+   *
+   * @param aFrom
+   *          the index of the last byte of the first possible terminator.
+   * @return <code>true</code> if the section (or a chunk of it) is scanned,
+   *         <code>false</code> if more data is needed to find its terminator.
+   * @see ScannerBackend#CDATA_END
+   */
+  private boolean nextCData( final int aFrom ) throws IOException
+  {
+    int i = aFrom;
+
+    for ( ;; )
+    {
+      final ByteBuffer buf = this.buffer;
+      final int chunkEnd = getChunkEnd( this.start );
+      final int lim = Math.min( this.limit, chunkEnd );
+
+      // Only look at every third byte, unless it is part of a terminator...
+      while ( i < lim )
+      {
+        final byte b = buf.get( i );
+        if ( b == '>' )
+        {
+          if ( ( buf.get( i - 1 ) == ']' ) && ( buf.get( i - 2 ) == ']' ) )
+          {
+            this.end = i + 1;
+            return true;
+          }
+          i += 3;
+        }
+        else
+        {
+          i += ( b == ']' ) ? 1 : 3;
+        }
+      }
+
+      if ( i >= chunkEnd )
+      {
+        // Section is too large to buffer as a whole; emit the first chunk. Any
+        // terminator ends at or after i, so cutting it short by the length of
+        // a terminator leaves it entirely to the next chunk...
+        this.end = alignChunkEnd( chunkEnd - 2 );
+        this.resume = RESUME_CDATA;
+        return true;
+      }
+
+      // Section straddles the end of our buffer; read the next block...
+      final int offset = i - this.start;
+      if ( !fill() )
+      {
+        if ( !isEndOfInput() )
+        {
+          // Incomplete section; wait for more data...
+          this.end = this.start;
+          return false;
+        }
+        // Unterminated section; emit whatever we've collected so far...
+        this.end = this.limit;
+        return true;
+      }
+      i = this.start + offset;
+    }
+  }
+
+  /**
+   * Returns whether more data is needed to tell whether the character at the
+   * given offset, relative to {@link #start}, is whitespace, while the end of
+   * the input is not reached yet. Like {@link #isWhitespaceAt(int)}, this might
+   * read more data into our buffer.
+   */
+  private boolean needsInput( final int aOffset ) throws IOException
+  {
+    if ( isEndOfInput() )
+    {
+      return false;
+    }
+    if ( !ensureAvailable( aOffset, 1 ) )
+    {
+      return true;
+    }
+    final int b0 = this.buffer.get( this.start + aOffset );
+    return ( b0 < 0 ) && UTF_8.equals( this.charset ) && ( ( b0 & 0xF0 ) == 0xE0 ) && !ensureAvailable( aOffset, 3 );
+  }
+
+  /**
+   * Ensures that the given number of bytes, starting at the given offset
+   * relative to {@link #start}, are available in our buffer.
+   */
+  private boolean ensureAvailable( final int aOffset, final int aCount ) throws IOException
+  {
+    while ( ( this.start + aOffset + aCount ) > this.limit )
+    {
+      if ( !fill() )
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,31 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer.impl;
+
+
+/**
+ * Represents a CDATA section, like <code>&lt;![CDATA[ ... ]]&gt;</code>.
+ * <p>
+ * Its text is the literal content of the section, without its delimiters.
+ * Unlike other text, the content is never trimmed, and any markup and
+ * references it contains are retained as is.
+ * </p>
+ */
+public class CDataToken extends TextToken
+{
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new CDataToken.
+   *
+   * @param aText
+   *          the content of the CDATA section.
+   */
+  public CDataToken( final String aText )
+  {
+    super( TokenType.CDATA, aText, null );
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer.impl;
+
+
+/**
+ * Provides a lightweight, zero-copy view on a range of characters in a
+ * character array.
+ * <p>
+ * A span does not own the characters it refers to: when the underlying array
+ * is modified, the span is modified as well. Use {@link #toString()} to obtain
+ * a copy of the characters that can be retained.
+ * </p>
+ */
+public final class CharArraySpan implements CharSequence
+{
+  // VARIABLES
+
+  private char[] array;
+  private int    offset;
+  private int    length;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new, empty, CharArraySpan.
+   */
+  public CharArraySpan()
+  {
+    this( new char[0], 0, 0 );
+  }
+
+  /**
+   * Creates a new CharArraySpan.
+   *
+   * @param aArray
+   *          the character array to refer to;
+   * @param aOffset
+   *          the offset of the first character;
+   * @param aLength
+   *          the number of characters.
+   */
+  public CharArraySpan( final char[] aArray, final int aOffset, final int aLength )
+  {
+    set( aArray, aOffset, aLength );
+  }
+
+  // METHODS
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public char charAt( final int aIndex )
+  {
+    if ( ( aIndex < 0 ) || ( aIndex >= this.length ) )
+    {
+      throw new IndexOutOfBoundsException( "Invalid index: " + aIndex );
+    }
+    return this.array[this.offset + aIndex];
+  }
+
+  /**
+   * Returns the character array this span refers to.
+   *
+   * @return the character array, never <code>null</code>.
+   */
+  public char[] getArray()
+  {
+    return this.array;
+  }
+
+  /**
+   * Returns the offset of the first character of this span in the character
+   * array.
+   *
+   * @return the offset, >= 0.
+   */
+  public int getOffset()
+  {
+    return this.offset;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int length()
+  {
+    return this.length;
+  }
+
+  /**
+   * Lets this span refer to another range of characters.
+   *
+   * @param aArray
+   *          the character array to refer to;
+   * @param aOffset
+   *          the offset of the first character;
+   * @param aLength
+   *          the number of characters.
+   */
+  public void set( final char[] aArray, final int aOffset, final int aLength )
+  {
+    this.array = aArray;
+    this.offset = aOffset;
+    this.length = aLength;
+  }
+
+  /**
+   * Returns a view on a part of this span; the characters are not copied.
+   *
+   * @see java.lang.CharSequence#subSequence(int, int)
+   */
+  @Override
+  public CharSequence subSequence( final int aStart, final int aEnd )
+  {
+    if ( ( aStart < 0 ) || ( aEnd > this.length ) || ( aStart > aEnd ) )
+    {
+      throw new IndexOutOfBoundsException( "Invalid range: " + aStart + ".." + aEnd );
+    }
+    return new CharArraySpan( this.array, this.offset + aStart, aEnd - aStart );
+  }
+
+  /**
+   * Returns a copy of the characters this span refers to.
+   *
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString()
+  {
+    return new String( this.array, this.offset, this.length );
+  }
+}
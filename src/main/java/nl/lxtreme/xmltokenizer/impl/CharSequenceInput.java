@@ -0,0 +1,88 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer.impl;
+
+
+/**
+ * Provides a splittable input for character sequences, whose chunks are
+ * scanned by {@link ReaderScannerBackend}s.
+ */
+public class CharSequenceInput extends SplittableInput
+{
+  // VARIABLES
+
+  private final CharSequence sequence;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new CharSequenceInput.
+   *
+   * @param aSequence
+   *          the character sequence to scan, cannot be <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case the given sequence was <code>null</code>.
+   */
+  public CharSequenceInput( final CharSequence aSequence ) throws IllegalArgumentException
+  {
+    if ( aSequence == null )
+    {
+      throw new IllegalArgumentException( "Sequence cannot be null!" );
+    }
+    this.sequence = aSequence;
+  }
+
+  // METHODS
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ScannerBackend createBackend( final long aOffset )
+  {
+    final int offset = ( int )aOffset;
+    return new ReaderScannerBackend( new CharSequenceReader( this.sequence, offset, this.sequence.length() ),
+        ReaderScannerBackend.DEFAULT_BUFFER_SIZE, offset );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long findResyncPoint( final long aFrom, final long aTo )
+  {
+    final int to = ( int )Math.min( aTo, this.sequence.length() );
+    return findResyncPoint( this.sequence, ( int )aFrom, to );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long findTokenStart( final long aStart, final long aFrom, final long aTo )
+  {
+    final int to = ( int )Math.min( aTo, this.sequence.length() );
+    return findTokenStart( this.sequence, ( int )aStart, ( int )aFrom, to );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getEnd()
+  {
+    return this.sequence.length();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getStart()
+  {
+    return 0L;
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer.impl;
+
+
+import java.io.*;
+import java.nio.*;
+
+
+/**
+ * Provides a {@link Reader} for a range of characters of a
+ * {@link CharSequence}, without copying the sequence up front.
+ */
+public class CharSequenceReader extends Reader
+{
+  // VARIABLES
+
+  private final CharSequence sequence;
+  private final int          end;
+  private int                position;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new CharSequenceReader.
+   *
+   * @param aSequence
+   *          the character sequence to read, cannot be <code>null</code>;
+   * @param aStart
+   *          the index of the first character to read;
+   * @param aEnd
+   *          the index after the last character to read.
+   * @throws IllegalArgumentException
+   *           in case the given sequence was <code>null</code> or the given
+   *           range was invalid.
+   */
+  public CharSequenceReader( final CharSequence aSequence, final int aStart, final int aEnd )
+      throws IllegalArgumentException
+  {
+    if ( aSequence == null )
+    {
+      throw new IllegalArgumentException( "Sequence cannot be null!" );
+    }
+    if ( ( aStart < 0 ) || ( aEnd > aSequence.length() ) || ( aStart > aEnd ) )
+    {
+      throw new IllegalArgumentException( "Invalid range: " + aStart + ".." + aEnd );
+    }
+
+    this.sequence = aSequence;
+    this.position = aStart;
+    this.end = aEnd;
+  }
+
+  // METHODS
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void close()
+  {
+    // Nothing to do...
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int read( final char[] aBuffer, final int aOffset, final int aLength )
+  {
+    if ( this.position >= this.end )
+    {
+      return -1;
+    }
+
+    final int count = Math.min( aLength, this.end - this.position );
+    final int to = this.position + count;
+    if ( this.sequence instanceof String )
+    {
+      ( ( String )this.sequence ).getChars( this.position, to, aBuffer, aOffset );
+    }
+    else if ( this.sequence instanceof StringBuilder )
+    {
+      ( ( StringBuilder )this.sequence ).getChars( this.position, to, aBuffer, aOffset );
+    }
+    else if ( this.sequence instanceof CharBuffer )
+    {
+      final CharBuffer buffer = ( ( CharBuffer )this.sequence ).duplicate();
+      buffer.position( buffer.position() + this.position );
+      buffer.get( aBuffer, aOffset, count );
+    }
+    else
+    {
+      for ( int i = 0; i < count; i++ )
+      {
+        aBuffer[aOffset + i] = this.sequence.charAt( this.position + i );
+      }
+    }
+
+    this.position = to;
+    return count;
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer.impl;
+
+
+/**
+ * Provides a lightweight, zero-copy view on a range of characters in another
+ * character sequence.
+ * <p>
+ * Like {@link CharArraySpan}, a span does not own the characters it refers to,
+ * and can be made to refer to another range with
+ * {@link #set(CharSequence, int, int)}, so a single instance can be reused for
+ * many views. Use {@link #toString()} to obtain a copy that can be retained.
+ * </p>
+ */
+public final class CharSequenceSpan implements CharSequence
+{
+  // VARIABLES
+
+  private CharSequence sequence;
+  private int          offset;
+  private int          length;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new, empty, CharSequenceSpan.
+   */
+  public CharSequenceSpan()
+  {
+    this( "", 0, 0 );
+  }
+
+  /**
+   * Creates a new CharSequenceSpan.
+   *
+   * @param aSequence
+   *          the character sequence to refer to;
+   * @param aOffset
+   *          the offset of the first character;
+   * @param aLength
+   *          the number of characters.
+   */
+  public CharSequenceSpan( final CharSequence aSequence, final int aOffset, final int aLength )
+  {
+    set( aSequence, aOffset, aLength );
+  }
+
+  // METHODS
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public char charAt( final int aIndex )
+  {
+    if ( ( aIndex < 0 ) || ( aIndex >= this.length ) )
+    {
+      throw new IndexOutOfBoundsException( "Invalid index: " + aIndex );
+    }
+    return this.sequence.charAt( this.offset + aIndex );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int length()
+  {
+    return this.length;
+  }
+
+  /**
+   * Lets this span refer to another range of characters.
+   *
+   * @param aSequence
+   *          the character sequence to refer to;
+   * @param aOffset
+   *          the offset of the first character;
+   * @param aLength
+   *          the number of characters.
+   */
+  public void set( final CharSequence aSequence, final int aOffset, final int aLength )
+  {
+    this.sequence = aSequence;
+    this.offset = aOffset;
+    this.length = aLength;
+  }
+
+  /**
+   * Returns a view on a part of this span; the characters are not copied.
+   *
+   * @see java.lang.CharSequence#subSequence(int, int)
+   */
+  @Override
+  public CharSequence subSequence( final int aStart, final int aEnd )
+  {
+    if ( ( aStart < 0 ) || ( aEnd > this.length ) || ( aStart > aEnd ) )
+    {
+      throw new IndexOutOfBoundsException( "Invalid range: " + aStart + ".." + aEnd );
+    }
+    return new CharSequenceSpan( this.sequence, this.offset + aStart, aEnd - aStart );
+  }
+
+  /**
+   * Returns a copy of the characters this span refers to.
+   *
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString()
+  {
+    return this.sequence.subSequence( this.offset, this.offset + this.length ).toString();
+  }
+}
@@ -17,8 +17,11 @@ public class ElementToken extends BaseToken
 {
   // VARIABLES
 
-  private boolean endTag       = false;
-  private boolean emptyElement = false;
+  private boolean endTag;
+  private boolean emptyElement;
+  /** the namespace URI and local name, if resolved. */
+  private String  namespaceURI;
+  private String  localName;
 
   // CONSTRUCTORS
 
@@ -27,41 +30,94 @@ public class ElementToken extends BaseToken
    */
   public ElementToken( final String aRawTokenText )
   {
-    super( TokenType.TAG );
+    this( aRawTokenText, 0, aRawTokenText.length(), DEFAULT_ATTRIBUTE_PARSER, null );
+  }
 
-    String tokenText = aRawTokenText.trim();
+  /**
+   * Creates a new ElementToken for the given range of characters, which is the
+   * text of a tag without its surrounding '&lt;' and '&gt;'.
+   * <p>
+   * Only the element name is copied; the attributes are parsed directly in the
+   * given characters.
+   * </p>
+   * 
+   * @param aText
+   *          the text containing the tag;
+   * @param aFrom
+   *          the index of the first character of the tag text;
+   * @param aTo
+   *          the index after the last character of the tag text;
+   * @param aParser
+   *          the attribute parser to use;
+   * @param aSymbols
+   *          the symbol table to obtain the element name from, can be
+   *          <code>null</code>.
+   */
+  public ElementToken( final CharSequence aText, final int aFrom, final int aTo, final AttributeParser aParser,
+      final SymbolTable aSymbols )
+  {
+    this();
 
-    final String[] parts = tokenText.split( "\\s+", 2 );
-    if ( parts.length > 0 )
-    {
-      String name = parts[0].trim();
-      if ( name.startsWith( "/" ) )
-      {
-        this.endTag = true;
-        name = name.substring( 1 );
-      }
-      else if ( name.endsWith( "/" ) )
-      {
-        this.emptyElement = true;
-        name = name.substring( 0, name.length() - 1 ).trim();
-      }
-      else if ( tokenText.endsWith( "/" ) )
-      {
-        this.emptyElement = true;
-        tokenText = tokenText.substring( 0, tokenText.length() - 1 ).trim();
-      }
-      setName( name );
-    }
+    init( aText, aFrom, aTo, aParser, aSymbols, null );
+  }
 
-    tokenText = tokenText.replaceFirst( "\\Q" + getName() + "\\E", "" );
-    if ( !tokenText.isEmpty() )
-    {
-      parseAttributes( tokenText );
-    }
+  /**
+   * Creates a new ElementToken without attributes; attributes can be added
+   * with {@link #addAttribute(nl.lxtreme.xmltokenizer.IAttribute...)}.
+   * 
+   * @param aName
+   *          the element name;
+   * @param aEndTag
+   *          <code>true</code> if this token is an end tag;
+   * @param aEmptyElement
+   *          <code>true</code> if this token is an empty element tag.
+   */
+  public ElementToken( final String aName, final boolean aEndTag, final boolean aEmptyElement )
+  {
+    this();
+
+    setName( aName );
+    this.endTag = aEndTag;
+    this.emptyElement = aEmptyElement;
+  }
+
+  /**
+   * Creates a new, empty, ElementToken.
+   * 
+   * @see TokenPool
+   */
+  ElementToken()
+  {
+    super( TokenType.TAG );
   }
 
   // METHODS
 
+  /**
+   * Returns the local part of the name of this element, that is, the name
+   * without its namespace prefix.
+   * 
+   * @return the local name, or <code>null</code> in case the namespace of this
+   *         element is not resolved.
+   * @see nl.lxtreme.xmltokenizer.XmlNamespaceTokenizer
+   */
+  public String getLocalName()
+  {
+    return this.localName;
+  }
+
+  /**
+   * Returns the URI of the namespace of this element.
+   * 
+   * @return the namespace URI, or <code>null</code> in case this element is not
+   *         in a namespace, or its namespace is not resolved.
+   * @see nl.lxtreme.xmltokenizer.XmlNamespaceTokenizer
+   */
+  public String getNamespaceURI()
+  {
+    return this.namespaceURI;
+  }
+
   /**
    * @return the emptyElement
    */
@@ -77,4 +133,83 @@ public class ElementToken extends BaseToken
   {
     return this.endTag;
   }
+
+  /**
+   * Sets the namespace of this element.
+   * 
+   * @param aNamespaceURI
+   *          the namespace URI, can be <code>null</code> if this element is not
+   *          in a namespace;
+   * @param aLocalName
+   *          the local name, cannot be <code>null</code>.
+   * @see nl.lxtreme.xmltokenizer.XmlNamespaceTokenizer
+   */
+  public void setNamespace( final String aNamespaceURI, final String aLocalName )
+  {
+    this.namespaceURI = aNamespaceURI;
+    this.localName = aLocalName;
+  }
+
+  /**
+   * Initializes this token from the given range of characters.
+   * 
+   * @param aPool
+   *          the token pool to obtain the attributes from, or <code>null</code>
+   *          to parse them lazily.
+   * @see #ElementToken(CharSequence, int, int, AttributeParser, SymbolTable)
+   */
+  final void init( final CharSequence aText, final int aFrom, final int aTo, final AttributeParser aParser,
+      final SymbolTable aSymbols, final TokenPool aPool )
+  {
+    this.endTag = false;
+    this.emptyElement = false;
+    this.namespaceURI = null;
+    this.localName = null;
+
+    int from = aFrom;
+    int to = aTo;
+    while ( ( from < to ) && ( aText.charAt( from ) <= ' ' ) )
+    {
+      from++;
+    }
+    while ( ( to > from ) && ( aText.charAt( to - 1 ) <= ' ' ) )
+    {
+      to--;
+    }
+
+    int nameStart = from;
+    int nameEnd = from;
+    while ( ( nameEnd < to ) && ( aText.charAt( nameEnd ) > ' ' ) )
+    {
+      nameEnd++;
+    }
+    final int attributesStart = nameEnd;
+
+    if ( ( nameStart < nameEnd ) && ( aText.charAt( nameStart ) == '/' ) )
+    {
+      this.endTag = true;
+      nameStart++;
+    }
+    else if ( ( nameStart < nameEnd ) && ( aText.charAt( nameEnd - 1 ) == '/' ) )
+    {
+      this.emptyElement = true;
+      nameEnd--;
+    }
+    else if ( ( from < to ) && ( aText.charAt( to - 1 ) == '/' ) )
+    {
+      this.emptyElement = true;
+      to--;
+    }
+
+    setName( ( aSymbols != null ) ? aSymbols.intern( aText, nameStart, nameEnd ) : XmlAttributeParser.substring(
+        aText, nameStart, nameEnd ) );
+    if ( aPool != null )
+    {
+      aPool.addAttributes( this, aText, attributesStart, to, aParser, aSymbols );
+    }
+    else
+    {
+      parseAttributes( aText, attributesStart, to, aParser );
+    }
+  }
 }
@@ -0,0 +1,331 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer.impl;
+
+
+import java.util.*;
+
+
+/**
+ * Decodes entity and character references, like <code>&amp;amp;</code> and
+ * <code>&amp;#x20AC;</code>, in text and attribute values.
+ * <p>
+ * The five predefined entities (<code>amp</code>, <code>lt</code>,
+ * <code>gt</code>, <code>quot</code> and <code>apos</code>) and numeric
+ * character references are always decoded; additional entities can be given
+ * upon construction. Entity names are looked up in a trie, so each reference
+ * is resolved in a single pass over its name. References that are unknown or
+ * malformed are left as is.
+ * </p>
+ * <p>
+ * Text without any '&amp;' is returned as is, without copying it. Decoders are
+ * immutable, and can be shared freely.
+ * </p>
+ */
+public class EntityDecoder
+{
+  // CONSTANTS
+
+  /** Decodes the predefined entities and numeric character references. */
+  public static final EntityDecoder DEFAULT = new EntityDecoder();
+
+  // VARIABLES
+
+  private final Node root;
+  /** the length of the longest entity name. */
+  private final int  maxNameLength;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new EntityDecoder for the predefined entities only.
+   */
+  public EntityDecoder()
+  {
+    this( Collections.<String, String> emptyMap() );
+  }
+
+  /**
+   * Creates a new EntityDecoder.
+   *
+   * @param aEntities
+   *          the entities to decode in addition to the predefined entities,
+   *          mapping entity names (without '&amp;' and ';') to their
+   *          replacement text, cannot be <code>null</code>. The replacement
+   *          text is not decoded itself.
+   * @throws IllegalArgumentException
+   *           in case the given entities were <code>null</code>, or contained
+   *           a <code>null</code> or empty name or a <code>null</code> value.
+   */
+  public EntityDecoder( final Map<String, String> aEntities ) throws IllegalArgumentException
+  {
+    if ( aEntities == null )
+    {
+      throw new IllegalArgumentException( "Entities cannot be null!" );
+    }
+
+    this.root = new Node();
+    int maxLength = 0;
+
+    final Map<String, String> entities = new LinkedHashMap<String, String>();
+    entities.put( "amp", "&" );
+    entities.put( "lt", "<" );
+    entities.put( "gt", ">" );
+    entities.put( "quot", "\"" );
+    entities.put( "apos", "'" );
+    entities.putAll( aEntities );
+
+    for ( Map.Entry<String, String> entry : entities.entrySet() )
+    {
+      final String name = entry.getKey();
+      if ( ( name == null ) || name.isEmpty() || ( entry.getValue() == null ) )
+      {
+        throw new IllegalArgumentException( "Invalid entity: " + name + "!" );
+      }
+
+      Node node = this.root;
+      for ( int i = 0; i < name.length(); i++ )
+      {
+        node = node.add( name.charAt( i ) );
+      }
+      node.value = entry.getValue();
+      maxLength = Math.max( maxLength, name.length() );
+    }
+    this.maxNameLength = maxLength;
+  }
+
+  // METHODS
+
+  /**
+   * Returns the index of the first '&amp;' in the given range of characters.
+   */
+  private static int indexOfAmpersand( final CharSequence aText, final int aFrom, final int aTo )
+  {
+    for ( int i = aFrom; i < aTo; i++ )
+    {
+      if ( aText.charAt( i ) == '&' )
+      {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Decodes the references in the given range of characters.
+   *
+   * @param aText
+   *          the text to decode, cannot be <code>null</code>;
+   * @param aFrom
+   *          the index of the first character to decode;
+   * @param aTo
+   *          the index after the last character to decode.
+   * @return the decoded text, never <code>null</code>.
+   */
+  public String decode( final CharSequence aText, final int aFrom, final int aTo )
+  {
+    final int amp = indexOfAmpersand( aText, aFrom, aTo );
+    if ( amp < 0 )
+    {
+      return aText.subSequence( aFrom, aTo ).toString();
+    }
+    return decode( aText, aFrom, aTo, amp );
+  }
+
+  /**
+   * Decodes the references in the given text.
+   *
+   * @param aText
+   *          the text to decode, can be <code>null</code>.
+   * @return the decoded text, which is the given text itself in case it does
+   *         not contain any references, or <code>null</code> if the given text
+   *         was <code>null</code>.
+   */
+  public String decode( final String aText )
+  {
+    if ( aText == null )
+    {
+      return null;
+    }
+    final int amp = aText.indexOf( '&' );
+    if ( amp < 0 )
+    {
+      return aText;
+    }
+    return decode( aText, 0, aText.length(), amp );
+  }
+
+  /**
+   * Appends the replacement of the numeric character reference whose digits
+   * start at the given index to the given builder.
+   *
+   * @return the index after the reference, or -1 if it is malformed.
+   */
+  private int appendCharacterReference( final CharSequence aText, final int aFrom, final int aTo,
+      final StringBuilder aResult )
+  {
+    int i = aFrom;
+    int radix = 10;
+    if ( ( i < aTo ) && ( ( aText.charAt( i ) == 'x' ) || ( aText.charAt( i ) == 'X' ) ) )
+    {
+      radix = 16;
+      i++;
+    }
+
+    final int digits = i;
+    int codePoint = 0;
+    for ( ; i < aTo; i++ )
+    {
+      final char c = aText.charAt( i );
+      if ( c == ';' )
+      {
+        if ( ( i == digits ) || !Character.isValidCodePoint( codePoint )
+            || ( ( codePoint >= Character.MIN_SURROGATE ) && ( codePoint <= Character.MAX_SURROGATE ) ) )
+        {
+          return -1;
+        }
+        aResult.appendCodePoint( codePoint );
+        return i + 1;
+      }
+
+      final int digit = Character.digit( c, radix );
+      if ( ( digit < 0 ) || ( codePoint > ( Character.MAX_CODE_POINT / radix ) ) )
+      {
+        return -1;
+      }
+      codePoint = ( codePoint * radix ) + digit;
+    }
+    return -1;
+  }
+
+  /**
+   * Appends the replacement of the entity reference whose name starts at the
+   * given index to the given builder.
+   *
+   * @return the index after the reference, or -1 if it is unknown or
+   *         malformed.
+   */
+  private int appendEntityReference( final CharSequence aText, final int aFrom, final int aTo,
+      final StringBuilder aResult )
+  {
+    final int to = ( int )Math.min( aTo, ( long )aFrom + this.maxNameLength + 1 );
+
+    Node node = this.root;
+    for ( int i = aFrom; i < to; i++ )
+    {
+      final char c = aText.charAt( i );
+      if ( c == ';' )
+      {
+        if ( node.value == null )
+        {
+          return -1;
+        }
+        aResult.append( node.value );
+        return i + 1;
+      }
+      if ( ( node = node.get( c ) ) == null )
+      {
+        return -1;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Decodes the references in the given range of characters, starting at the
+   * given (first) '&amp;'.
+   */
+  private String decode( final CharSequence aText, final int aFrom, final int aTo, final int aAmp )
+  {
+    final StringBuilder sb = new StringBuilder( aTo - aFrom );
+
+    int last = aFrom;
+    int amp = aAmp;
+    while ( amp >= 0 )
+    {
+      sb.append( aText, last, amp );
+
+      final int ref = amp + 1;
+      final int next;
+      if ( ( ref < aTo ) && ( aText.charAt( ref ) == '#' ) )
+      {
+        next = appendCharacterReference( aText, ref + 1, aTo, sb );
+      }
+      else
+      {
+        next = appendEntityReference( aText, ref, aTo, sb );
+      }
+
+      if ( next < 0 )
+      {
+        // Leave unknown or malformed references as is...
+        sb.append( '&' );
+        last = ref;
+      }
+      else
+      {
+        last = next;
+      }
+      amp = indexOfAmpersand( aText, last, aTo );
+    }
+    sb.append( aText, last, aTo );
+
+    return sb.toString();
+  }
+
+  // INNER TYPES
+
+  /**
+   * Provides a node of the trie of entity names.
+   */
+  static final class Node
+  {
+    // VARIABLES
+
+    /** the characters leading to the children of this node. */
+    private char[] keys     = new char[0];
+    private Node[] children = new Node[0];
+    /** the replacement text, if this node ends an entity name. */
+    String         value;
+
+    // METHODS
+
+    /**
+     * Returns the child for the given character, adding it if needed.
+     */
+    Node add( final char aKey )
+    {
+      Node child = get( aKey );
+      if ( child == null )
+      {
+        final int count = this.keys.length;
+        this.keys = Arrays.copyOf( this.keys, count + 1 );
+        this.children = Arrays.copyOf( this.children, count + 1 );
+        this.keys[count] = aKey;
+        this.children[count] = child = new Node();
+      }
+      return child;
+    }
+
+    /**
+     * Returns the child for the given character.
+     *
+     * @return the child, or <code>null</code> if not found.
+     */
+    Node get( final char aKey )
+    {
+      final char[] k = this.keys;
+      for ( int i = 0; i < k.length; i++ )
+      {
+        if ( k[i] == aKey )
+        {
+          return this.children[i];
+        }
+      }
+      return null;
+    }
+  }
+}
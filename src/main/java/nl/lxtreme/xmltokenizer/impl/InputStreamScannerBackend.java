@@ -0,0 +1,232 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer.impl;
+
+
+import java.io.*;
+import java.nio.*;
+import java.nio.charset.*;
+import java.util.*;
+
+
+/**
+ * Provides a block-buffered, byte-level, scanner backend for
+ * {@link InputStream}s.
+ * <p>
+ * Large blocks of bytes are read from the input stream and scanned on the raw
+ * bytes, see {@link ByteScannerBackend}. Tokens that straddle the boundary of a
+ * block are handled in the same way as {@link ReaderScannerBackend} does.
+ * </p>
+ */
+public class InputStreamScannerBackend extends ByteScannerBackend
+{
+  // CONSTANTS
+
+  /** The default size of the byte buffer. */
+  public static final int   DEFAULT_BUFFER_SIZE = 16384;
+
+  // VARIABLES
+
+  private final InputStream stream;
+  private byte[]            array;
+  private boolean           eof;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new InputStreamScannerBackend with a default buffer size.
+   *
+   * @param aStream
+   *          the input stream to scan, cannot be <code>null</code>;
+   * @param aCharset
+   *          the (ASCII-compatible) character set of the data, cannot be
+   *          <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case one of the given arguments was <code>null</code> or in
+   *           case the given character set cannot be scanned byte-wise.
+   */
+  public InputStreamScannerBackend( final InputStream aStream, final Charset aCharset )
+      throws IllegalArgumentException
+  {
+    this( aStream, aCharset, new byte[DEFAULT_BUFFER_SIZE], 0, 0 );
+  }
+
+  /**
+   * Creates a new InputStreamScannerBackend that starts with the data that is
+   * already read from the given input stream.
+   *
+   * @param aStream
+   *          the input stream to scan, cannot be <code>null</code>;
+   * @param aCharset
+   *          the (ASCII-compatible) character set of the data, cannot be
+   *          <code>null</code>;
+   * @param aBuffer
+   *          the buffer to use, containing the data that is already read;
+   * @param aOffset
+   *          the offset in the buffer of the first byte to scan;
+   * @param aLength
+   *          the number of bytes that are already read.
+   */
+  InputStreamScannerBackend( final InputStream aStream, final Charset aCharset, final byte[] aBuffer,
+      final int aOffset, final int aLength ) throws IllegalArgumentException
+  {
+    super( ByteBuffer.wrap( aBuffer ), aOffset, aOffset + aLength, aCharset );
+
+    if ( aStream == null )
+    {
+      throw new IllegalArgumentException( "Stream cannot be null!" );
+    }
+    if ( aBuffer.length == 0 )
+    {
+      throw new IllegalArgumentException( "Buffer size should be positive!" );
+    }
+
+    this.stream = aStream;
+    this.array = aBuffer;
+  }
+
+  // METHODS
+
+  /**
+   * Creates a scanner backend for the given input stream.
+   * <p>
+   * The encoding of the data is determined by its byte order mark or its XML
+   * declaration, defaulting to UTF-8. If the data is encoded in a way that
+   * cannot be scanned byte-wise (such as UTF-16), a {@link ReaderScannerBackend}
+   * is returned that decodes the input stream.
+   * </p>
+   *
+   * @param aStream
+   *          the input stream to scan, cannot be <code>null</code>.
+   * @return a scanner backend, never <code>null</code>.
+   * @throws IOException
+   *           in case of I/O problems.
+   * @throws IllegalArgumentException
+   *           in case the given stream was <code>null</code>.
+   */
+  public static ScannerBackend create( final InputStream aStream ) throws IOException, IllegalArgumentException
+  {
+    if ( aStream == null )
+    {
+      throw new IllegalArgumentException( "Stream cannot be null!" );
+    }
+
+    // Read enough data to determine the encoding...
+    final byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
+    int length = 0;
+    int read;
+    while ( !isDeclarationComplete( buffer, length )
+        && ( ( read = aStream.read( buffer, length, MAX_DECLARATION_LENGTH - length ) ) >= 0 ) )
+    {
+      length += read;
+    }
+
+    final ByteBuffer head = ByteBuffer.wrap( buffer, 0, length );
+    final Charset charset = detectEncoding( head );
+    if ( isByteScannable( charset ) )
+    {
+      return new InputStreamScannerBackend( aStream, charset, buffer, head.position(), length - head.position() );
+    }
+
+    final InputStream stream = new SequenceInputStream( new ByteArrayInputStream( buffer, 0, length ), aStream );
+    return new ReaderScannerBackend( new InputStreamReader( stream, charset ) );
+  }
+
+  /**
+   * Returns whether the given data contains enough bytes to determine its
+   * encoding, that is, whether it contains a complete XML declaration or cannot
+   * start with one at all.
+   */
+  private static boolean isDeclarationComplete( final byte[] aBuffer, final int aLength )
+  {
+    if ( aLength >= MAX_DECLARATION_LENGTH )
+    {
+      return true;
+    }
+    if ( aLength < 4 )
+    {
+      // Not enough to determine a byte order mark...
+      return false;
+    }
+
+    final int offset = ( ( aLength > 2 ) && ( aBuffer[0] == ( byte )0xEF ) ) ? 3 : 0;
+    final String prefix = "<?xml";
+    for ( int i = offset; i < aLength; i++ )
+    {
+      final int idx = i - offset;
+      if ( ( idx < prefix.length() ) && ( aBuffer[i] != prefix.charAt( idx ) ) )
+      {
+        // Not an XML declaration...
+        return true;
+      }
+      if ( aBuffer[i] == '>' )
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void close() throws IOException
+  {
+    this.stream.close();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected boolean fill() throws IOException
+  {
+    if ( this.eof )
+    {
+      return false;
+    }
+
+    if ( this.limit == this.array.length )
+    {
+      if ( this.start > 0 )
+      {
+        final int length = this.limit - this.start;
+        System.arraycopy( this.array, this.start, this.array, 0, length );
+        this.base += this.start;
+        this.limit = length;
+        this.start = 0;
+      }
+      else
+      {
+        this.array = Arrays.copyOf( this.array, this.array.length * 2 );
+        this.buffer = ByteBuffer.wrap( this.array );
+      }
+    }
+    else if ( this.start == this.limit )
+    {
+      // Nothing pending; simply start over at the front of our buffer...
+      this.base += this.start;
+      this.start = this.limit = 0;
+    }
+
+    int read;
+    do
+    {
+      read = this.stream.read( this.array, this.limit, this.array.length - this.limit );
+    }
+    while ( read == 0 );
+
+    if ( read < 0 )
+    {
+      this.eof = true;
+      return false;
+    }
+
+    this.limit += read;
+    return true;
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer.impl;
+
+
+import java.io.*;
+import java.util.*;
+
+import nl.lxtreme.xmltokenizer.*;
+
+
+/**
+ * Provides a lenient attribute parser, based on {@link KeyValuePairParser}.
+ * <p>
+ * In addition to the common XML rules, this parser accepts backslash-escaped
+ * quotes, C-like comments and unterminated quotes, and appends values without
+ * a name (<em>continuations</em>) to the value of the preceding attribute.
+ * This comes at a price: it is considerably slower than
+ * {@link XmlAttributeParser}.
+ * </p>
+ */
+public class LenientAttributeParser implements AttributeParser
+{
+  // METHODS
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void parse( final CharSequence aText, final int aFrom, final int aTo,
+      final Collection<? super IAttribute> aResult )
+  {
+    final KeyValuePairParser tokenizer = new KeyValuePairParser( new CharSequenceReader( aText, aFrom, aTo ) );
+
+    // Continuations can follow the last attribute, so it is only added once
+    // the next attribute is found...
+    Attribute pending = null;
+    String[] attr = null;
+    do
+    {
+      try
+      {
+        attr = tokenizer.nextKeyValuePair();
+        if ( attr != null )
+        {
+          // Did we find a "continuation"?
+          if ( ( attr[0] == null ) && ( pending != null ) )
+          {
+            pending = new Attribute( pending.getName(), pending.getRawValue() + " " + attr[1] );
+          }
+          else
+          {
+            if ( pending != null )
+            {
+              aResult.add( pending );
+            }
+            pending = new Attribute( attr[0], attr[1] );
+          }
+        }
+      }
+      catch ( IOException exception )
+      {
+        exception.printStackTrace();
+      }
+    }
+    while ( attr != null );
+
+    if ( pending != null )
+    {
+      aResult.add( pending );
+    }
+  }
+}
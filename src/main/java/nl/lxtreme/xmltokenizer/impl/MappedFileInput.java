@@ -0,0 +1,277 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer.impl;
+
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.*;
+import java.nio.file.*;
+
+
+/**
+ * Provides a splittable input for memory mapped files, whose chunks are scanned
+ * by {@link MappedFileScannerBackend}s.
+ * <p>
+ * Like the scanner backends, this input maps at most one window of the file at
+ * a time, also when searching for a token start, so chunks of any size can be
+ * split.
+ * </p>
+ */
+public class MappedFileInput extends SplittableInput
+{
+  // VARIABLES
+
+  private final FileChannel channel;
+  private final Charset     charset;
+  private final long        start;
+  private final long        end;
+  private final int         windowSize;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new MappedFileInput.
+   *
+   * @param aChannel
+   *          the file channel to scan, cannot be <code>null</code>;
+   * @param aCharset
+   *          the (ASCII-compatible) character set of the file, cannot be
+   *          <code>null</code>;
+   * @param aStart
+   *          the offset of the first token in the file, >= 0;
+   * @param aEnd
+   *          the size of the file;
+   * @param aWindowSize
+   *          the size of the windows to map, > 0.
+   * @throws IllegalArgumentException
+   *           in case one of the given arguments was invalid.
+   */
+  public MappedFileInput( final FileChannel aChannel, final Charset aCharset, final long aStart, final long aEnd,
+      final int aWindowSize ) throws IllegalArgumentException
+  {
+    if ( aChannel == null )
+    {
+      throw new IllegalArgumentException( "Channel cannot be null!" );
+    }
+    if ( !ByteScannerBackend.isByteScannable( aCharset ) )
+    {
+      throw new IllegalArgumentException( "Unsupported character set: " + aCharset );
+    }
+    if ( ( aStart < 0 ) || ( aEnd < aStart ) )
+    {
+      throw new IllegalArgumentException( "Invalid range: " + aStart + ".." + aEnd );
+    }
+    if ( aWindowSize <= 0 )
+    {
+      throw new IllegalArgumentException( "Window size should be positive!" );
+    }
+
+    this.channel = aChannel;
+    this.charset = aCharset;
+    this.start = aStart;
+    this.end = aEnd;
+    this.windowSize = aWindowSize;
+  }
+
+  // METHODS
+
+  /**
+   * Opens the file denoted by the given path as splittable input.
+   *
+   * @param aPath
+   *          the path of the file to open, cannot be <code>null</code>.
+   * @return a new input, or <code>null</code> in case the file is encoded in a
+   *         way that cannot be scanned byte-wise.
+   * @throws IOException
+   *           in case of I/O problems.
+   * @throws IllegalArgumentException
+   *           in case the given path was <code>null</code>.
+   */
+  public static MappedFileInput open( final Path aPath ) throws IOException, IllegalArgumentException
+  {
+    if ( aPath == null )
+    {
+      throw new IllegalArgumentException( "Path cannot be null!" );
+    }
+
+    final FileChannel channel = FileChannel.open( aPath, StandardOpenOption.READ );
+    try
+    {
+      final long size = channel.size();
+
+      final ByteBuffer head = channel.map( MapMode.READ_ONLY, 0,
+          Math.min( size, ByteScannerBackend.MAX_DECLARATION_LENGTH ) );
+      final Charset charset = ByteScannerBackend.detectEncoding( head );
+      if ( ByteScannerBackend.isByteScannable( charset ) )
+      {
+        return new MappedFileInput( channel, charset, head.position(), size,
+            MappedFileScannerBackend.DEFAULT_WINDOW_SIZE );
+      }
+    }
+    catch ( IOException exception )
+    {
+      channel.close();
+      throw exception;
+    }
+    catch ( RuntimeException exception )
+    {
+      channel.close();
+      throw exception;
+    }
+
+    channel.close();
+    return null;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void close() throws IOException
+  {
+    this.channel.close();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ScannerBackend createBackend( final long aOffset ) throws IOException
+  {
+    return new MappedFileScannerBackend( this.channel, this.charset, aOffset, this.end, this.windowSize );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long findResyncPoint( final long aFrom, final long aTo ) throws IOException
+  {
+    final long from = Math.max( aFrom, this.start );
+    final long to = Math.min( aTo, this.end );
+    if ( from >= to )
+    {
+      return -1L;
+    }
+
+    final long size = Math.min( this.end - from, Math.min( ( to - from ) + LOOKAHEAD, Integer.MAX_VALUE ) );
+    final ByteBuffer window = this.channel.map( MapMode.READ_ONLY, from, size );
+
+    final int idx = findResyncPoint( new ByteBufferSpan( window, 0, ( int )size ), 0, ( int )( to - from ) );
+    return ( idx < 0 ) ? -1L : from + idx;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long findTokenStart( final long aStart, final long aFrom, final long aTo ) throws IOException
+  {
+    final String cdataStart = ScannerBackend.CDATA_START;
+    final String cdataEnd = ScannerBackend.CDATA_END;
+    // Consecutive windows overlap, such that a marker starting near the end of
+    // a window can be recognized in that window...
+    final int overlap = cdataStart.length();
+    final long to = Math.min( aTo, this.end );
+
+    long pos = Math.max( aStart, this.start );
+    boolean cdata = false;
+    while ( pos < to )
+    {
+      final int length = ( int )Math.min( Math.min( this.windowSize, Integer.MAX_VALUE - overlap ), to - pos );
+      final int size = ( int )Math.min( length + overlap, this.end - pos );
+      final ByteBuffer window = this.channel.map( MapMode.READ_ONLY, pos, size );
+
+      int i = 0;
+      while ( i < length )
+      {
+        if ( cdata )
+        {
+          // Skip the entire section, however large...
+          if ( regionMatches( window, size, i, cdataEnd ) )
+          {
+            cdata = false;
+            i += cdataEnd.length();
+          }
+          else
+          {
+            i++;
+          }
+          continue;
+        }
+
+        if ( window.get( i ) != '<' )
+        {
+          i++;
+          continue;
+        }
+        if ( regionMatches( window, size, i, cdataStart ) )
+        {
+          cdata = true;
+          i += cdataStart.length();
+          continue;
+        }
+
+        if ( ( i + 1 ) >= size )
+        {
+          return -1L;
+        }
+        // Non-ASCII bytes are negative...
+        final byte next = window.get( i + 1 );
+        if ( ( ( pos + i ) >= aFrom ) && ( next >= 0 ) && !Character.isWhitespace( next ) )
+        {
+          return pos + i;
+        }
+        i++;
+      }
+      pos += i;
+    }
+    return -1L;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getEnd()
+  {
+    return this.end;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getStart()
+  {
+    return this.start;
+  }
+
+  /**
+   * @return <code>true</code> if the given window contains the given (ASCII)
+   *         string at the given index, <code>false</code> otherwise.
+   */
+  private static boolean regionMatches( final ByteBuffer aWindow, final int aSize, final int aIndex,
+      final String aString )
+  {
+    final int length = aString.length();
+    if ( ( aIndex + length ) > aSize )
+    {
+      return false;
+    }
+    for ( int i = 0; i < length; i++ )
+    {
+      if ( aWindow.get( aIndex + i ) != aString.charAt( i ) )
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer.impl;
+
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.*;
+import java.nio.file.*;
+
+
+/**
+ * Provides a byte-level scanner backend for (large) files, which are memory
+ * mapped instead of read.
+ * <p>
+ * As a single mapping is limited to 2 GB, the file is mapped in windows of a
+ * fixed size. Once the scanner reaches the end of a window, the next window is
+ * mapped starting at the beginning of the current token, so tokens never
+ * straddle two windows. Only in case a single token is larger than the window
+ * size, the window is enlarged.
+ * </p>
+ */
+public class MappedFileScannerBackend extends ByteScannerBackend
+{
+  // CONSTANTS
+
+  /** The default size of a mapped window, 64 MB. */
+  public static final int   DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+  // VARIABLES
+
+  private final FileChannel channel;
+  private final long        end;
+  private final int         windowSize;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new MappedFileScannerBackend that scans the given range of the
+   * given file channel.
+   *
+   * @param aChannel
+   *          the file channel to scan, cannot be <code>null</code>;
+   * @param aCharset
+   *          the (ASCII-compatible) character set of the data, cannot be
+   *          <code>null</code>;
+   * @param aStart
+   *          the offset in the file to start scanning at, >= 0;
+   * @param aEnd
+   *          the offset in the file to stop scanning at (exclusive);
+   * @param aWindowSize
+   *          the size of each mapped window, > 0.
+   * @throws IOException
+   *           in case of I/O problems mapping the file.
+   * @throws IllegalArgumentException
+   *           in case one of the given arguments was invalid.
+   */
+  public MappedFileScannerBackend( final FileChannel aChannel, final Charset aCharset, final long aStart,
+      final long aEnd, final int aWindowSize ) throws IOException, IllegalArgumentException
+  {
+    super( map( aChannel, aStart, aEnd, aWindowSize ), 0, ( int )Math.min( aEnd - aStart, aWindowSize ), aCharset );
+
+    if ( aWindowSize <= 0 )
+    {
+      throw new IllegalArgumentException( "Window size should be positive!" );
+    }
+
+    this.channel = aChannel;
+    this.end = aEnd;
+    this.windowSize = aWindowSize;
+    this.base = aStart;
+  }
+
+  // METHODS
+
+  /**
+   * Creates a scanner backend for the file denoted by the given path.
+   * <p>
+   * The encoding of the file is determined by its byte order mark or its XML
+   * declaration, defaulting to UTF-8. If the file is encoded in a way that
+   * cannot be scanned byte-wise (such as UTF-16), a {@link ReaderScannerBackend}
+   * is returned that decodes the file instead.
+   * </p>
+   *
+   * @param aPath
+   *          the path of the file to scan, cannot be <code>null</code>.
+   * @return a scanner backend, never <code>null</code>.
+   * @throws IOException
+   *           in case of I/O problems.
+   * @throws IllegalArgumentException
+   *           in case the given path was <code>null</code>.
+   */
+  public static ScannerBackend create( final Path aPath ) throws IOException, IllegalArgumentException
+  {
+    if ( aPath == null )
+    {
+      throw new IllegalArgumentException( "Path cannot be null!" );
+    }
+
+    final FileChannel channel = FileChannel.open( aPath, StandardOpenOption.READ );
+    try
+    {
+      final long size = channel.size();
+
+      final ByteBuffer head = map( channel, 0, size, MAX_DECLARATION_LENGTH );
+      final Charset charset = detectEncoding( head );
+      if ( isByteScannable( charset ) )
+      {
+        return new MappedFileScannerBackend( channel, charset, head.position(), size, DEFAULT_WINDOW_SIZE );
+      }
+
+      return new ReaderScannerBackend( Channels.newReader( channel, charset.newDecoder(), -1 ) );
+    }
+    catch ( IOException exception )
+    {
+      channel.close();
+      throw exception;
+    }
+    catch ( RuntimeException exception )
+    {
+      channel.close();
+      throw exception;
+    }
+  }
+
+  /**
+   * Maps a window of the given file channel.
+   */
+  private static ByteBuffer map( final FileChannel aChannel, final long aStart, final long aEnd, final int aSize )
+      throws IOException
+  {
+    if ( aChannel == null )
+    {
+      throw new IllegalArgumentException( "Channel cannot be null!" );
+    }
+    if ( ( aStart < 0 ) || ( aEnd < aStart ) )
+    {
+      throw new IllegalArgumentException( "Invalid range: " + aStart + ".." + aEnd );
+    }
+    return aChannel.map( MapMode.READ_ONLY, aStart, Math.min( aEnd - aStart, Math.max( 0, aSize ) ) );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void close() throws IOException
+  {
+    this.channel.close();
+  }
+
+  /**
+   * Maps the next window of our file, starting at the current token.
+   *
+   * @see ByteScannerBackend#fill()
+   */
+  @Override
+  protected boolean fill() throws IOException
+  {
+    final long windowEnd = this.base + this.limit;
+    if ( windowEnd >= this.end )
+    {
+      return false;
+    }
+
+    final long newBase = this.base + this.start;
+    final int pending = this.limit - this.start;
+
+    long size = this.windowSize;
+    if ( pending >= this.windowSize )
+    {
+      // The current token does not fit in a single window...
+      size = Math.min( 2L * pending, Integer.MAX_VALUE );
+      if ( size <= pending )
+      {
+        throw new IOException( "Token too large to map at offset " + newBase );
+      }
+    }
+
+    this.buffer = map( this.channel, newBase, this.end, ( int )size );
+    this.base = newBase;
+    this.start = 0;
+    this.limit = this.buffer.limit();
+    return true;
+  }
+}
@@ -18,6 +18,17 @@ public class ProcessingInstructionToken extends BaseToken
    *          the processing instruction text.
    */
   public ProcessingInstructionToken( final String... aPIParts )
+  {
+    this( DEFAULT_ATTRIBUTE_PARSER, aPIParts );
+  }
+
+  /**
+   * @param aParser
+   *          the attribute parser to use;
+   * @param aPIText
+   *          the processing instruction text.
+   */
+  public ProcessingInstructionToken( final AttributeParser aParser, final String... aPIParts )
   {
     super( TokenType.PI );
 
@@ -28,7 +39,7 @@ public class ProcessingInstructionToken extends BaseToken
 
     if ( aPIParts.length > 1 )
     {
-      parseAttributes( aPIParts[1] );
+      parseAttributes( aPIParts[1], 0, aPIParts[1].length(), aParser );
     }
   }
 }
@@ -0,0 +1,173 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer.impl;
+
+
+import java.nio.*;
+import java.nio.charset.*;
+import java.util.*;
+
+
+/**
+ * Provides a byte-based scanner backend whose data is pushed into it, rather
+ * than read by it.
+ * <p>
+ * Data is handed to this backend with {@link #feed(ByteBuffer)}, and the end
+ * of the data is signalled with {@link #endOfInput()}. Until then,
+ * {@link #next()} returns <code>false</code> for tokens that might not be
+ * complete yet, and scans them again once more data is fed. A leading UTF-8
+ * byte order mark is skipped, like {@link ByteScannerBackend#create(ByteBuffer)}
+ * does.
+ * </p>
+ */
+public class PushScannerBackend extends ByteScannerBackend
+{
+  // CONSTANTS
+
+  /** The initial size of the byte buffers. */
+  private static final int INITIAL_BUFFER_SIZE = 4096;
+
+  // VARIABLES
+
+  private byte[]           array;
+  /** the data fed, but not yet added to our buffer. */
+  private byte[]           pending;
+  private int              pendingLength;
+  private boolean          started;
+  private boolean          eof;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new PushScannerBackend.
+   *
+   * @param aCharset
+   *          the (ASCII-compatible) character set of the data, cannot be
+   *          <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case the given character set was <code>null</code> or cannot
+   *           be scanned byte-wise.
+   */
+  public PushScannerBackend( final Charset aCharset ) throws IllegalArgumentException
+  {
+    this( new byte[INITIAL_BUFFER_SIZE], aCharset );
+  }
+
+  /**
+   * Creates a new PushScannerBackend using the given (empty) buffer.
+   */
+  private PushScannerBackend( final byte[] aBuffer, final Charset aCharset ) throws IllegalArgumentException
+  {
+    super( ByteBuffer.wrap( aBuffer ), 0, 0, aCharset );
+
+    this.array = aBuffer;
+    this.pending = new byte[INITIAL_BUFFER_SIZE];
+  }
+
+  // METHODS
+
+  /**
+   * Signals that no more data will be fed to this backend, allowing its last
+   * token to be scanned.
+   */
+  public void endOfInput()
+  {
+    this.eof = true;
+  }
+
+  /**
+   * Feeds the remaining bytes of the given buffer to this backend. The bytes
+   * are copied, so the given buffer can be reused afterwards.
+   *
+   * @param aData
+   *          the data to feed, cannot be <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case the given data was <code>null</code>.
+   * @throws IllegalStateException
+   *           in case the end of the input was already signalled.
+   */
+  public void feed( final ByteBuffer aData ) throws IllegalArgumentException, IllegalStateException
+  {
+    if ( aData == null )
+    {
+      throw new IllegalArgumentException( "Data cannot be null!" );
+    }
+    if ( this.eof )
+    {
+      throw new IllegalStateException( "End of input already signalled!" );
+    }
+
+    final int length = aData.remaining();
+    if ( ( this.pendingLength + length ) > this.pending.length )
+    {
+      this.pending = Arrays.copyOf( this.pending, Math.max( this.pendingLength + length, this.pending.length * 2 ) );
+    }
+    aData.get( this.pending, this.pendingLength, length );
+    this.pendingLength += length;
+  }
+
+  /**
+   * Moves all pending data into our buffer.
+   *
+   * @see ByteScannerBackend#fill()
+   */
+  @Override
+  protected boolean fill()
+  {
+    if ( !this.started )
+    {
+      if ( ( this.pendingLength < 3 ) && !this.eof )
+      {
+        // Not enough to determine a byte order mark...
+        return false;
+      }
+      this.started = true;
+      if ( ( this.pendingLength >= 3 ) && ( this.pending[0] == ( byte )0xEF ) && ( this.pending[1] == ( byte )0xBB )
+          && ( this.pending[2] == ( byte )0xBF ) )
+      {
+        this.pendingLength -= 3;
+        System.arraycopy( this.pending, 3, this.pending, 0, this.pendingLength );
+        this.base = 3;
+      }
+    }
+
+    if ( this.pendingLength == 0 )
+    {
+      return false;
+    }
+
+    // Move the current token to the front of our buffer...
+    final int length = this.limit - this.start;
+    final int required = length + this.pendingLength;
+    if ( required > this.array.length )
+    {
+      final byte[] array = new byte[Math.max( required, this.array.length * 2 )];
+      System.arraycopy( this.array, this.start, array, 0, length );
+      this.array = array;
+      this.buffer = ByteBuffer.wrap( array );
+    }
+    else if ( this.start > 0 )
+    {
+      System.arraycopy( this.array, this.start, this.array, 0, length );
+    }
+    this.base += this.start;
+    this.start = 0;
+
+    System.arraycopy( this.pending, 0, this.array, length, this.pendingLength );
+    this.limit = required;
+    this.pendingLength = 0;
+    return true;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected boolean isEndOfInput()
+  {
+    return this.eof && ( this.pendingLength == 0 );
+  }
+}
@@ -0,0 +1,455 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer.impl;
+
+
+import java.io.*;
+import java.util.*;
+
+
+/**
+ * Provides a block-buffered scanner backend for {@link Reader}s.
+ * <p>
+ * Instead of reading the input character by character, this backend pulls
+ * large blocks of characters from the reader and scans those with tight index
+ * loops. Tokens that straddle the boundary of a block are handled by moving
+ * the partial token to the front of the buffer (or growing the buffer in case
+ * the token is larger than the buffer itself) before reading the next block.
+ * </p>
+ */
+public class ReaderScannerBackend extends ScannerBackend
+{
+  // CONSTANTS
+
+  /** The default size of the character buffer. */
+  public static final int DEFAULT_BUFFER_SIZE = 16384;
+
+  // VARIABLES
+
+  private final Reader        reader;
+  private final CharArraySpan view;
+
+  private char[]              buffer;
+  /** the offset in the input of the first character in our buffer. */
+  private long                base;
+  /** the start of the current token. */
+  private int                 start;
+  /** the end (exclusive) of the current token. */
+  private int                 end;
+  /** the end (exclusive) of the valid data in our buffer. */
+  private int                 limit;
+  private boolean             eof;
+  /** how the next token continues the current token, if at all. */
+  private int                 resume;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new ReaderScannerBackend with a default buffer size.
+   *
+   * @param aReader
+   *          the reader to scan, cannot be <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case the given reader was <code>null</code>.
+   */
+  public ReaderScannerBackend( final Reader aReader ) throws IllegalArgumentException
+  {
+    this( aReader, DEFAULT_BUFFER_SIZE );
+  }
+
+  /**
+   * Creates a new ReaderScannerBackend.
+   *
+   * @param aReader
+   *          the reader to scan, cannot be <code>null</code>;
+   * @param aBufferSize
+   *          the initial size of the character buffer, > 0.
+   * @throws IllegalArgumentException
+   *           in case the given reader was <code>null</code> or the given
+   *           buffer size was invalid.
+   */
+  public ReaderScannerBackend( final Reader aReader, final int aBufferSize ) throws IllegalArgumentException
+  {
+    this( aReader, aBufferSize, 0L );
+  }
+
+  /**
+   * Creates a new ReaderScannerBackend for a reader that does not start at the
+   * beginning of the input.
+   *
+   * @param aReader
+   *          the reader to scan, cannot be <code>null</code>;
+   * @param aBufferSize
+   *          the initial size of the character buffer, > 0;
+   * @param aOffset
+   *          the offset in the input of the first character of the reader, >=
+   *          0.
+   * @throws IllegalArgumentException
+   *           in case the given reader was <code>null</code> or the given
+   *           buffer size was invalid.
+   */
+  public ReaderScannerBackend( final Reader aReader, final int aBufferSize, final long aOffset )
+      throws IllegalArgumentException
+  {
+    if ( aReader == null )
+    {
+      throw new IllegalArgumentException( "Reader cannot be null!" );
+    }
+    if ( aBufferSize <= 0 )
+    {
+      throw new IllegalArgumentException( "Buffer size should be positive!" );
+    }
+
+    this.reader = aReader;
+    this.buffer = new char[aBufferSize];
+    this.base = aOffset;
+    this.view = new CharArraySpan();
+  }
+
+  // METHODS
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void close() throws IOException
+  {
+    this.reader.close();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String getToken()
+  {
+    return new String( this.buffer, this.start, this.end - this.start );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getTokenOffset()
+  {
+    return this.base + this.start;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public CharSequence getTokenView()
+  {
+    this.view.set( this.buffer, this.start, this.end - this.start );
+    return this.view;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isPartial()
+  {
+    return this.resume != RESUME_NONE;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean next() throws IOException
+  {
+    final int resume = this.resume;
+    this.start = this.end;
+    if ( ( this.start >= this.limit ) && !fill() )
+    {
+      return false;
+    }
+    this.resume = RESUME_NONE;
+
+    if ( resume == RESUME_CDATA )
+    {
+      return nextCData( this.start + 2 );
+    }
+
+    boolean openTag = ( resume == RESUME_MARKUP ) || ( ( resume == RESUME_NONE ) && ( this.buffer[this.start] == '<' ) );
+    if ( ( resume == RESUME_NONE ) && openTag && isCDataStart() )
+    {
+      return nextCData( this.start + CDATA_START.length() + 2 );
+    }
+    // Only text is split up into chunks, tags are always scanned as a whole...
+    final boolean text = ( resume != RESUME_NONE ) || !openTag;
+    int i = this.start + 1;
+
+    for ( ;; )
+    {
+      final char[] buf = this.buffer;
+      final int chunkEnd = text ? getChunkEnd( this.start ) : Integer.MAX_VALUE;
+      final int lim = Math.min( this.limit, chunkEnd );
+
+      if ( openTag )
+      {
+        while ( ( i < lim ) && ( buf[i] != '<' ) && ( buf[i] != '>' ) )
+        {
+          i++;
+        }
+      }
+      else
+      {
+        while ( ( i < lim ) && ( buf[i] != '<' ) )
+        {
+          i++;
+        }
+      }
+
+      if ( i >= chunkEnd )
+      {
+        // Text is too large to buffer as a whole; emit the first chunk...
+        return endTextChunk( chunkEnd, openTag );
+      }
+
+      if ( i >= lim )
+      {
+        // Token straddles the end of our buffer; read the next block...
+        final int offset = i - this.start;
+        if ( !fill() )
+        {
+          // No more data; emit whatever we've collected so far...
+          this.end = this.limit;
+          return true;
+        }
+        i = this.start + offset;
+        continue;
+      }
+
+      if ( buf[i] == '>' )
+      {
+        this.end = i + 1;
+        return true;
+      }
+
+      // Found a '<'; we need to peek at the next character to see whether we
+      // have a tag or just a spurious '<'...
+      if ( ( i + 1 ) >= this.limit )
+      {
+        final int offset = i - this.start;
+        fill();
+        i = this.start + offset;
+      }
+
+      if ( ( ( i + 1 ) < this.limit ) && Character.isWhitespace( this.buffer[i + 1] ) )
+      {
+        // Spurious '<' found; treat it (and the whitespace) as normal data...
+        openTag = true;
+        i += 2;
+      }
+      else
+      {
+        // Already collected some stuff; emit that token first, before going to
+        // process this (presumed) tag...
+        this.end = i;
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Returns whether the current token starts a CDATA section, reading more
+   * data if needed to tell.
+   */
+  private boolean isCDataStart() throws IOException
+  {
+    final int length = CDATA_START.length();
+    while ( ( ( this.limit - this.start ) < length ) && fill() )
+    {
+      // Keep reading...
+    }
+    if ( ( this.limit - this.start ) < length )
+    {
+      return false;
+    }
+    for ( int i = 1; i < length; i++ )
+    {
+      if ( this.buffer[this.start + i] != CDATA_START.charAt( i ) )
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Ends the current text token at (or just before) the given index, marking
+   * it as partial.
+   *
+   * @param aChunkEnd
+   *          the end of the chunk, all characters of the token before it are
+   *          scanned already;
+   * @param aOpenTag
+   *          whether the text contains a spurious '&lt;', and ends at the next
+   *          '&gt;'.
+   * @return always <code>true</code>.
+   */
+  private boolean endTextChunk( final int aChunkEnd, final boolean aOpenTag )
+  {
+    final char[] buf = this.buffer;
+
+    int end = aChunkEnd;
+    if ( ( end >= this.limit ) || ( buf[end] == '<' ) || ( aOpenTag && ( buf[end] == '>' ) ) )
+    {
+      // Do not start the next chunk with a delimiter, it would be taken as the
+      // end of the text...
+      end--;
+    }
+    end = endBeforeReference( end );
+    if ( Character.isHighSurrogate( buf[end - 1] ) )
+    {
+      end--;
+    }
+
+    this.end = end;
+    this.resume = aOpenTag ? RESUME_MARKUP : RESUME_TEXT;
+    return true;
+  }
+
+  /**
+   * Moves the given end of a text chunk back to the start of the (presumed)
+   * entity or character reference it cuts in two, if any, so the reference can
+   * still be decoded as a whole.
+   *
+   * @return the end of the chunk, > the start of the current token.
+   */
+  private int endBeforeReference( final int aEnd )
+  {
+    final char[] buf = this.buffer;
+    int i = aEnd - 1;
+    char c;
+    while ( ( i > this.start ) && ( ( c = buf[i] ) != '&' ) && ( c != ';' ) && ( c > ' ' ) && ( c != '<' )
+        && ( c != '>' ) )
+    {
+      i--;
+    }
+    return ( ( i > this.start ) && ( buf[i] == '&' ) ) ? i : aEnd;
+  }
+
+  /**
+   * Scans the CDATA section starting at the current token, up to and including
+   * its terminator, or up to the end of its current chunk.
+   *
+   * @param aFrom
+   *          the index of the last character of the first possible terminator.
+   * @return always <code>true</code>.
+   * @see ScannerBackend#CDATA_END
+   */
+  private boolean nextCData( final int aFrom ) throws IOException
+  {
+    int i = aFrom;
+
+    for ( ;; )
+    {
+      final char[] buf = this.buffer;
+      final int chunkEnd = getChunkEnd( this.start );
+      final int lim = Math.min( this.limit, chunkEnd );
+
+      // Only look at every third character, unless it is part of a
+      // terminator...
+      while ( i < lim )
+      {
+        final char c = buf[i];
+        if ( c == '>' )
+        {
+          if ( ( buf[i - 1] == ']' ) && ( buf[i - 2] == ']' ) )
+          {
+            this.end = i + 1;
+            return true;
+          }
+          i += 3;
+        }
+        else
+        {
+          i += ( c == ']' ) ? 1 : 3;
+        }
+      }
+
+      if ( i >= chunkEnd )
+      {
+        // Section is too large to buffer as a whole; emit the first chunk. Any
+        // terminator ends at or after i, so cutting it short by the length of
+        // a terminator leaves it entirely to the next chunk...
+        final int end = chunkEnd - 2;
+        this.end = Character.isHighSurrogate( buf[end - 1] ) ? end - 1 : end;
+        this.resume = RESUME_CDATA;
+        return true;
+      }
+
+      // Section straddles the end of our buffer; read the next block...
+      final int offset = i - this.start;
+      if ( !fill() )
+      {
+        // Unterminated section; emit whatever we've collected so far...
+        this.end = this.limit;
+        return true;
+      }
+      i = this.start + offset;
+    }
+  }
+
+  /**
+   * Reads the next block of data from our reader, moving the current (partial)
+   * token to the front of our buffer if needed.
+   *
+   * @return <code>true</code> if more data was read, <code>false</code> if the
+   *         end of the input was reached.
+   * @throws IOException
+   *           in case of I/O problems.
+   */
+  private boolean fill() throws IOException
+  {
+    if ( this.eof )
+    {
+      return false;
+    }
+
+    if ( this.limit == this.buffer.length )
+    {
+      if ( this.start > 0 )
+      {
+        final int length = this.limit - this.start;
+        System.arraycopy( this.buffer, this.start, this.buffer, 0, length );
+        this.base += this.start;
+        this.limit = length;
+        this.start = 0;
+      }
+      else
+      {
+        this.buffer = Arrays.copyOf( this.buffer, this.buffer.length * 2 );
+      }
+    }
+    else if ( this.start == this.limit )
+    {
+      // Nothing pending; simply start over at the front of our buffer...
+      this.base += this.start;
+      this.start = this.limit = 0;
+    }
+
+    int read;
+    do
+    {
+      read = this.reader.read( this.buffer, this.limit, this.buffer.length - this.limit );
+    }
+    while ( read == 0 );
+
+    if ( read < 0 )
+    {
+      this.eof = true;
+      return false;
+    }
+
+    this.limit += read;
+    return true;
+  }
+}
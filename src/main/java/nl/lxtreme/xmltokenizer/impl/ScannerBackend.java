@@ -0,0 +1,231 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer.impl;
+
+
+import java.io.*;
+
+
+/**
+ * Provides the actual scanning engine behind a {@link nl.lxtreme.xmltokenizer.XmlScanner}.
+ * <p>
+ * A backend breaks up its input into chunks of either character data or
+ * apparent XML-tags. Each call to {@link #next()} advances to the next chunk,
+ * which is then available through {@link #getToken()} (as copy) or
+ * {@link #getTokenView()} (as view) until the next call to {@link #next()}.
+ * </p>
+ */
+public abstract class ScannerBackend implements Closeable
+{
+  // CONSTANTS
+
+  /**
+   * The start of a CDATA section. A CDATA section is scanned as a single
+   * token, up to and including the first {@link #CDATA_END}, regardless of
+   * any markup it contains.
+   */
+  protected static final String CDATA_START    = "<![CDATA[";
+  /** The end of a CDATA section. */
+  protected static final String CDATA_END      = "]]>";
+
+  /** The minimal chunk size, see {@link #setChunkSize(int)}. */
+  public static final int       MIN_CHUNK_SIZE = 16;
+
+  /** The next token does not continue the current one. */
+  protected static final int    RESUME_NONE    = 0;
+  /** The next token continues the current one as text. */
+  protected static final int    RESUME_TEXT    = 1;
+  /**
+   * The next token continues the current one as text that contained a
+   * spurious '&lt;', and ends at the first '&gt;'.
+   */
+  protected static final int    RESUME_MARKUP  = 2;
+  /**
+   * The next token continues the current one as the content of a CDATA
+   * section.
+   */
+  protected static final int    RESUME_CDATA   = 3;
+
+  // VARIABLES
+
+  /** the maximum length of text and CDATA tokens, or 0 if unlimited. */
+  private int                   chunkSize;
+
+  // METHODS
+
+  /**
+   * Returns how the given token changes the element depth: start tags open an
+   * element, end tags close one, and all other tokens (including empty element
+   * tags) leave the depth as is. Only ASCII characters are inspected.
+   *
+   * @param aToken
+   *          the token to inspect, cannot be <code>null</code>.
+   * @return 1 for start tags, -1 for end tags, 0 otherwise.
+   */
+  protected static int getDepthDelta( final CharSequence aToken )
+  {
+    final int length = aToken.length();
+    if ( ( length < 2 ) || ( aToken.charAt( 0 ) != '<' ) )
+    {
+      return 0;
+    }
+
+    final char c = aToken.charAt( 1 );
+    if ( c == '/' )
+    {
+      return -1;
+    }
+    if ( ( c == '!' ) || ( c == '?' ) || ( c <= ' ' ) )
+    {
+      return 0;
+    }
+
+    int i = length - 1;
+    if ( aToken.charAt( i ) == '>' )
+    {
+      i--;
+    }
+    while ( ( i > 1 ) && ( aToken.charAt( i ) <= ' ' ) )
+    {
+      i--;
+    }
+    return ( aToken.charAt( i ) == '/' ) ? 0 : 1;
+  }
+
+  /**
+   * Closes this backend, releasing any resources it holds, such as the
+   * underlying reader or stream. The default implementation does nothing.
+   *
+   * @throws IOException
+   *           in case of I/O problems.
+   */
+  public void close() throws IOException
+  {
+    // Nothing by default...
+  }
+
+  /**
+   * Returns how the current token changes the element depth, without
+   * creating a token for it.
+   * <p>
+   * The default implementation inspects {@link #getTokenView()};
+   * implementations can override this to avoid decoding the token.
+   * </p>
+   *
+   * @return 1 for start tags, -1 for end tags, 0 for all other tokens.
+   * @see #getDepthDelta(CharSequence)
+   */
+  public int getDepthDelta()
+  {
+    return getDepthDelta( getTokenView() );
+  }
+
+  /**
+   * Returns the maximum length of text and CDATA tokens.
+   *
+   * @return the chunk size, or 0 if the length of tokens is unlimited.
+   * @see #setChunkSize(int)
+   */
+  public int getChunkSize()
+  {
+    return this.chunkSize;
+  }
+
+  /**
+   * Returns the current token as string.
+   *
+   * @return the current token, never <code>null</code>.
+   */
+  public abstract String getToken();
+
+  /**
+   * Returns the offset of the current token in the input, counted in
+   * characters for character-based backends, or in bytes for byte-based
+   * backends.
+   *
+   * @return the offset of the current token, >= 0.
+   */
+  public abstract long getTokenOffset();
+
+  /**
+   * Returns a view on the current token, without copying its characters.
+   * <p>
+   * The returned view is only valid until the next call to {@link #next()}, use
+   * {@link CharSequence#toString()} to obtain a copy that can be retained.
+   * </p>
+   *
+   * @return the current token, never <code>null</code>.
+   */
+  public abstract CharSequence getTokenView();
+
+  /**
+   * Returns whether the current token is a chunk of a larger text or CDATA
+   * section, which is continued by the next token.
+   *
+   * @return <code>true</code> if the next token continues the current token,
+   *         <code>false</code> otherwise.
+   * @see #setChunkSize(int)
+   */
+  public abstract boolean isPartial();
+
+  /**
+   * Advances to the next token.
+   *
+   * @return <code>true</code> if a next token is available, <code>false</code>
+   *         in case of no more data.
+   * @throws IOException
+   *           in case of I/O problems.
+   */
+  public abstract boolean next() throws IOException;
+
+  /**
+   * Sets the maximum length of text and CDATA tokens. Longer text and CDATA
+   * sections are split up into consecutive tokens of (about) this length,
+   * such that the buffered data does not grow beyond it, regardless of the
+   * size of a section. All tokens but the last of a section are marked as
+   * {@link #isPartial() partial}.
+   * <p>
+   * The first chunk of a CDATA section starts with its {@link #CDATA_START
+   * start marker}, its last chunk ends with its {@link #CDATA_END end marker}.
+   * Chunks never split a (surrogate pair or) multi-byte character, nor the end
+   * marker of a CDATA section. Other tokens, like tags and comments, are never
+   * split up.
+   * </p>
+   *
+   * @param aSize
+   *          the maximum length of tokens, >= {@link #MIN_CHUNK_SIZE}, or 0 to
+   *          leave the length of tokens unlimited (the default).
+   * @throws IllegalArgumentException
+   *           in case the given size was invalid.
+   */
+  public void setChunkSize( final int aSize ) throws IllegalArgumentException
+  {
+    if ( ( aSize != 0 ) && ( aSize < MIN_CHUNK_SIZE ) )
+    {
+      throw new IllegalArgumentException( "Chunk size should be 0 or at least " + MIN_CHUNK_SIZE + "!" );
+    }
+    this.chunkSize = aSize;
+  }
+
+  /**
+   * Returns the index at which the current token should be split up, if it is
+   * a text or CDATA token.
+   *
+   * @param aStart
+   *          the index of the start of the current token.
+   * @return the index of the end of the first chunk of the current token, or
+   *         {@link Integer#MAX_VALUE} if tokens are not split up.
+   */
+  protected final int getChunkEnd( final int aStart )
+  {
+    final int size = this.chunkSize;
+    if ( size == 0 )
+    {
+      return Integer.MAX_VALUE;
+    }
+    return ( int )Math.min( ( long )aStart + size, Integer.MAX_VALUE );
+  }
+}
@@ -0,0 +1,278 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer.impl;
+
+
+import java.io.*;
+
+
+/**
+ * Provides a random-access input that can be scanned starting at arbitrary
+ * offsets, allowing it to be split up into chunks that are scanned
+ * independently.
+ * <p>
+ * As a chunk can start anywhere in the input, the scanning of a chunk should
+ * start at a <em>resynchronization point</em>: an offset that is likely the
+ * start of a token. Finding such a point is a heuristic, the caller is
+ * responsible for confirming that the tokens of a chunk line up with the
+ * tokens of the preceding chunk. Alternatively, the exact start of a token
+ * can be found by scanning from a known token start onwards, see
+ * {@link #findTokenStart(long, long, long)}.
+ * </p>
+ */
+public abstract class SplittableInput implements Closeable
+{
+  // CONSTANTS
+
+  /** the number of characters to look ahead for the end of a section. */
+  static final int LOOKAHEAD = 64 * 1024;
+
+  // METHODS
+
+  /**
+   * Finds a resynchronization point in the given range of characters.
+   * <p>
+   * A resynchronization point is a '&lt;' that is not followed by whitespace,
+   * as the scanner always starts a new token at such a character. To avoid
+   * starting a chunk in the middle of a comment or CDATA section, candidates
+   * that appear to be inside one (as their terminator is found before the next
+   * opening marker) are skipped. Sections are only detected within a limited
+   * distance of the candidate.
+   * </p>
+   *
+   * @param aText
+   *          the text to search;
+   * @param aFrom
+   *          the index to start searching at;
+   * @param aTo
+   *          the index to stop searching at (exclusive), candidates beyond this
+   *          index are not returned.
+   * @return the index of the resynchronization point, or -1 if none was found.
+   */
+  protected static int findResyncPoint( final CharSequence aText, final int aFrom, final int aTo )
+  {
+    final int length = aText.length();
+    int i = aFrom;
+    while ( i < aTo )
+    {
+      if ( aText.charAt( i ) != '<' )
+      {
+        i++;
+        continue;
+      }
+      if ( ( i + 1 ) >= length )
+      {
+        return -1;
+      }
+
+      final char next = aText.charAt( i + 1 );
+      if ( ( next >= 0x80 ) || Character.isWhitespace( next ) )
+      {
+        // Spurious '<' (or possibly a non-ASCII whitespace in encoded data)...
+        i++;
+        continue;
+      }
+
+      int skip = skipEnclosingSection( aText, i, "<!--", "-->" );
+      if ( skip == i )
+      {
+        skip = skipEnclosingSection( aText, i, "<![CDATA[", "]]>" );
+      }
+      if ( skip == i )
+      {
+        return i;
+      }
+      i = skip;
+    }
+    return -1;
+  }
+
+  /**
+   * Finds the first token start in the given range of characters, given that
+   * a token starts at the given start index.
+   * <p>
+   * Unlike {@link #findResyncPoint(CharSequence, int, int)}, the result is
+   * exact, as the characters are scanned from the given token start onwards,
+   * skipping each CDATA section as a whole, like the scanner does. Outside
+   * CDATA sections, the scanner always starts a new token at a '&lt;' that is
+   * not followed by whitespace.
+   * </p>
+   *
+   * @param aText
+   *          the text to search;
+   * @param aStart
+   *          the index of a token start, <= aFrom;
+   * @param aFrom
+   *          the index to start returning token starts at;
+   * @param aTo
+   *          the index to stop searching at (exclusive).
+   * @return the index of the token start, or -1 if none was found.
+   */
+  protected static int findTokenStart( final CharSequence aText, final int aStart, final int aFrom, final int aTo )
+  {
+    final String cdataStart = ScannerBackend.CDATA_START;
+    final int length = aText.length();
+    int i = aStart;
+    while ( i < aTo )
+    {
+      if ( aText.charAt( i ) != '<' )
+      {
+        i++;
+        continue;
+      }
+
+      if ( indexOf( aText, cdataStart, i, Math.min( length, i + cdataStart.length() ) ) == i )
+      {
+        // Skip the entire section, however large...
+        final int close = indexOf( aText, ScannerBackend.CDATA_END, i + cdataStart.length(), length );
+        if ( close < 0 )
+        {
+          return -1;
+        }
+        i = close + ScannerBackend.CDATA_END.length();
+        continue;
+      }
+
+      if ( ( i + 1 ) >= length )
+      {
+        return -1;
+      }
+      final char next = aText.charAt( i + 1 );
+      if ( ( i >= aFrom ) && ( next < 0x80 ) && !Character.isWhitespace( next ) )
+      {
+        return i;
+      }
+      i++;
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the index of the given string in the given text.
+   */
+  private static int indexOf( final CharSequence aText, final String aString, final int aFrom, final int aTo )
+  {
+    final int last = aTo - aString.length();
+    final char first = aString.charAt( 0 );
+    for ( int i = aFrom; i <= last; i++ )
+    {
+      if ( aText.charAt( i ) != first )
+      {
+        continue;
+      }
+      int j = 1;
+      while ( ( j < aString.length() ) && ( aText.charAt( i + j ) == aString.charAt( j ) ) )
+      {
+        j++;
+      }
+      if ( j == aString.length() )
+      {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the index after the section (delimited by the given markers) that
+   * appears to enclose the given index, or the given index itself if it does
+   * not appear to be enclosed.
+   */
+  private static int skipEnclosingSection( final CharSequence aText, final int aIndex, final String aOpen,
+      final String aClose )
+  {
+    final int limit = ( int )Math.min( aText.length(), ( long )aIndex + LOOKAHEAD );
+    final int close = indexOf( aText, aClose, aIndex, limit );
+    if ( close < 0 )
+    {
+      return aIndex;
+    }
+    final int open = indexOf( aText, aOpen, aIndex, close );
+    if ( ( open >= 0 ) && ( open < close ) )
+    {
+      return aIndex;
+    }
+    return close + aClose.length();
+  }
+
+  /**
+   * Closes this input, releasing any resources it holds. Backends created by
+   * this input should no longer be used afterwards.
+   *
+   * @throws IOException
+   *           in case of I/O problems.
+   */
+  public void close() throws IOException
+  {
+    // Nothing by default...
+  }
+
+  /**
+   * Creates a scanner backend that scans this input starting at the given
+   * offset up to the end of this input.
+   * <p>
+   * The returned backend shares its resources with this input, and should
+   * therefore not be closed by itself.
+   * </p>
+   *
+   * @param aOffset
+   *          the offset to start scanning at, >= {@link #getStart()}.
+   * @return a new scanner backend, never <code>null</code>.
+   * @throws IOException
+   *           in case of I/O problems.
+   */
+  public abstract ScannerBackend createBackend( long aOffset ) throws IOException;
+
+  /**
+   * Finds a resynchronization point in the given range of this input.
+   *
+   * @param aFrom
+   *          the offset to start searching at;
+   * @param aTo
+   *          the offset to stop searching at (exclusive).
+   * @return the offset of the resynchronization point, or -1 if none was
+   *         found in the given range.
+   * @throws IOException
+   *           in case of I/O problems.
+   * @see #findResyncPoint(CharSequence, int, int)
+   */
+  public abstract long findResyncPoint( long aFrom, long aTo ) throws IOException;
+
+  /**
+   * Finds the first token start in the given range of this input, given that
+   * a token starts at the given offset. The input is scanned from that offset
+   * onwards, so the cost of this method grows with the distance between the
+   * given start offset and the given range.
+   *
+   * @param aStart
+   *          the offset of a token start, <= aFrom;
+   * @param aFrom
+   *          the offset to start returning token starts at;
+   * @param aTo
+   *          the offset to stop searching at (exclusive).
+   * @return the offset of the token start, or -1 if none was found in the
+   *         given range.
+   * @throws IOException
+   *           in case of I/O problems.
+   * @see #findTokenStart(CharSequence, int, int, int)
+   */
+  public abstract long findTokenStart( long aStart, long aFrom, long aTo ) throws IOException;
+
+  /**
+   * Returns the end offset of this input.
+   *
+   * @return the offset after the last character or byte of this input.
+   */
+  public abstract long getEnd();
+
+  /**
+   * Returns the start offset of this input, which is the offset of its first
+   * token.
+   *
+   * @return the start offset, >= 0.
+   */
+  public abstract long getStart();
+}
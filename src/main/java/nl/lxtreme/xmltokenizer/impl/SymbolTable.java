@@ -0,0 +1,251 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer.impl;
+
+
+/**
+ * Provides a symbol table for element and attribute names, returning a
+ * canonical string instance for each distinct name.
+ * <p>
+ * The table is an open-addressing hash table that is keyed directly on a range
+ * of characters (typically in the buffer of the scanner), so looking up a name
+ * that is already known does not allocate anything. To keep its memory usage
+ * bounded, the table holds at most a given number of symbols; names that do not
+ * fit are still returned, but are not canonicalized.
+ * </p>
+ * <p>
+ * A symbol table is not thread-safe. To share a symbol table across tokenizers
+ * that run concurrently, use {@link #createShared(int)}. Note that each lookup
+ * in a shared table takes a lock, so tokenizers that run concurrently are
+ * better off with a table of their own.
+ * </p>
+ */
+public class SymbolTable
+{
+  // INNER TYPES
+
+  /**
+   * Provides a thread-safe symbol table.
+   */
+  static final class SharedSymbolTable extends SymbolTable
+  {
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new SharedSymbolTable.
+     */
+    SharedSymbolTable( final int aMaxSize )
+    {
+      super( aMaxSize );
+    }
+
+    // METHODS
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized String intern( final CharSequence aText, final int aFrom, final int aTo )
+    {
+      return super.intern( aText, aFrom, aTo );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized int size()
+    {
+      return super.size();
+    }
+  }
+
+  // CONSTANTS
+
+  /** The default maximum number of symbols in a table. */
+  public static final int  DEFAULT_MAX_SIZE = 8192;
+
+  private static final int INITIAL_CAPACITY = 64;
+
+  // VARIABLES
+
+  private final int        maxSize;
+  private String[]         symbols;
+  private int[]            hashes;
+  private int              size;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new SymbolTable holding at most {@value #DEFAULT_MAX_SIZE}
+   * symbols.
+   */
+  public SymbolTable()
+  {
+    this( DEFAULT_MAX_SIZE );
+  }
+
+  /**
+   * Creates a new SymbolTable.
+   *
+   * @param aMaxSize
+   *          the maximum number of symbols to hold, > 0.
+   * @throws IllegalArgumentException
+   *           in case the given size was invalid.
+   */
+  public SymbolTable( final int aMaxSize ) throws IllegalArgumentException
+  {
+    if ( aMaxSize <= 0 )
+    {
+      throw new IllegalArgumentException( "Maximum size should be positive!" );
+    }
+    this.maxSize = aMaxSize;
+    this.symbols = new String[INITIAL_CAPACITY];
+    this.hashes = new int[INITIAL_CAPACITY];
+  }
+
+  // METHODS
+
+  /**
+   * Creates a new symbol table that can be shared by tokenizers that run
+   * concurrently.
+   *
+   * @param aMaxSize
+   *          the maximum number of symbols to hold, > 0.
+   * @return a new, thread-safe, symbol table.
+   * @throws IllegalArgumentException
+   *           in case the given size was invalid.
+   */
+  public static SymbolTable createShared( final int aMaxSize ) throws IllegalArgumentException
+  {
+    return new SharedSymbolTable( aMaxSize );
+  }
+
+  /**
+   * @return the slot index for the given hash in a table of the given length.
+   */
+  private static int indexFor( final int aHash, final int aLength )
+  {
+    return ( aHash ^ ( aHash >>> 16 ) ) & ( aLength - 1 );
+  }
+
+  /**
+   * Returns the canonical instance of the given string.
+   *
+   * @param aString
+   *          the string to intern, cannot be <code>null</code>.
+   * @return the canonical instance, never <code>null</code>.
+   */
+  public String intern( final String aString )
+  {
+    return intern( aString, 0, aString.length() );
+  }
+
+  /**
+   * Returns the canonical string instance for the given range of characters.
+   *
+   * @param aText
+   *          the text containing the name, cannot be <code>null</code>;
+   * @param aFrom
+   *          the index of the first character of the name;
+   * @param aTo
+   *          the index after the last character of the name.
+   * @return the canonical instance, never <code>null</code>.
+   */
+  public String intern( final CharSequence aText, final int aFrom, final int aTo )
+  {
+    // Same as String#hashCode()...
+    int hash = 0;
+    for ( int i = aFrom; i < aTo; i++ )
+    {
+      hash = 31 * hash + aText.charAt( i );
+    }
+
+    final int length = aTo - aFrom;
+    final String[] table = this.symbols;
+    final int mask = table.length - 1;
+
+    int idx = indexFor( hash, table.length );
+    String symbol;
+    while ( ( symbol = table[idx] ) != null )
+    {
+      if ( ( this.hashes[idx] == hash ) && ( symbol.length() == length ) && matches( symbol, aText, aFrom ) )
+      {
+        return symbol;
+      }
+      idx = ( idx + 1 ) & mask;
+    }
+
+    symbol = XmlAttributeParser.substring( aText, aFrom, aTo );
+    if ( this.size < this.maxSize )
+    {
+      table[idx] = symbol;
+      this.hashes[idx] = hash;
+      if ( ( ++this.size * 2 ) > table.length )
+      {
+        rehash();
+      }
+    }
+    return symbol;
+  }
+
+  /**
+   * Returns the number of symbols in this table.
+   *
+   * @return a symbol count, >= 0.
+   */
+  public int size()
+  {
+    return this.size;
+  }
+
+  /**
+   * @return <code>true</code> if the given symbol equals the characters of the
+   *         given text starting at the given index, <code>false</code>
+   *         otherwise.
+   */
+  private boolean matches( final String aSymbol, final CharSequence aText, final int aFrom )
+  {
+    for ( int i = 0, length = aSymbol.length(); i < length; i++ )
+    {
+      if ( aSymbol.charAt( i ) != aText.charAt( aFrom + i ) )
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Doubles the capacity of this table.
+   */
+  private void rehash()
+  {
+    final String[] oldSymbols = this.symbols;
+    final int[] oldHashes = this.hashes;
+
+    final int length = oldSymbols.length * 2;
+    final String[] newSymbols = new String[length];
+    final int[] newHashes = new int[length];
+
+    for ( int i = 0; i < oldSymbols.length; i++ )
+    {
+      if ( oldSymbols[i] != null )
+      {
+        int idx = indexFor( oldHashes[i], length );
+        while ( newSymbols[idx] != null )
+        {
+          idx = ( idx + 1 ) & ( length - 1 );
+        }
+        newSymbols[idx] = oldSymbols[i];
+        newHashes[idx] = oldHashes[i];
+      }
+    }
+
+    this.symbols = newSymbols;
+    this.hashes = newHashes;
+  }
+}
@@ -13,7 +13,10 @@ public class TextToken extends BaseToken
 {
   // VARIABLES
 
-  private final String text;
+  private String        text;
+  private EntityDecoder decoder;
+  /** the decoded text, determined lazily. */
+  private String        decodedText;
 
   // CONSTRUCTORS
 
@@ -22,18 +25,85 @@ public class TextToken extends BaseToken
    */
   public TextToken( final String aText )
   {
-    super( TokenType.TEXT );
+    this( aText, EntityDecoder.DEFAULT );
+  }
+
+  /**
+   * Creates a new TextToken.
+   * 
+   * @param aText
+   *          the raw text;
+   * @param aDecoder
+   *          the decoder for the references in the text, can be
+   *          <code>null</code> to leave the text as is.
+   */
+  public TextToken( final String aText, final EntityDecoder aDecoder )
+  {
+    this( TokenType.TEXT, aText, aDecoder );
+  }
+
+  /**
+   * Creates a new TextToken of the given type.
+   * 
+   * @param aType
+   *          the token type;
+   * @param aText
+   *          the raw text;
+   * @param aDecoder
+   *          the decoder for the references in the text, can be
+   *          <code>null</code>.
+   */
+  protected TextToken( final TokenType aType, final String aText, final EntityDecoder aDecoder )
+  {
+    super( aType );
 
     this.text = aText;
+    this.decoder = aDecoder;
   }
 
   // METHODS
 
   /**
+   * Returns the text as it appears in the document, without decoding any
+   * entity or character references.
+   * 
+   * @return the raw text.
+   * @see #getText()
+   */
+  public String getRawText()
+  {
+    return this.text;
+  }
+
+  /**
+   * Returns the text, in which entity and character references, like
+   * <code>&amp;amp;</code>, are decoded. The text is only decoded once, upon
+   * the first call to this method; text without any references is returned as
+   * is.
+   * 
    * @return the text
+   * @see #getRawText()
    */
   public String getText()
   {
-    return this.text;
+    String result = this.decodedText;
+    if ( result == null )
+    {
+      result = ( this.decoder == null ) ? this.text : this.decoder.decode( this.text );
+      this.decodedText = result;
+    }
+    return result;
+  }
+
+  /**
+   * Sets the text of this token, such that it can be reused.
+   * 
+   * @see TokenPool
+   */
+  void setText( final String aText, final EntityDecoder aDecoder )
+  {
+    this.text = aText;
+    this.decoder = aDecoder;
+    this.decodedText = null;
   }
 }
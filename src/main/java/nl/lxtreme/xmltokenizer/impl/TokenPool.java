@@ -0,0 +1,279 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer.impl;
+
+
+import java.util.*;
+
+import nl.lxtreme.xmltokenizer.*;
+
+
+/**
+ * Provides a pool of element, text and comment tokens and their attributes, to
+ * reduce the allocation rate of long-running tokenizers.
+ * <p>
+ * Tokens created by this pool are handed back to it with
+ * {@link #release(IToken)}, after which they, and their attributes, are reset
+ * and reused for subsequent tokens. Releasing a token more than once has no
+ * effect until it is handed out again. Attributes of pooled element tokens are
+ * parsed eagerly (using pooled {@link Attribute}s) if an
+ * {@link XmlAttributeParser} is used, and lazily otherwise. Tokens that are
+ * never released are simply garbage collected.
+ * </p>
+ * <p>
+ * A token pool is not thread-safe, and is intended to be used by a single
+ * tokenizer.
+ * </p>
+ */
+public final class TokenPool
+{
+  // CONSTANTS
+
+  /** The default maximum number of released tokens to retain, per type. */
+  public static final int  DEFAULT_MAX_SIZE     = 64;
+
+  /** The maximum number of released attributes to retain, per token. */
+  private static final int ATTRIBUTES_PER_TOKEN = 8;
+
+  // VARIABLES
+
+  private final int                maxSize;
+  private final List<ElementToken> elements;
+  private final List<TextToken>    texts;
+  private final List<CommentToken> comments;
+  private final List<Attribute>    attributes;
+  /** used to scan attributes, regardless of the actual parser. */
+  private final XmlAttributeParser scanner;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new TokenPool retaining at most {@value #DEFAULT_MAX_SIZE}
+   * tokens per type.
+   */
+  public TokenPool()
+  {
+    this( DEFAULT_MAX_SIZE );
+  }
+
+  /**
+   * Creates a new TokenPool.
+   *
+   * @param aMaxSize
+   *          the maximum number of released tokens to retain per type, > 0.
+   * @throws IllegalArgumentException
+   *           in case the given size was invalid.
+   */
+  public TokenPool( final int aMaxSize ) throws IllegalArgumentException
+  {
+    if ( aMaxSize <= 0 )
+    {
+      throw new IllegalArgumentException( "Maximum size should be positive!" );
+    }
+    this.maxSize = aMaxSize;
+    this.elements = new ArrayList<ElementToken>();
+    this.texts = new ArrayList<TextToken>();
+    this.comments = new ArrayList<CommentToken>();
+    this.attributes = new ArrayList<Attribute>();
+    this.scanner = new XmlAttributeParser();
+  }
+
+  // METHODS
+
+  /**
+   * @return the last element of the given list, or <code>null</code> if it is
+   *         empty.
+   */
+  private static <T> T take( final List<T> aList )
+  {
+    final int size = aList.size();
+    return ( size == 0 ) ? null : aList.remove( size - 1 );
+  }
+
+  /**
+   * Returns a comment token for the given comment.
+   *
+   * @param aComment
+   *          the comment, can be <code>null</code>.
+   * @return a (possibly recycled) comment token, never <code>null</code>.
+   * @see CommentToken#CommentToken(String)
+   */
+  public CommentToken createComment( final String aComment )
+  {
+    final CommentToken token = take( this.comments );
+    if ( token == null )
+    {
+      return new CommentToken( aComment );
+    }
+    token.setReleased( false );
+    token.setComment( ( aComment == null ) ? "" : aComment.trim() );
+    return token;
+  }
+
+  /**
+   * Returns an element token for the given range of characters.
+   *
+   * @return a (possibly recycled) element token, never <code>null</code>.
+   * @see ElementToken#ElementToken(CharSequence, int, int, AttributeParser,
+   *      SymbolTable)
+   */
+  public ElementToken createElement( final CharSequence aText, final int aFrom, final int aTo,
+      final AttributeParser aParser, final SymbolTable aSymbols )
+  {
+    ElementToken token = take( this.elements );
+    if ( token == null )
+    {
+      token = new ElementToken();
+    }
+    token.setReleased( false );
+    token.init( aText, aFrom, aTo, aParser, aSymbols, this );
+    return token;
+  }
+
+  /**
+   * Returns a text token for the given text, decoding its references with the
+   * default entity decoder.
+   *
+   * @param aText
+   *          the text, can be <code>null</code>.
+   * @return a (possibly recycled) text token, never <code>null</code>.
+   */
+  public TextToken createText( final String aText )
+  {
+    return createText( aText, EntityDecoder.DEFAULT );
+  }
+
+  /**
+   * Returns a text token for the given text.
+   *
+   * @param aText
+   *          the raw text, can be <code>null</code>;
+   * @param aDecoder
+   *          the decoder for the references in the text, can be
+   *          <code>null</code> to leave the text as is.
+   * @return a (possibly recycled) text token, never <code>null</code>.
+   */
+  public TextToken createText( final String aText, final EntityDecoder aDecoder )
+  {
+    final TextToken token = take( this.texts );
+    if ( token == null )
+    {
+      return new TextToken( aText, aDecoder );
+    }
+    token.setReleased( false );
+    token.setText( aText, aDecoder );
+    return token;
+  }
+
+  /**
+   * Hands the given token back to this pool. Element, text and comment tokens
+   * are retained, whether or not they were created by a pool, as are the
+   * attributes of element tokens; neither the token, nor its attributes, should
+   * be used after releasing it. Its children are not released. Tokens that
+   * are already released are ignored.
+   *
+   * @param aToken
+   *          the token to release, can be <code>null</code>.
+   */
+  public void release( final IToken aToken )
+  {
+    if ( !( aToken instanceof BaseToken ) || ( ( BaseToken )aToken ).isReleased() )
+    {
+      return;
+    }
+
+    final Class<?> type = aToken.getClass();
+    if ( type == ElementToken.class )
+    {
+      releaseAttributes( ( ElementToken )aToken );
+      retain( this.elements, ( ElementToken )aToken );
+    }
+    else if ( type == TextToken.class )
+    {
+      retain( this.texts, ( TextToken )aToken );
+    }
+    else if ( type == CommentToken.class )
+    {
+      retain( this.comments, ( CommentToken )aToken );
+    }
+  }
+
+  /**
+   * Adds the attributes in the given range of characters to the given token.
+   */
+  void addAttributes( final ElementToken aToken, final CharSequence aText, final int aFrom, final int aTo,
+      final AttributeParser aParser, final SymbolTable aSymbols )
+  {
+    if ( !( aParser instanceof XmlAttributeParser ) )
+    {
+      aToken.parseAttributes( aText, aFrom, aTo, aParser );
+      return;
+    }
+
+    final EntityDecoder decoder = ( ( XmlAttributeParser )aParser ).getEntityDecoder();
+    final XmlAttributeParser p = this.scanner;
+    final int count = p.scan( aText, aFrom, aTo );
+    if ( count == 0 )
+    {
+      return;
+    }
+
+    final List<IAttribute> list = aToken.attributeList();
+    for ( int i = 0; i < count; i++ )
+    {
+      final int nameStart = p.getNameStart( i );
+      final int nameEnd = p.getNameEnd( i );
+      final String name = ( aSymbols != null ) ? aSymbols.intern( aText, nameStart, nameEnd ) : XmlAttributeParser
+          .substring( aText, nameStart, nameEnd );
+      final int valueStart = p.getValueStart( i );
+      final String value = ( valueStart == nameStart ) ? name : XmlAttributeParser.substring( aText, valueStart,
+          p.getValueEnd( i ) );
+
+      final Attribute attribute = take( this.attributes );
+      if ( attribute == null )
+      {
+        list.add( new Attribute( name, value, decoder ) );
+      }
+      else
+      {
+        attribute.set( name, value, decoder );
+        list.add( attribute );
+      }
+    }
+  }
+
+  /**
+   * Retains the attributes of the given token for reuse.
+   */
+  private void releaseAttributes( final ElementToken aToken )
+  {
+    final List<IAttribute> list = aToken.attributeList();
+    final int max = this.maxSize * ATTRIBUTES_PER_TOKEN;
+    for ( int i = 0, size = list.size(); ( i < size ) && ( this.attributes.size() < max ); i++ )
+    {
+      final IAttribute attribute = list.get( i );
+      // An attribute can be added to more than one token, so check it as well...
+      if ( ( attribute.getClass() == Attribute.class ) && !( ( Attribute )attribute ).isReleased() )
+      {
+        ( ( Attribute )attribute ).setReleased();
+        this.attributes.add( ( Attribute )attribute );
+      }
+    }
+  }
+
+  /**
+   * Resets the given token and retains it for reuse, if there is room left.
+   */
+  private <T extends BaseToken> void retain( final List<T> aList, final T aToken )
+  {
+    aToken.reset();
+    aToken.setReleased( true );
+    if ( aList.size() < this.maxSize )
+    {
+      aList.add( aToken );
+    }
+  }
+}
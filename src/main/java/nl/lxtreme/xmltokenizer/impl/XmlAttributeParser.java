@@ -0,0 +1,347 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer.impl;
+
+
+import java.util.*;
+
+import nl.lxtreme.xmltokenizer.*;
+
+
+/**
+ * Provides a single-pass attribute parser, using the common XML rules:
+ * <code>name = 'value'</code> or <code>name = "value"</code>. Unquoted values
+ * are accepted up to the next whitespace, and attributes without value get
+ * their name as value.
+ * <p>
+ * The attributes are scanned directly in the given characters (typically the
+ * buffer of the scanner). {@link #scan(CharSequence, int, int)} only records
+ * the start and end offsets of their names and values; as these offsets are
+ * reused between calls, it is <em>not</em> thread-safe.
+ * </p>
+ */
+public final class XmlAttributeParser implements AttributeParser
+{
+  // CONSTANTS
+
+  private static final int NAME_START  = 0;
+  private static final int NAME_END    = 1;
+  private static final int VALUE_START = 2;
+  private static final int VALUE_END   = 3;
+  private static final int SLOTS       = 4;
+
+  // VARIABLES
+
+  private final SymbolTable   symbols;
+  private final EntityDecoder decoder;
+  /** the start/end offsets of the names and values of all attributes. */
+  private int[]               offsets;
+  private int                 count;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new XmlAttributeParser.
+   */
+  public XmlAttributeParser()
+  {
+    this( null );
+  }
+
+  /**
+   * Creates a new XmlAttributeParser that obtains the names of all attributes
+   * it creates from the given symbol table.
+   *
+   * @param aSymbols
+   *          the symbol table to use, can be <code>null</code>.
+   */
+  public XmlAttributeParser( final SymbolTable aSymbols )
+  {
+    this( aSymbols, EntityDecoder.DEFAULT );
+  }
+
+  /**
+   * Creates a new XmlAttributeParser that obtains the names of all attributes
+   * it creates from the given symbol table, and decodes their values with the
+   * given entity decoder.
+   *
+   * @param aSymbols
+   *          the symbol table to use, can be <code>null</code>;
+   * @param aDecoder
+   *          the decoder for the references in attribute values, can be
+   *          <code>null</code> to leave the values as is.
+   */
+  public XmlAttributeParser( final SymbolTable aSymbols, final EntityDecoder aDecoder )
+  {
+    this.symbols = aSymbols;
+    this.decoder = aDecoder;
+    this.offsets = new int[8 * SLOTS];
+  }
+
+  // METHODS
+
+  /**
+   * @return <code>true</code> if the given character is whitespace (in the
+   *         sense of {@link String#trim()}), <code>false</code> otherwise.
+   */
+  private static boolean isWhitespace( final char aChar )
+  {
+    return aChar <= ' ';
+  }
+
+  /**
+   * Finds the next attribute in the given range of characters, and stores the
+   * offsets of its name and value in the given slots.
+   *
+   * @return the index after the attribute found, or -1 if no more attributes
+   *         are found.
+   */
+  private static int nextAttribute( final CharSequence aText, final int aFrom, final int aTo, final int[] aSlots,
+      final int aIndex )
+  {
+    final CharSequence t = aText;
+    final int end = aTo;
+    int i = aFrom;
+
+    while ( i < end )
+    {
+      while ( ( i < end ) && isWhitespace( t.charAt( i ) ) )
+      {
+        i++;
+      }
+      final int nameStart = i;
+      while ( ( i < end ) && !isWhitespace( t.charAt( i ) ) && ( t.charAt( i ) != '=' ) )
+      {
+        i++;
+      }
+      final int nameEnd = i;
+      while ( ( i < end ) && isWhitespace( t.charAt( i ) ) )
+      {
+        i++;
+      }
+
+      int valueStart = nameStart;
+      int valueEnd = nameEnd;
+      if ( ( i < end ) && ( t.charAt( i ) == '=' ) )
+      {
+        i++;
+        while ( ( i < end ) && isWhitespace( t.charAt( i ) ) )
+        {
+          i++;
+        }
+        final char quote = ( i < end ) ? t.charAt( i ) : 0;
+        if ( ( quote == '"' ) || ( quote == '\'' ) )
+        {
+          valueStart = ++i;
+          while ( ( i < end ) && ( t.charAt( i ) != quote ) )
+          {
+            i++;
+          }
+          valueEnd = i;
+          if ( i < end )
+          {
+            i++;
+          }
+        }
+        else
+        {
+          valueStart = i;
+          while ( ( i < end ) && !isWhitespace( t.charAt( i ) ) )
+          {
+            i++;
+          }
+          valueEnd = i;
+        }
+      }
+
+      if ( nameStart == nameEnd )
+      {
+        // No name at all (stray '=' or value); ignore it...
+        if ( i == nameStart )
+        {
+          i++;
+        }
+        continue;
+      }
+
+      aSlots[aIndex + NAME_START] = nameStart;
+      aSlots[aIndex + NAME_END] = nameEnd;
+      aSlots[aIndex + VALUE_START] = valueStart;
+      aSlots[aIndex + VALUE_END] = valueEnd;
+      return i;
+    }
+    return -1;
+  }
+
+  /**
+   * @return a copy of the given range of the given text.
+   */
+  static String substring( final CharSequence aText, final int aStart, final int aEnd )
+  {
+    if ( aText instanceof String )
+    {
+      return ( ( String )aText ).substring( aStart, aEnd );
+    }
+    if ( aText instanceof CharArraySpan )
+    {
+      final CharArraySpan span = ( CharArraySpan )aText;
+      return new String( span.getArray(), span.getOffset() + aStart, aEnd - aStart );
+    }
+    return aText.subSequence( aStart, aEnd ).toString();
+  }
+
+  /**
+   * Returns the number of attributes found by the last call to
+   * {@link #scan(CharSequence, int, int)}.
+   *
+   * @return an attribute count, >= 0.
+   */
+  public int getCount()
+  {
+    return this.count;
+  }
+
+  /**
+   * Returns the decoder for the references in attribute values.
+   *
+   * @return the entity decoder, can be <code>null</code> if attribute values
+   *         are not decoded.
+   */
+  public EntityDecoder getEntityDecoder()
+  {
+    return this.decoder;
+  }
+
+  /**
+   * Returns the index after the last character of the name of the given
+   * attribute.
+   *
+   * @param aIndex
+   *          the index of the attribute, >= 0 && < {@link #getCount()}.
+   * @return a character index.
+   * @throws IndexOutOfBoundsException
+   *           in case the given index was invalid.
+   */
+  public int getNameEnd( final int aIndex ) throws IndexOutOfBoundsException
+  {
+    return this.offsets[checkIndex( aIndex ) + NAME_END];
+  }
+
+  /**
+   * Returns the index of the first character of the name of the given
+   * attribute.
+   *
+   * @param aIndex
+   *          the index of the attribute, >= 0 && < {@link #getCount()}.
+   * @return a character index.
+   * @throws IndexOutOfBoundsException
+   *           in case the given index was invalid.
+   */
+  public int getNameStart( final int aIndex ) throws IndexOutOfBoundsException
+  {
+    return this.offsets[checkIndex( aIndex ) + NAME_START];
+  }
+
+  /**
+   * Returns the index after the last character of the value of the given
+   * attribute.
+   *
+   * @param aIndex
+   *          the index of the attribute, >= 0 && < {@link #getCount()}.
+   * @return a character index.
+   * @throws IndexOutOfBoundsException
+   *           in case the given index was invalid.
+   */
+  public int getValueEnd( final int aIndex ) throws IndexOutOfBoundsException
+  {
+    return this.offsets[checkIndex( aIndex ) + VALUE_END];
+  }
+
+  /**
+   * Returns the index of the first character of the value of the given
+   * attribute.
+   *
+   * @param aIndex
+   *          the index of the attribute, >= 0 && < {@link #getCount()}.
+   * @return a character index.
+   * @throws IndexOutOfBoundsException
+   *           in case the given index was invalid.
+   */
+  public int getValueStart( final int aIndex ) throws IndexOutOfBoundsException
+  {
+    return this.offsets[checkIndex( aIndex ) + VALUE_START];
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Unlike {@link #scan(CharSequence, int, int)}, this method does not use any
+   * state of this parser, and can therefore be called concurrently, provided
+   * that its symbol table (if any) is shared.
+   * </p>
+   */
+  @Override
+  public void parse( final CharSequence aText, final int aFrom, final int aTo,
+      final Collection<? super IAttribute> aResult )
+  {
+    final int[] o = new int[SLOTS];
+    int i = aFrom;
+    while ( ( i = nextAttribute( aText, i, aTo, o, 0 ) ) >= 0 )
+    {
+      final String name = ( this.symbols != null ) ? this.symbols.intern( aText, o[NAME_START], o[NAME_END] )
+          : substring( aText, o[NAME_START], o[NAME_END] );
+      final boolean bare = ( o[VALUE_START] == o[NAME_START] );
+      final String value = bare ? name : substring( aText, o[VALUE_START], o[VALUE_END] );
+      aResult.add( new Attribute( name, value, this.decoder ) );
+    }
+  }
+
+  /**
+   * Scans the attributes in the given range of characters, recording the
+   * offsets of their names and values.
+   *
+   * @param aText
+   *          the text to scan, cannot be <code>null</code>;
+   * @param aFrom
+   *          the index of the first character of the attributes;
+   * @param aTo
+   *          the index after the last character of the attributes.
+   * @return the number of attributes found, >= 0.
+   */
+  public int scan( final CharSequence aText, final int aFrom, final int aTo )
+  {
+    int i = aFrom;
+    int n = 0;
+    while ( true )
+    {
+      final int idx = n * SLOTS;
+      if ( idx >= this.offsets.length )
+      {
+        this.offsets = Arrays.copyOf( this.offsets, this.offsets.length * 2 );
+      }
+      if ( ( i = nextAttribute( aText, i, aTo, this.offsets, idx ) ) < 0 )
+      {
+        break;
+      }
+      n++;
+    }
+
+    this.count = n;
+    return n;
+  }
+
+  /**
+   * @return the index of the first slot of the given attribute.
+   */
+  private int checkIndex( final int aIndex )
+  {
+    if ( ( aIndex < 0 ) || ( aIndex >= this.count ) )
+    {
+      throw new IndexOutOfBoundsException( "Invalid attribute index: " + aIndex );
+    }
+    return aIndex * SLOTS;
+  }
+}
@@ -0,0 +1,229 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer;
+
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import nl.lxtreme.xmltokenizer.IToken.TokenType;
+
+import org.junit.*;
+
+
+/**
+ *
+ */
+public class XmlCursorTest
+{
+  // METHODS
+
+  /**
+   * Test method for XmlCursor#next().
+   */
+  @Test
+  public void testNextCData() throws IOException
+  {
+    final XmlCursor cursor = createCursor( "<a><![CDATA[ <b>x</b> ]]></a>" );
+
+    assertEquals( TokenType.TAG, cursor.next() );
+    assertEquals( TokenType.CDATA, cursor.next() );
+    assertNull( cursor.getName() );
+    assertEquals( " <b>x</b> ", cursor.getTextView().toString() );
+    assertEquals( " <b>x</b> ", cursor.getText() );
+    assertEquals( TokenType.TAG, cursor.next() );
+
+    assertNull( cursor.next() );
+  }
+
+  /**
+   * Test method for XmlCursor#next().
+   */
+  @Test
+  public void testNextChunkedCData() throws IOException
+  {
+    final XmlScanner scanner = new XmlScanner( new StringReader( "<![CDATA[<b>0123456789</b><c>]]><d/>" ) );
+    scanner.setChunkSize( 16 );
+    final XmlCursor cursor = new XmlCursor( scanner );
+
+    final StringBuilder sb = new StringBuilder();
+    do
+    {
+      assertEquals( TokenType.CDATA, cursor.next() );
+      sb.append( cursor.getTextView() );
+    }
+    while ( cursor.isPartial() );
+    assertEquals( "<b>0123456789</b><c>", sb.toString() );
+
+    assertEquals( TokenType.TAG, cursor.next() );
+    assertEquals( "d", cursor.getName() );
+    assertNull( cursor.next() );
+  }
+
+  /**
+   * Test method for XmlCursor#next().
+   */
+  @Test
+  public void testNextComment() throws IOException
+  {
+    final XmlCursor cursor = createCursor( "<!-- B+, B, or B-->" );
+
+    assertEquals( TokenType.COMMENT, cursor.next() );
+    assertEquals( "B+, B, or B", cursor.getText() );
+    assertEquals( 0, cursor.getAttributeCount() );
+
+    assertNull( cursor.next() );
+  }
+
+  /**
+   * Test method for XmlCursor#next().
+   */
+  @Test
+  public void testNextDoctype() throws IOException
+  {
+    final XmlCursor cursor = createCursor( "<!DOCTYPE html public \"-//w3c//dtd html 4.0 transitional//en\">" );
+
+    assertEquals( TokenType.DOCTYPE, cursor.next() );
+    assertEquals( "html", cursor.getName() );
+    assertEquals( "public \"-//w3c//dtd html 4.0 transitional//en\"", cursor.getText() );
+
+    assertNull( cursor.next() );
+  }
+
+  /**
+   * Test method for XmlCursor#next().
+   */
+  @Test
+  public void testNextElements() throws IOException
+  {
+    final XmlCursor cursor = createCursor( "<p class='a'>foo<br/><input type=\"text\" disabled /></p>" );
+
+    assertEquals( TokenType.TAG, cursor.next() );
+    assertEquals( "p", cursor.getName() );
+    assertFalse( cursor.isEndTag() );
+    assertFalse( cursor.isEmptyElement() );
+    assertEquals( 1, cursor.getAttributeCount() );
+    assertEquals( "class", cursor.getAttributeName( 0 ) );
+    assertEquals( "a", cursor.getAttributeValue( 0 ) );
+
+    assertEquals( TokenType.TEXT, cursor.next() );
+    assertEquals( "foo", cursor.getText() );
+    assertNull( cursor.getName() );
+
+    assertEquals( TokenType.TAG, cursor.next() );
+    assertEquals( "br", cursor.getName() );
+    assertTrue( cursor.isEmptyElement() );
+    assertEquals( 0, cursor.getAttributeCount() );
+
+    assertEquals( TokenType.TAG, cursor.next() );
+    assertEquals( "input", cursor.getName() );
+    assertTrue( cursor.isEmptyElement() );
+    assertEquals( 2, cursor.getAttributeCount() );
+    assertEquals( "type", cursor.getAttributeName( 0 ) );
+    assertEquals( "text", cursor.getAttributeValue( 0 ) );
+    assertEquals( "disabled", cursor.getAttributeName( 1 ) );
+    assertEquals( "disabled", cursor.getAttributeValue( 1 ) );
+
+    assertEquals( TokenType.TAG, cursor.next() );
+    assertEquals( "p", cursor.getNameView().toString() );
+    assertTrue( cursor.isEndTag() );
+    assertEquals( 0, cursor.getAttributeCount() );
+
+    assertNull( cursor.next() );
+    assertNull( cursor.getType() );
+  }
+
+  /**
+   * Test method for XmlCursor#getNameView() and XmlCursor#getTextView().
+   */
+  @Test
+  public void testViewsAreReused() throws IOException
+  {
+    final XmlCursor cursor = createCursor( "<a x='1'>text</a>" );
+
+    assertEquals( TokenType.TAG, cursor.next() );
+    final CharSequence name = cursor.getNameView();
+    final CharSequence text = cursor.getTextView();
+    assertEquals( "a", name.toString() );
+    assertEquals( "x='1'", text.toString() );
+    assertSame( name, cursor.getNameView() );
+    assertSame( text, cursor.getTextView() );
+
+    assertEquals( TokenType.TEXT, cursor.next() );
+    assertNull( cursor.getNameView() );
+    assertSame( text, cursor.getTextView() );
+    assertEquals( "text", text.toString() );
+
+    assertEquals( TokenType.TAG, cursor.next() );
+    assertSame( name, cursor.getNameView() );
+    assertEquals( "a", name.toString() );
+  }
+
+  /**
+   * Test method for XmlCursor#getText() and XmlCursor#getAttributeValue(int).
+   */
+  @Test
+  public void testNextEntityReferences() throws IOException
+  {
+    final XmlCursor cursor = createCursor( "<p title='&lt;&#33;&gt;'>a &amp; b<!-- &amp; --></p>" );
+
+    assertEquals( TokenType.TAG, cursor.next() );
+    assertEquals( "<!>", cursor.getAttributeValue( 0 ) );
+    assertEquals( "&lt;&#33;&gt;", cursor.getRawAttributeValue( 0 ) );
+
+    assertEquals( TokenType.TEXT, cursor.next() );
+    assertEquals( "a & b", cursor.getText() );
+    assertEquals( "a &amp; b", cursor.getRawText() );
+    assertEquals( "a &amp; b", cursor.getTextView().toString() );
+
+    cursor.setEntityDecoder( null );
+    assertEquals( "a &amp; b", cursor.getText() );
+
+    assertEquals( TokenType.COMMENT, cursor.next() );
+    assertEquals( "&amp;", cursor.getText() );
+  }
+
+  /**
+   * Test method for XmlCursor#getAttributeName(int).
+   */
+  @Test( expected = IndexOutOfBoundsException.class )
+  public void testGetAttributeNameInvalidIndex() throws IOException
+  {
+    final XmlCursor cursor = createCursor( "<p class='a'>" );
+
+    assertEquals( TokenType.TAG, cursor.next() );
+    cursor.getAttributeName( 1 );
+  }
+
+  /**
+   * Test method for XmlCursor#next().
+   */
+  @Test
+  public void testNextXmlDeclaration() throws IOException
+  {
+    final XmlCursor cursor = createCursor( "<?xml version=\"1.0\" encoding = 'utf-8' ?>" );
+
+    assertEquals( TokenType.PI, cursor.next() );
+    assertEquals( "xml", cursor.getName() );
+    assertEquals( 2, cursor.getAttributeCount() );
+    assertEquals( "version", cursor.getAttributeName( 0 ) );
+    assertEquals( "1.0", cursor.getAttributeValue( 0 ) );
+    assertEquals( "encoding", cursor.getAttributeName( 1 ) );
+    assertEquals( "utf-8", cursor.getAttributeValue( 1 ) );
+
+    assertNull( cursor.next() );
+  }
+
+  /**
+   * @param aString
+   * @return
+   */
+  private XmlCursor createCursor( final String aString )
+  {
+    return new XmlCursor( new XmlScanner( new StringReader( aString ) ) );
+  }
+}
@@ -0,0 +1,206 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer;
+
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import nl.lxtreme.xmltokenizer.impl.*;
+
+import org.junit.*;
+
+
+/**
+ * Test cases for {@link XmlNamespaceTokenizer}.
+ */
+public class XmlNamespaceTokenizerTest
+{
+  // CONSTANTS
+
+  private static final String NS_A = "urn:a";
+  private static final String NS_B = "urn:b";
+
+  // METHODS
+
+  /**
+   * Test method for XmlNamespaceTokenizer#nextToken().
+   */
+  @Test
+  public void testResolveAttributes() throws IOException
+  {
+    final XmlNamespaceTokenizer tokenizer = createTokenizer( "<a xmlns='urn:a' xmlns:b='urn:b' b:x='1' y='2' "
+        + "xml:lang='en' c:z='3'/>" );
+
+    final ElementToken element = ( ElementToken )tokenizer.nextToken();
+    assertEquals( NS_A, element.getNamespaceURI() );
+
+    assertAttribute( element.getAttributes().get( 0 ), XmlNamespaceTokenizer.XMLNS_NAMESPACE, "xmlns" );
+    assertAttribute( element.getAttributes().get( 1 ), XmlNamespaceTokenizer.XMLNS_NAMESPACE, "b" );
+    assertAttribute( element.getAttributes().get( 2 ), NS_B, "x" );
+    // Unprefixed attributes are not in the default namespace...
+    assertAttribute( element.getAttributes().get( 3 ), null, "y" );
+    assertAttribute( element.getAttributes().get( 4 ), XmlNamespaceTokenizer.XML_NAMESPACE, "lang" );
+    // Undeclared prefixes are left unresolved...
+    assertAttribute( element.getAttributes().get( 5 ), null, "z" );
+
+    assertEquals( 0, tokenizer.getDepth() );
+    assertNull( tokenizer.nextToken() );
+  }
+
+  /**
+   * Test method for XmlNamespaceTokenizer#nextToken().
+   */
+  @Test
+  public void testResolveNestedScopes() throws IOException
+  {
+    final XmlNamespaceTokenizer tokenizer = createTokenizer( "<root xmlns='urn:a' xmlns:p='urn:a'>"
+        + "<p:child xmlns:p='urn:b'><leaf xmlns=''/></p:child><p:child/>text</root>" );
+
+    final ElementToken root = nextElement( tokenizer );
+    assertEquals( NS_A, root.getNamespaceURI() );
+    assertEquals( "root", root.getLocalName() );
+    assertEquals( 1, tokenizer.getDepth() );
+
+    final ElementToken child = nextElement( tokenizer );
+    assertEquals( NS_B, child.getNamespaceURI() );
+    assertEquals( "child", child.getLocalName() );
+    assertEquals( NS_B, tokenizer.getNamespaceURI( "p" ) );
+    assertEquals( NS_A, tokenizer.getNamespaceURI( "" ) );
+
+    final ElementToken leaf = nextElement( tokenizer );
+    assertNull( leaf.getNamespaceURI() );
+    assertEquals( "leaf", leaf.getLocalName() );
+    assertEquals( 2, tokenizer.getDepth() );
+
+    final ElementToken childEnd = nextElement( tokenizer );
+    assertTrue( childEnd.isEndTag() );
+    assertEquals( NS_B, childEnd.getNamespaceURI() );
+    assertEquals( 1, tokenizer.getDepth() );
+
+    final ElementToken sibling = nextElement( tokenizer );
+    assertEquals( NS_A, sibling.getNamespaceURI() );
+    // Equal URIs and local names are obtained from the symbol table...
+    assertSame( root.getNamespaceURI(), sibling.getNamespaceURI() );
+    assertSame( child.getLocalName(), sibling.getLocalName() );
+
+    final IToken text = tokenizer.nextToken();
+    assertTrue( text.getType().isText() );
+
+    final ElementToken rootEnd = nextElement( tokenizer );
+    assertEquals( NS_A, rootEnd.getNamespaceURI() );
+    assertEquals( 0, tokenizer.getDepth() );
+    assertEquals( XmlNamespaceTokenizer.XML_NAMESPACE, tokenizer.getNamespaceURI( "xml" ) );
+    assertNull( tokenizer.getNamespaceURI( "p" ) );
+
+    assertNull( tokenizer.nextToken() );
+  }
+
+  /**
+   * Test method for XmlNamespaceTokenizer#nextToken() with end tags that do
+   * not match the open elements.
+   */
+  @Test
+  public void testResolveUnbalancedEndTags() throws IOException
+  {
+    final XmlNamespaceTokenizer tokenizer = createTokenizer( "<p:a xmlns:p='urn:a'><b xmlns:p='urn:b'></x>"
+        + "<p:c/><d></p:a><p:e/>" );
+
+    assertEquals( NS_A, nextElement( tokenizer ).getNamespaceURI() );
+    assertEquals( 1, tokenizer.getDepth() );
+    nextElement( tokenizer );
+    assertEquals( 2, tokenizer.getDepth() );
+
+    // A stray end tag leaves all scopes open...
+    final ElementToken stray = nextElement( tokenizer );
+    assertTrue( stray.isEndTag() );
+    assertEquals( 2, tokenizer.getDepth() );
+    assertEquals( NS_B, nextElement( tokenizer ).getNamespaceURI() );
+
+    nextElement( tokenizer );
+    assertEquals( 3, tokenizer.getDepth() );
+
+    // An end tag of an outer element also closes the elements it contains...
+    final ElementToken end = nextElement( tokenizer );
+    assertTrue( end.isEndTag() );
+    assertEquals( NS_A, end.getNamespaceURI() );
+    assertEquals( 0, tokenizer.getDepth() );
+    assertNull( nextElement( tokenizer ).getNamespaceURI() );
+  }
+
+  /**
+   * Test method for XmlNamespaceTokenizer#skipElement().
+   */
+  @Test
+  public void testSkipElement() throws IOException
+  {
+    final XmlNamespaceTokenizer tokenizer = createTokenizer( "<a xmlns:p='urn:a'><p:b xmlns:p='urn:b'><p:c/></p:b>"
+        + "<p:d/></a>" );
+
+    assertNull( nextElement( tokenizer ).getNamespaceURI() );
+    assertEquals( NS_B, nextElement( tokenizer ).getNamespaceURI() );
+    assertTrue( tokenizer.skipElement() );
+    assertEquals( 1, tokenizer.getDepth() );
+
+    final ElementToken d = nextElement( tokenizer );
+    assertEquals( "d", d.getLocalName() );
+    assertEquals( NS_A, d.getNamespaceURI() );
+  }
+
+  /**
+   * Test method for XmlNamespaceTokenizer#nextToken() with pooled tokens.
+   */
+  @Test
+  public void testWithTokenPool() throws IOException
+  {
+    final XmlTokenizer parser = new XmlTokenizer( new XmlScanner( new StringReader(
+        "<p:a xmlns:p='urn:a' p:x='1'/><b x='2'/>" ) ) );
+    final TokenPool pool = new TokenPool();
+    parser.setTokenPool( pool );
+    final XmlNamespaceTokenizer tokenizer = new XmlNamespaceTokenizer( parser );
+
+    final ElementToken first = nextElement( tokenizer );
+    assertEquals( NS_A, first.getNamespaceURI() );
+    assertAttribute( first.getAttributes().get( 1 ), NS_A, "x" );
+    pool.release( first );
+
+    final ElementToken second = nextElement( tokenizer );
+    assertSame( first, second );
+    assertNull( second.getNamespaceURI() );
+    assertEquals( "b", second.getLocalName() );
+    assertAttribute( second.getAttributes().get( 0 ), null, "x" );
+  }
+
+  /**
+   * Asserts the namespace of the given attribute.
+   */
+  private static void assertAttribute( final IAttribute aAttribute, final String aNamespaceURI,
+      final String aLocalName )
+  {
+    assertEquals( aNamespaceURI, aAttribute.getNamespaceURI() );
+    assertEquals( aLocalName, aAttribute.getLocalName() );
+  }
+
+  /**
+   * @return the next token of the given tokenizer, which should be an element.
+   */
+  private static ElementToken nextElement( final XmlNamespaceTokenizer aTokenizer ) throws IOException
+  {
+    final IToken token = aTokenizer.nextToken();
+    assertTrue( token instanceof ElementToken );
+    return ( ElementToken )token;
+  }
+
+  /**
+   * @param aString
+   * @return
+   */
+  private XmlNamespaceTokenizer createTokenizer( final String aString )
+  {
+    return new XmlNamespaceTokenizer( new XmlTokenizer( new XmlScanner( new StringReader( aString ) ) ) );
+  }
+}
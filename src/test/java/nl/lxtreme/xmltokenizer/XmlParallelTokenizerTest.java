@@ -0,0 +1,213 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer;
+
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import nl.lxtreme.xmltokenizer.impl.*;
+
+import org.junit.*;
+
+
+/**
+ *
+ */
+public class XmlParallelTokenizerTest
+{
+  // VARIABLES
+
+  private ForkJoinPool pool;
+
+  // METHODS
+
+  /**
+   * Set up for each test.
+   */
+  @Before
+  public void setUp()
+  {
+    this.pool = new ForkJoinPool( 4 );
+  }
+
+  /**
+   * Tear down for each test.
+   */
+  @After
+  public void tearDown()
+  {
+    this.pool.shutdown();
+  }
+
+  /**
+   * Test method for XmlParallelTokenizer#tokenize(ITokenListener).
+   */
+  @Test
+  public void testTokenizeCharSequence() throws IOException
+  {
+    final String document = createDocument( 50 );
+    final List<String> expected = tokenizeSequentially( document );
+
+    for ( int chunkSize : new int[] { 1, 7, 16, 61, 256, 4096 } )
+    {
+      final XmlParallelTokenizer tokenizer = new XmlParallelTokenizer( document );
+      tokenizer.setChunkSize( chunkSize );
+      tokenizer.setPool( this.pool );
+
+      assertEquals( "Chunk size " + chunkSize, expected, tokenize( tokenizer ) );
+    }
+  }
+
+  /**
+   * Test method for XmlParallelTokenizer#tokenize(ITokenListener).
+   */
+  @Test
+  public void testTokenizeFile() throws IOException
+  {
+    final String document = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + createDocument( 50 );
+    final List<String> expected = tokenizeSequentially( document );
+
+    final Path file = Files.createTempFile( "xmlparallel", ".xml" );
+    try
+    {
+      Files.write( file, document.getBytes( "UTF-8" ) );
+
+      for ( int chunkSize : new int[] { 5, 32, 100, 1024 } )
+      {
+        final XmlParallelTokenizer tokenizer = new XmlParallelTokenizer( file );
+        try
+        {
+          tokenizer.setChunkSize( chunkSize );
+          tokenizer.setPool( this.pool );
+
+          assertEquals( "Chunk size " + chunkSize, expected, tokenize( tokenizer ) );
+        }
+        finally
+        {
+          tokenizer.close();
+        }
+      }
+    }
+    finally
+    {
+      Files.delete( file );
+    }
+  }
+
+  /**
+   * Test method for XmlParallelTokenizer#tokenize(ITokenListener).
+   */
+  @Test
+  public void testTokenizeUtf16FileSequentially() throws IOException
+  {
+    final String document = createDocument( 5 );
+    final List<String> expected = tokenizeSequentially( document );
+
+    final Path file = Files.createTempFile( "xmlparallel", ".xml" );
+    try
+    {
+      Files.write( file, ( "﻿" + document ).getBytes( Charset.forName( "UTF-16BE" ) ) );
+
+      final XmlParallelTokenizer tokenizer = new XmlParallelTokenizer( file );
+      try
+      {
+        tokenizer.setChunkSize( 16 );
+
+        assertEquals( expected, tokenize( tokenizer ) );
+      }
+      finally
+      {
+        tokenizer.close();
+      }
+    }
+    finally
+    {
+      Files.delete( file );
+    }
+  }
+
+  /**
+   * Creates a document with the given number of records, containing comments
+   * and CDATA sections with tag-like content.
+   */
+  private String createDocument( final int aCount )
+  {
+    final StringBuilder sb = new StringBuilder( "<!DOCTYPE records>\n<records>\n" );
+    for ( int i = 0; i < aCount; i++ )
+    {
+      sb.append( "  <record id=\"" ).append( i ).append( "\" name='récord'>\n" );
+      sb.append( "    <!-- <record id=\"fake\"> a < b -->\n" );
+      sb.append( "    <value>" ).append( i * 31 ).append( " < " ).append( i ).append( "</value>\n" );
+      sb.append( "    <data><![CDATA[<not-a-tag/> & more]]></data>\n" );
+      sb.append( "    <empty/>\n" );
+      sb.append( "  </record>\n" );
+    }
+    sb.append( "</records>\n" );
+    return sb.toString();
+  }
+
+  /**
+   * Returns a textual description of the given token.
+   */
+  private String describe( final IToken aToken )
+  {
+    final StringBuilder sb = new StringBuilder();
+    sb.append( aToken.getType() ).append( ':' ).append( aToken.getName() );
+    for ( IAttribute attribute : aToken.getAttributes() )
+    {
+      sb.append( ' ' ).append( attribute.getName() ).append( '=' ).append( attribute.getValue() );
+    }
+    if ( aToken instanceof TextToken )
+    {
+      sb.append( ':' ).append( ( ( TextToken )aToken ).getText() );
+    }
+    else if ( aToken instanceof CommentToken )
+    {
+      sb.append( ':' ).append( ( ( CommentToken )aToken ).getComment() );
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Tokenizes the input of the given tokenizer, returning a description of all
+   * tokens.
+   */
+  private List<String> tokenize( final XmlParallelTokenizer aTokenizer ) throws IOException
+  {
+    final List<String> result = new ArrayList<String>();
+    aTokenizer.tokenize( new ITokenListener()
+    {
+      public void tokenFound( final IToken aToken )
+      {
+        result.add( describe( aToken ) );
+      }
+    } );
+    return result;
+  }
+
+  /**
+   * Tokenizes the given document sequentially, returning a description of all
+   * tokens.
+   */
+  private List<String> tokenizeSequentially( final String aDocument ) throws IOException
+  {
+    final List<String> result = new ArrayList<String>();
+    final XmlTokenizer tokenizer = new XmlTokenizer( new XmlScanner( new StringReader( aDocument ) ) );
+
+    IToken token;
+    while ( ( token = tokenizer.nextToken() ) != null )
+    {
+      result.add( describe( token ) );
+    }
+    return result;
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer;
+
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.*;
+
+
+/**
+ *
+ */
+public class XmlPathMatcherTest
+{
+  // CONSTANTS
+
+  private static final String DOCUMENT = "<?xml version=\"1.0\"?>\n" + //
+      "<a>\n" + //
+      "  <b type='x' id='b1'><c id='c1'/><c id='c2'><item id='i1'/></c></b>\n" + //
+      "  <b type=\"y\" id='b2'><c id='c3'/></b>\n" + //
+      "  <d><item id='i2'><item id='i3'/></item><a><b type='x'><c id='c4'/></b></a></d>\n" + //
+      "</a>";
+
+  // METHODS
+
+  /**
+   * Test method for XmlPathMatcher#match(XmlTokenizer, IPathListener).
+   */
+  @Test
+  public void testMatchAttributes() throws IOException
+  {
+    assertEquals( Arrays.asList( "//item/@id=i1", "//item/@id=i2", "//item/@id=i3" ), match( "//item/@id" ) );
+    assertEquals( Arrays.asList( "/a/b/@*=x", "/a/b/@*=b1", "/a/b/@*=y", "/a/b/@*=b2" ), match( "/a/b/@*" ) );
+    assertEquals( Arrays.asList( "//@type=x", "//@type=y", "//@type=x" ), match( "//@type" ) );
+  }
+
+  /**
+   * Test method for XmlPathMatcher#match(XmlTokenizer, IPathListener).
+   */
+  @Test
+  public void testMatchChildren() throws IOException
+  {
+    assertEquals( Arrays.asList( "/a/b/c=c1", "/a/b/c=c2", "/a/b/c=c3" ), match( "/a/b/c" ) );
+    assertEquals( Arrays.asList( "/a/*/c=c1", "/a/*/c=c2", "/a/*/c=c3" ), match( "/a/*/c" ) );
+    assertEquals( Arrays.asList( "/*=a" ), match( "/*" ) );
+    assertTrue( match( "/b" ).isEmpty() );
+  }
+
+  /**
+   * Test method for XmlPathMatcher#match(XmlTokenizer, IPathListener).
+   */
+  @Test
+  public void testMatchDescendants() throws IOException
+  {
+    assertEquals( Arrays.asList( "//item=i1", "//item=i2", "//item=i3" ), match( "//item" ) );
+    assertEquals( Arrays.asList( "/a//c=c1", "/a//c=c2", "/a//c=c3", "/a//c=c4" ), match( "/a//c" ) );
+    assertEquals( Arrays.asList( "//a/b/c=c1", "//a/b/c=c2", "//a/b/c=c3", "//a/b/c=c4" ), match( "//a/b/c" ) );
+    assertEquals( Arrays.asList( "/a/d//item=i2", "/a/d//item=i3" ), match( "/a/d//item" ) );
+  }
+
+  /**
+   * Test method for XmlPathMatcher#XmlPathMatcher(String...).
+   */
+  @Test
+  public void testMatchInvalidPaths()
+  {
+    for ( String path : new String[] { null, "", "a", "/", "/a/", "/a[", "/a[b]", "/a[@b='c]", "/a[@b=c]",
+        "/a/@b/c", "/a/@", "/a///b" } )
+    {
+      try
+      {
+        new XmlPathMatcher( path );
+        fail( "Expected IllegalArgumentException for " + path );
+      }
+      catch ( IllegalArgumentException exception )
+      {
+        // Ok; expected...
+      }
+    }
+  }
+
+  /**
+   * Test method for XmlPathMatcher#match(XmlTokenizer, IPathListener).
+   */
+  @Test
+  public void testMatchMultiplePaths() throws IOException
+  {
+    final List<String> matches = match( "/a/b[@type='x']/c", "/a/b[@type='x']/@id", "/a/b", "//item/@id",
+        "/a/b[@type][@id='b2']" );
+
+    assertEquals( Arrays.asList( "/a/b[@type='x']/@id=b1", "/a/b=b1", "/a/b[@type='x']/c=c1",
+        "/a/b[@type='x']/c=c2", "//item/@id=i1", "/a/b=b2", "/a/b[@type][@id='b2']=b2", "//item/@id=i2",
+        "//item/@id=i3" ), matches );
+  }
+
+  /**
+   * Test method for XmlPathMatcher#match(XmlTokenizer, IPathListener).
+   */
+  @Test
+  public void testMatchPredicates() throws IOException
+  {
+    assertEquals( Arrays.asList( "/a/b[@type='x']/c=c1", "/a/b[@type='x']/c=c2" ), match( "/a/b[@type='x']/c" ) );
+    assertEquals( Arrays.asList( "//b[@type=\"x\"]/c=c1", "//b[@type=\"x\"]/c=c2", "//b[@type=\"x\"]/c=c4" ),
+        match( "//b[@type=\"x\"]/c" ) );
+    assertEquals( Arrays.asList( "//*[@id][@type='y']=b2" ), match( "//*[@id][@type='y']" ) );
+  }
+
+  /**
+   * Matches the given paths against {@link #DOCUMENT}, returning a description
+   * of all matches.
+   */
+  private List<String> match( final String... aPaths ) throws IOException
+  {
+    final List<String> result = new ArrayList<String>();
+    final XmlTokenizer tokenizer = new XmlTokenizer( new XmlScanner( new StringReader( DOCUMENT ) ) );
+    new XmlPathMatcher( aPaths ).match( tokenizer, new IPathListener()
+    {
+      public void pathMatched( final String aPath, final IToken aElement, final IAttribute aAttribute )
+      {
+        if ( aAttribute != null )
+        {
+          result.add( aPath + "=" + aAttribute.getValue() );
+        }
+        else
+        {
+          final IAttribute id = XmlPathMatcher.getAttribute( aElement, "id" );
+          result.add( aPath + "=" + ( ( id != null ) ? id.getValue() : aElement.getName() ) );
+        }
+      }
+    } );
+    return result;
+  }
+}
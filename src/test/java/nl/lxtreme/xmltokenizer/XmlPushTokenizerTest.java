@@ -0,0 +1,207 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer;
+
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+
+import nl.lxtreme.xmltokenizer.impl.*;
+
+import org.junit.*;
+
+
+/**
+ *
+ */
+public class XmlPushTokenizerTest
+{
+  // CONSTANTS
+
+  private static final String DOCUMENT = "﻿<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" + //
+      "<!DOCTYPE records>\n<records>\n" + //
+      "  <record id=\"1\" name='récord'>a < b <　c €</record>\n" + //
+      "  <!-- <record id=\"fake\"> -->\n" + //
+      "  <data><![CDATA[<not-a-tag/> & more]]></data>\n" + //
+      "  <empty/>< \n" + //
+      "</records>\ntrailing <";
+
+  // METHODS
+
+  /**
+   * Test method for XmlPushTokenizer#feed(ByteBuffer).
+   */
+  @Test
+  public void testFeedAfterEndOfInput() throws IOException
+  {
+    final XmlPushTokenizer tokenizer = createTokenizer( new ArrayList<String>() );
+    tokenizer.endOfInput();
+    try
+    {
+      tokenizer.feed( ByteBuffer.allocate( 1 ) );
+      fail( "Expected IllegalStateException" );
+    }
+    catch ( IllegalStateException exception )
+    {
+      // Ok; expected...
+    }
+  }
+
+  /**
+   * Test method for XmlPushTokenizer#feed(ByteBuffer).
+   */
+  @Test
+  public void testFeedArbitraryChunks() throws IOException
+  {
+    final byte[] data = DOCUMENT.getBytes( "UTF-8" );
+    final List<String> expected = tokenizeSequentially( data );
+
+    final Random random = new Random( 42 );
+    for ( int run = 0; run < 200; run++ )
+    {
+      final List<String> actual = new ArrayList<String>();
+      final XmlPushTokenizer tokenizer = createTokenizer( actual );
+
+      int pos = 0;
+      while ( pos < data.length )
+      {
+        final int length = Math.min( data.length - pos, ( run < 2 ) ? ( run + 1 ) : random.nextInt( 20 ) );
+        tokenizer.feed( ByteBuffer.wrap( data, pos, length ) );
+        pos += length;
+      }
+      tokenizer.endOfInput();
+
+      assertEquals( "Run " + run, expected, actual );
+    }
+  }
+
+  /**
+   * Test method for XmlPushTokenizer#feed(ByteBuffer).
+   */
+  @Test
+  public void testFeedEmitsCompleteTokensOnly() throws IOException
+  {
+    final List<String> tokens = new ArrayList<String>();
+    final XmlPushTokenizer tokenizer = createTokenizer( tokens );
+
+    tokenizer.feed( ByteBuffer.wrap( "<a x='1'>te".getBytes( "UTF-8" ) ) );
+    assertEquals( Arrays.asList( "TAG:a x=1" ), tokens );
+
+    tokenizer.feed( ByteBuffer.wrap( "xt<".getBytes( "UTF-8" ) ) );
+    assertEquals( Arrays.asList( "TAG:a x=1" ), tokens );
+
+    tokenizer.feed( ByteBuffer.wrap( "/a".getBytes( "UTF-8" ) ) );
+    assertEquals( Arrays.asList( "TAG:a x=1", "TEXT:null:text" ), tokens );
+
+    tokenizer.feed( ByteBuffer.wrap( ">".getBytes( "UTF-8" ) ) );
+    assertEquals( Arrays.asList( "TAG:a x=1", "TEXT:null:text", "TAG:a" ), tokens );
+
+    tokenizer.endOfInput();
+    assertEquals( 3, tokens.size() );
+  }
+
+  /**
+   * Test method for XmlPushTokenizer#setChunkSize(int).
+   */
+  @Test
+  public void testFeedChunkedSection() throws IOException
+  {
+    final StringBuilder sb = new StringBuilder();
+    for ( int i = 0; i < 100; i++ )
+    {
+      sb.append( "<r\u00e9cord id='" ).append( i ).append( "'/> ]]" );
+    }
+    final String content = sb.toString();
+    final byte[] data = ( "<data><![CDATA[" + content + "]]></data>" ).getBytes( "UTF-8" );
+
+    final List<String> tokens = new ArrayList<String>();
+    final StringBuilder text = new StringBuilder();
+    final XmlPushTokenizer[] tokenizer = new XmlPushTokenizer[1];
+    tokenizer[0] = new XmlPushTokenizer( new ITokenListener()
+    {
+      public void tokenFound( final IToken aToken )
+      {
+        if ( aToken.getType().isCData() )
+        {
+          text.append( ( ( TextToken )aToken ).getText() );
+          if ( tokenizer[0].isPartial() )
+          {
+            return;
+          }
+        }
+        tokens.add( aToken.getType() + ":" + aToken.getName() );
+      }
+    } );
+    tokenizer[0].setChunkSize( 32 );
+
+    // Feed the data in pieces that do not line up with the chunks...
+    for ( int pos = 0; pos < data.length; pos += 7 )
+    {
+      tokenizer[0].feed( ByteBuffer.wrap( data, pos, Math.min( 7, data.length - pos ) ) );
+    }
+    tokenizer[0].endOfInput();
+
+    assertEquals( Arrays.asList( "TAG:data", "CDATA:null", "TAG:data" ), tokens );
+    assertEquals( content, text.toString() );
+  }
+
+  /**
+   * Creates a push tokenizer that adds a description of each token to the
+   * given list.
+   */
+  private XmlPushTokenizer createTokenizer( final List<String> aResult )
+  {
+    return new XmlPushTokenizer( new ITokenListener()
+    {
+      public void tokenFound( final IToken aToken )
+      {
+        aResult.add( describe( aToken ) );
+      }
+    } );
+  }
+
+  /**
+   * Returns a textual description of the given token.
+   */
+  private String describe( final IToken aToken )
+  {
+    final StringBuilder sb = new StringBuilder();
+    sb.append( aToken.getType() ).append( ':' ).append( aToken.getName() );
+    for ( IAttribute attribute : aToken.getAttributes() )
+    {
+      sb.append( ' ' ).append( attribute.getName() ).append( '=' ).append( attribute.getValue() );
+    }
+    if ( aToken instanceof TextToken )
+    {
+      sb.append( ':' ).append( ( ( TextToken )aToken ).getText() );
+    }
+    else if ( aToken instanceof CommentToken )
+    {
+      sb.append( ':' ).append( ( ( CommentToken )aToken ).getComment() );
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Tokenizes the given data with a pull tokenizer, returning a description of
+   * all tokens.
+   */
+  private List<String> tokenizeSequentially( final byte[] aData ) throws IOException
+  {
+    final List<String> result = new ArrayList<String>();
+    final XmlTokenizer tokenizer = new XmlTokenizer( new XmlScanner( ByteBuffer.wrap( aData ) ) );
+
+    IToken token;
+    while ( ( token = tokenizer.nextToken() ) != null )
+    {
+      result.add( describe( token ) );
+    }
+    return result;
+  }
+}
@@ -9,6 +9,12 @@ package nl.lxtreme.xmltokenizer;
 import static org.junit.Assert.*;
 
 import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+
+import nl.lxtreme.xmltokenizer.impl.*;
 
 import org.junit.*;
 
@@ -20,6 +26,162 @@ public class XmlScannerTest
 {
   // METHODS
 
+  /**
+   * Test method for XmlScanner#open(Path).
+   */
+  @Test
+  public void testMappedFile() throws IOException
+  {
+    final String xml = "<?xml version=\"1.0\"?>\n<p class=\"caf\u00e9\">foo < bar</p>";
+    final Path file = createTempFile( xml.getBytes( "UTF-8" ) );
+    try
+    {
+      final XmlScanner tokenizer = XmlScanner.open( file );
+      try
+      {
+        assertEquals( "<?xml version=\"1.0\"?>", tokenizer.nextToken() );
+        assertEquals( 0L, tokenizer.getTokenOffset() );
+        assertEquals( "\n", tokenizer.nextToken() );
+        assertEquals( "<p class=\"caf\u00e9\">", tokenizer.nextToken() );
+        assertEquals( 22L, tokenizer.getTokenOffset() );
+        assertEquals( "foo < bar", tokenizer.nextToken() );
+        assertEquals( 39L, tokenizer.getTokenOffset() );
+        assertEquals( "</p>", tokenizer.nextToken() );
+        assertNull( tokenizer.nextToken() );
+      }
+      finally
+      {
+        tokenizer.close();
+      }
+    }
+    finally
+    {
+      Files.delete( file );
+    }
+  }
+
+  /**
+   * Test method for XmlScanner#nextToken() with a mapped file.
+   */
+  @Test
+  public void testMappedFileWindows() throws IOException
+  {
+    final String xml = "foo <p class=\"test\"> bar < qux </p><br/>";
+    final Path file = createTempFile( xml.getBytes( "UTF-8" ) );
+    try
+    {
+      for ( int windowSize = 1; windowSize <= xml.length(); windowSize++ )
+      {
+        final FileChannel channel = FileChannel.open( file, StandardOpenOption.READ );
+        final XmlScanner tokenizer = new XmlScanner( new MappedFileScannerBackend( channel,
+            Charset.forName( "UTF-8" ), 0, channel.size(), windowSize ) );
+        try
+        {
+          assertEquals( "foo ", tokenizer.nextToken() );
+          assertEquals( "<p class=\"test\">", tokenizer.nextToken() );
+          assertEquals( " bar < qux ", tokenizer.nextToken() );
+          assertEquals( "</p>", tokenizer.nextToken() );
+          assertEquals( "<br/>", tokenizer.nextToken() );
+          assertEquals( 35L, tokenizer.getTokenOffset() );
+          assertNull( tokenizer.nextToken() );
+        }
+        finally
+        {
+          tokenizer.close();
+        }
+      }
+    }
+    finally
+    {
+      Files.delete( file );
+    }
+  }
+
+  /**
+   * Test method for XmlScanner#nextTokenView().
+   */
+  @Test
+  public void testNextTokenView() throws IOException
+  {
+    final String xml = "<p class=\"test\"> foo </p>";
+
+    final XmlScanner tokenizer = createTokenizer( xml );
+
+    CharSequence view = tokenizer.nextTokenView();
+    assertEquals( "<p class=\"test\">", view.toString() );
+    assertEquals( 16, view.length() );
+    assertEquals( 'c', view.charAt( 3 ) );
+    assertEquals( "class", view.subSequence( 3, 8 ).toString() );
+
+    view = tokenizer.nextTokenView();
+    assertEquals( " foo ", view.toString() );
+
+    assertEquals( "</p>", tokenizer.nextToken() );
+    assertNull( tokenizer.nextTokenView() );
+  }
+
+  /**
+   * Test method for XmlScanner#nextToken() on a byte buffer.
+   */
+  @Test
+  public void testByteBufferUtf8() throws IOException
+  {
+    final String xml = "<p class=\"caf\u00e9\">\u20ac 3 < 4</p>";
+
+    final XmlScanner tokenizer = new XmlScanner( ByteBuffer.wrap( xml.getBytes( "UTF-8" ) ) );
+    assertEquals( "<p class=\"caf\u00e9\">", tokenizer.nextToken() );
+    assertEquals( "\u20ac 3 < 4", tokenizer.nextToken() );
+    assertEquals( "</p>", tokenizer.nextTokenView().toString() );
+    assertNull( tokenizer.nextToken() );
+  }
+
+  /**
+   * Test method for XmlScanner#nextToken() on an input stream.
+   */
+  @Test
+  public void testInputStreamDeclaredEncoding() throws IOException
+  {
+    final String xml = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><p>caf\u00e9</p>";
+
+    final XmlScanner tokenizer = new XmlScanner( new ByteArrayInputStream( xml.getBytes( "ISO-8859-1" ) ) );
+    assertEquals( "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>", tokenizer.nextToken() );
+    assertEquals( "<p>", tokenizer.nextToken() );
+    assertEquals( "caf\u00e9", tokenizer.nextToken() );
+    assertEquals( "</p>", tokenizer.nextToken() );
+    assertNull( tokenizer.nextToken() );
+  }
+
+  /**
+   * Test method for XmlScanner#nextToken() on an input stream.
+   */
+  @Test
+  public void testInputStreamUtf16() throws IOException
+  {
+    final String xml = "<?xml version=\"1.0\" encoding=\"UTF-16\"?><p>caf\u00e9</p>";
+
+    final XmlScanner tokenizer = new XmlScanner( new ByteArrayInputStream( xml.getBytes( "UTF-16" ) ) );
+    assertEquals( "<?xml version=\"1.0\" encoding=\"UTF-16\"?>", tokenizer.nextToken() );
+    assertEquals( "<p>", tokenizer.nextToken() );
+    assertEquals( "caf\u00e9", tokenizer.nextToken() );
+    assertEquals( "</p>", tokenizer.nextToken() );
+    assertNull( tokenizer.nextToken() );
+  }
+
+  /**
+   * Test method for XmlScanner#nextToken() on an input stream.
+   */
+  @Test
+  public void testInputStreamUtf8ByteOrderMark() throws IOException
+  {
+    final byte[] xml = "\ufeff<p>caf\u00e9</p>".getBytes( "UTF-8" );
+
+    final XmlScanner tokenizer = new XmlScanner( new ByteArrayInputStream( xml ) );
+    assertEquals( "<p>", tokenizer.nextToken() );
+    assertEquals( "caf\u00e9", tokenizer.nextToken() );
+    assertEquals( "</p>", tokenizer.nextToken() );
+    assertNull( tokenizer.nextToken() );
+  }
+
   /**
    * Test method for XmlScanner#nextToken().
    */
@@ -129,6 +291,144 @@ public class XmlScannerTest
     assertNull( tokenizer.nextToken() );
   }
 
+  /**
+   * Test method for XmlScanner#skipElement().
+   */
+  @Test
+  public void testSkipElement() throws IOException
+  {
+    final String xml = "<a><b x='/>'><c/><!-- d --><![CDATA[</b>]]><e >t</e>< f</b><g / ></a>";
+
+    for ( XmlScanner scanner : new XmlScanner[] { createTokenizer( xml ),
+        new XmlScanner( ByteBuffer.wrap( xml.getBytes( "UTF-8" ) ) ) } )
+    {
+      assertEquals( "<a>", scanner.nextToken() );
+      assertEquals( "<b x='/>", scanner.nextToken() );
+      assertEquals( "'>", scanner.nextToken() );
+      assertTrue( scanner.skipElement() );
+      assertEquals( "<g / >", scanner.nextToken() );
+      assertEquals( "</a>", scanner.nextToken() );
+      assertNull( scanner.nextToken() );
+    }
+  }
+
+  /**
+   * Test method for XmlScanner#skipElement().
+   */
+  @Test
+  public void testSkipElementUnterminated() throws IOException
+  {
+    final XmlScanner scanner = createTokenizer( "<a><b><c></c>" );
+
+    assertEquals( "<a>", scanner.nextToken() );
+    assertFalse( scanner.skipElement() );
+    assertNull( scanner.nextToken() );
+  }
+
+  /**
+   * Test method for XmlScanner#nextToken().
+   */
+  @Test
+  public void testSpuriousLessThan() throws IOException
+  {
+    final String xml = "a < b> c";
+
+    final XmlScanner tokenizer = createTokenizer( xml );
+    assertEquals( "a < b>", tokenizer.nextToken() );
+    assertEquals( " c", tokenizer.nextToken() );
+    assertNull( tokenizer.nextToken() );
+  }
+
+  /**
+   * Test method for XmlScanner#setChunkSize(int).
+   */
+  @Test
+  public void testChunkedTokens() throws IOException
+  {
+    final StringBuilder sb = new StringBuilder();
+    for ( int i = 0; i < 20; i++ )
+    {
+      sb.append( "text \u00e9\u20ac\ud83d\ude00 " ).append( i ).append( " < ]]x " );
+    }
+    // Text with a spurious '<' ends at the first '>'...
+    final String text = sb.toString();
+    final String cdata = "<![CDATA[" + text.replace( "]]x", "]>]" ) + "<a>]]]]>";
+    final String xml = "<a>" + text + "</a><b/>" + cdata + "<c x='1'>";
+
+    for ( int bufferSize = 1; bufferSize <= 64; bufferSize++ )
+    {
+      final XmlScanner scanner = new XmlScanner( new StringReader( xml ), bufferSize );
+      scanner.setChunkSize( 16 );
+      assertChunkedTokens( scanner, 32, "UTF-16BE", text, cdata );
+    }
+
+    for ( int chunkSize = 16; chunkSize <= 64; chunkSize++ )
+    {
+      final XmlScanner scanner = new XmlScanner( ByteBuffer.wrap( xml.getBytes( "UTF-8" ) ) );
+      scanner.setChunkSize( chunkSize );
+      assertChunkedTokens( scanner, chunkSize, "UTF-8", text, cdata );
+    }
+  }
+
+  /**
+   * Test method for XmlScanner#setChunkSize(int).
+   */
+  @Test
+  public void testChunkedSkipElement() throws IOException
+  {
+    final String xml = "<a><b><![CDATA[<b><b><b><b><b><b><b><b><b><b><b><b>]]></b><c/></a>";
+
+    final XmlScanner scanner = createTokenizer( xml );
+    scanner.setChunkSize( 16 );
+    assertEquals( "<a>", scanner.nextToken() );
+    assertEquals( "<b>", scanner.nextToken() );
+    assertTrue( scanner.skipElement() );
+    assertEquals( "<c/>", scanner.nextToken() );
+  }
+
+  /**
+   * Test method for XmlScanner#setChunkSize(int).
+   */
+  @Test( expected = IllegalArgumentException.class )
+  public void testChunkSizeTooSmall() throws IOException
+  {
+    createTokenizer( "<a/>" ).setChunkSize( 1 );
+  }
+
+  /**
+   * Test method for XmlScanner#nextToken().
+   */
+  @Test
+  public void testTokensStraddlingBlockBoundaries() throws IOException
+  {
+    final String xml = "foo <p class=\"test\"> bar < qux </p><br/>";
+
+    for ( int bufferSize = 1; bufferSize <= xml.length(); bufferSize++ )
+    {
+      final XmlScanner tokenizer = new XmlScanner( new StringReader( xml ), bufferSize );
+      assertEquals( "foo ", tokenizer.nextToken() );
+      assertEquals( "<p class=\"test\">", tokenizer.nextToken() );
+      assertEquals( " bar < qux ", tokenizer.nextToken() );
+      assertEquals( "</p>", tokenizer.nextToken() );
+      assertEquals( "<br/>", tokenizer.nextToken() );
+      assertNull( tokenizer.nextToken() );
+    }
+  }
+
+  /**
+   * Test method for XmlScanner#nextToken().
+   */
+  @Test
+  public void testUnterminatedTag() throws IOException
+  {
+    final String xml = "foo<";
+
+    final XmlScanner tokenizer = createTokenizer( xml );
+    assertEquals( "foo", tokenizer.nextToken() );
+    assertEquals( "<", tokenizer.nextToken() );
+    assertNull( tokenizer.nextToken() );
+  }
+
   /**
    * Test method for XmlScanner#nextToken().
    */
@@ -156,6 +456,63 @@ public class XmlScannerTest
     assertNull( tokenizer.nextToken() );
   }
 
+  /**
+   * Test method for XmlScanner#nextToken().
+   */
+  @Test
+  public void testTokenizeCData3() throws IOException
+  {
+    final String cdata = "<![CDATA[<a href='x'>]</a> ]>]]]>";
+    final String xml = "<p>" + cdata + "<![CDATA[]]><![CDATA[>]]></p>";
+
+    for ( XmlScanner scanner : new XmlScanner[] { createTokenizer( xml ),
+        new XmlScanner( ByteBuffer.wrap( xml.getBytes( "UTF-8" ) ) ) } )
+    {
+      assertEquals( "<p>", scanner.nextToken() );
+      assertEquals( cdata, scanner.nextToken() );
+      assertEquals( "<![CDATA[]]>", scanner.nextToken() );
+      assertEquals( "<![CDATA[>]]>", scanner.nextToken() );
+      assertEquals( "</p>", scanner.nextToken() );
+      assertNull( scanner.nextToken() );
+    }
+  }
+
+  /**
+   * Test method for XmlScanner#nextToken().
+   */
+  @Test
+  public void testTokenizeCDataStraddlingBlockBoundaries() throws IOException
+  {
+    final String cdata = "<![CDATA[ x > y ]] z ]]>";
+    final String xml = "a" + cdata + "<b/>";
+
+    for ( int bufferSize = 1; bufferSize <= xml.length(); bufferSize++ )
+    {
+      final XmlScanner tokenizer = new XmlScanner( new StringReader( xml ), bufferSize );
+      assertEquals( "a", tokenizer.nextToken() );
+      assertEquals( cdata, tokenizer.nextToken() );
+      assertEquals( "<b/>", tokenizer.nextToken() );
+      assertNull( tokenizer.nextToken() );
+    }
+  }
+
+  /**
+   * Test method for XmlScanner#nextToken().
+   */
+  @Test
+  public void testTokenizeCDataUnterminated() throws IOException
+  {
+    final String xml = "<a><![CDATA[ x > y ]]";
+
+    for ( XmlScanner scanner : new XmlScanner[] { createTokenizer( xml ),
+        new XmlScanner( ByteBuffer.wrap( xml.getBytes( "UTF-8" ) ) ) } )
+    {
+      assertEquals( "<a>", scanner.nextToken() );
+      assertEquals( "<![CDATA[ x > y ]]", scanner.nextToken() );
+      assertNull( scanner.nextToken() );
+    }
+  }
+
   /**
    * Test method for XmlScanner#nextToken().
    */
@@ -195,6 +552,55 @@ public class XmlScannerTest
     assertNull( tokenizer.nextToken() );
   }
 
+  /**
+   * Asserts that the given scanner returns the text and CDATA section of the
+   * document of {@link #testChunkedTokens()} in chunks.
+   */
+  private void assertChunkedTokens( final XmlScanner aScanner, final int aChunkSize, final String aEncoding,
+      final String aText, final String aCData ) throws IOException
+  {
+    assertEquals( "<a>", aScanner.nextToken() );
+    assertFalse( aScanner.isPartial() );
+    assertEquals( aText, nextChunks( aScanner, aChunkSize, aEncoding ) );
+    assertEquals( "</a>", aScanner.nextToken() );
+    assertEquals( "<b/>", aScanner.nextToken() );
+    assertEquals( aCData, nextChunks( aScanner, aChunkSize, aEncoding ) );
+    assertEquals( "<c x='1'>", aScanner.nextToken() );
+    assertFalse( aScanner.isPartial() );
+    assertNull( aScanner.nextToken() );
+  }
+
+  /**
+   * @param aContent
+   * @return
+   */
+  private Path createTempFile( final byte[] aContent ) throws IOException
+  {
+    final Path file = Files.createTempFile( "xmlscanner", ".xml" );
+    Files.write( file, aContent );
+    return file;
+  }
+
+  /**
+   * Returns the concatenation of the next token and all its chunks, verifying
+   * the size of each chunk, in bytes of the given encoding.
+   */
+  private String nextChunks( final XmlScanner aScanner, final int aChunkSize, final String aEncoding )
+      throws IOException
+  {
+    final StringBuilder sb = new StringBuilder();
+    String chunk;
+    do
+    {
+      chunk = aScanner.nextToken();
+      assertNotNull( chunk );
+      assertTrue( chunk.getBytes( aEncoding ).length <= aChunkSize );
+      sb.append( chunk );
+    }
+    while ( aScanner.isPartial() );
+    return sb.toString();
+  }
+
   /**
    * @param aString
    * @return
@@ -0,0 +1,167 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer;
+
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import nl.lxtreme.xmltokenizer.impl.*;
+
+import org.junit.*;
+
+
+/**
+ *
+ */
+public class XmlSubtreeExtractorTest
+{
+  // METHODS
+
+  /**
+   * Test method for XmlSubtreeExtractor#extract(ITokenListener).
+   */
+  @Test
+  public void testExtract() throws IOException
+  {
+    final String xml = "<?xml version=\"1.0\"?>\n<export>\n" + //
+        "  <header><record id='h'/></header>\n" + //
+        "  <records>\n" + //
+        "    <record id='1'><name>one</name><!-- x --></record>\n" + //
+        "    <record id='2'/>\n" + //
+        "    <other><record id='o'/></other>\n" + //
+        "  </records>\n" + //
+        "  <records><record id='3'><record id='nested'/></record></records>\n" + //
+        "</export>";
+
+    final List<IToken> records = extract( xml, "/export/records/record" );
+    assertEquals( 3, records.size() );
+
+    final IToken first = records.get( 0 );
+    assertEquals( "record", first.getName() );
+    assertTrue( first.hasAttribute( new Attribute( "id", "1" ) ) );
+    assertEquals( 2, first.getChildren().size() );
+    assertEquals( "name", first.getChildren().get( 0 ).getName() );
+    assertEquals( "one", ( ( TextToken )first.getChildren().get( 0 ).getChildren().get( 0 ) ).getText() );
+
+    assertTrue( records.get( 1 ).hasAttribute( new Attribute( "id", "2" ) ) );
+    assertTrue( records.get( 1 ).getChildren().isEmpty() );
+
+    final IToken third = records.get( 2 );
+    assertTrue( third.hasAttribute( new Attribute( "id", "3" ) ) );
+    assertEquals( 1, third.getChildren().size() );
+  }
+
+  /**
+   * Test method for XmlSubtreeExtractor#XmlSubtreeExtractor(XmlTokenizer,
+   * String).
+   */
+  @Test
+  public void testExtractInvalidPath()
+  {
+    for ( String path : new String[] { null, "", "/", "a/b", "/a//b", "/a/" } )
+    {
+      try
+      {
+        new XmlSubtreeExtractor( createTokenizer( "" ), path );
+        fail( "Expected IllegalArgumentException for " + path );
+      }
+      catch ( IllegalArgumentException exception )
+      {
+        // Ok; expected...
+      }
+    }
+  }
+
+  /**
+   * Test method for XmlSubtreeExtractor#extract(ITokenListener).
+   */
+  @Test
+  public void testExtractWildcard() throws IOException
+  {
+    final String xml = "<a><b><c>1</c></b><d><c>2</c><e>3</e></d><c>4</c></a>";
+
+    final List<IToken> matches = extract( xml, "/a/*/c" );
+    assertEquals( 2, matches.size() );
+    assertEquals( "1", ( ( TextToken )matches.get( 0 ).getChildren().get( 0 ) ).getText() );
+    assertEquals( "2", ( ( TextToken )matches.get( 1 ).getChildren().get( 0 ) ).getText() );
+
+    assertEquals( 1, extract( xml, "/*" ).size() );
+    assertTrue( extract( xml, "/b" ).isEmpty() );
+  }
+
+  /**
+   * Test method for XmlSubtreeExtractor#extract(ITokenListener) with tokens
+   * that look like tags, but are not.
+   */
+  @Test
+  public void testExtractSkipsNonTags() throws IOException
+  {
+    // A stray '<' is not a tag...
+    final List<IToken> matches = extract( "<a>1 <2 <c>3</c></a>", "/a/c" );
+    assertEquals( 1, matches.size() );
+    assertEquals( "3", ( ( TextToken )matches.get( 0 ).getChildren().get( 0 ) ).getText() );
+
+    // Nor are the continued chunks of a CDATA section...
+    final StringBuilder sb = new StringBuilder( "<a><![CDATA[" );
+    for ( int i = 0; i < 16; i++ )
+    {
+      sb.append( "<b>x</b>" );
+    }
+    sb.append( "]]><c>3</c></a>" );
+    for ( int chunkSize = 16; chunkSize < 24; chunkSize++ )
+    {
+      assertEquals( 1, extract( createTokenizer( sb.toString(), chunkSize ), "/a/c" ).size() );
+      assertTrue( extract( createTokenizer( sb.toString(), chunkSize ), "/a/b" ).isEmpty() );
+    }
+  }
+
+  /**
+   * @param aString
+   * @return
+   */
+  private XmlTokenizer createTokenizer( final String aString )
+  {
+    return new XmlTokenizer( new XmlScanner( new StringReader( aString ) ) );
+  }
+
+  /**
+   * Creates a tokenizer that splits up text and CDATA sections into chunks of
+   * the given size.
+   */
+  private XmlTokenizer createTokenizer( final String aString, final int aChunkSize )
+  {
+    final XmlScanner scanner = new XmlScanner( new StringReader( aString ) );
+    scanner.setChunkSize( aChunkSize );
+    return new XmlTokenizer( scanner );
+  }
+
+  /**
+   * Extracts all elements matching the given path from the given document.
+   */
+  private List<IToken> extract( final String aDocument, final String aPath ) throws IOException
+  {
+    return extract( createTokenizer( aDocument ), aPath );
+  }
+
+  /**
+   * Extracts all elements matching the given path from the given tokenizer.
+   */
+  private List<IToken> extract( final XmlTokenizer aTokenizer, final String aPath ) throws IOException
+  {
+    final List<IToken> result = new ArrayList<IToken>();
+    new XmlSubtreeExtractor( aTokenizer, aPath ).extract( new ITokenListener()
+    {
+      public void tokenFound( final IToken aToken )
+      {
+        result.add( aToken );
+      }
+    } );
+    return result;
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer;
+
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.*;
+
+import nl.lxtreme.xmltokenizer.IToken.TokenType;
+
+import org.junit.*;
+
+
+/**
+ *
+ */
+public class XmlTextReaderTest
+{
+  // METHODS
+
+  /**
+   * Test method for XmlTextReader#close().
+   */
+  @Test
+  public void testCloseSkipsRemainingChunks() throws IOException
+  {
+    final XmlTokenizer tokenizer = createTokenizer( "<a>" + createText( 1000 ) + "</a><b/>", 64 );
+
+    assertEquals( "a", tokenizer.nextToken().getName() );
+    final IToken text = tokenizer.nextToken();
+    assertTrue( tokenizer.isPartial() );
+
+    final Reader reader = tokenizer.openTextReader( text );
+    assertEquals( 'x', reader.read() );
+    reader.close();
+    assertEquals( -1, reader.read() );
+
+    final IToken end = tokenizer.nextToken();
+    assertEquals( "a", end.getName() );
+    assertEquals( "b", tokenizer.nextToken().getName() );
+    assertNull( tokenizer.nextToken() );
+  }
+
+  /**
+   * Test method for XmlTokenizer#openTextReader(IToken).
+   */
+  @Test( expected = IllegalArgumentException.class )
+  public void testOpenTextReaderForTag() throws IOException
+  {
+    final XmlTokenizer tokenizer = createTokenizer( "<a/>", 0 );
+    tokenizer.openTextReader( tokenizer.nextToken() );
+  }
+
+  /**
+   * Test method for XmlTextReader#read(char[], int, int).
+   */
+  @Test
+  public void testReadChunkedCData() throws IOException
+  {
+    final String content = createText( 10000 ).replace( "y", "<y>]]" );
+    final XmlTokenizer tokenizer = createTokenizer( "<a><![CDATA[" + content + "]]></a>", 100 );
+
+    assertEquals( "a", tokenizer.nextToken().getName() );
+    final IToken cdata = tokenizer.nextToken();
+    assertEquals( TokenType.CDATA, cdata.getType() );
+    assertTrue( tokenizer.isPartial() );
+
+    assertEquals( content, readFully( tokenizer.openTextReader( cdata ) ) );
+
+    final IToken end = tokenizer.nextToken();
+    assertEquals( "a", end.getName() );
+    assertFalse( tokenizer.isPartial() );
+    assertNull( tokenizer.nextToken() );
+  }
+
+  /**
+   * Test method for XmlTextReader#read(char[], int, int), with references that
+   * straddle the boundaries of chunks.
+   */
+  @Test
+  public void testReadChunkedTextWithReferences() throws IOException
+  {
+    final StringBuilder raw = new StringBuilder();
+    final StringBuilder decoded = new StringBuilder();
+    for ( int i = 0; i < 500; i++ )
+    {
+      raw.append( "x&amp;" ).append( ( i % 3 ) == 0 ? "&#x20AC;" : "" ).append( ( i % 7 ) == 0 ? "a&b " : "" );
+      decoded.append( "x&" ).append( ( i % 3 ) == 0 ? "\u20ac" : "" ).append( ( i % 7 ) == 0 ? "a&b " : "" );
+    }
+    final String document = "<a>" + raw + "</a>";
+
+    for ( XmlScanner scanner : new XmlScanner[] { new XmlScanner( new StringReader( document ) ),
+        new XmlScanner( ByteBuffer.wrap( document.getBytes( "UTF-8" ) ) ) } )
+    {
+      scanner.setChunkSize( 16 );
+      final XmlTokenizer tokenizer = new XmlTokenizer( scanner );
+
+      assertEquals( "a", tokenizer.nextToken().getName() );
+      final IToken text = tokenizer.nextToken();
+      assertTrue( tokenizer.isPartial() );
+
+      assertEquals( decoded.toString(), readFully( tokenizer.openTextReader( text ) ) );
+      assertEquals( "a", tokenizer.nextToken().getName() );
+      assertNull( tokenizer.nextToken() );
+    }
+  }
+
+  /**
+   * Test method for XmlTextReader#read(char[], int, int).
+   */
+  @Test
+  public void testReadUnchunkedText() throws IOException
+  {
+    final XmlTokenizer tokenizer = createTokenizer( "<a>text</a>", 0 );
+
+    tokenizer.nextToken();
+    final IToken text = tokenizer.nextToken();
+    assertFalse( tokenizer.isPartial() );
+    assertEquals( "text", readFully( tokenizer.openTextReader( text ) ) );
+    assertEquals( "a", tokenizer.nextToken().getName() );
+  }
+
+  /**
+   * Returns a text of the given length.
+   */
+  private String createText( final int aLength )
+  {
+    final StringBuilder sb = new StringBuilder( aLength );
+    for ( int i = 0; i < aLength; i++ )
+    {
+      sb.append( ( ( i % 10 ) == 9 ) ? 'y' : 'x' );
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Creates a tokenizer for the given document, with the given chunk size.
+   */
+  private XmlTokenizer createTokenizer( final String aDocument, final int aChunkSize ) throws IOException
+  {
+    final XmlScanner scanner = new XmlScanner( ByteBuffer.wrap( aDocument.getBytes( "UTF-8" ) ) );
+    scanner.setChunkSize( aChunkSize );
+    return new XmlTokenizer( scanner );
+  }
+
+  /**
+   * Reads the given reader up to its end, and closes it.
+   */
+  private String readFully( final Reader aReader ) throws IOException
+  {
+    final StringBuilder sb = new StringBuilder();
+    final char[] buf = new char[37];
+    int read;
+    while ( ( read = aReader.read( buf, 0, buf.length ) ) >= 0 )
+    {
+      sb.append( buf, 0, read );
+    }
+    aReader.close();
+    return sb.toString();
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer;
+
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.util.*;
+
+import org.junit.*;
+import org.junit.rules.*;
+
+
+/**
+ *
+ */
+public class XmlTokenCacheTest
+{
+  // VARIABLES
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  // METHODS
+
+  /**
+   * Test method for XmlTokenCache#open(Path).
+   */
+  @Test
+  public void testOpenChangedFile() throws IOException
+  {
+    final Path file = this.folder.newFile( "doc.xml" ).toPath();
+    final XmlTokenCache cache = new XmlTokenCache( this.folder.getRoot().toPath().resolve( "cache" ) );
+
+    Files.write( file, "<a><b/></a>".getBytes( "UTF-8" ) );
+    assertEquals( Arrays.asList( "a", "b", "a" ), names( cache.open( file ) ) );
+
+    Files.write( file, "<a><c/><d/></a>".getBytes( "UTF-8" ) );
+    assertEquals( Arrays.asList( "a", "c", "d", "a" ), names( cache.open( file ) ) );
+  }
+
+  /**
+   * Test method for XmlTokenCache#open(Path).
+   */
+  @Test
+  public void testOpenUnchangedFile() throws IOException
+  {
+    final Path file = this.folder.newFile( "doc.xml" ).toPath();
+    final XmlTokenCache cache = new XmlTokenCache( this.folder.getRoot().toPath().resolve( "cache" ) );
+
+    Files.write( file, "<a><b/></a>".getBytes( "UTF-8" ) );
+    final FileTime modified = Files.getLastModifiedTime( file );
+    assertEquals( Arrays.asList( "a", "b", "a" ), names( cache.open( file ) ) );
+
+    final Path cacheFile = cache.getCacheFile( file.toAbsolutePath() );
+    assertTrue( Files.exists( cacheFile ) );
+    final FileTime cached = Files.getLastModifiedTime( cacheFile );
+
+    // Same size and modification time; the cached tokens should be used...
+    Files.write( file, "<x><y/></x>".getBytes( "UTF-8" ) );
+    Files.setLastModifiedTime( file, modified );
+    assertEquals( Arrays.asList( "a", "b", "a" ), names( cache.open( file ) ) );
+    assertEquals( cached, Files.getLastModifiedTime( cacheFile ) );
+  }
+
+  /**
+   * Returns the names of all tokens of the given reader, closing it
+   * afterwards.
+   */
+  private List<String> names( final XmlTokenReader aReader ) throws IOException
+  {
+    final List<String> result = new ArrayList<String>();
+    try
+    {
+      IToken token;
+      while ( ( token = aReader.nextToken() ) != null )
+      {
+        result.add( token.getName() );
+      }
+    }
+    finally
+    {
+      aReader.close();
+    }
+    return result;
+  }
+}
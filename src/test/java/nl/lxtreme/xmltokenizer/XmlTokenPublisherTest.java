@@ -0,0 +1,243 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer;
+
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.*;
+
+
+/**
+ *
+ */
+public class XmlTokenPublisherTest
+{
+  // INNER TYPES
+
+  /**
+   * Collects all tokens and requests more of them in a fixed amount.
+   */
+  static class CollectingSubscriber implements Flow.Subscriber<IToken>
+  {
+    // VARIABLES
+
+    final List<String>   tokens = Collections.synchronizedList( new ArrayList<String>() );
+    final CountDownLatch latch  = new CountDownLatch( 1 );
+    final long           initial;
+    final long           amount;
+
+    volatile Flow.Subscription subscription;
+    volatile Throwable         failure;
+    volatile boolean           completed;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new CollectingSubscriber.
+     *
+     * @param aInitial
+     *          the number of tokens to request initially;
+     * @param aAmount
+     *          the number of tokens to request after each token, or zero to
+     *          request no more tokens.
+     */
+    CollectingSubscriber( final long aInitial, final long aAmount )
+    {
+      this.initial = aInitial;
+      this.amount = aAmount;
+    }
+
+    // METHODS
+
+    @Override
+    public void onComplete()
+    {
+      this.completed = true;
+      this.latch.countDown();
+    }
+
+    @Override
+    public void onError( final Throwable aFailure )
+    {
+      this.failure = aFailure;
+      this.latch.countDown();
+    }
+
+    @Override
+    public void onNext( final IToken aToken )
+    {
+      this.tokens.add( aToken.getType() + ":" + aToken.getName() );
+      if ( this.amount > 0 )
+      {
+        this.subscription.request( this.amount );
+      }
+    }
+
+    @Override
+    public void onSubscribe( final Flow.Subscription aSubscription )
+    {
+      this.subscription = aSubscription;
+      aSubscription.request( this.initial );
+    }
+
+    /**
+     * Waits until the subscriber is completed or failed.
+     */
+    void await() throws InterruptedException
+    {
+      assertTrue( "Timeout!", this.latch.await( 10, TimeUnit.SECONDS ) );
+    }
+  }
+
+  // CONSTANTS
+
+  private static final String DOCUMENT = "<?xml version=\"1.0\"?>\n<a>\n  <b id='1'>text</b>\n  <c/>\n</a>";
+
+  // VARIABLES
+
+  private ExecutorService executor;
+
+  // METHODS
+
+  /**
+   * Set up for each test.
+   */
+  @Before
+  public void setUp()
+  {
+    this.executor = Executors.newFixedThreadPool( 2 );
+  }
+
+  /**
+   * Tear down for each test.
+   */
+  @After
+  public void tearDown()
+  {
+    this.executor.shutdownNow();
+  }
+
+  /**
+   * Test method for XmlTokenPublisher#subscribe(Flow.Subscriber).
+   */
+  @Test
+  public void testPublishAllTokens() throws Exception
+  {
+    for ( int batchSize : new int[] { 1, 2, 256 } )
+    {
+      final XmlTokenPublisher publisher = createPublisher();
+      publisher.setBatchSize( batchSize );
+
+      final CollectingSubscriber subscriber = new CollectingSubscriber( Long.MAX_VALUE, 0 );
+      publisher.subscribe( subscriber );
+      subscriber.await();
+
+      assertTrue( subscriber.completed );
+      assertEquals( tokenizeSequentially(), subscriber.tokens );
+    }
+  }
+
+  /**
+   * Test method for XmlTokenPublisher#subscribe(Flow.Subscriber).
+   */
+  @Test
+  public void testPublishHonorsDemand() throws Exception
+  {
+    final XmlTokenPublisher publisher = createPublisher();
+    final CollectingSubscriber subscriber = new CollectingSubscriber( 3, 0 );
+    publisher.subscribe( subscriber );
+
+    Thread.sleep( 100 );
+    assertEquals( 3, subscriber.tokens.size() );
+    assertFalse( subscriber.completed );
+
+    subscriber.subscription.request( 2 );
+    Thread.sleep( 100 );
+    assertEquals( 5, subscriber.tokens.size() );
+
+    subscriber.subscription.request( 100 );
+    subscriber.await();
+    assertTrue( subscriber.completed );
+    assertEquals( tokenizeSequentially(), subscriber.tokens );
+  }
+
+  /**
+   * Test method for XmlTokenPublisher#subscribe(Flow.Subscriber).
+   */
+  @Test
+  public void testPublishRequestingOneByOne() throws Exception
+  {
+    final XmlTokenPublisher publisher = createPublisher();
+    final CollectingSubscriber subscriber = new CollectingSubscriber( 1, 1 );
+    publisher.subscribe( subscriber );
+    subscriber.await();
+
+    assertTrue( subscriber.completed );
+    assertEquals( tokenizeSequentially(), subscriber.tokens );
+  }
+
+  /**
+   * Test method for XmlTokenPublisher#subscribe(Flow.Subscriber).
+   */
+  @Test
+  public void testPublishWithInvalidRequest() throws Exception
+  {
+    final XmlTokenPublisher publisher = createPublisher();
+    final CollectingSubscriber subscriber = new CollectingSubscriber( 0, 0 );
+    publisher.subscribe( subscriber );
+    subscriber.await();
+
+    assertTrue( subscriber.failure instanceof IllegalArgumentException );
+    assertTrue( subscriber.tokens.isEmpty() );
+  }
+
+  /**
+   * Test method for XmlTokenPublisher#subscribe(Flow.Subscriber).
+   */
+  @Test
+  public void testSubscribeTwice() throws Exception
+  {
+    final XmlTokenPublisher publisher = createPublisher();
+    publisher.subscribe( new CollectingSubscriber( Long.MAX_VALUE, 0 ) );
+
+    final CollectingSubscriber subscriber = new CollectingSubscriber( Long.MAX_VALUE, 0 );
+    publisher.subscribe( subscriber );
+    subscriber.await();
+
+    assertTrue( subscriber.failure instanceof IllegalStateException );
+    assertTrue( subscriber.tokens.isEmpty() );
+  }
+
+  /**
+   * Creates a publisher for {@link #DOCUMENT}.
+   */
+  private XmlTokenPublisher createPublisher()
+  {
+    return new XmlTokenPublisher( new XmlTokenizer( new XmlScanner( new StringReader( DOCUMENT ) ) ), this.executor );
+  }
+
+  /**
+   * Tokenizes {@link #DOCUMENT} with a pull tokenizer, returning a description
+   * of all tokens.
+   */
+  private List<String> tokenizeSequentially() throws IOException
+  {
+    final List<String> result = new ArrayList<String>();
+    final XmlTokenizer tokenizer = new XmlTokenizer( new XmlScanner( new StringReader( DOCUMENT ) ) );
+
+    IToken token;
+    while ( ( token = tokenizer.nextToken() ) != null )
+    {
+      result.add( token.getType() + ":" + token.getName() );
+    }
+    return result;
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer;
+
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import nl.lxtreme.xmltokenizer.impl.*;
+
+import org.junit.*;
+
+
+/**
+ *
+ */
+public class XmlTokenReaderTest
+{
+  // CONSTANTS
+
+  private static final String DOCUMENT = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" + //
+      "<!DOCTYPE html PUBLIC \"-//W3C//DTD XHTML 1.0 Strict//EN\">\n" + //
+      "<records xmlns='urn:x'>\n" + //
+      "  <record id=\"1\" name='récord' empty=''>a < b €</record>\n" + //
+      "  <!-- comment -->\n" + //
+      "  <record><![CDATA[<b>a > b</b>]]></record>\n" + //
+      "  <record id=\"2\"/>\n" + //
+      "</records>";
+
+  // METHODS
+
+  /**
+   * Test method for XmlTokenReader#nextToken().
+   */
+  @Test
+  public void testReadCorruptData() throws IOException
+  {
+    final byte[] data = write( DOCUMENT );
+    // Flip a bit in the middle of the text of a token...
+    data[data.length / 2] ^= 0x01;
+
+    final XmlTokenReader reader = new XmlTokenReader( new ByteArrayInputStream( data ) );
+    try
+    {
+      while ( reader.nextToken() != null )
+      {
+        // Keep reading...
+      }
+      fail( "Expected IOException" );
+    }
+    catch ( IOException exception )
+    {
+      // Ok; expected...
+    }
+  }
+
+  /**
+   * Test method for XmlTokenReader#XmlTokenReader(InputStream).
+   */
+  @Test( expected = IOException.class )
+  public void testReadInvalidHeader() throws IOException
+  {
+    new XmlTokenReader( new ByteArrayInputStream( "<xml/>".getBytes( "UTF-8" ) ) );
+  }
+
+  /**
+   * Test method for XmlTokenReader#nextToken().
+   */
+  @Test( expected = EOFException.class )
+  public void testReadTruncatedData() throws IOException
+  {
+    final byte[] data = write( DOCUMENT );
+
+    final XmlTokenReader reader = new XmlTokenReader( new ByteArrayInputStream( Arrays.copyOf( data,
+        data.length - 5 ) ) );
+    while ( reader.nextToken() != null )
+    {
+      // Keep reading...
+    }
+  }
+
+  /**
+   * Test method for XmlTokenWriter#write(IToken) and XmlTokenReader#nextToken().
+   */
+  @Test
+  public void testRoundTrip() throws IOException
+  {
+    final byte[] data = write( DOCUMENT );
+
+    final List<String> expected = describe( new XmlTokenizer( new XmlScanner( new StringReader( DOCUMENT ) ) ) );
+
+    final XmlTokenReader reader = new XmlTokenReader( new ByteArrayInputStream( data ) );
+    final List<String> actual = new ArrayList<String>();
+    IToken token;
+    while ( ( token = reader.nextToken() ) != null )
+    {
+      actual.add( describe( token ) );
+    }
+    assertNull( reader.nextToken() );
+
+    assertEquals( expected, actual );
+  }
+
+  /**
+   * Test method for XmlTokenReader#nextToken().
+   */
+  @Test
+  public void testRoundTripSharesNames() throws IOException
+  {
+    final StringBuilder sb = new StringBuilder( "<records>" );
+    for ( int i = 0; i < 1000; i++ )
+    {
+      sb.append( "<record id='" ).append( i ).append( "'>" ).append( i ).append( "</record>" );
+    }
+    sb.append( "</records>" );
+
+    final byte[] data = write( sb.toString() );
+    // The names are only written once, so each record takes a few bytes...
+    assertTrue( data.length < ( ( sb.length() * 2 ) / 3 ) );
+
+    final XmlTokenReader reader = new XmlTokenReader( new ByteArrayInputStream( data ) );
+    assertEquals( "records", reader.nextToken().getName() );
+    final IToken first = reader.nextToken();
+    reader.nextToken();
+    reader.nextToken();
+    final IToken second = reader.nextToken();
+
+    assertEquals( "record", first.getName() );
+    assertSame( first.getName(), second.getName() );
+    assertSame( first.getAttributes().get( 0 ).getName(), second.getAttributes().get( 0 ).getName() );
+    assertEquals( "1", second.getAttributes().get( 0 ).getValue() );
+  }
+
+  /**
+   * Returns a textual description of the given token.
+   */
+  private String describe( final IToken aToken )
+  {
+    final StringBuilder sb = new StringBuilder();
+    sb.append( aToken.getType() ).append( ':' ).append( aToken.getName() );
+    for ( IAttribute attribute : aToken.getAttributes() )
+    {
+      sb.append( ' ' ).append( attribute.getName() ).append( '=' ).append( attribute.getValue() );
+    }
+    if ( aToken instanceof TextToken )
+    {
+      sb.append( ':' ).append( ( ( TextToken )aToken ).getText() );
+    }
+    else if ( aToken instanceof CommentToken )
+    {
+      sb.append( ':' ).append( ( ( CommentToken )aToken ).getComment() );
+    }
+    else if ( aToken instanceof DocTypeToken )
+    {
+      final DocTypeToken docType = ( DocTypeToken )aToken;
+      sb.append( ':' ).append( docType.getRootElementName() ).append( ':' ).append( docType.getExternalID() );
+    }
+    else if ( aToken instanceof ElementToken )
+    {
+      final ElementToken element = ( ElementToken )aToken;
+      sb.append( ':' ).append( element.isEndTag() ).append( ':' ).append( element.isEmptyElement() );
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Returns a textual description of all tokens of the given tokenizer.
+   */
+  private List<String> describe( final XmlTokenizer aTokenizer ) throws IOException
+  {
+    final List<String> result = new ArrayList<String>();
+    IToken token;
+    while ( ( token = aTokenizer.nextToken() ) != null )
+    {
+      result.add( describe( token ) );
+    }
+    return result;
+  }
+
+  /**
+   * Writes the tokens of the given document in the binary format.
+   */
+  private byte[] write( final String aDocument ) throws IOException
+  {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final XmlTokenWriter writer = new XmlTokenWriter( out );
+    writer.writeAll( new XmlTokenizer( new XmlScanner( new StringReader( aDocument ) ) ) );
+    writer.close();
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,324 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer;
+
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+import nl.lxtreme.xmltokenizer.impl.*;
+
+import org.junit.*;
+
+
+/**
+ *
+ */
+public class XmlTokenSpliteratorTest
+{
+  // METHODS
+
+  /**
+   * Test method for XmlTokenSpliterator#stream(Path, boolean).
+   */
+  @Test
+  public void testStreamFile() throws IOException
+  {
+    final String document = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + createDocument( 2000 );
+    final List<String> expected = tokenizeSequentially( document );
+
+    final Path file = Files.createTempFile( "xmlspliterator", ".xml" );
+    try
+    {
+      Files.write( file, document.getBytes( "UTF-8" ) );
+
+      for ( boolean parallel : new boolean[] { false, true } )
+      {
+        try ( Stream<IToken> stream = XmlTokenSpliterator.stream( file, parallel ) )
+        {
+          assertEquals( expected, describe( stream.collect( Collectors.<IToken> toList() ) ) );
+        }
+      }
+    }
+    finally
+    {
+      Files.delete( file );
+    }
+  }
+
+  /**
+   * Test method for XmlTokenSpliterator#stream(CharSequence, boolean) and
+   * XmlTokenSpliterator#stream(Path, boolean), with sections larger than a
+   * chunk containing tag-like content.
+   */
+  @Test
+  public void testStreamLargeSections() throws IOException
+  {
+    final StringBuilder content = new StringBuilder();
+    while ( content.length() < ( 3 * XmlTokenSpliterator.MIN_SPLIT_SIZE ) )
+    {
+      content.append( "<item>" ).append( content.length() ).append( "</item>\n" );
+    }
+    final String document = createDocument( 1000 ) + "<![CDATA[" + content + "]]>" + createDocument( 1000 )
+        + "<!-- " + content + " -->" + createDocument( 1000 );
+    final List<String> expected = tokenizeSequentially( document );
+
+    assertEquals( expected, describe( XmlTokenSpliterator.stream( document, true ).collect(
+        Collectors.<IToken> toList() ) ) );
+
+    final Path file = Files.createTempFile( "xmlspliterator", ".xml" );
+    try
+    {
+      Files.write( file, document.getBytes( "UTF-8" ) );
+
+      try ( Stream<IToken> stream = XmlTokenSpliterator.stream( file, true ) )
+      {
+        assertEquals( expected, describe( stream.collect( Collectors.<IToken> toList() ) ) );
+      }
+    }
+    finally
+    {
+      Files.delete( file );
+    }
+  }
+
+  /**
+   * Test method for XmlTokenSpliterator#stream(CharSequence, boolean).
+   */
+  @Test
+  public void testStreamParallel() throws IOException
+  {
+    final String document = createDocument( 2000 );
+    final List<String> expected = tokenizeSequentially( document );
+
+    final List<IToken> tokens = XmlTokenSpliterator.stream( document, true ).collect( Collectors.<IToken> toList() );
+    assertEquals( expected, describe( tokens ) );
+  }
+
+  /**
+   * Test method for XmlTokenizer#stream().
+   */
+  @Test
+  public void testStreamTokenizer() throws IOException
+  {
+    final String document = createDocument( 5 );
+    final List<String> expected = tokenizeSequentially( document );
+
+    final XmlTokenizer tokenizer = new XmlTokenizer( new XmlScanner( new StringReader( document ) ) );
+    final Spliterator<IToken> spliterator = tokenizer.spliterator();
+    assertNull( spliterator.trySplit() );
+    assertTrue( spliterator.hasCharacteristics( Spliterator.ORDERED | Spliterator.NONNULL ) );
+
+    assertEquals( expected, describe( StreamSupport.stream( spliterator, false ).collect(
+        Collectors.<IToken> toList() ) ) );
+  }
+
+  /**
+   * Test method for XmlTokenSpliterator#trySplit().
+   */
+  @Test
+  public void testTrySplit() throws IOException
+  {
+    final String document = createDocument( 2000 );
+    final List<String> expected = tokenizeSequentially( document );
+
+    final List<Spliterator<IToken>> chunks = new ArrayList<Spliterator<IToken>>();
+    split( new XmlTokenSpliterator( document ), chunks );
+    assertTrue( chunks.size() > 2 );
+
+    final List<IToken> tokens = new ArrayList<IToken>();
+    for ( Spliterator<IToken> chunk : chunks )
+    {
+      assertTrue( chunk.estimateSize() >= XmlTokenSpliterator.MIN_SPLIT_SIZE );
+      chunk.forEachRemaining( new Consumer<IToken>()
+      {
+        public void accept( final IToken aToken )
+        {
+          tokens.add( aToken );
+        }
+      } );
+      assertNull( chunk.trySplit() );
+    }
+    assertEquals( expected, describe( tokens ) );
+  }
+
+  /**
+   * Test method for XmlTokenSpliterator#trySplit(), with a CDATA section
+   * spanning multiple chunks.
+   */
+  @Test
+  public void testTrySplitLargeCData() throws IOException
+  {
+    final StringBuilder content = new StringBuilder();
+    while ( content.length() < ( 8 * XmlTokenSpliterator.MIN_SPLIT_SIZE ) )
+    {
+      content.append( "<a/>" );
+    }
+    final String document = createDocument( 2000 ) + "<![CDATA[" + content + "]]>" + createDocument( 2000 );
+    final List<String> expected = tokenizeSequentially( document );
+
+    final List<Spliterator<IToken>> chunks = new ArrayList<Spliterator<IToken>>();
+    split( new XmlTokenSpliterator( document ), chunks );
+    assertTrue( chunks.size() > 2 );
+
+    final List<IToken> tokens = new ArrayList<IToken>();
+    for ( Spliterator<IToken> chunk : chunks )
+    {
+      chunk.forEachRemaining( new Consumer<IToken>()
+      {
+        public void accept( final IToken aToken )
+        {
+          tokens.add( aToken );
+        }
+      } );
+    }
+    assertEquals( expected, describe( tokens ) );
+  }
+
+  /**
+   * Test method for XmlTokenSpliterator#trySplit() on a file that is mapped in
+   * windows smaller than the chunks to split.
+   */
+  @Test
+  public void testTrySplitMappedFileWindows() throws IOException
+  {
+    final StringBuilder content = new StringBuilder();
+    while ( content.length() < ( 4 * XmlTokenSpliterator.MIN_SPLIT_SIZE ) )
+    {
+      content.append( "<a/>" );
+    }
+    final String document = createDocument( 2000 ) + "<![CDATA[" + content + "]]>" + createDocument( 2000 );
+    final List<String> expected = tokenizeSequentially( document );
+
+    final Path file = Files.createTempFile( "xmlspliterator", ".xml" );
+    try
+    {
+      Files.write( file, document.getBytes( "UTF-8" ) );
+
+      for ( int windowSize : new int[] { 1000, 4096 } )
+      {
+        final MappedFileInput input = new MappedFileInput( FileChannel.open( file, StandardOpenOption.READ ),
+            Charset.forName( "UTF-8" ), 0, Files.size( file ), windowSize );
+        try
+        {
+          final List<Spliterator<IToken>> chunks = new ArrayList<Spliterator<IToken>>();
+          split( new XmlTokenSpliterator( input ), chunks );
+          assertTrue( chunks.size() > 2 );
+
+          final List<IToken> tokens = new ArrayList<IToken>();
+          for ( Spliterator<IToken> chunk : chunks )
+          {
+            chunk.forEachRemaining( new Consumer<IToken>()
+            {
+              public void accept( final IToken aToken )
+              {
+                tokens.add( aToken );
+              }
+            } );
+          }
+          assertEquals( expected, describe( tokens ) );
+        }
+        finally
+        {
+          input.close();
+        }
+      }
+    }
+    finally
+    {
+      Files.delete( file );
+    }
+  }
+
+  /**
+   * Creates a document with the given number of records, containing comments
+   * and CDATA sections with tag-like content.
+   */
+  private String createDocument( final int aCount )
+  {
+    final StringBuilder sb = new StringBuilder( "<!DOCTYPE records>\n<records>\n" );
+    for ( int i = 0; i < aCount; i++ )
+    {
+      sb.append( "  <record id=\"" ).append( i ).append( "\" name='récord'>\n" );
+      sb.append( "    <!-- <record id=\"fake\"> a < b -->\n" );
+      sb.append( "    <value>" ).append( i * 31 ).append( " < " ).append( i ).append( "</value>\n" );
+      sb.append( "    <data><![CDATA[<not-a-tag/> & more]]></data>\n" );
+      sb.append( "    <empty/>\n" );
+      sb.append( "  </record>\n" );
+    }
+    sb.append( "</records>\n" );
+    return sb.toString();
+  }
+
+  /**
+   * Returns a textual description of the given tokens.
+   */
+  private List<String> describe( final List<IToken> aTokens )
+  {
+    final List<String> result = new ArrayList<String>();
+    for ( IToken token : aTokens )
+    {
+      final StringBuilder sb = new StringBuilder();
+      sb.append( token.getType() ).append( ':' ).append( token.getName() );
+      for ( IAttribute attribute : token.getAttributes() )
+      {
+        sb.append( ' ' ).append( attribute.getName() ).append( '=' ).append( attribute.getValue() );
+      }
+      if ( token instanceof TextToken )
+      {
+        sb.append( ':' ).append( ( ( TextToken )token ).getText() );
+      }
+      else if ( token instanceof CommentToken )
+      {
+        sb.append( ':' ).append( ( ( CommentToken )token ).getComment() );
+      }
+      result.add( sb.toString() );
+    }
+    return result;
+  }
+
+  /**
+   * Recursively splits the given spliterator, adding all chunks in order to
+   * the given list.
+   */
+  private void split( final Spliterator<IToken> aSpliterator, final List<Spliterator<IToken>> aChunks )
+  {
+    final Spliterator<IToken> prefix = aSpliterator.trySplit();
+    if ( prefix != null )
+    {
+      split( prefix, aChunks );
+      split( aSpliterator, aChunks );
+    }
+    else
+    {
+      aChunks.add( aSpliterator );
+    }
+  }
+
+  /**
+   * Tokenizes the given document sequentially, returning a description of all
+   * tokens.
+   */
+  private List<String> tokenizeSequentially( final String aDocument ) throws IOException
+  {
+    final XmlTokenizer tokenizer = new XmlTokenizer( new XmlScanner( new StringReader( aDocument ) ) );
+
+    final List<IToken> tokens = new ArrayList<IToken>();
+    IToken token;
+    while ( ( token = tokenizer.nextToken() ) != null )
+    {
+      tokens.add( token );
+    }
+    return describe( tokens );
+  }
+}
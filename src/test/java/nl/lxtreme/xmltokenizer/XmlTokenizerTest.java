@@ -9,7 +9,9 @@ package nl.lxtreme.xmltokenizer;
 import static org.junit.Assert.*;
 
 import java.io.*;
+import java.util.*;
 
+import nl.lxtreme.xmltokenizer.IToken.TokenType;
 import nl.lxtreme.xmltokenizer.impl.*;
 
 import org.junit.*;
@@ -64,6 +66,112 @@ public class XmlTokenizerTest
     assertEquals( 21, count );
   }
 
+  /**
+   * Test method for XmlTokenizer#nextTokens(IToken[], int, int).
+   */
+  @Test
+  public void testNextTokensArray() throws IOException
+  {
+    final String xml = "<a><b x='1'>text</b><!-- c --><d/></a>";
+
+    final XmlTokenizer parser = createParser( xml );
+    final IToken[] tokens = new IToken[5];
+
+    assertEquals( 4, parser.nextTokens( tokens, 1, 4 ) );
+    assertNull( tokens[0] );
+    assertEquals( "a", tokens[1].getName() );
+    assertTrue( tokens[2].hasAttribute( new Attribute( "x", "1" ) ) );
+    assertEquals( "text", ( ( TextToken )tokens[3] ).getText() );
+    assertTrue( ( ( ElementToken )tokens[4] ).isEndTag() );
+
+    assertEquals( 3, parser.nextTokens( tokens, 0, 5 ) );
+    assertTrue( tokens[0] instanceof CommentToken );
+    assertEquals( "d", tokens[1].getName() );
+    assertEquals( "a", tokens[2].getName() );
+
+    assertEquals( 0, parser.nextTokens( tokens, 0, 5 ) );
+
+    try
+    {
+      parser.nextTokens( tokens, 3, 3 );
+      fail( "Expected IllegalArgumentException" );
+    }
+    catch ( IllegalArgumentException exception )
+    {
+      // Ok; expected...
+    }
+  }
+
+  /**
+   * Test method for XmlTokenizer#nextTokens(List, int).
+   */
+  @Test
+  public void testNextTokensList() throws IOException
+  {
+    final String xml = "<a><b x='1'>text</b><!-- c --><d/></a>";
+
+    final XmlTokenizer parser = createParser( xml );
+    final List<IToken> tokens = new ArrayList<IToken>();
+
+    assertEquals( 5, parser.nextTokens( tokens, 5 ) );
+    assertEquals( 2, parser.nextTokens( tokens, 5 ) );
+    assertEquals( 0, parser.nextTokens( tokens, 5 ) );
+
+    final XmlTokenizer expected = createParser( xml );
+    for ( IToken token : tokens )
+    {
+      final IToken other = expected.nextToken();
+      assertEquals( other.getType(), token.getType() );
+      assertEquals( other.getName(), token.getName() );
+      assertEquals( other.getAttributes(), token.getAttributes() );
+    }
+    assertNull( expected.nextToken() );
+  }
+
+  /**
+   * Test method for XmlTokenizer#skipElement().
+   */
+  @Test
+  public void testSkipElement() throws IOException
+  {
+    final String xml = "<a><b><c x='1'>text</c><c/></b><d/></a>";
+
+    final XmlTokenizer parser = createParser( xml );
+
+    assertEquals( "a", parser.nextToken().getName() );
+    assertEquals( "b", parser.nextToken().getName() );
+    assertTrue( parser.skipElement() );
+    assertEquals( "d", parser.nextToken().getName() );
+
+    final ElementToken endToken = ( ElementToken )parser.nextToken();
+    assertEquals( "a", endToken.getName() );
+    assertTrue( endToken.isEndTag() );
+
+    assertNull( parser.nextToken() );
+  }
+
+  /**
+   * Test method for XmlScanner#nextToken().
+   */
+  @Test
+  public void testTokenizeCData() throws IOException
+  {
+    final String xml = "<![CDATA[ <b>a > b</b> ]]><![CDATA[]]>";
+
+    final XmlTokenizer parser = createParser( xml );
+
+    IToken token = parser.nextToken();
+    assertEquals( TokenType.CDATA, token.getType() );
+    assertTrue( token.getType().isCData() );
+    assertEquals( " <b>a > b</b> ", ( ( CDataToken )token ).getText() );
+
+    token = parser.nextToken();
+    assertEquals( TokenType.CDATA, token.getType() );
+    assertEquals( "", ( ( CDataToken )token ).getText() );
+
+    assertNull( parser.nextToken() );
+  }
+
   /**
    * Test method for XmlScanner#nextToken().
    */
@@ -82,6 +190,48 @@ public class XmlTokenizerTest
     assertNull( parser.nextToken() );
   }
 
+  /**
+   * Test method for XmlTokenizer#setEntityDecoder(EntityDecoder).
+   */
+  @Test
+  public void testTokenizeCustomEntities() throws IOException
+  {
+    final String xml = "<a title='&copy; &co;'>&copyright; &copy;&amp;&unknown;</a>";
+
+    final Map<String, String> entities = new HashMap<String, String>();
+    entities.put( "copy", "\u00a9" );
+    entities.put( "copyright", "(c)" );
+
+    final XmlTokenizer parser = createParser( xml );
+    parser.setEntityDecoder( new EntityDecoder( entities ) );
+
+    final ElementToken elementToken = ( ElementToken )parser.nextToken();
+    assertEquals( "\u00a9 &co;", elementToken.getAttributes().get( 0 ).getValue() );
+
+    final TextToken textToken = ( TextToken )parser.nextToken();
+    assertEquals( "(c) \u00a9&&unknown;", textToken.getText() );
+
+    parser.setEntityDecoder( null );
+    assertEquals( "(c) \u00a9&&unknown;", textToken.getText() );
+
+    final ElementToken endToken = ( ElementToken )parser.nextToken();
+    assertTrue( endToken.isEndTag() );
+
+    assertNull( parser.nextToken() );
+
+    final Map<String, String> invalid = new HashMap<String, String>();
+    invalid.put( "", "x" );
+    try
+    {
+      new EntityDecoder( invalid );
+      fail( "IllegalArgumentException expected!" );
+    }
+    catch ( IllegalArgumentException exception )
+    {
+      // Ok; expected...
+    }
+  }
+
   /**
    * Test method for XmlScanner#nextToken().
    */
@@ -103,6 +253,54 @@ public class XmlTokenizerTest
     assertNull( parser.nextToken() );
   }
 
+  /**
+   * Test method for XmlScanner#nextToken().
+   */
+  @Test
+  public void testTokenizeElementAttributes() throws IOException
+  {
+    final String xml = "<input type = 'text' disabled value=a&gt;b></input>";
+
+    final XmlTokenizer parser = createParser( xml );
+
+    final ElementToken elementToken = ( ElementToken )parser.nextToken();
+
+    assertEquals( "input", elementToken.getName() );
+    assertEquals( 3, elementToken.getAttributes().size() );
+    assertTrue( elementToken.hasAttribute( new Attribute( "type", "text" ) ) );
+    assertTrue( elementToken.hasAttribute( new Attribute( "disabled", "disabled" ) ) );
+    assertTrue( elementToken.hasAttribute( new Attribute( "value", "a&gt;b" ) ) );
+
+    final ElementToken endToken = ( ElementToken )parser.nextToken();
+
+    assertEquals( "input", endToken.getName() );
+    assertTrue( endToken.isEndTag() );
+    assertTrue( endToken.getAttributes().isEmpty() );
+
+    assertNull( parser.nextToken() );
+  }
+
+  /**
+   * Test method for XmlScanner#nextToken().
+   */
+  @Test
+  public void testTokenizeElementAttributesAddedLater() throws IOException
+  {
+    final String xml = "<input type='text'>";
+
+    final XmlTokenizer parser = createParser( xml );
+
+    final ElementToken elementToken = ( ElementToken )parser.nextToken();
+    elementToken.addAttribute( new Attribute( "value", "a" ) );
+
+    assertEquals( "input", elementToken.getName() );
+    assertEquals( 2, elementToken.getAttributes().size() );
+    assertEquals( new Attribute( "type", "text" ), elementToken.getAttributes().get( 0 ) );
+    assertEquals( new Attribute( "value", "a" ), elementToken.getAttributes().get( 1 ) );
+
+    assertNull( parser.nextToken() );
+  }
+
   /**
    * Test method for XmlScanner#nextToken().
    */
@@ -193,6 +391,82 @@ public class XmlTokenizerTest
     assertNull( parser.nextToken() );
   }
 
+  /**
+   * Test method for TextToken#getText() and IAttribute#getValue().
+   */
+  @Test
+  public void testTokenizeEntityReferences() throws IOException
+  {
+    final String xml = "<a b=\"x &lt; &quot;y&quot;\" c='plain'>1 &amp; 2 &#60; &#x20AC;&#x1F600; &#xD800; &#; &amp</a>"
+        + "<![CDATA[&amp;]]>plain";
+
+    final XmlTokenizer parser = createParser( xml );
+
+    final ElementToken elementToken = ( ElementToken )parser.nextToken();
+    final IAttribute b = elementToken.getAttributes().get( 0 );
+    assertEquals( "x < \"y\"", b.getValue() );
+    assertEquals( "x &lt; &quot;y&quot;", b.getRawValue() );
+    final IAttribute c = elementToken.getAttributes().get( 1 );
+    assertSame( c.getRawValue(), c.getValue() );
+
+    final TextToken textToken = ( TextToken )parser.nextToken();
+    assertEquals( "1 & 2 < \u20ac\ud83d\ude00 &#xD800; &#; &amp", textToken.getText() );
+    assertSame( textToken.getText(), textToken.getText() );
+    assertEquals( "1 &amp; 2 &#60; &#x20AC;&#x1F600; &#xD800; &#; &amp", textToken.getRawText() );
+
+    assertTrue( ( ( ElementToken )parser.nextToken() ).isEndTag() );
+
+    final TextToken cdataToken = ( TextToken )parser.nextToken();
+    assertEquals( TokenType.CDATA, cdataToken.getType() );
+    assertEquals( "&amp;", cdataToken.getText() );
+
+    final TextToken plainToken = ( TextToken )parser.nextToken();
+    assertSame( plainToken.getRawText(), plainToken.getText() );
+
+    assertNull( parser.nextToken() );
+  }
+
+  /**
+   * Test method for XmlTokenizer#setSymbolTable(SymbolTable).
+   */
+  @Test
+  public void testTokenizeInternsNames() throws IOException
+  {
+    final String xml = "<a id='1'><b id='2'/><a id='3'></a></a>";
+
+    final XmlTokenizer parser = createParser( xml );
+
+    final IToken first = parser.nextToken();
+    final IToken second = parser.nextToken();
+    final IToken third = parser.nextToken();
+
+    assertEquals( "a", first.getName() );
+    assertSame( first.getName(), third.getName() );
+    assertSame( first.getAttributes().get( 0 ).getName(), second.getAttributes().get( 0 ).getName() );
+    assertSame( first.getAttributes().get( 0 ).getName(), third.getAttributes().get( 0 ).getName() );
+  }
+
+  /**
+   * Test method for XmlTokenizer#setAttributeParser(AttributeParser).
+   */
+  @Test
+  public void testTokenizeLenientAttributes() throws IOException
+  {
+    final String xml = "<a title=\"say \\\"hi\\\"\" class=x y>";
+
+    final XmlTokenizer parser = createParser( xml );
+    parser.setAttributeParser( new LenientAttributeParser() );
+
+    final ElementToken elementToken = ( ElementToken )parser.nextToken();
+
+    assertEquals( "a", elementToken.getName() );
+    assertEquals( 2, elementToken.getAttributes().size() );
+    assertTrue( elementToken.hasAttribute( new Attribute( "title", "say \"hi\"" ) ) );
+    assertTrue( elementToken.hasAttribute( new Attribute( "class", "x y" ) ) );
+
+    assertNull( parser.nextToken() );
+  }
+
   /**
    * Test method for XmlScanner#nextToken().
    */
@@ -211,6 +485,29 @@ public class XmlTokenizerTest
     assertNull( parser.nextToken() );
   }
 
+  /**
+   * Test method for XmlTokenizer#setSymbolTable(SymbolTable).
+   */
+  @Test
+  public void testTokenizeSharedSymbolTable() throws IOException
+  {
+    final SymbolTable symbols = SymbolTable.createShared( 1 );
+
+    final XmlTokenizer parser1 = createParser( "<a b='1'/>" );
+    parser1.setSymbolTable( symbols );
+    final XmlTokenizer parser2 = createParser( "<a b='2'/>" );
+    parser2.setSymbolTable( symbols );
+
+    final IToken token1 = parser1.nextToken();
+    final IToken token2 = parser2.nextToken();
+
+    assertSame( token1.getName(), token2.getName() );
+    // The table is full, so the attribute names are no longer canonicalized...
+    assertEquals( token1.getAttributes().get( 0 ).getName(), token2.getAttributes().get( 0 ).getName() );
+    assertNotSame( token1.getAttributes().get( 0 ).getName(), token2.getAttributes().get( 0 ).getName() );
+    assertEquals( 1, symbols.size() );
+  }
+
   /**
    * Test method for XmlScanner#nextToken().
    */
@@ -229,6 +526,68 @@ public class XmlTokenizerTest
     assertNull( parser.nextToken() );
   }
 
+  /**
+   * Test method for XmlTokenizer#setTokenPool(TokenPool).
+   */
+  @Test
+  public void testTokenizeWithTokenPool() throws IOException
+  {
+    final String xml = "<a x='1' y='2'>text<b z='3'/>more";
+
+    final TokenPool pool = new TokenPool();
+    final XmlTokenizer parser = createParser( xml );
+    parser.setTokenPool( pool );
+
+    final ElementToken first = ( ElementToken )parser.nextToken();
+    assertEquals( "a", first.getName() );
+    assertEquals( 2, first.getAttributes().size() );
+    final IAttribute attribute = first.getAttributes().get( 1 );
+    pool.release( first );
+
+    final TextToken text = ( TextToken )parser.nextToken();
+    assertEquals( "text", text.getText() );
+    assertTrue( text.getAttributes().isEmpty() );
+    pool.release( text );
+
+    final ElementToken second = ( ElementToken )parser.nextToken();
+    assertSame( first, second );
+    assertEquals( "b", second.getName() );
+    assertTrue( second.isEmptyElement() );
+    assertEquals( 1, second.getAttributes().size() );
+    assertTrue( second.hasAttribute( new Attribute( "z", "3" ) ) );
+    assertSame( attribute, second.getAttributes().get( 0 ) );
+
+    assertSame( text, parser.nextToken() );
+    assertEquals( "more", text.getText() );
+
+    assertNull( parser.nextToken() );
+  }
+
+  /**
+   * Test method for TokenPool#release(IToken) with a token that is released
+   * twice.
+   */
+  @Test
+  public void testTokenPoolReleaseTwice() throws IOException
+  {
+    final TokenPool pool = new TokenPool();
+    final XmlTokenizer parser = createParser( "<a x='1'/><b y='2'/><c z='3'/>" );
+    parser.setTokenPool( pool );
+
+    final ElementToken first = ( ElementToken )parser.nextToken();
+    pool.release( first );
+    pool.release( first );
+
+    final ElementToken second = ( ElementToken )parser.nextToken();
+    assertSame( first, second );
+    final ElementToken third = ( ElementToken )parser.nextToken();
+    assertNotSame( second, third );
+    assertNotSame( second.getAttributes().get( 0 ), third.getAttributes().get( 0 ) );
+    assertEquals( "b", second.getName() );
+    assertEquals( "y", second.getAttributes().get( 0 ).getName() );
+    assertEquals( "c", third.getName() );
+  }
+
   /**
    * Test method for XmlScanner#nextToken().
    */
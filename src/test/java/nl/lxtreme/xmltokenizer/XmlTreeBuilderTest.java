@@ -0,0 +1,137 @@
+/*
+ * LibXmlTokenizer
+ *
+ * (C) Copyright 2012 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ */
+package nl.lxtreme.xmltokenizer;
+
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import nl.lxtreme.xmltokenizer.impl.*;
+
+import org.junit.*;
+
+
+/**
+ *
+ */
+public class XmlTreeBuilderTest
+{
+  // METHODS
+
+  /**
+   * Test method for XmlTreeBuilder#build().
+   */
+  @Test
+  public void testBuild() throws IOException
+  {
+    final String xml = "<?xml version=\"1.0\"?><a><b x='1'>text</b><!-- c --><d/></a>";
+
+    final List<IToken> tokens = createBuilder( xml ).build();
+    assertEquals( 2, tokens.size() );
+    assertEquals( "xml", tokens.get( 0 ).getName() );
+
+    final IToken root = tokens.get( 1 );
+    assertEquals( "a", root.getName() );
+    assertNull( root.getParent() );
+    assertEquals( 3, root.getChildren().size() );
+
+    final IToken b = root.getChildren().get( 0 );
+    assertEquals( "b", b.getName() );
+    assertSame( root, b.getParent() );
+    assertTrue( b.hasAttribute( new Attribute( "x", "1" ) ) );
+    assertEquals( 1, b.getChildren().size() );
+    assertEquals( "text", ( ( TextToken )b.getChildren().get( 0 ) ).getText() );
+
+    assertEquals( "c", ( ( CommentToken )root.getChildren().get( 1 ) ).getComment() );
+
+    final IToken d = root.getChildren().get( 2 );
+    assertEquals( "d", d.getName() );
+    assertTrue( d.getChildren().isEmpty() );
+  }
+
+  /**
+   * Test method for XmlTreeBuilder#build().
+   */
+  @Test
+  public void testBuildDeepDocument() throws IOException
+  {
+    final int depth = 100000;
+    final StringBuilder sb = new StringBuilder();
+    for ( int i = 0; i < depth; i++ )
+    {
+      sb.append( "<e>" );
+    }
+    for ( int i = 0; i < depth; i++ )
+    {
+      sb.append( "</e>" );
+    }
+
+    final List<IToken> tokens = createBuilder( sb.toString() ).build();
+    assertEquals( 1, tokens.size() );
+
+    int count = 0;
+    IToken token = tokens.get( 0 );
+    while ( token != null )
+    {
+      count++;
+      token = token.getChildren().isEmpty() ? null : token.getChildren().get( 0 );
+    }
+    assertEquals( depth, count );
+  }
+
+  /**
+   * Test method for XmlTreeBuilder#build().
+   */
+  @Test
+  public void testBuildIgnoreWhitespace() throws IOException
+  {
+    final String xml = "<a>\n  <b> x </b>\n  <c>\t</c>\n</a>\n";
+
+    final XmlTreeBuilder builder = createBuilder( xml );
+    builder.setIgnoreWhitespace( true );
+
+    final List<IToken> tokens = builder.build();
+    assertEquals( 1, tokens.size() );
+
+    final IToken root = tokens.get( 0 );
+    assertEquals( 2, root.getChildren().size() );
+    assertEquals( 1, root.getChildren().get( 0 ).getChildren().size() );
+    assertTrue( root.getChildren().get( 1 ).getChildren().isEmpty() );
+  }
+
+  /**
+   * Test method for XmlTreeBuilder#build().
+   */
+  @Test
+  public void testBuildUnbalancedElements() throws IOException
+  {
+    final String xml = "<a><b><c></b></x><d>";
+
+    final List<IToken> tokens = createBuilder( xml ).build();
+    assertEquals( 1, tokens.size() );
+
+    final IToken a = tokens.get( 0 );
+    assertEquals( 2, a.getChildren().size() );
+
+    final IToken b = a.getChildren().get( 0 );
+    assertEquals( "b", b.getName() );
+    assertEquals( 1, b.getChildren().size() );
+    assertEquals( "c", b.getChildren().get( 0 ).getName() );
+
+    assertEquals( "d", a.getChildren().get( 1 ).getName() );
+  }
+
+  /**
+   * @param aString
+   * @return
+   */
+  private XmlTreeBuilder createBuilder( final String aString )
+  {
+    return new XmlTreeBuilder( new XmlTokenizer( new XmlScanner( new StringReader( aString ) ) ) );
+  }
+}